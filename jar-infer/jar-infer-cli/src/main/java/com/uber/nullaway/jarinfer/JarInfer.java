@@ -72,6 +72,22 @@ public class JarInfer {
             .longOpt("strip-jar-signatures")
             .desc("handle signed jars by removing signature information from META-INF/")
             .build());
+    options.addOption(
+        Option.builder("t")
+            .argName("threads")
+            .longOpt("threads")
+            .hasArg()
+            .desc("number of threads analyzing classes in parallel (default: 1)")
+            .build());
+    options.addOption(
+        Option.builder("c")
+            .argName("class_hash_index")
+            .longOpt("class-hash-index")
+            .hasArg()
+            .desc(
+                "path to an index of the classes analyzed by a previous run, whose models are"
+                    + " reused for unchanged classes; the index is rewritten after the run")
+            .build());
     options.addOption(
         Option.builder("h")
             .argName("help")
@@ -99,10 +115,13 @@ public class JarInfer {
       boolean stripJarSignatures = line.hasOption('s');
       boolean debug = line.hasOption('d');
       boolean verbose = line.hasOption('v');
+      int threads = Integer.parseInt(line.getOptionValue('t', "1"));
+      String classHashIndexPath = line.getOptionValue('c', "");
       if (!pkgName.isEmpty()) {
         pkgName = "L" + pkgName.replaceAll("\\.", "/");
       }
-      DefinitelyDerefedParamsDriver driver = new DefinitelyDerefedParamsDriver();
+      DefinitelyDerefedParamsDriver driver =
+          new DefinitelyDerefedParamsDriver(threads, classHashIndexPath);
       driver.run(
           jarPath, pkgName, outPath, annotateBytecode, stripJarSignatures, false, debug, verbose);
       if (!new File(outPath).exists()) {
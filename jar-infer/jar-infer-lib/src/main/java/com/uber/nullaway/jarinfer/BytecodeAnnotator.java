@@ -18,13 +18,14 @@ package com.uber.nullaway.jarinfer;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Sets;
 import java.io.BufferedReader;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
@@ -88,6 +89,7 @@ public final class BytecodeAnnotator {
           + "\t3) Exclude this jar from those being processed by JarInfer.";
   private static final String BASE64_PATTERN =
       "(?:[A-Za-z0-9+/]{4})*(?:[A-Za-z0-9+/]{2}==|[A-Za-z0-9+/]{3}=)?";
+  private static final String MULTI_RELEASE_VERSIONS_PREFIX = "META-INF/versions/";
   private static final String DIGEST_ENTRY_PATTERN =
       "Name: [A-Za-z0-9/\\$\\n\\s\\-\\.]+[A-Za-z0-9]\\nSHA-256-Digest: " + BASE64_PATTERN;
 
@@ -210,12 +212,54 @@ public final class BytecodeAnnotator {
     annotateBytecode(is, os, nonnullParams, nullableReturns, javaxNullableDesc, javaxNonnullDesc);
   }
 
+  /**
+   * Returns the classes with at least one method to annotate. Other classes are copied as is,
+   * without parsing them with ASM.
+   *
+   * @param nonnullParams Map from methods to their nonnull params.
+   * @param nullableReturns List of methods that return nullable.
+   * @return The names of the classes, with '.' as package separator (e.g. 'com.foo.Bar$Baz').
+   */
+  private static Set<String> getClassesToAnnotate(
+      MethodParamAnnotations nonnullParams, MethodReturnAnnotations nullableReturns) {
+    Set<String> classes = new HashSet<>();
+    for (Map.Entry<String, Set<Integer>> entry : nonnullParams.entrySet()) {
+      if (!entry.getValue().isEmpty()) {
+        classes.add(getClassName(entry.getKey()));
+      }
+    }
+    for (String methodSignature : nullableReturns) {
+      classes.add(getClassName(methodSignature));
+    }
+    return classes;
+  }
+
+  /** Returns the class of a method signature of the form 'com.foo.Bar.method(desc)'. */
+  private static String getClassName(String methodSignature) {
+    int paramsStart = methodSignature.indexOf('(');
+    if (paramsStart < 0) {
+      paramsStart = methodSignature.length();
+    }
+    return methodSignature.substring(0, methodSignature.lastIndexOf('.', paramsStart));
+  }
+
+  /** Returns the class stored in a class file entry of a jar, e.g. 'com/foo/Bar.class'. */
+  private static String getClassNameForEntry(String entryName) {
+    if (entryName.startsWith(MULTI_RELEASE_VERSIONS_PREFIX)) {
+      // META-INF/versions/<version>/com/foo/Bar.class
+      int versionEnd = entryName.indexOf('/', MULTI_RELEASE_VERSIONS_PREFIX.length());
+      entryName = entryName.substring(versionEnd + 1);
+    }
+    return entryName.substring(0, entryName.length() - ".class".length()).replace('/', '.');
+  }
+
   private static void copyAndAnnotateJarEntry(
       JarEntry jarEntry,
       InputStream is,
       JarOutputStream jarOS,
       MethodParamAnnotations nonnullParams,
       MethodReturnAnnotations nullableReturns,
+      Set<String> classesToAnnotate,
       String nullableDesc,
       String nonnullDesc,
       boolean stripJarSignatures)
@@ -223,7 +267,11 @@ public final class BytecodeAnnotator {
     String entryName = jarEntry.getName();
     if (entryName.endsWith(".class")) {
       jarOS.putNextEntry(new ZipEntry(jarEntry.getName()));
-      annotateBytecode(is, jarOS, nonnullParams, nullableReturns, nullableDesc, nonnullDesc);
+      if (classesToAnnotate.contains(getClassNameForEntry(entryName))) {
+        annotateBytecode(is, jarOS, nonnullParams, nullableReturns, nullableDesc, nonnullDesc);
+      } else {
+        IOUtils.copy(is, jarOS);
+      }
     } else if (entryName.equals("META-INF/MANIFEST.MF")) {
       // Read full file
       StringBuilder stringBuilder = new StringBuilder();
@@ -250,7 +298,7 @@ public final class BytecodeAnnotator {
       } // the case where stripJarSignatures==true is handled by default by skipping these files
     } else {
       jarOS.putNextEntry(new ZipEntry(jarEntry.getName()));
-      jarOS.write(IOUtils.toByteArray(is));
+      IOUtils.copy(is, jarOS);
     }
     jarOS.closeEntry();
   }
@@ -282,6 +330,7 @@ public final class BytecodeAnnotator {
     // Reference: https://bugs.openjdk.java.net/browse/JDK-8215788
     // Note: we can't just put the code below inside stream().forach(), because it can throw
     // IOException.
+    Set<String> classesToAnnotate = getClassesToAnnotate(nonnullParams, nullableReturns);
     for (JarEntry jarEntry : (Iterable<JarEntry>) inputJar.stream()::iterator) {
       InputStream is = inputJar.getInputStream(jarEntry);
       copyAndAnnotateJarEntry(
@@ -290,6 +339,7 @@ public final class BytecodeAnnotator {
           jarOS,
           nonnullParams,
           nullableReturns,
+          classesToAnnotate,
           javaxNullableDesc,
           javaxNonnullDesc,
           stripJarSignatures);
@@ -323,6 +373,7 @@ public final class BytecodeAnnotator {
     // Additionally, inputZip.stream() returns a Stream<? extends ZipEntry>, and a for-each loop
     // has trouble handling the corresponding ::iterator  method reference. So this seems like the
     // best remaining way:
+    Set<String> classesToAnnotate = getClassesToAnnotate(nonnullParams, nullableReturns);
     Iterator<? extends ZipEntry> zipIterator = inputZip.stream().iterator();
     while (zipIterator.hasNext()) {
       ZipEntry zipEntry = zipIterator.next();
@@ -332,8 +383,8 @@ public final class BytecodeAnnotator {
         JarInputStream jarIS = new JarInputStream(is);
         JarEntry inputJarEntry = jarIS.getNextJarEntry();
 
-        ByteArrayOutputStream byteArrayOS = new ByteArrayOutputStream();
-        JarOutputStream jarOS = new JarOutputStream(byteArrayOS);
+        // Stream the annotated jar directly into its entry in the aar
+        JarOutputStream jarOS = new JarOutputStream(zipOS);
         while (inputJarEntry != null) {
           copyAndAnnotateJarEntry(
               inputJarEntry,
@@ -341,16 +392,16 @@ public final class BytecodeAnnotator {
               jarOS,
               nonnullParams,
               nullableReturns,
+              classesToAnnotate,
               androidNullableDesc,
               androidNonnullDesc,
               stripJarSignatures);
           inputJarEntry = jarIS.getNextJarEntry();
         }
-        jarOS.flush();
-        jarOS.close();
-        zipOS.write(byteArrayOS.toByteArray());
+        // Writes the end of the jar, without closing the aar stream
+        jarOS.finish();
       } else {
-        zipOS.write(IOUtils.toByteArray(is));
+        IOUtils.copy(is, zipOS);
       }
       zipOS.closeEntry();
     }
@@ -0,0 +1,258 @@
+package com.uber.nullaway.jarinfer;
+
+import com.google.common.base.Preconditions;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Sidecar index of a JarInfer run, mapping each analyzed class to the content hash of its class
+ * file and to the models inferred for its methods. A later run over a new version of the same
+ * library reuses the models of every class whose class file is byte-identical, and only analyzes
+ * the changed classes.
+ *
+ * <p>The models of a class only depend on its own bytecode, on the analysis, and on the signature
+ * format, which differs when annotating bytecode. So, an index written by another version of
+ * JarInfer, or in the other mode, is ignored. The version is recorded by the build in the {@code
+ * version.properties} resource next to this class; if it is unknown, no index is ever reused.
+ */
+final class ClassHashIndex {
+  private static final int MAGIC = 0x4A494348;
+  private static final int VERSION = 2;
+
+  /** Version of JarInfer, or the empty string if unknown. */
+  private static final String JARINFER_VERSION = readJarInferVersion();
+
+  private final boolean annotateBytecode;
+
+  /** Index entries by class name, in the WALA format (e.g. 'Lcom/foo/Bar'). */
+  private final Map<String, Entry> entries = new LinkedHashMap<>();
+
+  private static final class Entry {
+    private final String hash;
+    private final DefinitelyDerefedParamsDriver.ClassResult classResult;
+
+    private Entry(String hash, DefinitelyDerefedParamsDriver.ClassResult classResult) {
+      this.hash = hash;
+      this.classResult = classResult;
+    }
+  }
+
+  ClassHashIndex(boolean annotateBytecode) {
+    this.annotateBytecode = annotateBytecode;
+  }
+
+  /**
+   * Reads an index written by a previous run.
+   *
+   * @param path Path to the index file.
+   * @param annotateBytecode Whether the current run annotates bytecode.
+   * @return The index, which is empty if the file does not exist, was written by a different
+   *     version of JarInfer, or in the other mode, or if the current version is unknown.
+   * @throws IOException on IO error.
+   */
+  static ClassHashIndex read(String path, boolean annotateBytecode) throws IOException {
+    ClassHashIndex index = new ClassHashIndex(annotateBytecode);
+    if (!new File(path).exists()) {
+      return index;
+    }
+    try (DataInputStream in =
+        new DataInputStream(new BufferedInputStream(new FileInputStream(path)))) {
+      if (JARINFER_VERSION.isEmpty()
+          || in.readInt() != MAGIC
+          || in.readInt() != VERSION
+          || !in.readUTF().equals(JARINFER_VERSION)
+          || in.readBoolean() != annotateBytecode) {
+        return index;
+      }
+      int numClasses = in.readInt();
+      for (int i = 0; i < numClasses; i++) {
+        String className = in.readUTF();
+        String hash = in.readUTF();
+        DefinitelyDerefedParamsDriver.ClassResult classResult =
+            new DefinitelyDerefedParamsDriver.ClassResult();
+        int numNonnullParamsMethods = in.readInt();
+        for (int j = 0; j < numNonnullParamsMethods; j++) {
+          String sign = in.readUTF();
+          int numParams = in.readInt();
+          Set<Integer> params = new LinkedHashSet<>();
+          for (int k = 0; k < numParams; k++) {
+            params.add(in.readInt());
+          }
+          classResult.nonnullParams.put(sign, params);
+        }
+        int numNullableReturns = in.readInt();
+        for (int j = 0; j < numNullableReturns; j++) {
+          classResult.nullableReturns.add(in.readUTF());
+        }
+        index.put(className, hash, classResult);
+      }
+    }
+    return index;
+  }
+
+  /**
+   * Writes this index.
+   *
+   * @param path Path to the index file.
+   * @throws IOException on IO error.
+   */
+  void write(String path) throws IOException {
+    File parent = new File(path).getAbsoluteFile().getParentFile();
+    if (parent != null) {
+      parent.mkdirs();
+    }
+    try (DataOutputStream out =
+        new DataOutputStream(new BufferedOutputStream(new FileOutputStream(path)))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeUTF(JARINFER_VERSION);
+      out.writeBoolean(annotateBytecode);
+      out.writeInt(entries.size());
+      for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+        out.writeUTF(entry.getKey());
+        out.writeUTF(entry.getValue().hash);
+        DefinitelyDerefedParamsDriver.ClassResult classResult = entry.getValue().classResult;
+        out.writeInt(classResult.nonnullParams.size());
+        for (Map.Entry<String, Set<Integer>> method : classResult.nonnullParams.entrySet()) {
+          out.writeUTF(method.getKey());
+          out.writeInt(method.getValue().size());
+          for (int param : method.getValue()) {
+            out.writeInt(param);
+          }
+        }
+        out.writeInt(classResult.nullableReturns.size());
+        for (String sign : classResult.nullableReturns) {
+          out.writeUTF(sign);
+        }
+      }
+    }
+  }
+
+  /**
+   * Looks up the models of a class.
+   *
+   * @param className Class name, in the WALA format.
+   * @param hash Content hash of the current class file.
+   * @return The models of the class, or null if the class is not in this index or its class file
+   *     changed.
+   */
+  DefinitelyDerefedParamsDriver.ClassResult lookup(String className, String hash) {
+    Entry entry = entries.get(className);
+    return entry != null && entry.hash.equals(hash) ? entry.classResult : null;
+  }
+
+  void put(String className, String hash, DefinitelyDerefedParamsDriver.ClassResult classResult) {
+    entries.put(className, new Entry(hash, classResult));
+  }
+
+  /**
+   * Computes the content hashes of all class files of an input of the driver.
+   *
+   * @param inPath Path to a jar or aar file, or a directory of class files.
+   * @return Map of class names, in the WALA format, to the hashes of their class files.
+   * @throws IOException on IO error.
+   */
+  static Map<String, String> hashClasses(String inPath) throws IOException {
+    Map<String, String> hashes = new HashMap<>();
+    if (inPath.endsWith(".jar")) {
+      try (ZipFile jar = new ZipFile(inPath)) {
+        hashZipEntries(jar, hashes);
+      }
+    } else if (inPath.endsWith(".aar")) {
+      try (ZipFile aar = new ZipFile(inPath)) {
+        ZipEntry jarEntry = aar.getEntry("classes.jar");
+        if (jarEntry != null) {
+          try (ZipInputStream jarIS = new ZipInputStream(aar.getInputStream(jarEntry))) {
+            ZipEntry entry;
+            while ((entry = jarIS.getNextEntry()) != null) {
+              if (isClassFile(entry)) {
+                hashes.put(className(entry.getName()), hash(jarIS));
+              }
+            }
+          }
+        }
+      }
+    } else {
+      Path root = Paths.get(inPath);
+      if (Files.isDirectory(root)) {
+        try (Stream<Path> files = Files.walk(root)) {
+          for (Path file : (Iterable<Path>) files::iterator) {
+            if (file.toString().endsWith(".class")) {
+              String name = root.relativize(file).toString().replace(File.separatorChar, '/');
+              try (InputStream is = Files.newInputStream(file)) {
+                hashes.put(className(name), hash(is));
+              }
+            }
+          }
+        }
+      }
+    }
+    return hashes;
+  }
+
+  private static void hashZipEntries(ZipFile zip, Map<String, String> hashes) throws IOException {
+    Iterator<? extends ZipEntry> zipIterator = zip.stream().iterator();
+    while (zipIterator.hasNext()) {
+      ZipEntry entry = zipIterator.next();
+      if (isClassFile(entry)) {
+        try (InputStream is = zip.getInputStream(entry)) {
+          hashes.put(className(entry.getName()), hash(is));
+        }
+      }
+    }
+  }
+
+  private static boolean isClassFile(ZipEntry entry) {
+    // Skip versioned class files of multi-release jars, which WALA does not load either
+    return !entry.isDirectory()
+        && entry.getName().endsWith(".class")
+        && !entry.getName().startsWith("META-INF/");
+  }
+
+  private static String className(String classFilePath) {
+    Preconditions.checkArgument(classFilePath.endsWith(".class"), classFilePath);
+    return "L" + classFilePath.substring(0, classFilePath.length() - ".class".length());
+  }
+
+  private static String hash(InputStream is) throws IOException {
+    return Hashing.sha256().hashBytes(ByteStreams.toByteArray(is)).toString();
+  }
+
+  private static String readJarInferVersion() {
+    try (InputStream is = ClassHashIndex.class.getResourceAsStream("version.properties")) {
+      if (is == null) {
+        return "";
+      }
+      Properties properties = new Properties();
+      properties.load(is);
+      String version = properties.getProperty("version", "");
+      // The placeholder is left as is if the build did not expand the resource
+      return version.contains("${") ? "" : version;
+    } catch (IOException e) {
+      return "";
+    }
+  }
+}
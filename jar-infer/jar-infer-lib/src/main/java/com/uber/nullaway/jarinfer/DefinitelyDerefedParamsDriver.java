@@ -20,6 +20,7 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.ibm.wala.cfg.ControlFlowGraph;
 import com.ibm.wala.classLoader.CodeScanner;
+import com.ibm.wala.classLoader.IBytecodeMethod;
 import com.ibm.wala.classLoader.IClass;
 import com.ibm.wala.classLoader.IClassLoader;
 import com.ibm.wala.classLoader.IMethod;
@@ -35,6 +36,7 @@ import com.ibm.wala.ipa.callgraph.impl.Everywhere;
 import com.ibm.wala.ipa.cha.ClassHierarchyException;
 import com.ibm.wala.ipa.cha.ClassHierarchyFactory;
 import com.ibm.wala.ipa.cha.IClassHierarchy;
+import com.ibm.wala.shrike.shrikeBT.ConstantInstruction;
 import com.ibm.wala.shrike.shrikeCT.InvalidClassFileException;
 import com.ibm.wala.ssa.IR;
 import com.ibm.wala.ssa.ISSABasicBlock;
@@ -55,12 +57,17 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.jar.JarFile;
 import java.util.jar.JarOutputStream;
 import java.util.zip.ZipEntry;
@@ -80,6 +87,13 @@ public class DefinitelyDerefedParamsDriver {
   }
 
   String lastOutPath = "";
+
+  /** Number of classes analyzed by the last run. */
+  int lastAnalyzedClassCount = 0;
+
+  /** Number of classes whose models the last run reused from the {@link ClassHashIndex}. */
+  int lastReusedClassCount = 0;
+
   private long analyzedBytes = 0;
   private long analysisStartTime = 0;
   private MethodParamAnnotations nonnullParams = new MethodParamAnnotations();
@@ -88,6 +102,12 @@ public class DefinitelyDerefedParamsDriver {
   private boolean annotateBytecode = false;
   private boolean stripJarSignatures = false;
 
+  /** Number of threads analyzing the classes of each input, see {@link #analyzeFile}. */
+  private final int threads;
+
+  /** Path to the {@link ClassHashIndex} read and written by each run, or empty if none. */
+  private final String classHashIndexPath;
+
   private static final String DEFAULT_ASTUBX_LOCATION = "META-INF/nullaway/jarinfer.astubx";
   private static final String ASTUBX_JAR_SUFFIX = ".astubx.jar";
   // TODO: Exclusions-
@@ -95,23 +115,65 @@ public class DefinitelyDerefedParamsDriver {
   // com.ibm.wala.classLoader.ShrikeCTMethod.makeDecoder:110
   private static final String DEFAULT_EXCLUSIONS = "org\\/objectweb\\/asm\\/.*";
 
+  /** Creates a driver analyzing classes sequentially. */
+  public DefinitelyDerefedParamsDriver() {
+    this(1);
+  }
+
+  /**
+   * Creates a driver analyzing the classes of each input with the given number of threads.
+   *
+   * @param threads Number of threads, at least 1.
+   */
+  public DefinitelyDerefedParamsDriver(int threads) {
+    this(threads, "");
+  }
+
   /**
-   * Accounts the bytecode size of analyzed method for statistics.
+   * Creates a driver analyzing the classes of each input with the given number of threads.
+   *
+   * <p>With more than one thread, classes are analyzed concurrently in a work-stealing pool, each
+   * thread using its own WALA {@link AnalysisCache}. The inferred models do not depend on the
+   * number of threads, as the results for each class are merged in the same order as in a
+   * sequential run.
+   *
+   * <p>If a class hash index path is given, each run reuses the models of the classes whose class
+   * files did not change since the run that wrote the index, and then rewrites the index with the
+   * content hashes and models of all classes of the run.
    *
-   * @param mtd Analyzed method.
+   * @param threads Number of threads, at least 1.
+   * @param classHashIndexPath Path to the class hash index, or empty to analyze all classes.
    */
-  private void accountCodeBytes(IMethod mtd) {
-    // Get method bytecode size
-    if (mtd instanceof ShrikeCTMethod) {
-      analyzedBytes += ((ShrikeCTMethod) mtd).getBytecodes().length;
+  public DefinitelyDerefedParamsDriver(int threads, String classHashIndexPath) {
+    Preconditions.checkArgument(threads > 0, "invalid number of threads: " + threads);
+    this.threads = threads;
+    this.classHashIndexPath = classHashIndexPath;
+  }
+
+  /** Models inferred for the methods of a single class. */
+  static final class ClassResult {
+    final Map<String, Set<Integer>> nonnullParams = new LinkedHashMap<>();
+    final List<String> nullableReturns = new ArrayList<>();
+    private long analyzedBytes = 0;
+
+    /**
+     * Accounts the bytecode size of analyzed method for statistics.
+     *
+     * @param mtd Analyzed method.
+     */
+    private void accountCodeBytes(IMethod mtd) {
+      // Get method bytecode size
+      if (mtd instanceof ShrikeCTMethod) {
+        analyzedBytes += ((ShrikeCTMethod) mtd).getBytecodes().length;
+      }
     }
   }
 
-  private DefinitelyDerefedParams getAnalysisDriver(
-      IMethod mtd, AnalysisOptions options, AnalysisCache cache) {
+  private static DefinitelyDerefedParams getAnalysisDriver(
+      IMethod mtd, AnalysisOptions options, AnalysisCache cache, ClassResult classResult) {
     IR ir = cache.getIRFactory().makeIR(mtd, Everywhere.EVERYWHERE, options.getSSAOptions());
     ControlFlowGraph<SSAInstruction, ISSABasicBlock> cfg = ir.getControlFlowGraph();
-    accountCodeBytes(mtd);
+    classResult.accountCodeBytes(mtd);
     return new DefinitelyDerefedParams(mtd, ir, cfg);
   }
 
@@ -182,8 +244,17 @@ public class DefinitelyDerefedParamsDriver {
     this.stripJarSignatures = stripJarSignatures;
     Set<String> setInPaths = new HashSet<>(Arrays.asList(inPaths.split(",")));
     analysisStartTime = System.currentTimeMillis();
+    lastAnalyzedClassCount = 0;
+    lastReusedClassCount = 0;
+    ClassHashIndex previousClassHashIndex = null;
+    ClassHashIndex classHashIndex = null;
+    if (!classHashIndexPath.isEmpty()) {
+      previousClassHashIndex = ClassHashIndex.read(classHashIndexPath, annotateBytecode);
+      classHashIndex = new ClassHashIndex(annotateBytecode);
+    }
     for (String inPath : setInPaths) {
-      analyzeFile(pkgName, inPath, includeNonPublicClasses);
+      analyzeFile(
+          pkgName, inPath, includeNonPublicClasses, previousClassHashIndex, classHashIndex);
       if (this.annotateBytecode) {
         String outFile = outPath;
         if (setInPaths.size() > 1) {
@@ -205,6 +276,9 @@ public class DefinitelyDerefedParamsDriver {
         writeModelJAR(outPath);
       }
     }
+    if (classHashIndex != null) {
+      classHashIndex.write(classHashIndexPath);
+    }
     lastOutPath = outPath;
     return nonnullParams;
   }
@@ -217,7 +291,40 @@ public class DefinitelyDerefedParamsDriver {
         || !CodeScanner.getCallSites(mtd).isEmpty();
   }
 
-  private void analyzeFile(String pkgName, String inPath, boolean includeNonPublicClasses)
+  // Check if a method may return a null literal, i.e. if its bytecode pushes null at all
+  private static boolean bytecodeMayReturnNullLiteral(IMethod mtd)
+      throws InvalidClassFileException {
+    if (!(mtd instanceof IBytecodeMethod)) {
+      return true;
+    }
+    // The only way to get a null constant in the IR is an aconst_null instruction
+    for (Object instr : ((IBytecodeMethod<?>) mtd).getInstructions()) {
+      if (instr instanceof ConstantInstruction
+          && ((ConstantInstruction) instr).getValue() == null) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Analyzes the classes of an input and adds their models to {@link #nonnullParams} and {@link
+   * #nullableReturns}.
+   *
+   * @param pkgName Qualified package name.
+   * @param inPath Path to input jar/aar file or directory to be analyzed.
+   * @param includeNonPublicClasses Include non-public/ABI classes.
+   * @param previousClassHashIndex Index of a previous run, whose models are reused for unchanged
+   *     classes, or null to analyze all classes.
+   * @param classHashIndex Index of the current run, to which the hashes and models of all classes
+   *     are added, or null.
+   */
+  private void analyzeFile(
+      String pkgName,
+      String inPath,
+      boolean includeNonPublicClasses,
+      ClassHashIndex previousClassHashIndex,
+      ClassHashIndex classHashIndex)
       throws IOException, ClassHierarchyException {
     InputStream jarIS = null;
     if (inPath.endsWith(".jar") || inPath.endsWith(".aar")) {
@@ -239,11 +346,11 @@ public class DefinitelyDerefedParamsDriver {
           inPath, scope, ClassLoaderReference.Application);
     }
     AnalysisOptions options = new AnalysisOptions(scope, null);
-    AnalysisCache cache = new AnalysisCacheImpl();
     IClassHierarchy cha = ClassHierarchyFactory.makeWithRoot(scope);
     Warnings.clear();
 
     // Iterate over all classes:methods in the 'Application' and 'Extension' class loaders
+    List<IClass> classes = new ArrayList<>();
     for (IClassLoader cldr : cha.getLoaders()) {
       if (!cldr.getName().toString().equals("Primordial")) {
         for (IClass cls : Iterator2Iterable.make(cldr.iterateAllClasses())) {
@@ -259,50 +366,49 @@ public class DefinitelyDerefedParamsDriver {
           if (!cls.isPublic() && !includeNonPublicClasses) {
             continue;
           }
-          LOG(DEBUG, "DEBUG", "analyzing class: " + cls.getName().toString());
-          for (IMethod mtd : Iterator2Iterable.make(cls.getDeclaredMethods().iterator())) {
-            // Skip methods without parameters, abstract methods, native methods
-            // some Application classes are Primordial (why?)
-            if (shouldCheckMethod(mtd)) {
-              Preconditions.checkNotNull(mtd, "method not found");
-              DefinitelyDerefedParams analysisDriver = null;
-              String sign = "";
-              try {
-                // Parameter analysis
-                if (mtd.getNumberOfParameters() > (mtd.isStatic() ? 0 : 1)) {
-                  // For inferring parameter nullability, our criteria is based on finding
-                  // unchecked dereferences of that parameter. We perform a quick bytecode
-                  // check and skip methods containing no dereferences (i.e. method calls
-                  // or field accesses) at all, avoiding the expensive IR/CFG generation
-                  // step for these methods.
-                  // Note that this doesn't apply to inferring return value nullability.
-                  if (bytecodeHasAnyDereferences(mtd)) {
-                    analysisDriver = getAnalysisDriver(mtd, options, cache);
-                    Set<Integer> result = analysisDriver.analyze();
-                    sign = getSignature(mtd);
-                    LOG(DEBUG, "DEBUG", "analyzed method: " + sign);
-                    if (!result.isEmpty() || DEBUG) {
-                      nonnullParams.put(sign, result);
-                      LOG(
-                          DEBUG,
-                          "DEBUG",
-                          "Inferred Nonnull param for method: " + sign + " = " + result.toString());
-                    }
-                  }
-                }
-                // Return value analysis
-                analyzeReturnValue(options, cache, mtd, analysisDriver, sign);
-              } catch (Exception e) {
-                LOG(
-                    DEBUG,
-                    "DEBUG",
-                    "Exception while scanning bytecodes for " + mtd + " " + e.getMessage());
-              }
-            }
-          }
+          classes.add(cls);
         }
       }
     }
+    // Reuse the models of the classes that did not change since the previous run
+    Map<String, String> classHashes =
+        classHashIndex != null ? ClassHashIndex.hashClasses(inPath) : ImmutableMap.of();
+    Map<IClass, ClassResult> reusedClassResults = new HashMap<>();
+    List<IClass> classesToAnalyze = new ArrayList<>();
+    for (IClass cls : classes) {
+      String hash = classHashes.get(cls.getName().toString());
+      ClassResult previousResult =
+          previousClassHashIndex != null && hash != null
+              ? previousClassHashIndex.lookup(cls.getName().toString(), hash)
+              : null;
+      if (previousResult != null) {
+        reusedClassResults.put(cls, previousResult);
+      } else {
+        classesToAnalyze.add(cls);
+      }
+    }
+    LOG(
+        VERBOSE,
+        "Info",
+        "reusing models of " + reusedClassResults.size() + " unchanged classes of " + inPath);
+    lastAnalyzedClassCount += classesToAnalyze.size();
+    lastReusedClassCount += reusedClassResults.size();
+    Iterator<ClassResult> analyzedClassResults =
+        analyzeClasses(classesToAnalyze, options).iterator();
+    // Merge in class order, so that the models do not depend on the number of threads
+    for (IClass cls : classes) {
+      ClassResult classResult = reusedClassResults.get(cls);
+      if (classResult == null) {
+        classResult = analyzedClassResults.next();
+      }
+      nonnullParams.putAll(classResult.nonnullParams);
+      nullableReturns.addAll(classResult.nullableReturns);
+      analyzedBytes += classResult.analyzedBytes;
+      String hash = classHashes.get(cls.getName().toString());
+      if (classHashIndex != null && hash != null) {
+        classHashIndex.put(cls.getName().toString(), hash, classResult);
+      }
+    }
     long endTime = System.currentTimeMillis();
     LOG(
         VERBOSE,
@@ -316,21 +422,114 @@ public class DefinitelyDerefedParamsDriver {
             + (analyzedBytes > 0 ? (((endTime - analysisStartTime) * 1000) / analyzedBytes) : 0));
   }
 
+  private List<ClassResult> analyzeClasses(List<IClass> classes, AnalysisOptions options) {
+    if (threads > 1) {
+      return analyzeClassesInParallel(classes, options);
+    }
+    AnalysisCache cache = new AnalysisCacheImpl();
+    List<ClassResult> classResults = new ArrayList<>(classes.size());
+    for (IClass cls : classes) {
+      classResults.add(analyzeClass(cls, options, cache));
+    }
+    return classResults;
+  }
+
+  /**
+   * Analyzes classes in a work-stealing pool of {@link #threads} threads, each thread using its own
+   * {@link AnalysisCache}, as caches are not thread-safe.
+   *
+   * @param classes Classes to analyze.
+   * @param options Analysis options.
+   * @return The results for each class, in the order of {@code classes}.
+   */
+  private List<ClassResult> analyzeClassesInParallel(
+      List<IClass> classes, AnalysisOptions options) {
+    ThreadLocal<AnalysisCache> caches = ThreadLocal.withInitial(AnalysisCacheImpl::new);
+    ForkJoinPool pool = new ForkJoinPool(threads);
+    try {
+      List<ForkJoinTask<ClassResult>> tasks = new ArrayList<>(classes.size());
+      for (IClass cls : classes) {
+        tasks.add(pool.submit(() -> analyzeClass(cls, options, caches.get())));
+      }
+      List<ClassResult> classResults = new ArrayList<>(tasks.size());
+      for (ForkJoinTask<ClassResult> task : tasks) {
+        classResults.add(task.join());
+      }
+      return classResults;
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  private ClassResult analyzeClass(IClass cls, AnalysisOptions options, AnalysisCache cache) {
+    ClassResult classResult = new ClassResult();
+    LOG(DEBUG, "DEBUG", "analyzing class: " + cls.getName().toString());
+    for (IMethod mtd : Iterator2Iterable.make(cls.getDeclaredMethods().iterator())) {
+      // Skip methods without parameters, abstract methods, native methods
+      // some Application classes are Primordial (why?)
+      if (shouldCheckMethod(mtd)) {
+        Preconditions.checkNotNull(mtd, "method not found");
+        DefinitelyDerefedParams analysisDriver = null;
+        String sign = "";
+        try {
+          // Parameter analysis
+          if (mtd.getNumberOfParameters() > (mtd.isStatic() ? 0 : 1)) {
+            // For inferring parameter nullability, our criteria is based on finding
+            // unchecked dereferences of that parameter. We perform a quick bytecode
+            // check and skip methods containing no dereferences (i.e. method calls
+            // or field accesses) at all, avoiding the expensive IR/CFG generation
+            // step for these methods.
+            // Inferring return value nullability uses a separate check, see analyzeReturnValue.
+            if (bytecodeHasAnyDereferences(mtd)) {
+              analysisDriver = getAnalysisDriver(mtd, options, cache, classResult);
+              Set<Integer> result = analysisDriver.analyze();
+              sign = getSignature(mtd);
+              LOG(DEBUG, "DEBUG", "analyzed method: " + sign);
+              if (!result.isEmpty() || DEBUG) {
+                classResult.nonnullParams.put(sign, result);
+                LOG(
+                    DEBUG,
+                    "DEBUG",
+                    "Inferred Nonnull param for method: " + sign + " = " + result.toString());
+              }
+            }
+          }
+          // Return value analysis
+          analyzeReturnValue(options, cache, mtd, analysisDriver, sign, classResult);
+        } catch (Exception e) {
+          LOG(
+              DEBUG,
+              "DEBUG",
+              "Exception while scanning bytecodes for " + mtd + " " + e.getMessage());
+        }
+      }
+    }
+    return classResult;
+  }
+
   private void analyzeReturnValue(
       AnalysisOptions options,
       AnalysisCache cache,
       IMethod mtd,
       DefinitelyDerefedParams analysisDriver,
-      String sign) {
+      String sign,
+      ClassResult classResult)
+      throws InvalidClassFileException {
     if (!mtd.getReturnType().isPrimitiveType()) {
       if (analysisDriver == null) {
-        analysisDriver = getAnalysisDriver(mtd, options, cache);
+        // We only infer nullable returns for methods returning a null literal. If the bytecode
+        // contains no null constant at all, skip the expensive IR/CFG generation step.
+        if (!bytecodeMayReturnNullLiteral(mtd)) {
+          LOG(DEBUG, "DEBUG", "Skipping method without null literals: " + mtd.getSignature());
+          return;
+        }
+        analysisDriver = getAnalysisDriver(mtd, options, cache, classResult);
       }
       if (analysisDriver.analyzeReturnType() == DefinitelyDerefedParams.NullnessHint.NULLABLE) {
         if (sign.isEmpty()) {
           sign = getSignature(mtd);
         }
-        nullableReturns.add(sign);
+        classResult.nullableReturns.add(sign);
         LOG(DEBUG, "DEBUG", "Inferred Nullable method return: " + sign);
       }
     }
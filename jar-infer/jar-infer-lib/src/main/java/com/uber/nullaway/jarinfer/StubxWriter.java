@@ -2,26 +2,47 @@ package com.uber.nullaway.jarinfer;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.primitives.UnsignedBytes;
+import java.io.ByteArrayOutputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 
 /** Simple writer for the astubx format. */
 final class StubxWriter {
   /**
-   * The file magic number for version 0 .astubx files. It should be the first four bytes of any
+   * The file magic number for version 1 .astubx files. It should be the first four bytes of any
    * compatible .astubx file.
+   *
+   * <p>Version 0 files stored a single string dictionary followed by flat lists of records, so
+   * readers had to decode the whole file to look up any method. Version 1 files store a method
+   * index sorted by signature, so that readers can binary search it, decoding only the records of
+   * the methods they look up.
    */
-  private static final int VERSION_0_FILE_MAGIC_NUMBER = 691458791;
+  private static final int VERSION_1_FILE_MAGIC_NUMBER = 691458792;
+
+  /** Size of the file header: the magic number and the offset of the method index. */
+  private static final int HEADER_SIZE = 8;
 
   /**
    * This method writes the provided list of annotations to a DataOutputStream in the astubx format.
    *
+   * <p>File format (version 1): a header with the magic number and the offset of the method index.
+   * The header is followed by the annotation dictionary, i.e. the number of annotations and their
+   * names, then by the package and type annotation records, each section being the number of
+   * records followed by (name, annotation) pairs. The method index holds the number of methods,
+   * followed by the offsets of their records, sorted by the UTF-8 bytes of the method signatures. A
+   * method record holds the method signature, the method annotations, and the argument annotations
+   * as (argument position, annotation) pairs, each list being preceded by its size. Annotations are
+   * stored as indices into the annotation dictionary, and strings as their UTF-8 length followed by
+   * their bytes. All integers are 4 bytes, big-endian.
+   *
    * @param out Output stream.
    * @param importedAnnotations Mapping of 'custom annotations' to their 'definition classes'.
    * @param packageAnnotations Map of 'package names' to their 'list of package-level annotations'.
@@ -38,85 +59,83 @@ final class StubxWriter {
       Map<String, Set<String>> typeAnnotations,
       Map<String, MethodAnnotationsRecord> methodRecords)
       throws IOException {
-    // File format version/magic number
-    out.writeInt(VERSION_0_FILE_MAGIC_NUMBER);
-    // Followed by the number of string dictionary entries
-    int numStringEntries = 0;
-    Map<String, Integer> encodingDictionary = new LinkedHashMap<>();
-    List<String> strings = new ArrayList<String>();
-    List<Collection<String>> keysets =
-        ImmutableList.of(
-            importedAnnotations.values(),
-            packageAnnotations.keySet(),
-            typeAnnotations.keySet(),
-            methodRecords.keySet());
-    for (Collection<String> keyset : keysets) {
-      for (String key : keyset) {
-        assert !encodingDictionary.containsKey(key);
-        strings.add(key);
-        encodingDictionary.put(key, numStringEntries);
-        ++numStringEntries;
-      }
-    }
-    out.writeInt(numStringEntries);
-    // Followed by the entries themselves
-    for (String s : strings) {
-      out.writeUTF(s);
+    // Dictionary of the annotations, which records refer to by index
+    Map<String, Integer> annotationIndices = new LinkedHashMap<>();
+    for (String annotation : importedAnnotations.values()) {
+      annotationIndices.putIfAbsent(annotation, annotationIndices.size());
     }
-    // Followed by the number of encoded package annotation records
-    int packageAnnotationSize = 0;
-    for (Map.Entry<String, Set<String>> entry : packageAnnotations.entrySet()) {
-      packageAnnotationSize += entry.getValue().size();
+    ByteArrayOutputStream bodyBytes = new ByteArrayOutputStream();
+    DataOutputStream body = new DataOutputStream(bodyBytes);
+    body.writeInt(annotationIndices.size());
+    for (String annotation : annotationIndices.keySet()) {
+      writeString(body, annotation);
     }
-    out.writeInt(packageAnnotationSize);
-    // Followed by those records as pairs of ints pointing into the dictionary
-    for (Map.Entry<String, Set<String>> entry : packageAnnotations.entrySet()) {
-      for (String annot : entry.getValue()) {
-        out.writeInt(encodingDictionary.get(entry.getKey()));
-        out.writeInt(encodingDictionary.get(importedAnnotations.get(annot)));
+    for (Map<String, Set<String>> annotations :
+        ImmutableList.of(packageAnnotations, typeAnnotations)) {
+      int numRecords = 0;
+      for (Set<String> annots : annotations.values()) {
+        numRecords += annots.size();
       }
-    }
-    // Followed by the number of encoded type annotation records
-    int typeAnnotationSize = 0;
-    for (Map.Entry<String, Set<String>> entry : typeAnnotations.entrySet()) {
-      typeAnnotationSize += entry.getValue().size();
-    }
-    out.writeInt(typeAnnotationSize);
-    // Followed by those records as pairs of ints pointing into the dictionary
-    for (Map.Entry<String, Set<String>> entry : typeAnnotations.entrySet()) {
-      for (String annot : entry.getValue()) {
-        out.writeInt(encodingDictionary.get(entry.getKey()));
-        out.writeInt(encodingDictionary.get(importedAnnotations.get(annot)));
+      body.writeInt(numRecords);
+      for (Map.Entry<String, Set<String>> entry : annotations.entrySet()) {
+        for (String annot : entry.getValue()) {
+          writeString(body, entry.getKey());
+          body.writeInt(annotationIndices.get(importedAnnotations.get(annot)));
+        }
       }
     }
-    // Followed by the number of encoded method return/declaration annotation records
-    int methodAnnotationSize = 0;
-    int methodArgumentRecordsSize = 0;
+    body.flush();
+    int methodIndexOffset = HEADER_SIZE + body.size();
+    // Sort the method records by the UTF-8 bytes of their signatures, for binary search
+    Map<byte[], MethodAnnotationsRecord> sortedRecords =
+        new TreeMap<>(UnsignedBytes.lexicographicalComparator());
     for (Map.Entry<String, MethodAnnotationsRecord> entry : methodRecords.entrySet()) {
-      methodAnnotationSize += entry.getValue().getMethodAnnotations().size();
-      methodArgumentRecordsSize += entry.getValue().getArgumentAnnotations().size();
+      sortedRecords.put(entry.getKey().getBytes(StandardCharsets.UTF_8), entry.getValue());
     }
-    out.writeInt(methodAnnotationSize);
-    // Followed by those records as pairs of ints pointing into the dictionary
-    for (Map.Entry<String, MethodAnnotationsRecord> entry : methodRecords.entrySet()) {
-      for (String annot : entry.getValue().getMethodAnnotations()) {
-        out.writeInt(encodingDictionary.get(entry.getKey()));
-        out.writeInt(encodingDictionary.get(importedAnnotations.get(annot)));
+    ByteArrayOutputStream recordBytes = new ByteArrayOutputStream();
+    DataOutputStream records = new DataOutputStream(recordBytes);
+    List<Integer> recordOffsets = new ArrayList<>(sortedRecords.size());
+    int recordsOffset = methodIndexOffset + 4 + 4 * sortedRecords.size();
+    for (Map.Entry<byte[], MethodAnnotationsRecord> entry : sortedRecords.entrySet()) {
+      recordOffsets.add(recordsOffset + records.size());
+      writeBytes(records, entry.getKey());
+      MethodAnnotationsRecord record = entry.getValue();
+      records.writeInt(record.getMethodAnnotations().size());
+      for (String annot : record.getMethodAnnotations()) {
+        records.writeInt(annotationIndices.get(importedAnnotations.get(annot)));
       }
-    }
-    // Followed by the number of encoded method argument annotation records
-    out.writeInt(methodArgumentRecordsSize);
-    // Followed by those records as a triplet of ints ( 0 and 2 point in the dictionary, 1 is the
-    //  argument position)
-    for (Map.Entry<String, MethodAnnotationsRecord> entry : methodRecords.entrySet()) {
+      int numArgumentRecords = 0;
+      for (ImmutableSet<String> annots : record.getArgumentAnnotations().values()) {
+        numArgumentRecords += annots.size();
+      }
+      records.writeInt(numArgumentRecords);
       for (Map.Entry<Integer, ImmutableSet<String>> argEntry :
-          entry.getValue().getArgumentAnnotations().entrySet()) {
+          record.getArgumentAnnotations().entrySet()) {
         for (String annot : argEntry.getValue()) {
-          out.writeInt(encodingDictionary.get(entry.getKey()));
-          out.writeInt(argEntry.getKey());
-          out.writeInt(encodingDictionary.get(importedAnnotations.get(annot)));
+          records.writeInt(argEntry.getKey());
+          records.writeInt(annotationIndices.get(importedAnnotations.get(annot)));
         }
       }
     }
+    records.flush();
+    // File format version/magic number, followed by the offset of the method index
+    out.writeInt(VERSION_1_FILE_MAGIC_NUMBER);
+    out.writeInt(methodIndexOffset);
+    bodyBytes.writeTo(out);
+    // Followed by the method index itself
+    out.writeInt(recordOffsets.size());
+    for (int offset : recordOffsets) {
+      out.writeInt(offset);
+    }
+    recordBytes.writeTo(out);
+  }
+
+  private static void writeString(DataOutputStream out, String s) throws IOException {
+    writeBytes(out, s.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+    out.writeInt(bytes.length);
+    out.write(bytes);
   }
 }
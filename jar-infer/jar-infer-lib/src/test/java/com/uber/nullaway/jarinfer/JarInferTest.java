@@ -465,6 +465,45 @@ public class JarInferTest {
     Assert.assertArrayEquals(checksumBytes1, checksumBytes2);
   }
 
+  @Test
+  public void jarinferParallelOutputMatchesSequentialOutput() throws Exception {
+    String jarPath = "../test-java-lib-jarinfer/build/libs/test-java-lib-jarinfer.jar";
+    String pkg = "com.uber.nullaway.jarinfer.toys.unannotated";
+    DefinitelyDerefedParamsDriver driver = new DefinitelyDerefedParamsDriver();
+    Map<String, Set<Integer>> result1 = driver.run(jarPath, "L" + pkg.replaceAll("\\.", "/"));
+    byte[] checksumBytes1 = sha1sum(driver.lastOutPath);
+    DefinitelyDerefedParamsDriver parallelDriver = new DefinitelyDerefedParamsDriver(4);
+    Map<String, Set<Integer>> result2 =
+        parallelDriver.run(jarPath, "L" + pkg.replaceAll("\\.", "/"));
+    byte[] checksumBytes2 = sha1sum(parallelDriver.lastOutPath);
+    Assert.assertEquals(result1, result2);
+    Assert.assertArrayEquals(checksumBytes1, checksumBytes2);
+  }
+
+  @Test
+  public void jarinferIncrementalOutputMatchesFullOutput() throws Exception {
+    String jarPath = "../test-java-lib-jarinfer/build/libs/test-java-lib-jarinfer.jar";
+    String pkg = "com.uber.nullaway.jarinfer.toys.unannotated";
+    String indexPath = outputFolder.newFolder("incremental").getAbsolutePath() + "/classes.idx";
+    DefinitelyDerefedParamsDriver driver = new DefinitelyDerefedParamsDriver(1, indexPath);
+    Map<String, Set<Integer>> result1 = driver.run(jarPath, "L" + pkg.replaceAll("\\.", "/"));
+    byte[] checksumBytes1 = sha1sum(driver.lastOutPath);
+    Assert.assertTrue("class hash index not written!", new File(indexPath).exists());
+    Assert.assertEquals(0, driver.lastReusedClassCount);
+    int classCount = driver.lastAnalyzedClassCount;
+    Assert.assertTrue(classCount > 0);
+    // All classes are unchanged, so their models are read from the index
+    DefinitelyDerefedParamsDriver incrementalDriver =
+        new DefinitelyDerefedParamsDriver(1, indexPath);
+    Map<String, Set<Integer>> result2 =
+        incrementalDriver.run(jarPath, "L" + pkg.replaceAll("\\.", "/"));
+    byte[] checksumBytes2 = sha1sum(incrementalDriver.lastOutPath);
+    Assert.assertEquals(0, incrementalDriver.lastAnalyzedClassCount);
+    Assert.assertEquals(classCount, incrementalDriver.lastReusedClassCount);
+    Assert.assertEquals(result1, result2);
+    Assert.assertArrayEquals(checksumBytes1, checksumBytes2);
+  }
+
   @Test
   public void testSignedJars() throws Exception {
     // Set test configuration paths / options
@@ -0,0 +1,116 @@
+package com.uber.nullaway.handlers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSetMultimap;
+import com.uber.nullaway.jarinfer.StubxTestWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests reading version 1 stubx files written by JarInfer with {@link StubxIndex}. */
+@RunWith(JUnit4.class)
+public class StubxIndexTest {
+
+  private static final String NONNULL = "javax.annotation.Nonnull";
+  private static final String NULLABLE = "javax.annotation.Nullable";
+  private static final String CUSTOM = "com.uber.Custom";
+
+  @Rule public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void lookupMethods() throws IOException {
+    StubxIndex index = open(writeModels());
+    StubxIndex.MethodRecord record = index.lookup("com.foo.Bar:String get(Object, int)");
+    assertNotNull(record);
+    assertEquals(ImmutableSet.of(NULLABLE, CUSTOM), record.methodAnnotations);
+    assertEquals(
+        ImmutableSetMultimap.of(0, NONNULL, 1, NONNULL, 1, CUSTOM), record.argumentAnnotations);
+    record = index.lookup("com.foo.Bar$Inner:void run(Object)");
+    assertNotNull(record);
+    assertEquals(ImmutableSet.of(), record.methodAnnotations);
+    assertEquals(ImmutableSetMultimap.of(1, NONNULL), record.argumentAnnotations);
+    record = index.lookup("com.foo.Baz:Object make()");
+    assertNotNull(record);
+    assertEquals(ImmutableSet.of(NULLABLE), record.methodAnnotations);
+    assertEquals(ImmutableSetMultimap.of(), record.argumentAnnotations);
+  }
+
+  @Test
+  public void lookupMisses() throws IOException {
+    StubxIndex index = open(writeModels());
+    // before the first, between, and after the last signatures
+    assertNull(index.lookup("com.aaa.A:void a()"));
+    assertNull(index.lookup("com.foo.Bar:String get(Object)"));
+    assertNull(index.lookup("com.zzz.Z:void z()"));
+    // prefixes and extensions of stored signatures
+    assertNull(index.lookup("com.foo.Bar:String get(Object, int"));
+    assertNull(index.lookup("com.foo.Baz:Object make() "));
+    assertNull(index.lookup(""));
+    assertNull(open(new StubxTestWriter().write()).lookup("com.foo.Bar:String get(Object, int)"));
+  }
+
+  @Test
+  public void hasClass() throws IOException {
+    StubxIndex index = open(writeModels());
+    assertTrue(index.hasClass("com.foo.Bar"));
+    assertTrue(index.hasClass("com.foo.Bar$Inner"));
+    assertTrue(index.hasClass("com.foo.Baz"));
+    assertTrue(index.hasClass("com.foo.BarBaz"));
+    // the class name must be followed by ':' in a signature
+    assertFalse(index.hasClass("com.foo.Ba"));
+    assertFalse(index.hasClass("com.foo"));
+    assertFalse(index.hasClass("com.foo.Bar$"));
+    assertFalse(index.hasClass("com.foo.Qux"));
+    assertFalse(index.hasClass("com.zzz.Z"));
+    assertFalse(open(new StubxTestWriter().write()).hasClass("com.foo.Bar"));
+  }
+
+  @Test
+  public void readContentsOfFile() throws IOException {
+    File file = temporaryFolder.newFile("models.astubx");
+    Files.write(file.toPath(), writeModels());
+    ByteBuffer contents = StubxIndex.readContents(file.toURI().toURL());
+    // read into the heap, so that the file is not locked
+    assertFalse(contents.isDirect());
+    assertTrue(StubxIndex.isVersion1(contents));
+    StubxIndex index = StubxIndex.open(contents);
+    assertNotNull(index.lookup("com.foo.Baz:Object make()"));
+  }
+
+  private static byte[] writeModels() throws IOException {
+    return new StubxTestWriter()
+        .addMethod("com.foo.Baz:Object make()", ImmutableSet.of(NULLABLE), ImmutableMap.of())
+        .addMethod(
+            "com.foo.Bar:String get(Object, int)",
+            ImmutableSet.of(NULLABLE, CUSTOM),
+            ImmutableMap.of(0, ImmutableSet.of(NONNULL), 1, ImmutableSet.of(NONNULL, CUSTOM)))
+        .addMethod(
+            "com.foo.Bar$Inner:void run(Object)",
+            ImmutableSet.of(),
+            ImmutableMap.of(1, ImmutableSet.of(NONNULL)))
+        .addMethod(
+            "com.foo.BarBaz:void set(Object)",
+            ImmutableSet.of(),
+            ImmutableMap.of(1, ImmutableSet.of(NULLABLE)))
+        .write();
+  }
+
+  private static StubxIndex open(byte[] contents) {
+    ByteBuffer buffer = ByteBuffer.wrap(contents);
+    assertTrue(StubxIndex.isVersion1(buffer));
+    return StubxIndex.open(buffer);
+  }
+}
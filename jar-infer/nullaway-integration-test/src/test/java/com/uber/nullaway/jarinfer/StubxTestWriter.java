@@ -0,0 +1,62 @@
+package com.uber.nullaway.jarinfer;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Writes stubx files through {@link StubxWriter}, for tests of the stubx readers of NullAway, which
+ * are in another package.
+ */
+public final class StubxTestWriter {
+
+  /** Annotations, each named by its qualified name in the method records. */
+  private final Map<String, String> importedAnnotations = new LinkedHashMap<>();
+
+  private final Map<String, MethodAnnotationsRecord> methodRecords = new LinkedHashMap<>();
+
+  /**
+   * Adds the record of a method.
+   *
+   * @param methodSig the method signature, in the stubx format
+   * @param methodAnnotations qualified names of the annotations of the method
+   * @param argumentAnnotations qualified names of the annotations of each argument, by position
+   * @return this writer
+   */
+  public StubxTestWriter addMethod(
+      String methodSig,
+      ImmutableSet<String> methodAnnotations,
+      ImmutableMap<Integer, ImmutableSet<String>> argumentAnnotations) {
+    for (String annotation : methodAnnotations) {
+      importedAnnotations.put(annotation, annotation);
+    }
+    for (ImmutableSet<String> annotations : argumentAnnotations.values()) {
+      for (String annotation : annotations) {
+        importedAnnotations.put(annotation, annotation);
+      }
+    }
+    methodRecords.put(
+        methodSig, new MethodAnnotationsRecord(methodAnnotations, argumentAnnotations));
+    return this;
+  }
+
+  /**
+   * Writes the stubx file with the records added so far.
+   *
+   * @return the contents of the file
+   * @throws IOException on output error
+   */
+  public byte[] write() throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    StubxWriter.write(
+        out, importedAnnotations, Collections.emptyMap(), Collections.emptyMap(), methodRecords);
+    out.flush();
+    return bytes.toByteArray();
+  }
+}
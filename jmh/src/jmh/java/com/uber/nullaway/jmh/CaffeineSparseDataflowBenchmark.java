@@ -0,0 +1,25 @@
+package com.uber.nullaway.jmh;
+
+import java.io.IOException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/** Same as {@link CaffeineBenchmark}, but with the sparse dataflow mode enabled. */
+@State(Scope.Benchmark)
+public class CaffeineSparseDataflowBenchmark {
+
+  private CaffeineSparseDataflowCompiler compiler;
+
+  @Setup
+  public void setup() throws IOException {
+    compiler = new CaffeineSparseDataflowCompiler();
+  }
+
+  @Benchmark
+  public void compile(Blackhole bh) {
+    bh.consume(compiler.compile());
+  }
+}
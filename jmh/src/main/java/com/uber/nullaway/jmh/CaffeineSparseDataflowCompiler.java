@@ -0,0 +1,21 @@
+package com.uber.nullaway.jmh;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Compiles the same Caffeine sources as {@link CaffeineCompiler}, with NullAway's sparse dataflow
+ * mode enabled
+ */
+public class CaffeineSparseDataflowCompiler extends CaffeineCompiler {
+
+  public CaffeineSparseDataflowCompiler() throws IOException {
+    super();
+  }
+
+  @Override
+  protected List<String> getExtraErrorProneArgs() {
+    return Collections.singletonList("-XepOpt:NullAway:SparseDataflow=true");
+  }
+}
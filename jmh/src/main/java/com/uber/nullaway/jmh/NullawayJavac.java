@@ -179,6 +179,13 @@ public class NullawayJavac {
     }
     String processorPath =
         System.getProperty("java.class.path") + File.pathSeparator + extraProcessorPath;
+    StringBuilder errorProneArgs =
+        new StringBuilder(
+            "-Xplugin:ErrorProne -XepDisableAllChecks -Xep:NullAway:ERROR -XepOpt:NullAway:AnnotatedPackages=");
+    errorProneArgs.append(annotatedPackages);
+    for (String arg : extraErrorProneArgs) {
+      errorProneArgs.append(' ').append(arg);
+    }
     options.addAll(
         Arrays.asList(
             "-processorpath",
@@ -186,9 +193,7 @@ public class NullawayJavac {
             "-d",
             outputDir.toAbsolutePath().toString(),
             "-XDcompilePolicy=simple",
-            "-Xplugin:ErrorProne -XepDisableAllChecks -Xep:NullAway:ERROR -XepOpt:NullAway:AnnotatedPackages="
-                + annotatedPackages
-                + String.join(" ", extraErrorProneArgs)));
+            errorProneArgs.toString()));
     // add these options since we have at least one benchmark that only compiles with access to
     // javac-internal APIs
     options.addAll(
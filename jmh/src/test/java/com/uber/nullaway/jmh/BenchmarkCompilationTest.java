@@ -18,6 +18,11 @@ public class BenchmarkCompilationTest {
     assertTrue(new CaffeineCompiler().compile());
   }
 
+  @Test
+  public void testCaffeineSparseDataflow() throws IOException {
+    assertTrue(new CaffeineSparseDataflowCompiler().compile());
+  }
+
   @Test
   public void testNullawayRelease() throws IOException {
     assertTrue(new NullawayReleaseCompiler().compile());
@@ -43,7 +43,7 @@ public abstract class AbstractConfig implements Config {
    * <p>When we see an invocation to a method of a class outside these packages, we optimistically
    * assume all parameters are @Nullable and the return value is @NonNull
    */
-  protected Pattern annotatedPackages;
+  protected PackagePrefixes annotatedPackages;
 
   /**
    * Sub-packages without appropriate nullability annotations.
@@ -51,7 +51,7 @@ public abstract class AbstractConfig implements Config {
    * <p>Used to exclude a particular package that contains unannotated code within a larger,
    * properly annotated, package.
    */
-  protected Pattern unannotatedSubPackages;
+  protected PackagePrefixes unannotatedSubPackages;
 
   /** Source code in these classes will not be analyzed for nullability issues */
   @Nullable protected ImmutableSet<String> sourceClassesToExclude;
@@ -85,6 +85,16 @@ public abstract class AbstractConfig implements Config {
 
   protected boolean jspecifyMode;
 
+  protected int dataflowCacheBudgetMB;
+
+  protected boolean sparseDataflow;
+
+  @Nullable protected String summaryCacheDirectory;
+
+  protected String configFingerprint;
+
+  @Nullable protected String libraryModelsIndexPath;
+
   protected ImmutableSet<MethodClassAndName> knownInitializers;
 
   protected ImmutableSet<String> excludedClassAnnotations;
@@ -147,12 +157,22 @@ public abstract class AbstractConfig implements Config {
 
   @Override
   public boolean fromExplicitlyAnnotatedPackage(String className) {
-    return annotatedPackages.matcher(className).matches();
+    return annotatedPackages.matches(className);
+  }
+
+  @Override
+  public boolean fromExplicitlyAnnotatedPackage(Symbol.ClassSymbol outermostClassSymbol) {
+    return annotatedPackages.matches(outermostClassSymbol);
   }
 
   @Override
   public boolean fromExplicitlyUnannotatedPackage(String className) {
-    return unannotatedSubPackages.matcher(className).matches();
+    return unannotatedSubPackages.matches(className);
+  }
+
+  @Override
+  public boolean fromExplicitlyUnannotatedPackage(Symbol.ClassSymbol outermostClassSymbol) {
+    return unannotatedSubPackages.matches(outermostClassSymbol);
   }
 
   @Override
@@ -346,4 +366,31 @@ public abstract class AbstractConfig implements Config {
   public boolean isJSpecifyMode() {
     return jspecifyMode;
   }
+
+  @Override
+  public int getDataflowCacheBudgetMB() {
+    return dataflowCacheBudgetMB;
+  }
+
+  @Override
+  public boolean isSparseDataflow() {
+    return sparseDataflow;
+  }
+
+  @Override
+  @Nullable
+  public String getSummaryCacheDirectory() {
+    return summaryCacheDirectory;
+  }
+
+  @Override
+  public String getConfigFingerprint() {
+    return configFingerprint;
+  }
+
+  @Override
+  @Nullable
+  public String getLibraryModelsIndexPath() {
+    return libraryModelsIndexPath;
+  }
 }
@@ -25,14 +25,22 @@ package com.uber.nullaway;
 import static com.uber.nullaway.NullabilityUtil.castToNonNull;
 
 import com.google.common.base.Preconditions;
-import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableSet;
 import com.google.errorprone.util.ASTHelpers;
+import com.sun.source.util.TaskEvent;
+import com.sun.source.util.TaskListener;
+import com.sun.tools.javac.api.MultiTaskListener;
+import com.sun.tools.javac.code.Attribute;
 import com.sun.tools.javac.code.Symbol;
+import com.sun.tools.javac.code.TargetType;
 import com.sun.tools.javac.util.Context;
-import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import javax.annotation.Nullable;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
 import javax.lang.model.element.ElementKind;
 
 /**
@@ -44,12 +52,53 @@ public final class CodeAnnotationInfo {
 
   private static final Context.Key<CodeAnnotationInfo> ANNOTATION_INFO_KEY = new Context.Key<>();
 
-  private static final int MAX_CLASS_CACHE_SIZE = 200;
+  /**
+   * Records of all classes queried in the current compilation. Not bounded, since a compilation
+   * typically references thousands of distinct (library) classes, and evicting their records means
+   * walking enclosing classes and looking up annotations again. Cleared at the end of the
+   * compilation.
+   */
+  private final Map<Symbol.ClassSymbol, ClassCacheRecord> classCache = new IdentityHashMap<>();
+
+  /** {@code @NullMarked} / {@code @NullUnmarked} status of the packages of outermost classes. */
+  private final Map<Symbol.PackageSymbol, PackageCacheRecord> packageCache =
+      new IdentityHashMap<>();
 
-  private final Cache<Symbol.ClassSymbol, ClassCacheRecord> classCache =
-      CacheBuilder.newBuilder().maximumSize(MAX_CLASS_CACHE_SIZE).build();
+  /** Results of {@link #isSymbolUnannotated(Symbol, Config)}. */
+  private final Map<Symbol, Boolean> symbolUnannotatedCache = new IdentityHashMap<>();
 
-  private CodeAnnotationInfo() {}
+  /** {@code @Nullable} / {@code @NonNull} annotations of the symbols queried so far. */
+  private final Map<Symbol, NullnessAnnotationsRecord> nullnessAnnotationsCache =
+      new IdentityHashMap<>();
+
+  /**
+   * Classification of annotation types, keyed by their element, as a combination of {@link
+   * #NULLABLE_ANNOTATION} and {@link #NONNULL_ANNOTATION}.
+   */
+  private final Map<Element, Integer> annotationTypeCache = new IdentityHashMap<>();
+
+  /** Flag for annotations treated as {@code @Nullable}, see {@link Nullness}. */
+  private static final int NULLABLE_ANNOTATION = 1;
+
+  /** Flag for annotations treated as {@code @NonNull}, see {@link Nullness}. */
+  private static final int NONNULL_ANNOTATION = 2;
+
+  private CodeAnnotationInfo(Context context) {
+    MultiTaskListener.instance(context)
+        .add(
+            new TaskListener() {
+              @Override
+              public void finished(TaskEvent e) {
+                if (e.getKind() == TaskEvent.Kind.COMPILATION) {
+                  classCache.clear();
+                  packageCache.clear();
+                  symbolUnannotatedCache.clear();
+                  nullnessAnnotationsCache.clear();
+                  annotationTypeCache.clear();
+                }
+              }
+            });
+  }
 
   /**
    * Get the CodeAnnotationInfo for the given javac context. We ensure there is one instance per
@@ -58,7 +107,7 @@ public final class CodeAnnotationInfo {
   public static CodeAnnotationInfo instance(Context context) {
     CodeAnnotationInfo annotationInfo = context.get(ANNOTATION_INFO_KEY);
     if (annotationInfo == null) {
-      annotationInfo = new CodeAnnotationInfo();
+      annotationInfo = new CodeAnnotationInfo(context);
       context.put(ANNOTATION_INFO_KEY, annotationInfo);
     }
     return annotationInfo;
@@ -75,22 +124,17 @@ public final class CodeAnnotationInfo {
    *     according to our convention (every possibly null parameter / return / field
    *     annotated @Nullable), false otherwise
    */
-  private static boolean fromAnnotatedPackage(
-      Symbol.ClassSymbol outermostClassSymbol, Config config) {
-    final String className = outermostClassSymbol.getQualifiedName().toString();
-    Symbol.PackageSymbol enclosingPackage = ASTHelpers.enclosingPackage(outermostClassSymbol);
-    if (!config.fromExplicitlyAnnotatedPackage(className)
-        && !(enclosingPackage != null
-            && ASTHelpers.hasDirectAnnotationWithSimpleName(
-                enclosingPackage, NullabilityUtil.NULLMARKED_SIMPLE_NAME))) {
+  private boolean fromAnnotatedPackage(Symbol.ClassSymbol outermostClassSymbol, Config config) {
+    PackageCacheRecord packageRecord =
+        getPackageRecord(ASTHelpers.enclosingPackage(outermostClassSymbol));
+    if (!config.fromExplicitlyAnnotatedPackage(outermostClassSymbol)
+        && !packageRecord.isNullMarked) {
       // By default, unknown code is unannotated unless @NullMarked or configured as annotated by
       // package name
       return false;
     }
-    if (config.fromExplicitlyUnannotatedPackage(className)
-        || (enclosingPackage != null
-            && ASTHelpers.hasDirectAnnotationWithSimpleName(
-                enclosingPackage, NullabilityUtil.NULLUNMARKED_SIMPLE_NAME))) {
+    if (config.fromExplicitlyUnannotatedPackage(outermostClassSymbol)
+        || packageRecord.isNullUnmarked) {
       // Any code explicitly marked as unannotated in our configuration is unannotated, no matter
       // what. Similarly, any package annotated as @NullUnmarked is unannotated, even if
       // explicitly passed to -XepOpt:NullAway::AnnotatedPackages
@@ -101,6 +145,27 @@ public final class CodeAnnotationInfo {
     return true;
   }
 
+  private PackageCacheRecord getPackageRecord(@Nullable Symbol.PackageSymbol packageSymbol) {
+    if (packageSymbol == null) {
+      return PackageCacheRecord.UNMARKED_PACKAGE;
+    }
+    PackageCacheRecord record = packageCache.get(packageSymbol);
+    if (record == null) {
+      boolean isNullMarked =
+          ASTHelpers.hasDirectAnnotationWithSimpleName(
+              packageSymbol, NullabilityUtil.NULLMARKED_SIMPLE_NAME);
+      boolean isNullUnmarked =
+          ASTHelpers.hasDirectAnnotationWithSimpleName(
+              packageSymbol, NullabilityUtil.NULLUNMARKED_SIMPLE_NAME);
+      record =
+          isNullMarked || isNullUnmarked
+              ? new PackageCacheRecord(isNullMarked, isNullUnmarked)
+              : PackageCacheRecord.UNMARKED_PACKAGE;
+      packageCache.put(packageSymbol, record);
+    }
+    return record;
+  }
+
   /**
    * Check if a symbol comes from generated code.
    *
@@ -148,6 +213,15 @@ public final class CodeAnnotationInfo {
    *     otherwise
    */
   public boolean isSymbolUnannotated(Symbol symbol, Config config) {
+    Boolean cached = symbolUnannotatedCache.get(symbol);
+    if (cached == null) {
+      cached = computeIsSymbolUnannotated(symbol, config);
+      symbolUnannotatedCache.put(symbol, cached);
+    }
+    return cached;
+  }
+
+  private boolean computeIsSymbolUnannotated(Symbol symbol, Config config) {
     Symbol.ClassSymbol classSymbol;
     if (symbol instanceof Symbol.ClassSymbol) {
       classSymbol = (Symbol.ClassSymbol) symbol;
@@ -183,6 +257,103 @@ public final class CodeAnnotationInfo {
     return get(classSymbol, config).isNullnessAnnotated;
   }
 
+  /**
+   * Does the symbol have a {@code @Nullable} declaration or type-use annotation? Same as {@link
+   * Nullness#hasNullableAnnotation(Symbol, Config)}, but computed at most once per symbol.
+   *
+   * @param symbol the symbol; for methods, annotations on the return type are considered
+   * @param config NullAway config
+   * @return true iff the symbol has an annotation treated as {@code @Nullable}
+   */
+  public boolean hasNullableAnnotation(Symbol symbol, Config config) {
+    return (getNullnessAnnotations(symbol, config).flags & NULLABLE_ANNOTATION) != 0;
+  }
+
+  /**
+   * Does the symbol have a {@code @NonNull} declaration or type-use annotation? Same as {@link
+   * Nullness#hasNonNullAnnotation(Symbol, Config)}, but computed at most once per symbol.
+   *
+   * @param symbol the symbol; for methods, annotations on the return type are considered
+   * @param config NullAway config
+   * @return true iff the symbol has an annotation treated as {@code @NonNull}
+   */
+  public boolean hasNonNullAnnotation(Symbol symbol, Config config) {
+    return (getNullnessAnnotations(symbol, config).flags & NONNULL_ANNOTATION) != 0;
+  }
+
+  /**
+   * Does the parameter of {@code symbol} at {@code paramInd} have a {@code @Nullable} declaration
+   * or type-use annotation? Same as {@link Nullness#paramHasNullableAnnotation(Symbol.MethodSymbol,
+   * int, Config)}, but computed at most once per method.
+   */
+  public boolean paramHasNullableAnnotation(
+      Symbol.MethodSymbol symbol, int paramInd, Config config) {
+    return (getParameterFlags(symbol, config)[paramInd] & NULLABLE_ANNOTATION) != 0;
+  }
+
+  /**
+   * Does the parameter of {@code symbol} at {@code paramInd} have a {@code @NonNull} declaration or
+   * type-use annotation? Same as {@link Nullness#paramHasNonNullAnnotation(Symbol.MethodSymbol,
+   * int, Config)}, but computed at most once per method.
+   */
+  public boolean paramHasNonNullAnnotation(
+      Symbol.MethodSymbol symbol, int paramInd, Config config) {
+    return (getParameterFlags(symbol, config)[paramInd] & NONNULL_ANNOTATION) != 0;
+  }
+
+  private NullnessAnnotationsRecord getNullnessAnnotations(Symbol symbol, Config config) {
+    NullnessAnnotationsRecord record = nullnessAnnotationsCache.get(symbol);
+    if (record == null) {
+      int flags = 0;
+      Iterator<? extends AnnotationMirror> annotations =
+          NullabilityUtil.getAllAnnotations(symbol).iterator();
+      while (annotations.hasNext()) {
+        flags |= getAnnotationFlags(annotations.next(), config);
+      }
+      record = new NullnessAnnotationsRecord(flags);
+      nullnessAnnotationsCache.put(symbol, record);
+    }
+    return record;
+  }
+
+  private int[] getParameterFlags(Symbol.MethodSymbol symbol, Config config) {
+    NullnessAnnotationsRecord record = getNullnessAnnotations(symbol, config);
+    int[] parameterFlags = record.parameterFlags;
+    if (parameterFlags == null) {
+      List<Symbol.VarSymbol> parameters = symbol.getParameters();
+      parameterFlags = new int[parameters.size()];
+      for (int i = 0; i < parameterFlags.length; i++) {
+        for (AnnotationMirror annotation : parameters.get(i).getAnnotationMirrors()) {
+          parameterFlags[i] |= getAnnotationFlags(annotation, config);
+        }
+      }
+      // Type-use annotations of parameters of methods from class files are only on the method
+      for (Attribute.TypeCompound annotation : symbol.getRawTypeAttributes()) {
+        int paramInd = annotation.position.parameter_index;
+        if (annotation.position.type.equals(TargetType.METHOD_FORMAL_PARAMETER)
+            && paramInd >= 0
+            && paramInd < parameterFlags.length) {
+          parameterFlags[paramInd] |= getAnnotationFlags(annotation, config);
+        }
+      }
+      record.parameterFlags = parameterFlags;
+    }
+    return parameterFlags;
+  }
+
+  private int getAnnotationFlags(AnnotationMirror annotation, Config config) {
+    Element annotationType = annotation.getAnnotationType().asElement();
+    Integer flags = annotationTypeCache.get(annotationType);
+    if (flags == null) {
+      String annotationName = annotation.getAnnotationType().toString();
+      flags =
+          (Nullness.isNullableAnnotation(annotationName, config) ? NULLABLE_ANNOTATION : 0)
+              | (Nullness.isNonNullAnnotation(annotationName, config) ? NONNULL_ANNOTATION : 0);
+      annotationTypeCache.put(annotationType, flags);
+    }
+    return flags;
+  }
+
   /**
    * Retrieve the (outermostClass, isNullMarked) record for a given class symbol.
    *
@@ -195,7 +366,7 @@ public final class CodeAnnotationInfo {
    *     like annotated packages
    */
   private ClassCacheRecord get(Symbol.ClassSymbol classSymbol, Config config) {
-    ClassCacheRecord record = classCache.getIfPresent(classSymbol);
+    ClassCacheRecord record = classCache.get(classSymbol);
     if (record != null) {
       return record;
     }
@@ -273,6 +444,36 @@ public final class CodeAnnotationInfo {
     return false;
   }
 
+  /**
+   * Record holding whether a symbol has {@code @Nullable} / {@code @NonNull} annotations and, for
+   * methods, which of their parameters have them.
+   */
+  private static final class NullnessAnnotationsRecord {
+    /** Annotations of the symbol, or of the return type for methods. */
+    final int flags;
+
+    /** Annotations of each parameter of a method, computed on first use. */
+    @Nullable int[] parameterFlags;
+
+    NullnessAnnotationsRecord(int flags) {
+      this.flags = flags;
+    }
+  }
+
+  /** Immutable record holding the null-marking annotations of a package. */
+  private static final class PackageCacheRecord {
+    /** Shared record for packages with neither annotation. */
+    static final PackageCacheRecord UNMARKED_PACKAGE = new PackageCacheRecord(false, false);
+
+    final boolean isNullMarked;
+    final boolean isNullUnmarked;
+
+    PackageCacheRecord(boolean isNullMarked, boolean isNullUnmarked) {
+      this.isNullMarked = isNullMarked;
+      this.isNullUnmarked = isNullUnmarked;
+    }
+  }
+
   /**
    * Immutable record holding the outermost class symbol and the nullness-annotated state for a
    * given (possibly inner) class.
@@ -288,7 +489,7 @@ public final class CodeAnnotationInfo {
     public ClassCacheRecord(Symbol.ClassSymbol outermostClassSymbol, boolean isAnnotated) {
       this.outermostClassSymbol = outermostClassSymbol;
       this.isNullnessAnnotated = isAnnotated;
-      this.methodNullnessCache = new HashMap<>();
+      this.methodNullnessCache = new IdentityHashMap<>();
     }
 
     public boolean isMethodNullnessAnnotated(Symbol.MethodSymbol methodSymbol) {
@@ -58,6 +58,17 @@ public interface Config {
    */
   boolean fromExplicitlyAnnotatedPackage(String className);
 
+  /**
+   * Checks if a top-level class comes from an explicitly annotated package. Equivalent to {@link
+   * #fromExplicitlyAnnotatedPackage(String)} for the fully qualified name of the class, but may
+   * reuse the result computed for other classes of the same package.
+   *
+   * @param outermostClassSymbol symbol for class (should be an outermost class)
+   * @return true if the class is from a package that is explicitly configured to be treated as
+   *     properly annotated, false otherwise
+   */
+  boolean fromExplicitlyAnnotatedPackage(Symbol.ClassSymbol outermostClassSymbol);
+
   /**
    * Checks if a class comes from an explicitly unannotated (sub-)package.
    *
@@ -68,6 +79,17 @@ public interface Config {
    */
   boolean fromExplicitlyUnannotatedPackage(String className);
 
+  /**
+   * Checks if a top-level class comes from an explicitly unannotated (sub-)package. Equivalent to
+   * {@link #fromExplicitlyUnannotatedPackage(String)} for the fully qualified name of the class,
+   * but may reuse the result computed for other classes of the same package.
+   *
+   * @param outermostClassSymbol symbol for class (should be an outermost class)
+   * @return true if the class is from a package that is explicitly configured to be treated as
+   *     unannotated, false otherwise
+   */
+  boolean fromExplicitlyUnannotatedPackage(Symbol.ClassSymbol outermostClassSymbol);
+
   /**
    * Checks if (tool) generated code should be considered always unannoatated.
    *
@@ -298,4 +320,50 @@ public interface Config {
 
   /** Should new checks based on JSpecify (like checks for generic types) be enabled? */
   boolean isJSpecifyMode();
+
+  /**
+   * Gets the approximate memory budget for the dataflow CFG and analysis caches.
+   *
+   * @return the budget, in megabytes, shared by the caches of control flow graphs and dataflow
+   *     results kept while checking a compilation unit
+   */
+  int getDataflowCacheBudgetMB();
+
+  /**
+   * Checks if the sparse (demand-driven) dataflow mode is enabled.
+   *
+   * @return true if NullAway should first run a cheap syntactic pass over a method to check whether
+   *     any {@code null} value can flow into it (e.g., from a null literal, or a {@code @Nullable}
+   *     parameter, field or method return), and skip building the CFG and running dataflow analysis
+   *     for the method when none can.
+   */
+  boolean isSparseDataflow();
+
+  /**
+   * Gets the directory holding the persistent cache of method summaries, if enabled.
+   *
+   * @return the directory in which NullAway stores dataflow summaries of methods and initializer
+   *     blocks across compilations, or {@code null} if the persistent summary cache is disabled
+   */
+  @Nullable
+  String getSummaryCacheDirectory();
+
+  /**
+   * Gets a fingerprint of the NullAway options that can affect analysis results.
+   *
+   * @return a string which is equal for two configurations whenever they are set from the same
+   *     option values; used as part of the keys of the persistent summary cache
+   */
+  String getConfigFingerprint();
+
+  /**
+   * Gets the path of the precompiled library models index, if any.
+   *
+   * @return path of an index file written by {@link
+   *     com.uber.nullaway.handlers.LibraryModelsIndex}, from which library models are read instead
+   *     of loading {@link LibraryModels} implementations, unless the file cannot be read or is
+   *     stale, which NullAway reports as a warning; or {@code null} if not set
+   */
+  @Nullable
+  String getLibraryModelsIndexPath();
 }
@@ -59,11 +59,21 @@ public class DummyOptionsConfig implements Config {
     throw new IllegalStateException(ERROR_MESSAGE);
   }
 
+  @Override
+  public boolean fromExplicitlyAnnotatedPackage(Symbol.ClassSymbol outermostClassSymbol) {
+    throw new IllegalStateException(ERROR_MESSAGE);
+  }
+
   @Override
   public boolean fromExplicitlyUnannotatedPackage(String className) {
     throw new IllegalStateException(ERROR_MESSAGE);
   }
 
+  @Override
+  public boolean fromExplicitlyUnannotatedPackage(Symbol.ClassSymbol outermostClassSymbol) {
+    throw new IllegalStateException(ERROR_MESSAGE);
+  }
+
   @Override
   public boolean treatGeneratedAsUnannotated() {
     throw new IllegalStateException(ERROR_MESSAGE);
@@ -220,4 +230,31 @@ public class DummyOptionsConfig implements Config {
   public boolean isJSpecifyMode() {
     throw new IllegalStateException(ERROR_MESSAGE);
   }
+
+  @Override
+  public int getDataflowCacheBudgetMB() {
+    throw new IllegalStateException(ERROR_MESSAGE);
+  }
+
+  @Override
+  public boolean isSparseDataflow() {
+    throw new IllegalStateException(ERROR_MESSAGE);
+  }
+
+  @Override
+  @Nullable
+  public String getSummaryCacheDirectory() {
+    throw new IllegalStateException(ERROR_MESSAGE);
+  }
+
+  @Override
+  public String getConfigFingerprint() {
+    throw new IllegalStateException(ERROR_MESSAGE);
+  }
+
+  @Override
+  @Nullable
+  public String getLibraryModelsIndexPath() {
+    throw new IllegalStateException(ERROR_MESSAGE);
+  }
 }
@@ -28,8 +28,10 @@ import com.uber.nullaway.fixserialization.FixSerializationConfig;
 import com.uber.nullaway.fixserialization.adapters.SerializationAdapter;
 import java.util.Collections;
 import java.util.LinkedHashSet;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.TreeMap;
 
 /**
  * provides nullability configuration based on additional flags passed to ErrorProne via
@@ -80,6 +82,10 @@ final class ErrorProneCLIFlagsConfig extends AbstractConfig {
   static final String FL_JI_REGEX_MODEL_PATH = EP_FL_NAMESPACE + ":JarInferRegexStripModelJar";
   static final String FL_JI_REGEX_CODE_PATH = EP_FL_NAMESPACE + ":JarInferRegexStripCodeJar";
   static final String FL_ERROR_URL = EP_FL_NAMESPACE + ":ErrorURL";
+  static final String FL_DATAFLOW_CACHE_BUDGET_MB = EP_FL_NAMESPACE + ":DataflowCacheBudgetMB";
+  static final String FL_SPARSE_DATAFLOW = EP_FL_NAMESPACE + ":SparseDataflow";
+  static final String FL_SUMMARY_CACHE_DIR = EP_FL_NAMESPACE + ":SummaryCacheDir";
+  static final String FL_LIBRARY_MODELS_INDEX = EP_FL_NAMESPACE + ":LibraryModelsIndex";
   /** --- Serialization configs --- */
   static final String FL_FIX_SERIALIZATION = EP_FL_NAMESPACE + ":SerializeFixMetadata";
 
@@ -152,6 +158,8 @@ final class ErrorProneCLIFlagsConfig extends AbstractConfig {
 
   private static final String DEFAULT_URL = "http://t.uber.com/nullaway";
 
+  static final int DEFAULT_DATAFLOW_CACHE_BUDGET_MB = 64;
+
   ErrorProneCLIFlagsConfig(ErrorProneFlags flags) {
     if (!flags.get(FL_ANNOTATED_PACKAGES).isPresent()) {
       throw new IllegalStateException(
@@ -163,8 +171,9 @@ final class ErrorProneCLIFlagsConfig extends AbstractConfig {
               + "=[...] flag.  If you feel you have gotten this message in error report an issue"
               + " at https://github.com/uber/NullAway/issues.");
     }
-    annotatedPackages = getPackagePattern(getFlagStringSet(flags, FL_ANNOTATED_PACKAGES));
-    unannotatedSubPackages = getPackagePattern(getFlagStringSet(flags, FL_UNANNOTATED_SUBPACKAGES));
+    annotatedPackages = PackagePrefixes.of(getFlagStringSet(flags, FL_ANNOTATED_PACKAGES));
+    unannotatedSubPackages =
+        PackagePrefixes.of(getFlagStringSet(flags, FL_UNANNOTATED_SUBPACKAGES));
     sourceClassesToExclude = getFlagStringSet(flags, FL_CLASSES_TO_EXCLUDE);
     unannotatedClasses = getFlagStringSet(flags, FL_UNANNOTATED_CLASSES);
     knownInitializers =
@@ -195,6 +204,10 @@ final class ErrorProneCLIFlagsConfig extends AbstractConfig {
     acknowledgeAndroidRecent = flags.getBoolean(FL_ACKNOWLEDGE_ANDROID_RECENT).orElse(false);
     jspecifyMode = flags.getBoolean(FL_JSPECIFY_MODE).orElse(false);
     assertsEnabled = flags.getBoolean(FL_ASSERTS_ENABLED).orElse(false);
+    sparseDataflow = flags.getBoolean(FL_SPARSE_DATAFLOW).orElse(false);
+    summaryCacheDirectory = flags.get(FL_SUMMARY_CACHE_DIR).orElse(null);
+    libraryModelsIndexPath = flags.get(FL_LIBRARY_MODELS_INDEX).orElse(null);
+    configFingerprint = computeConfigFingerprint(flags);
     fieldAnnotPattern =
         getPackagePattern(
             getFlagStringSet(flags, FL_EXCLUDED_FIELD_ANNOT, DEFAULT_EXCLUDED_FIELD_ANNOT));
@@ -218,6 +231,14 @@ final class ErrorProneCLIFlagsConfig extends AbstractConfig {
     jarInferRegexStripModelJarName = flags.get(FL_JI_REGEX_MODEL_PATH).orElse(BASENAME_REGEX);
     jarInferRegexStripCodeJarName = flags.get(FL_JI_REGEX_CODE_PATH).orElse(BASENAME_REGEX);
     errorURL = flags.get(FL_ERROR_URL).orElse(DEFAULT_URL);
+    dataflowCacheBudgetMB =
+        flags.getInteger(FL_DATAFLOW_CACHE_BUDGET_MB).orElse(DEFAULT_DATAFLOW_CACHE_BUDGET_MB);
+    if (dataflowCacheBudgetMB < 0) {
+      throw new IllegalStateException(
+          "Invalid -XepOpt:"
+              + FL_DATAFLOW_CACHE_BUDGET_MB
+              + " value. The budget must be a non-negative number of megabytes.");
+    }
     if (acknowledgeAndroidRecent && !isAcknowledgeRestrictive) {
       throw new IllegalStateException(
           "-XepOpt:"
@@ -259,6 +280,27 @@ final class ErrorProneCLIFlagsConfig extends AbstractConfig {
     }
   }
 
+  /**
+   * Joins all NullAway option values, sorted by option name, except for options that only affect
+   * performance or output locations and not analysis results.
+   */
+  private static String computeConfigFingerprint(ErrorProneFlags flags) {
+    ImmutableSet<String> ignored =
+        ImmutableSet.of(
+            FL_DATAFLOW_CACHE_BUDGET_MB,
+            FL_SPARSE_DATAFLOW,
+            FL_SUMMARY_CACHE_DIR,
+            FL_FIX_SERIALIZATION_CONFIG_PATH);
+    StringBuilder fingerprint = new StringBuilder();
+    for (Map.Entry<String, String> flag : new TreeMap<>(flags.getFlagsMap()).entrySet()) {
+      String name = flag.getKey();
+      if (name.startsWith(EP_FL_NAMESPACE) && !ignored.contains(name)) {
+        fingerprint.append(name).append('=').append(flag.getValue()).append('\n');
+      }
+    }
+    return fingerprint.toString();
+  }
+
   private static ImmutableSet<String> getFlagStringSet(ErrorProneFlags flags, String flagName) {
     Optional<String> flagValue = flags.get(flagName);
     if (flagValue.isPresent()) {
@@ -41,6 +41,7 @@ import com.google.common.collect.LinkedHashMultimap;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.SetMultimap;
 import com.google.common.collect.Sets;
+import com.google.common.primitives.Ints;
 import com.google.errorprone.BugPattern;
 import com.google.errorprone.ErrorProneFlags;
 import com.google.errorprone.VisitorState;
@@ -88,12 +89,15 @@ import com.sun.tools.javac.code.Symbol.VarSymbol;
 import com.sun.tools.javac.code.Type;
 import com.sun.tools.javac.processing.JavacProcessingEnvironment;
 import com.sun.tools.javac.tree.JCTree;
+import com.sun.tools.javac.util.Context;
 import com.uber.nullaway.ErrorMessage.MessageTypes;
 import com.uber.nullaway.dataflow.AccessPathNullnessAnalysis;
 import com.uber.nullaway.dataflow.EnclosingEnvironmentNullness;
+import com.uber.nullaway.fixserialization.Serializer;
 import com.uber.nullaway.handlers.Handler;
 import com.uber.nullaway.handlers.Handlers;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -184,8 +188,6 @@ public class NullAway extends BugChecker
 
   private static final Matcher<ExpressionTree> THIS_MATCHER = NullAway::isThisIdentifierMatcher;
 
-  private final Predicate<MethodInvocationNode> nonAnnotatedMethod;
-
   /**
    * Possible levels of null-marking / annotatedness for a class. This may be set to FULLY_MARKED or
    * FULLY_UNMARKED optimistically but then adjusted to PARTIALLY_MARKED later based on annotations
@@ -203,21 +205,6 @@ public class NullAway extends BugChecker
     PARTIALLY_MARKED
   }
 
-  /**
-   * Null-marking level for the current top-level class. The initial value of this field doesn't
-   * matter, as it will be set appropriately in {@link #matchClass(ClassTree, VisitorState)}
-   */
-  private NullMarking nullMarkingForTopLevelClass = NullMarking.FULLY_MARKED;
-
-  /**
-   * We store the CodeAnnotationInfo object in a field for convenience; it is initialized in {@link
-   * #matchClass(ClassTree, VisitorState)}
-   */
-  // suppress initialization warning rather than casting everywhere; we know matchClass() will
-  // always be called before the field gets dereferenced
-  @SuppressWarnings("NullAway.Init")
-  private CodeAnnotationInfo codeAnnotationInfo;
-
   private final Config config;
 
   private final ErrorBuilder errorBuilder;
@@ -229,33 +216,86 @@ public class NullAway extends BugChecker
   private final Handler handler;
 
   /**
-   * entities relevant to field initialization per class. cached for performance. nulled out in
-   * {@link #matchClass(ClassTree, VisitorState)}
+   * Key of the {@link CheckerState} of this checker in the context of each compilation. The key is
+   * per checker object, since the state depends on its configuration.
    */
-  private final Map<Symbol.ClassSymbol, FieldInitEntities> class2Entities = new LinkedHashMap<>();
+  private final Context.Key<CheckerState> checkerStateKey = new Context.Key<>();
 
   /**
-   * fields not initialized by constructors, per class. cached for performance. nulled out in {@link
-   * #matchClass(ClassTree, VisitorState)}
+   * Mutable state of this checker for a single compilation. Error Prone may share a single checker
+   * object between concurrent compilations in the same JVM, each with its own {@link Context} and
+   * each running on a single thread, so all state specific to the code being checked is kept here
+   * rather than in fields of the checker. See {@link #getCheckerState(VisitorState)}.
    */
-  private final SetMultimap<Symbol.ClassSymbol, Symbol> class2ConstructorUninit =
-      LinkedHashMultimap.create();
+  private static final class CheckerState {
 
-  /**
-   * maps each top-level initialization member (constructor, init block, field decl with initializer
-   * expression) to the set of @NonNull fields known to be initialized before that member executes.
-   *
-   * <p>cached for performance. nulled out in {@link #matchClass(ClassTree, VisitorState)}
-   */
-  private final Map<Symbol.ClassSymbol, Multimap<Tree, Element>> initTree2PrevFieldInit =
-      new LinkedHashMap<>();
+    /**
+     * Null-marking level for the current top-level class. The initial value of this field doesn't
+     * matter, as it will be set appropriately in {@link #matchClass(ClassTree, VisitorState)}
+     */
+    private NullMarking nullMarkingForTopLevelClass = NullMarking.FULLY_MARKED;
 
-  /**
-   * dynamically computer/overriden nullness facts for certain expressions, such as specific method
-   * calls where we can infer a more precise set of facts than those given by the method's
-   * annotations.
-   */
-  private final Map<ExpressionTree, Nullness> computedNullnessMap = new LinkedHashMap<>();
+    private final CodeAnnotationInfo codeAnnotationInfo;
+
+    /** Predicate for invocations of unannotated methods, passed to the dataflow analysis. */
+    private final Predicate<MethodInvocationNode> nonAnnotatedMethod;
+
+    /**
+     * entities relevant to field initialization per class. cached for performance. nulled out in
+     * {@link #matchClass(ClassTree, VisitorState)}
+     */
+    private final Map<Symbol.ClassSymbol, FieldInitEntities> class2Entities =
+        new LinkedHashMap<>();
+
+    /**
+     * fields not initialized by constructors, per class. cached for performance. nulled out in
+     * {@link #matchClass(ClassTree, VisitorState)}
+     */
+    private final SetMultimap<Symbol.ClassSymbol, Symbol> class2ConstructorUninit =
+        LinkedHashMultimap.create();
+
+    /**
+     * maps each top-level initialization member (constructor, init block, field decl with
+     * initializer expression) to the set of @NonNull fields known to be initialized before that
+     * member executes.
+     *
+     * <p>cached for performance. nulled out in {@link #matchClass(ClassTree, VisitorState)}
+     */
+    private final Map<Symbol.ClassSymbol, Multimap<Tree, Element>> initTree2PrevFieldInit =
+        new LinkedHashMap<>();
+
+    /**
+     * maps each initializer method or block to the fields initialized by the safe init methods it
+     * invokes, indexed by position, for checking reads of fields before initialization.
+     *
+     * <p>cached for performance. nulled out in {@link #matchClass(ClassTree, VisitorState)}
+     */
+    private final Map<Tree, SafeInitCalleeIndex> initTree2SafeInitCallees =
+        new LinkedHashMap<>();
+
+    /**
+     * dynamically computer/overriden nullness facts for certain expressions, such as specific
+     * method calls where we can infer a more precise set of facts than those given by the method's
+     * annotations.
+     */
+    private final Map<ExpressionTree, Nullness> computedNullnessMap = new LinkedHashMap<>();
+
+    private CheckerState(
+        CodeAnnotationInfo codeAnnotationInfo,
+        Predicate<MethodInvocationNode> nonAnnotatedMethod) {
+      this.codeAnnotationInfo = codeAnnotationInfo;
+      this.nonAnnotatedMethod = nonAnnotatedMethod;
+    }
+
+    /** Invalidates the cached results for previous top-level classes. */
+    private void clear() {
+      initTree2PrevFieldInit.clear();
+      initTree2SafeInitCallees.clear();
+      class2Entities.clear();
+      class2ConstructorUninit.clear();
+      computedNullnessMap.clear();
+    }
+  }
 
   /**
    * Used to check if a symbol represents a module in {@link #matchMemberSelect(MemberSelectTree,
@@ -274,7 +314,6 @@ public class NullAway extends BugChecker
   public NullAway() {
     config = new DummyOptionsConfig();
     handler = Handlers.buildEmpty();
-    nonAnnotatedMethod = this::isMethodUnannotated;
     errorBuilder = new ErrorBuilder(config, "", ImmutableSet.of());
     moduleElementClass = null;
   }
@@ -283,7 +322,6 @@ public class NullAway extends BugChecker
   public NullAway(ErrorProneFlags flags) {
     config = new ErrorProneCLIFlagsConfig(flags);
     handler = Handlers.buildDefault(config);
-    nonAnnotatedMethod = this::isMethodUnannotated;
     errorBuilder = new ErrorBuilder(config, canonicalName(), allNames());
     Class<?> moduleElementClass = null;
     try {
@@ -295,13 +333,38 @@ public class NullAway extends BugChecker
     this.moduleElementClass = moduleElementClass;
   }
 
-  private boolean isMethodUnannotated(MethodInvocationNode invocationNode) {
+  /**
+   * Returns the state of this checker for the compilation being checked, creating it on first use.
+   *
+   * @param state visitor state
+   * @return the checker state for the context of {@code state}
+   */
+  private CheckerState getCheckerState(VisitorState state) {
+    CheckerState checkerState = state.context.get(checkerStateKey);
+    if (checkerState == null) {
+      CodeAnnotationInfo codeAnnotationInfo = CodeAnnotationInfo.instance(state.context);
+      checkerState =
+          new CheckerState(
+              codeAnnotationInfo,
+              invocationNode -> isMethodUnannotated(invocationNode, codeAnnotationInfo));
+      state.context.put(checkerStateKey, checkerState);
+    }
+    return checkerState;
+  }
+
+  private CodeAnnotationInfo getCodeAnnotationInfo(VisitorState state) {
+    return getCheckerState(state).codeAnnotationInfo;
+  }
+
+  private boolean isMethodUnannotated(
+      MethodInvocationNode invocationNode, CodeAnnotationInfo codeAnnotationInfo) {
     return invocationNode == null
         || codeAnnotationInfo.isSymbolUnannotated(
             ASTHelpers.getSymbol(invocationNode.getTree()), config);
   }
 
   private boolean withinAnnotatedCode(VisitorState state) {
+    NullMarking nullMarkingForTopLevelClass = getCheckerState(state).nullMarkingForTopLevelClass;
     switch (nullMarkingForTopLevelClass) {
       case FULLY_MARKED:
         return true;
@@ -315,6 +378,7 @@ public class NullAway extends BugChecker
   }
 
   private boolean checkMarkingForPath(VisitorState state) {
+    CodeAnnotationInfo codeAnnotationInfo = getCodeAnnotationInfo(state);
     Symbol enclosingMarkableSymbol;
     TreePath path = state.getPath();
     Tree currentTree = path.getLeaf();
@@ -459,6 +523,7 @@ public class NullAway extends BugChecker
 
   @Override
   public Description matchAssignment(AssignmentTree tree, VisitorState state) {
+    CodeAnnotationInfo codeAnnotationInfo = getCodeAnnotationInfo(state);
     if (!withinAnnotatedCode(state)) {
       return Description.NO_MATCH;
     }
@@ -477,7 +542,7 @@ public class NullAway extends BugChecker
       return Description.NO_MATCH;
     }
 
-    if (Nullness.hasNullableAnnotation(assigned, config)) {
+    if (codeAnnotationInfo.hasNullableAnnotation(assigned, config)) {
       // field already annotated
       return Description.NO_MATCH;
     }
@@ -564,19 +629,20 @@ public class NullAway extends BugChecker
    * slower scan for mixed nullmarkedness code).
    */
   private void checkForMethodNullMarkedness(MethodTree tree, VisitorState state) {
+    CheckerState checkerState = getCheckerState(state);
     boolean markedMethodInUnmarkedContext = false;
     Symbol.MethodSymbol methodSymbol = ASTHelpers.getSymbol(tree);
-    switch (nullMarkingForTopLevelClass) {
+    switch (checkerState.nullMarkingForTopLevelClass) {
       case FULLY_MARKED:
         if (ASTHelpers.hasDirectAnnotationWithSimpleName(
             methodSymbol, NullabilityUtil.NULLUNMARKED_SIMPLE_NAME)) {
-          nullMarkingForTopLevelClass = NullMarking.PARTIALLY_MARKED;
+          checkerState.nullMarkingForTopLevelClass = NullMarking.PARTIALLY_MARKED;
         }
         break;
       case FULLY_UNMARKED:
         if (ASTHelpers.hasDirectAnnotationWithSimpleName(
             methodSymbol, NullabilityUtil.NULLMARKED_SIMPLE_NAME)) {
-          nullMarkingForTopLevelClass = NullMarking.PARTIALLY_MARKED;
+          checkerState.nullMarkingForTopLevelClass = NullMarking.PARTIALLY_MARKED;
           markedMethodInUnmarkedContext = true;
         }
         break;
@@ -585,7 +651,8 @@ public class NullAway extends BugChecker
             methodSymbol, NullabilityUtil.NULLMARKED_SIMPLE_NAME)) {
           // We still care here if this is a transition between @NullUnmarked and @NullMarked code,
           // within partially marked code, see checks below for markedMethodInUnmarkedContext.
-          if (!codeAnnotationInfo.isClassNullAnnotated(methodSymbol.enclClass(), config)) {
+          if (!checkerState.codeAnnotationInfo.isClassNullAnnotated(
+              methodSymbol.enclClass(), config)) {
             markedMethodInUnmarkedContext = true;
           }
         }
@@ -701,6 +768,7 @@ public class NullAway extends BugChecker
       @Nullable LambdaExpressionTree lambdaExpressionTree,
       @Nullable MemberReferenceTree memberReferenceTree,
       VisitorState state) {
+    CodeAnnotationInfo codeAnnotationInfo = getCodeAnnotationInfo(state);
     com.sun.tools.javac.util.List<VarSymbol> superParamSymbols = overriddenMethod.getParameters();
     final boolean unboundMemberRef =
         (memberReferenceTree != null)
@@ -718,7 +786,7 @@ public class NullAway extends BugChecker
     if (isOverriddenMethodAnnotated) {
       for (int i = 0; i < superParamSymbols.size(); i++) {
         overriddenMethodArgNullnessMap[i] =
-            Nullness.paramHasNullableAnnotation(overriddenMethod, i, config)
+            codeAnnotationInfo.paramHasNullableAnnotation(overriddenMethod, i, config)
                 ? Nullness.NULLABLE
                 : Nullness.NONNULL;
       }
@@ -772,7 +840,8 @@ public class NullAway extends BugChecker
           lambdaExpressionTree != null
               && NullabilityUtil.lambdaParamIsImplicitlyTyped(
                   lambdaExpressionTree.getParameters().get(methodParamInd));
-      if (!Nullness.hasNullableAnnotation(paramSymbol, config) && !implicitlyTypedLambdaParam) {
+      if (!codeAnnotationInfo.hasNullableAnnotation(paramSymbol, config)
+          && !implicitlyTypedLambdaParam) {
         final String message =
             "parameter "
                 + paramSymbol.name.toString()
@@ -808,6 +877,7 @@ public class NullAway extends BugChecker
 
   private Description checkReturnExpression(
       Tree tree, ExpressionTree retExpr, Symbol.MethodSymbol methodSymbol, VisitorState state) {
+    CodeAnnotationInfo codeAnnotationInfo = getCodeAnnotationInfo(state);
     Type returnType = methodSymbol.getReturnType();
     if (returnType.isPrimitive()) {
       // check for unboxing
@@ -821,7 +891,7 @@ public class NullAway extends BugChecker
       return Description.NO_MATCH;
     }
     if (codeAnnotationInfo.isSymbolUnannotated(methodSymbol, config)
-        || Nullness.hasNullableAnnotation(methodSymbol, config)) {
+        || codeAnnotationInfo.hasNullableAnnotation(methodSymbol, config)) {
       return Description.NO_MATCH;
     }
     if (mayBeNullExpr(state, retExpr)) {
@@ -841,6 +911,7 @@ public class NullAway extends BugChecker
 
   @Override
   public Description matchLambdaExpression(LambdaExpressionTree tree, VisitorState state) {
+    CodeAnnotationInfo codeAnnotationInfo = getCodeAnnotationInfo(state);
     if (!withinAnnotatedCode(state)) {
       return Description.NO_MATCH;
     }
@@ -906,11 +977,13 @@ public class NullAway extends BugChecker
       Symbol.MethodSymbol overridingMethod,
       @Nullable MemberReferenceTree memberReferenceTree,
       VisitorState state) {
+    CodeAnnotationInfo codeAnnotationInfo = getCodeAnnotationInfo(state);
     final boolean isOverriddenMethodAnnotated =
         !codeAnnotationInfo.isSymbolUnannotated(overriddenMethod, config);
     Nullness overriddenMethodReturnNullness =
         Nullness.NULLABLE; // Permissive default for unannotated code.
-    if (isOverriddenMethodAnnotated && !Nullness.hasNullableAnnotation(overriddenMethod, config)) {
+    if (isOverriddenMethodAnnotated
+        && !codeAnnotationInfo.hasNullableAnnotation(overriddenMethod, config)) {
       overriddenMethodReturnNullness = Nullness.NONNULL;
     }
     overriddenMethodReturnNullness =
@@ -923,7 +996,8 @@ public class NullAway extends BugChecker
           !codeAnnotationInfo.isSymbolUnannotated(overridingMethod, config);
       // Note that, for the overriding method, the permissive default is non-null.
       Nullness overridingMethodReturnNullness = Nullness.NONNULL;
-      if (isOverridingMethodAnnotated && Nullness.hasNullableAnnotation(overridingMethod, config)) {
+      if (isOverridingMethodAnnotated
+          && codeAnnotationInfo.hasNullableAnnotation(overridingMethod, config)) {
         overridingMethodReturnNullness = Nullness.NULLABLE;
       }
       // We must once again check the handler chain, to allow it to update nullability of the
@@ -934,7 +1008,7 @@ public class NullAway extends BugChecker
               overridingMethod, state, isOverridingMethodAnnotated, overridingMethodReturnNullness);
       if (overridingMethodReturnNullness.equals(Nullness.NULLABLE)
           && (memberReferenceTree == null
-              || getComputedNullness(memberReferenceTree).equals(Nullness.NULLABLE))) {
+              || getComputedNullness(memberReferenceTree, state).equals(Nullness.NULLABLE))) {
         String message;
         if (memberReferenceTree != null) {
           message =
@@ -979,6 +1053,7 @@ public class NullAway extends BugChecker
   }
 
   private Description checkForReadBeforeInit(ExpressionTree tree, VisitorState state) {
+    CheckerState checkerState = getCheckerState(state);
     // do a bunch of filtering.  first, filter out anything outside an initializer
     TreePath path = state.getPath();
     TreePath enclosingBlockPath;
@@ -1029,7 +1104,7 @@ public class NullAway extends BugChecker
 
     // check that the field might actually be problematic to read
     FieldInitEntities entities =
-        castToNonNull(class2Entities.get(enclosingClassSymbol(enclosingBlockPath)));
+        castToNonNull(checkerState.class2Entities.get(enclosingClassSymbol(enclosingBlockPath)));
     if (!(entities.nonnullInstanceFields().contains(symbol)
         || entities.nonnullStaticFields().contains(symbol))) {
       // field is either nullable or initialized at declaration
@@ -1055,6 +1130,7 @@ public class NullAway extends BugChecker
 
   private boolean relevantInitializerMethodOrBlock(
       TreePath enclosingBlockPath, VisitorState state) {
+    CheckerState checkerState = getCheckerState(state);
     Tree methodLambdaOrBlock = enclosingBlockPath.getLeaf();
     if (methodLambdaOrBlock instanceof LambdaExpressionTree) {
       return false;
@@ -1070,19 +1146,21 @@ public class NullAway extends BugChecker
       // might not be the case with @NullMarked methods inside @NullUnmarked classes (note that,
       // in those cases, we won't even have a populated class2Entities map). We skip this check if
       // we are not inside a @NullMarked/annotated *class*:
-      if (nullMarkingForTopLevelClass == NullMarking.PARTIALLY_MARKED
-          && !codeAnnotationInfo.isClassNullAnnotated(enclClassSymbol, config)) {
+      if (checkerState.nullMarkingForTopLevelClass == NullMarking.PARTIALLY_MARKED
+          && !checkerState.codeAnnotationInfo.isClassNullAnnotated(enclClassSymbol, config)) {
         return false;
       }
 
       if (ASTHelpers.getSymbol(methodTree).isStatic()) {
         Set<MethodTree> staticInitializerMethods =
-            castToNonNull(class2Entities.get(enclClassSymbol)).staticInitializerMethods();
+            castToNonNull(checkerState.class2Entities.get(enclClassSymbol))
+                .staticInitializerMethods();
         return staticInitializerMethods.size() == 1
             && staticInitializerMethods.contains(methodTree);
       } else {
         Set<MethodTree> instanceInitializerMethods =
-            castToNonNull(class2Entities.get(enclClassSymbol)).instanceInitializerMethods();
+            castToNonNull(checkerState.class2Entities.get(enclClassSymbol))
+                .instanceInitializerMethods();
         return instanceInitializerMethods.size() == 1
             && instanceInitializerMethods.contains(methodTree);
       }
@@ -1121,18 +1199,17 @@ public class NullAway extends BugChecker
   private boolean fieldAlwaysInitializedBeforeRead(
       Symbol symbol, TreePath pathToRead, VisitorState state, TreePath enclosingBlockPath) {
     AccessPathNullnessAnalysis nullnessAnalysis = getNullnessAnalysis(state);
-    Set<Element> nonnullFields;
     @SuppressWarnings("ASTHelpersSuggestions") // remove once we require EP 2.16 or greater
     boolean isStatic = symbol.isStatic();
     if (isStatic) {
-      nonnullFields = nullnessAnalysis.getNonnullStaticFieldsBefore(pathToRead, state.context);
-    } else {
-      nonnullFields = new LinkedHashSet<>();
-      nonnullFields.addAll(
-          nullnessAnalysis.getNonnullFieldsOfReceiverBefore(pathToRead, state.context));
-      nonnullFields.addAll(safeInitByCalleeBefore(pathToRead, state, enclosingBlockPath));
+      return nullnessAnalysis
+          .getNonnullStaticFieldsBefore(pathToRead, state.context)
+          .contains(symbol);
     }
-    return nonnullFields.contains(symbol);
+    return safeInitByCalleeBefore(pathToRead, state, enclosingBlockPath).contains(symbol)
+        || nullnessAnalysis
+            .getNonnullFieldsOfReceiverBefore(pathToRead, state.context)
+            .contains(symbol);
   }
 
   /**
@@ -1140,22 +1217,33 @@ public class NullAway extends BugChecker
    * (pathToRead) is invoked. See <a
    * href="https://github.com/uber/NullAway/wiki/Error-Messages#initializer-method-does-not-guarantee-nonnull-field-is-initialized--nonnull-field--not-initialized">the
    * docs</a> for what is considered a safe initializer method.
+   *
+   * <p>The fields initialized by the callees of each initializer method or block are computed once,
+   * on the first read, and indexed by statement position for all other reads in that method or
+   * block. See {@link SafeInitCalleeIndex}.
    */
   private ImmutableSet<Element> safeInitByCalleeBefore(
       TreePath pathToRead, VisitorState state, TreePath enclosingBlockPath) {
-    Set<Element> safeInitMethods = new LinkedHashSet<>();
+    CheckerState checkerState = getCheckerState(state);
     Tree enclosingBlockOrMethod = enclosingBlockPath.getLeaf();
     if (enclosingBlockOrMethod instanceof VariableTree) {
       return ImmutableSet.of();
     }
-    ImmutableSet.Builder<Element> resultBuilder = ImmutableSet.builder();
+    SafeInitCalleeIndex index = checkerState.initTree2SafeInitCallees.get(enclosingBlockOrMethod);
+    if (index == null) {
+      index = buildSafeInitCalleeIndex(state, enclosingBlockPath);
+      checkerState.initTree2SafeInitCallees.put(enclosingBlockOrMethod, index);
+    }
+    return index.initializedBefore(getStartPos((JCTree) pathToRead.getLeaf()));
+  }
+
+  private SafeInitCalleeIndex buildSafeInitCalleeIndex(
+      VisitorState state, TreePath enclosingBlockPath) {
+    Tree enclosingBlockOrMethod = enclosingBlockPath.getLeaf();
     BlockTree blockTree =
         enclosingBlockOrMethod instanceof BlockTree
             ? (BlockTree) enclosingBlockOrMethod
             : ((MethodTree) enclosingBlockOrMethod).getBody();
-    List<? extends StatementTree> statements = blockTree.getStatements();
-    Tree readExprTree = pathToRead.getLeaf();
-    int readStartPos = getStartPos((JCTree) readExprTree);
     TreePath classTreePath = enclosingBlockPath;
     // look for the parent ClassTree node, which represents the enclosing class / enum / interface
     while (!(classTreePath.getLeaf() instanceof ClassTree)) {
@@ -1167,38 +1255,106 @@ public class NullAway extends BugChecker
       }
     }
     Symbol.ClassSymbol classSymbol = ASTHelpers.getSymbol((ClassTree) classTreePath.getLeaf());
-    for (int i = 0; i < statements.size(); i++) {
-      StatementTree curStmt = statements.get(i);
-      if (getStartPos((JCTree) curStmt) <= readStartPos) {
-        Element privMethodElem = getInvokeOfSafeInitMethod(curStmt, classSymbol, state);
-        if (privMethodElem != null) {
-          safeInitMethods.add(privMethodElem);
-        }
-        // Hack: Handling try{...}finally{...} statement, see getSafeInitMethods
-        if (curStmt.getKind().equals(Tree.Kind.TRY)) {
-          TryTree tryTree = (TryTree) curStmt;
-          // ToDo: Should we check initialization inside tryTree.getResources ? What is the scope of
-          // that initialization?
-          if (tryTree.getCatches().size() == 0) {
-            if (tryTree.getBlock() != null) {
-              resultBuilder.addAll(
-                  safeInitByCalleeBefore(
-                      pathToRead, state, new TreePath(enclosingBlockPath, tryTree.getBlock())));
-            }
-            if (tryTree.getFinallyBlock() != null) {
-              resultBuilder.addAll(
-                  safeInitByCalleeBefore(
-                      pathToRead,
-                      state,
-                      new TreePath(enclosingBlockPath, tryTree.getFinallyBlock())));
-            }
+    List<Integer> startPositions = new ArrayList<>();
+    List<Element> safeInitMethods = new ArrayList<>();
+    collectSafeInitCallees(blockTree, classSymbol, state, startPositions, safeInitMethods);
+    Trees trees = getTreesInstance(state);
+    AccessPathNullnessAnalysis nullnessAnalysis = getNullnessAnalysis(state);
+    List<ImmutableSet<Element>> initializedFields = new ArrayList<>(safeInitMethods.size());
+    ImmutableSet.Builder<Element> resultBuilder = ImmutableSet.builder();
+    for (Element safeInitMethod : safeInitMethods) {
+      addGuaranteedNonNullFromInvokes(
+          state, trees, ImmutableSet.of(safeInitMethod), nullnessAnalysis, resultBuilder);
+      initializedFields.add(resultBuilder.build());
+    }
+    return new SafeInitCalleeIndex(startPositions, initializedFields);
+  }
+
+  /**
+   * Collects the invocations of safe init methods among the statements of a block, in order.
+   *
+   * @param blockTree the block
+   * @param classSymbol the class enclosing the block
+   * @param state visitor state
+   * @param startPositions receives the start position of each statement invoking a safe init method
+   * @param safeInitMethods receives the safe init method invoked by each such statement
+   */
+  private void collectSafeInitCallees(
+      BlockTree blockTree,
+      Symbol.ClassSymbol classSymbol,
+      VisitorState state,
+      List<Integer> startPositions,
+      List<Element> safeInitMethods) {
+    for (StatementTree curStmt : blockTree.getStatements()) {
+      Element privMethodElem = getInvokeOfSafeInitMethod(curStmt, classSymbol, state);
+      if (privMethodElem != null) {
+        startPositions.add(getStartPos((JCTree) curStmt));
+        safeInitMethods.add(privMethodElem);
+      }
+      // Hack: Handling try{...}finally{...} statement, see getSafeInitMethods
+      if (curStmt.getKind().equals(Tree.Kind.TRY)) {
+        TryTree tryTree = (TryTree) curStmt;
+        // ToDo: Should we check initialization inside tryTree.getResources ? What is the scope of
+        // that initialization?
+        if (tryTree.getCatches().size() == 0) {
+          if (tryTree.getBlock() != null) {
+            collectSafeInitCallees(
+                tryTree.getBlock(), classSymbol, state, startPositions, safeInitMethods);
+          }
+          if (tryTree.getFinallyBlock() != null) {
+            collectSafeInitCallees(
+                tryTree.getFinallyBlock(), classSymbol, state, startPositions, safeInitMethods);
           }
         }
       }
     }
-    addGuaranteedNonNullFromInvokes(
-        state, getTreesInstance(state), safeInitMethods, getNullnessAnalysis(state), resultBuilder);
-    return resultBuilder.build();
+  }
+
+  /**
+   * The fields initialized by the safe init methods invoked in an initializer method or block, as
+   * top-level statements or inside {@code try} blocks without {@code catch}. A field read is
+   * preceded by all such invocations whose statement starts before the read, so the fields
+   * initialized before any read are found by a binary search over the start positions of the
+   * statements.
+   */
+  private static final class SafeInitCalleeIndex {
+
+    /** Start positions of the statements invoking safe init methods, in increasing order. */
+    private final int[] startPositions;
+
+    /**
+     * For the statement at each index of {@link #startPositions}, the fields initialized by the
+     * safe init methods invoked by this statement and all statements before it.
+     */
+    private final List<ImmutableSet<Element>> initializedFields;
+
+    SafeInitCalleeIndex(
+        List<Integer> startPositions, List<ImmutableSet<Element>> initializedFields) {
+      this.startPositions = Ints.toArray(startPositions);
+      this.initializedFields = initializedFields;
+    }
+
+    /**
+     * Returns the fields initialized by safe init methods invoked by statements starting at or
+     * before a position.
+     *
+     * @param readStartPos start position of a field read
+     * @return the fields initialized before the read
+     */
+    ImmutableSet<Element> initializedBefore(int readStartPos) {
+      // index of the last statement starting at or before the read
+      int index = Arrays.binarySearch(startPositions, readStartPos);
+      if (index < 0) {
+        index = -index - 2;
+      } else {
+        // several statements can only start at the same position if they are nested, so take the
+        // last one
+        while (index + 1 < startPositions.length && startPositions[index + 1] == readStartPos) {
+          index++;
+        }
+      }
+      return index < 0 ? ImmutableSet.of() : initializedFields.get(index);
+    }
   }
 
   private int getStartPos(JCTree tree) {
@@ -1214,11 +1370,12 @@ public class NullAway extends BugChecker
    */
   private boolean fieldInitializedByPreviousInitializer(
       Symbol fieldSymbol, TreePath initTreePath, VisitorState state) {
+    CheckerState checkerState = getCheckerState(state);
     TreePath enclosingClassPath = initTreePath.getParentPath();
     ClassTree enclosingClass = (ClassTree) enclosingClassPath.getLeaf();
     ClassSymbol classSymbol = ASTHelpers.getSymbol(enclosingClass);
     Multimap<Tree, Element> tree2Init =
-        initTree2PrevFieldInit.computeIfAbsent(
+        checkerState.initTree2PrevFieldInit.computeIfAbsent(
             classSymbol, sym -> computeTree2Init(enclosingClassPath, state));
     return tree2Init.containsEntry(initTreePath.getLeaf(), fieldSymbol);
   }
@@ -1231,6 +1388,7 @@ public class NullAway extends BugChecker
    */
   private Multimap<Tree, Element> computeTree2Init(
       TreePath enclosingClassPath, VisitorState state) {
+    CheckerState checkerState = getCheckerState(state);
     ClassTree enclosingClass = (ClassTree) enclosingClassPath.getLeaf();
     ImmutableMultimap.Builder<Tree, Element> builder = ImmutableMultimap.builder();
     // NOTE: this set includes both instance and static fields
@@ -1266,11 +1424,11 @@ public class NullAway extends BugChecker
     // all the initializer blocks have run before any code inside a constructor
     constructors.stream().forEach((c) -> builder.putAll(c, initThusFar));
     Symbol.ClassSymbol classSymbol = ASTHelpers.getSymbol(enclosingClass);
-    FieldInitEntities entities = castToNonNull(class2Entities.get(classSymbol));
+    FieldInitEntities entities = castToNonNull(checkerState.class2Entities.get(classSymbol));
     if (entities.instanceInitializerMethods().size() == 1) {
       MethodTree initMethod = entities.instanceInitializerMethods().iterator().next();
       // collect the fields that may not be initialized by *some* constructor NC
-      Set<Symbol> constructorUninitSymbols = class2ConstructorUninit.get(classSymbol);
+      Set<Symbol> constructorUninitSymbols = checkerState.class2ConstructorUninit.get(classSymbol);
       // fields initialized after constructors is initThusFar + (nonNullFields - constructorUninit)
       Sets.SetView<Element> initAfterConstructors =
           Sets.union(
@@ -1379,28 +1537,26 @@ public class NullAway extends BugChecker
    * @return true iff this inner class is @NullMarked and the top-level class unmarked or vice
    *     versa.
    */
-  private boolean classAnnotationIntroducesPartialMarking(Symbol.ClassSymbol classSymbol) {
-    return (nullMarkingForTopLevelClass == NullMarking.FULLY_UNMARKED
+  private boolean classAnnotationIntroducesPartialMarking(
+      Symbol.ClassSymbol classSymbol, VisitorState state) {
+    CheckerState checkerState = getCheckerState(state);
+    return (checkerState.nullMarkingForTopLevelClass == NullMarking.FULLY_UNMARKED
             && ASTHelpers.hasDirectAnnotationWithSimpleName(
                 classSymbol, NullabilityUtil.NULLMARKED_SIMPLE_NAME))
-        || (nullMarkingForTopLevelClass == NullMarking.FULLY_MARKED
+        || (checkerState.nullMarkingForTopLevelClass == NullMarking.FULLY_MARKED
             && ASTHelpers.hasDirectAnnotationWithSimpleName(
                 classSymbol, NullabilityUtil.NULLUNMARKED_SIMPLE_NAME));
   }
 
   @Override
   public Description matchClass(ClassTree tree, VisitorState state) {
-    // Ensure codeAnnotationInfo is initialized here since it requires access to the Context,
-    // which is not available in the constructor
-    if (codeAnnotationInfo == null) {
-      codeAnnotationInfo = CodeAnnotationInfo.instance(state.context);
-    }
+    // The state is specific to the context of the current compilation, so this checker object may
+    // be used by concurrent compilations, each on its own thread
+    CheckerState checkerState = getCheckerState(state);
     // Check if the class is excluded according to the filter
     // if so, set the flag to match within the class to false
     // NOTE: for this mechanism to work, we rely on the enclosing ClassTree
-    // always being visited before code within that class.  We also
-    // assume that a single checker object is not being
-    // used from multiple threads
+    // always being visited before code within that class.
     // We don't want to update the flag for nested classes.
     // Ideally we would keep a stack of flags to handle nested types,
     // but this is not easy within the Error Prone APIs.
@@ -1416,22 +1572,28 @@ public class NullAway extends BugChecker
       // nested entity has a contradicting annotation, at that point we update the marking level to
       // PARTIALLY_MARKED, which will increase checking overhead for the remainder of the top-level
       // class
-      nullMarkingForTopLevelClass =
-          isExcludedClass(classSymbol) ? NullMarking.FULLY_UNMARKED : NullMarking.FULLY_MARKED;
+      checkerState.nullMarkingForTopLevelClass =
+          isExcludedClass(classSymbol, state)
+              ? NullMarking.FULLY_UNMARKED
+              : NullMarking.FULLY_MARKED;
       // since we are processing a new top-level class, invalidate any cached
-      // results for previous classes
+      // results for previous classes.  Dataflow results are kept until we move on to a
+      // different compilation unit, as they may still be queried while checking this one.
       handler.onMatchTopLevelClass(this, tree, state, classSymbol);
-      getNullnessAnalysis(state).invalidateCaches();
-      initTree2PrevFieldInit.clear();
-      class2Entities.clear();
-      class2ConstructorUninit.clear();
-      computedNullnessMap.clear();
+      getNullnessAnalysis(state).enterCompilationUnit(state.getPath().getCompilationUnit());
+      if (config.serializationIsActive()) {
+        Serializer serializer = config.getSerializationConfig().getSerializer();
+        if (serializer != null) {
+          serializer.listenForCompilationEnd(state.context);
+        }
+      }
+      checkerState.clear();
       EnclosingEnvironmentNullness.instance(state.context).clear();
-    } else if (classAnnotationIntroducesPartialMarking(classSymbol)) {
+    } else if (classAnnotationIntroducesPartialMarking(classSymbol, state)) {
       // Handle the case where the top-class is unannotated, but there is a @NullMarked annotation
       // on a nested class, or, conversely the top-level is annotated but there is a @NullUnmarked
       // annotation on a nested class.
-      nullMarkingForTopLevelClass = NullMarking.PARTIALLY_MARKED;
+      checkerState.nullMarkingForTopLevelClass = NullMarking.PARTIALLY_MARKED;
     }
     if (withinAnnotatedCode(state)) {
       // we need to update the environment before checking field initialization, as the latter
@@ -1578,6 +1740,7 @@ public class NullAway extends BugChecker
       VisitorState state,
       Symbol.MethodSymbol methodSymbol,
       List<? extends ExpressionTree> actualParams) {
+    CodeAnnotationInfo codeAnnotationInfo = getCodeAnnotationInfo(state);
     List<VarSymbol> formalParams = methodSymbol.getParameters();
 
     if (formalParams.size() != actualParams.size()
@@ -1615,7 +1778,7 @@ public class NullAway extends BugChecker
           // we need to call paramHasNullableAnnotation here since the invoked method may be defined
           // in a class file
           argumentPositionNullness[i] =
-              Nullness.paramHasNullableAnnotation(methodSymbol, i, config)
+              codeAnnotationInfo.paramHasNullableAnnotation(methodSymbol, i, config)
                   ? Nullness.NULLABLE
                   : Nullness.NONNULL;
         }
@@ -1732,9 +1895,10 @@ public class NullAway extends BugChecker
    * @param state visitor state
    */
   private void checkFieldInitialization(ClassTree tree, VisitorState state) {
+    CheckerState checkerState = getCheckerState(state);
     FieldInitEntities entities = collectEntities(tree, state);
     Symbol.ClassSymbol classSymbol = ASTHelpers.getSymbol(tree);
-    class2Entities.put(classSymbol, entities);
+    checkerState.class2Entities.put(classSymbol, entities);
     // set of all non-null instance fields f such that *some* constructor does not initialize f
     Set<Symbol> notInitializedInConstructors;
     SetMultimap<MethodTree, Symbol> constructorInitInfo;
@@ -1751,7 +1915,7 @@ public class NullAway extends BugChecker
             Sets.filter(
                 notInitializedInConstructors,
                 symbol -> !symbol.getModifiers().contains(Modifier.FINAL)));
-    class2ConstructorUninit.putAll(classSymbol, notInitializedInConstructors);
+    checkerState.class2ConstructorUninit.putAll(classSymbol, notInitializedInConstructors);
     Set<Symbol> notInitializedAtAll =
         notAssignedInAnyInitializer(entities, notInitializedInConstructors, state);
     SetMultimap<Element, Element> errorFieldsForInitializer = LinkedHashMultimap.create();
@@ -2168,7 +2332,8 @@ public class NullAway extends BugChecker
   }
 
   // classSymbol must be a top-level class
-  private boolean isExcludedClass(Symbol.ClassSymbol classSymbol) {
+  private boolean isExcludedClass(Symbol.ClassSymbol classSymbol, VisitorState state) {
+    CodeAnnotationInfo codeAnnotationInfo = getCodeAnnotationInfo(state);
     String className = classSymbol.getQualifiedName().toString();
     if (config.isExcludedClass(className)) {
       return true;
@@ -2296,11 +2461,12 @@ public class NullAway extends BugChecker
 
   private boolean mayBeNullMethodCall(
       VisitorState state, ExpressionTree expr, Symbol.MethodSymbol exprSymbol) {
+    CodeAnnotationInfo codeAnnotationInfo = getCodeAnnotationInfo(state);
     boolean exprMayBeNull = true;
     if (codeAnnotationInfo.isSymbolUnannotated(exprSymbol, config)) {
       exprMayBeNull = false;
     }
-    if (!Nullness.hasNullableAnnotation(exprSymbol, config)) {
+    if (!codeAnnotationInfo.hasNullableAnnotation(exprSymbol, config)) {
       exprMayBeNull = false;
     }
     exprMayBeNull = handler.onOverrideMayBeNullExpr(this, expr, state, exprMayBeNull);
@@ -2319,10 +2485,12 @@ public class NullAway extends BugChecker
   }
 
   public AccessPathNullnessAnalysis getNullnessAnalysis(VisitorState state) {
-    return AccessPathNullnessAnalysis.instance(state, nonAnnotatedMethod, config, this.handler);
+    return AccessPathNullnessAnalysis.instance(
+        state, getCheckerState(state).nonAnnotatedMethod, config, this.handler);
   }
 
   private boolean mayBeNullFieldAccess(VisitorState state, ExpressionTree expr, Symbol exprSymbol) {
+    CodeAnnotationInfo codeAnnotationInfo = getCodeAnnotationInfo(state);
     boolean exprMayBeNull = true;
     if (!NullabilityUtil.mayBeNullFieldFromType(exprSymbol, config, codeAnnotationInfo)) {
       exprMayBeNull = false;
@@ -2422,10 +2590,11 @@ public class NullAway extends BugChecker
    * NonNull is not clear from looking at annotations.
    *
    * @param e an expression
+   * @param state visitor state
    * @return computed nullness for e, if any, else Nullable
    */
-  public Nullness getComputedNullness(ExpressionTree e) {
-    return computedNullnessMap.getOrDefault(e, Nullness.NULLABLE);
+  public Nullness getComputedNullness(ExpressionTree e, VisitorState state) {
+    return getCheckerState(state).computedNullnessMap.getOrDefault(e, Nullness.NULLABLE);
   }
 
   /**
@@ -2436,9 +2605,10 @@ public class NullAway extends BugChecker
    *
    * @param e any expression in the AST.
    * @param nullness the added nullness information.
+   * @param state visitor state.
    */
-  public void setComputedNullness(ExpressionTree e, Nullness nullness) {
-    computedNullnessMap.put(e, nullness);
+  public void setComputedNullness(ExpressionTree e, Nullness nullness, VisitorState state) {
+    getCheckerState(state).computedNullnessMap.put(e, nullness);
   }
 
   @AutoValue
@@ -0,0 +1,46 @@
+package com.uber.nullaway;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+import javax.annotation.Nullable;
+
+/**
+ * The version of NullAway, as recorded by the build in the {@code version.properties} resource
+ * next to this class.
+ */
+public final class NullAwayVersion {
+
+  private static final String RESOURCE = "version.properties";
+
+  @Nullable private static final String VERSION = readVersion();
+
+  private NullAwayVersion() {}
+
+  /**
+   * Gets the version of NullAway, e.g. {@code 0.10.10}.
+   *
+   * @return the version, or {@code null} if it is unknown, e.g. if the classes were not built with
+   *     their resources
+   */
+  @Nullable
+  public static String get() {
+    return VERSION;
+  }
+
+  @Nullable
+  private static String readVersion() {
+    try (InputStream in = NullAwayVersion.class.getResourceAsStream(RESOURCE)) {
+      if (in == null) {
+        return null;
+      }
+      Properties properties = new Properties();
+      properties.load(in);
+      String version = properties.getProperty("version");
+      // the placeholder is left as is if the build did not expand the resource
+      return version == null || version.isEmpty() || version.contains("${") ? null : version;
+    } catch (IOException e) {
+      return null;
+    }
+  }
+}
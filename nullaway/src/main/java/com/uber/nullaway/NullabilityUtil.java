@@ -343,7 +343,7 @@ public class NullabilityUtil {
     return !(symbol.getSimpleName().toString().equals("class")
             || symbol.isEnum()
             || codeAnnotationInfo.isSymbolUnannotated(symbol, config))
-        && Nullness.hasNullableAnnotation(symbol, config);
+        && codeAnnotationInfo.hasNullableAnnotation(symbol, config);
   }
 
   /**
@@ -173,7 +173,7 @@ public enum Nullness implements AbstractValue<Nullness> {
    * @param annotName annotation name
    * @return true if we treat annotName as a <code>@NonNull</code> annotation, false otherwise
    */
-  private static boolean isNonNullAnnotation(String annotName, Config config) {
+  static boolean isNonNullAnnotation(String annotName, Config config) {
     return annotName.endsWith(".NonNull")
         || annotName.endsWith(".NotNull")
         || annotName.endsWith(".Nonnull")
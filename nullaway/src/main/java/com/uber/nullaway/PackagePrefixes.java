@@ -0,0 +1,164 @@
+package com.uber.nullaway;
+
+import com.google.common.collect.ImmutableSet;
+import com.sun.tools.javac.code.Symbol;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import javax.annotation.Nullable;
+import javax.lang.model.element.ElementKind;
+
+/**
+ * A set of package prefixes, as passed to {@code -XepOpt:NullAway:AnnotatedPackages} or {@code
+ * -XepOpt:NullAway:UnannotatedSubPackages}, matching any class whose fully qualified name is equal
+ * to one of the prefixes or starts with one of the prefixes followed by a dot.
+ *
+ * <p>Prefixes are stored in a trie of name segments, so that a class is matched in time
+ * proportional to the depth of its package rather than to the number of prefixes. For class
+ * symbols, the trie node reached by the segments of the enclosing package is memoized per package
+ * name, leaving a single lookup per class.
+ *
+ * <p>Prefixes were historically compiled into a regular expression, so prefixes containing any
+ * character other than letters, digits, underscores and dots were interpreted as regular
+ * expressions. Such sets of prefixes are still matched using the equivalent regular expression.
+ */
+final class PackagePrefixes {
+
+  /** Prefixes which are always matched as name segments, as they have no regex metacharacters. */
+  private static final Pattern PLAIN_PREFIX = Pattern.compile("[\\w.]*");
+
+  /** A node of the trie, for the name segments leading to it. */
+  private static final class Node {
+    final Map<String, Node> children = new HashMap<>();
+
+    /** Whether the segments leading to this node form one of the prefixes. */
+    boolean isPrefix;
+  }
+
+  /** State of packages some of whose enclosing packages are one of the prefixes. */
+  private static final Node MATCHES_ALL = new Node();
+
+  /** State of packages whose classes match none of the prefixes. */
+  private static final Node MATCHES_NONE = new Node();
+
+  private final Node root = new Node();
+
+  /** Regular expression for sets of prefixes which are not plain names, otherwise null. */
+  @Nullable private final Pattern pattern;
+
+  /**
+   * Trie node reached by the segments of each package, or one of the two states above, keyed by the
+   * qualified package name rather than by symbol, as the configuration may be shared between
+   * compilations. Concurrent, as these compilations may run concurrently.
+   */
+  private final Map<String, Node> packageStates = new ConcurrentHashMap<>();
+
+  private PackagePrefixes(ImmutableSet<String> prefixes, @Nullable Pattern pattern) {
+    this.pattern = pattern;
+    if (pattern == null) {
+      for (String prefix : prefixes) {
+        if (prefix.isEmpty()) {
+          // The regex would only match names starting with a dot, i.e. no class name
+          continue;
+        }
+        Node node = root;
+        // Keep trailing empty segments, so that e.g. "com.foo." matches nothing, as with the regex
+        for (String segment : prefix.split("\\.", -1)) {
+          node = node.children.computeIfAbsent(segment, s -> new Node());
+        }
+        node.isPrefix = true;
+      }
+    }
+  }
+
+  /**
+   * Creates a set of package prefixes.
+   *
+   * @param prefixes the prefixes, e.g. {@code com.uber}
+   * @return the set of prefixes
+   */
+  static PackagePrefixes of(ImmutableSet<String> prefixes) {
+    for (String prefix : prefixes) {
+      if (!PLAIN_PREFIX.matcher(prefix).matches()) {
+        return new PackagePrefixes(prefixes, AbstractConfig.getPackagePattern(prefixes));
+      }
+    }
+    return new PackagePrefixes(prefixes, null);
+  }
+
+  /**
+   * Checks whether a class matches one of the prefixes.
+   *
+   * @param className fully qualified name of the class
+   * @return true iff the name is equal to a prefix or starts with a prefix followed by a dot
+   */
+  boolean matches(String className) {
+    if (pattern != null) {
+      return pattern.matcher(className).matches();
+    }
+    Node node = root;
+    int start = 0;
+    while (true) {
+      int end = className.indexOf('.', start);
+      node = node.children.get(className.substring(start, end == -1 ? className.length() : end));
+      if (node == null) {
+        return false;
+      }
+      if (node.isPrefix) {
+        return true;
+      }
+      if (end == -1) {
+        return false;
+      }
+      start = end + 1;
+    }
+  }
+
+  /**
+   * Checks whether a top-level class matches one of the prefixes, memoizing the result of the
+   * enclosing package.
+   *
+   * @param classSymbol the class
+   * @return same as {@link #matches(String)} for the fully qualified name of the class
+   */
+  boolean matches(Symbol.ClassSymbol classSymbol) {
+    if (pattern != null || classSymbol.owner.getKind() != ElementKind.PACKAGE) {
+      return matches(classSymbol.getQualifiedName().toString());
+    }
+    Node state = getPackageState((Symbol.PackageSymbol) classSymbol.owner);
+    if (state == MATCHES_ALL || state == MATCHES_NONE) {
+      return state == MATCHES_ALL;
+    }
+    Node node = state.children.get(classSymbol.getSimpleName().toString());
+    return node != null && node.isPrefix;
+  }
+
+  private Node getPackageState(Symbol.PackageSymbol packageSymbol) {
+    String packageName = packageSymbol.getQualifiedName().toString();
+    Node state = packageStates.get(packageName);
+    if (state == null) {
+      state = computePackageState(packageName);
+      packageStates.put(packageName, state);
+    }
+    return state;
+  }
+
+  private Node computePackageState(String packageName) {
+    Node node = root;
+    if (packageName.isEmpty()) {
+      // the unnamed package
+      return node;
+    }
+    for (String segment : packageName.split("\\.", -1)) {
+      node = node.children.get(segment);
+      if (node == null) {
+        return MATCHES_NONE;
+      }
+      if (node.isPrefix) {
+        return MATCHES_ALL;
+      }
+    }
+    return node;
+  }
+}
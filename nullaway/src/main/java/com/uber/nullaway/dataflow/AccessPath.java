@@ -37,7 +37,9 @@ import com.sun.tools.javac.code.Type;
 import com.uber.nullaway.NullabilityUtil;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import javax.annotation.Nullable;
@@ -69,6 +71,10 @@ import org.checkerframework.nullaway.javacutil.TreeUtils;
  * x.f().g.h([int_expr|string_expr]) in general.
  *
  * <p>We do not allow array accesses in access paths for the moment.
+ *
+ * <p>Access paths built from CFG nodes are hash-consed through the {@link AccessPathContext}, so
+ * equal paths built in the same context are usually the same instance, and {@link #equals(Object)}
+ * succeeds on the identity check. Hash codes are computed once, on construction.
  */
 public final class AccessPath implements MapKey {
 
@@ -109,6 +115,8 @@ public final class AccessPath implements MapKey {
    */
   @Nullable private final MapKey mapGetArg;
 
+  private final int hashCode;
+
   private AccessPath(@Nullable Element root, ImmutableList<AccessPathElement> elements) {
     this(root, elements, null);
   }
@@ -120,6 +128,11 @@ public final class AccessPath implements MapKey {
     this.root = root;
     this.elements = elements;
     this.mapGetArg = mapGetArg;
+    int result = 1;
+    result = 31 * result + (root != null ? root.hashCode() : 0);
+    result = 31 * result + elements.hashCode();
+    result = 31 * result + (mapGetArg != null ? mapGetArg.hashCode() : 0);
+    this.hashCode = result;
   }
 
   /**
@@ -132,6 +145,17 @@ public final class AccessPath implements MapKey {
     return new AccessPath(node.getElement(), ImmutableList.of());
   }
 
+  /**
+   * Construct the access path of a local, reusing the canonical instance from {@code apContext}.
+   *
+   * @param node the local
+   * @param apContext the current access path context information
+   * @return access path representing the local
+   */
+  public static AccessPath fromLocal(LocalVariableNode node, AccessPathContext apContext) {
+    return apContext.localAccessPath(node.getElement());
+  }
+
   /**
    * Construct the access path of a variable declaration.
    *
@@ -143,6 +167,18 @@ public final class AccessPath implements MapKey {
     return new AccessPath(elem, ImmutableList.of());
   }
 
+  /**
+   * Construct the access path of a variable declaration, reusing the canonical instance from
+   * {@code apContext}.
+   *
+   * @param node the variable declaration
+   * @param apContext the current access path context information
+   * @return access path representing the variable declaration
+   */
+  static AccessPath fromVarDecl(VariableDeclarationNode node, AccessPathContext apContext) {
+    return apContext.localAccessPath(TreeUtils.elementFromDeclaration(node.getTree()));
+  }
+
   /**
    * Construct the access path of a field access.
    *
@@ -158,7 +194,7 @@ public final class AccessPath implements MapKey {
 
   @Nullable
   private static AccessPath fromNodeAndContext(Node node, AccessPathContext apContext) {
-    return buildAccessPathRecursive(node, new ArrayDeque<>(), apContext, null);
+    return buildAccessPath(node, new ArrayDeque<>(), apContext, null);
   }
 
   /**
@@ -211,7 +247,7 @@ public final class AccessPath implements MapKey {
       Node base, AccessPathElement apElement, AccessPathContext apContext) {
     ArrayDeque<AccessPathElement> elements = new ArrayDeque<>();
     elements.push(apElement);
-    return buildAccessPathRecursive(base, elements, apContext, null);
+    return buildAccessPath(base, elements, apContext, null);
   }
 
   /**
@@ -309,7 +345,7 @@ public final class AccessPath implements MapKey {
     }
     MethodAccessNode target = node.getTarget();
     Node receiver = stripCasts(target.getReceiver());
-    return buildAccessPathRecursive(receiver, new ArrayDeque<>(), apContext, mapKey);
+    return buildAccessPath(receiver, new ArrayDeque<>(), apContext, mapKey);
   }
 
   /**
@@ -358,6 +394,25 @@ public final class AccessPath implements MapKey {
     return false;
   }
 
+  /**
+   * Builds an AccessPath from a CFG node, and returns its canonical instance.
+   *
+   * @param node the CFG node
+   * @param elements elements to append to the final access path.
+   * @param apContext context information, used to handle cases with constant arguments
+   * @param mapKey map key to be used as the map-get argument, or {@code null} if there is no key
+   * @return the final access path
+   */
+  @Nullable
+  private static AccessPath buildAccessPath(
+      Node node,
+      ArrayDeque<AccessPathElement> elements,
+      AccessPathContext apContext,
+      @Nullable MapKey mapKey) {
+    AccessPath result = buildAccessPathRecursive(node, elements, apContext, mapKey);
+    return result == null ? null : apContext.intern(result);
+  }
+
   /**
    * A helper function that recursively builds an AccessPath from a CFG node.
    *
@@ -499,7 +554,7 @@ public final class AccessPath implements MapKey {
       Node mapNode, LocalVariableNode iterVar, AccessPathContext apContext) {
     IteratorContentsKey iterContentsKey =
         new IteratorContentsKey((VariableElement) iterVar.getElement());
-    return buildAccessPathRecursive(mapNode, new ArrayDeque<>(), apContext, iterContentsKey);
+    return buildAccessPath(mapNode, new ArrayDeque<>(), apContext, iterContentsKey);
   }
 
   /**
@@ -519,18 +574,15 @@ public final class AccessPath implements MapKey {
       return false;
     }
     AccessPath that = (AccessPath) o;
-    return Objects.equals(root, that.root)
+    return hashCode == that.hashCode
+        && Objects.equals(root, that.root)
         && elements.equals(that.elements)
         && Objects.equals(mapGetArg, that.mapGetArg);
   }
 
   @Override
   public int hashCode() {
-    int result = 1;
-    result = 31 * result + (root != null ? root.hashCode() : 0);
-    result = 31 * result + elements.hashCode();
-    result = 31 * result + (mapGetArg != null ? mapGetArg.hashCode() : 0);
-    return result;
+    return hashCode;
   }
 
   /**
@@ -673,10 +725,39 @@ public final class AccessPath implements MapKey {
 
     private final ImmutableSet<String> immutableTypes;
 
+    /** Canonical instances of the access paths built in this context */
+    private final Map<AccessPath, AccessPath> internedAccessPaths = new HashMap<>();
+
+    /** Canonical access paths of locals, keyed by their element to avoid building a path */
+    private final Map<Element, AccessPath> localAccessPaths = new HashMap<>();
+
     private AccessPathContext(ImmutableSet<String> immutableTypes) {
       this.immutableTypes = immutableTypes;
     }
 
+    AccessPath intern(AccessPath accessPath) {
+      AccessPath canonical = internedAccessPaths.putIfAbsent(accessPath, accessPath);
+      return canonical != null ? canonical : accessPath;
+    }
+
+    AccessPath localAccessPath(@Nullable Element local) {
+      AccessPath result = localAccessPaths.get(local);
+      if (result == null) {
+        result = intern(new AccessPath(local, ImmutableList.of()));
+        localAccessPaths.put(local, result);
+      }
+      return result;
+    }
+
+    /**
+     * Drops the canonical instances, to bound memory use. Paths built earlier are still valid, but
+     * compare equal to new instances only via a structural check.
+     */
+    void clearInternedAccessPaths() {
+      internedAccessPaths.clear();
+      localAccessPaths.clear();
+    }
+
     public boolean isStructurallyImmutableType(Type type) {
       return immutableTypes.contains(type.tsym.toString());
     }
@@ -16,15 +16,18 @@ import javax.lang.model.element.Element;
 public final class AccessPathElement {
   private final Element javaElement;
   @Nullable private final ImmutableList<String> constantArguments;
+  private final int hashCode;
 
   public AccessPathElement(Element javaElement, List<String> constantArguments) {
     this.javaElement = javaElement;
     this.constantArguments = ImmutableList.copyOf(constantArguments);
+    this.hashCode = computeHashCode();
   }
 
   public AccessPathElement(Element javaElement) {
     this.javaElement = javaElement;
     this.constantArguments = null;
+    this.hashCode = computeHashCode();
   }
 
   public Element getJavaElement() {
@@ -39,7 +42,8 @@ public final class AccessPathElement {
   public boolean equals(Object obj) {
     if (obj instanceof AccessPathElement) {
       AccessPathElement otherNode = (AccessPathElement) obj;
-      return this.javaElement.equals(otherNode.javaElement)
+      return hashCode == otherNode.hashCode
+          && this.javaElement.equals(otherNode.javaElement)
           && (constantArguments == null
               ? otherNode.constantArguments == null
               : constantArguments.equals(otherNode.constantArguments));
@@ -50,6 +54,10 @@ public final class AccessPathElement {
 
   @Override
   public int hashCode() {
+    return hashCode;
+  }
+
+  private int computeHashCode() {
     int result = javaElement.hashCode();
     result = 31 * result + (constantArguments != null ? constantArguments.hashCode() : 0);
     return result;
@@ -23,6 +23,7 @@ import static com.uber.nullaway.NullabilityUtil.castToNonNull;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 import com.google.errorprone.VisitorState;
+import com.sun.source.tree.CompilationUnitTree;
 import com.sun.source.tree.Tree;
 import com.sun.source.util.TreePath;
 import com.sun.tools.javac.util.Context;
@@ -62,6 +63,15 @@ public final class AccessPathNullnessAnalysis {
 
   @Nullable private AccessPathNullnessPropagation contractNullnessPropagation;
 
+  /** Non-null iff the sparse dataflow mode is enabled; see {@link Config#isSparseDataflow()} */
+  @Nullable private final SparseDataflowPrepass sparseDataflowPrepass;
+
+  /**
+   * Non-null iff the persistent summary cache is enabled; see {@link
+   * Config#getSummaryCacheDirectory()}
+   */
+  @Nullable private final PersistentSummaryCache summaryCache;
+
   // Use #instance to instantiate
   private AccessPathNullnessAnalysis(
       Predicate<MethodInvocationNode> methodReturnsNonNull,
@@ -81,7 +91,17 @@ public final class AccessPathNullnessAnalysis {
             config,
             handler,
             new CoreNullnessStoreInitializer());
-    this.dataFlow = new DataFlow(config.assertsEnabled(), handler);
+    this.dataFlow =
+        new DataFlow(config.assertsEnabled(), handler, config.getDataflowCacheBudgetMB());
+
+    this.sparseDataflowPrepass =
+        config.isSparseDataflow() ? new SparseDataflowPrepass(config, handler) : null;
+
+    String summaryCacheDirectory = config.getSummaryCacheDirectory();
+    this.summaryCache =
+        summaryCacheDirectory != null
+            ? PersistentSummaryCache.create(config, handler, summaryCacheDirectory, state.context)
+            : null;
 
     if (config.checkContracts()) {
       this.contractNullnessPropagation =
@@ -128,6 +148,9 @@ public final class AccessPathNullnessAnalysis {
    */
   @Nullable
   public Nullness getNullness(TreePath exprPath, Context context) {
+    if (sparseDataflowPrepass != null && sparseDataflowPrepass.canSkipDataflow(exprPath, context)) {
+      return Nullness.NONNULL;
+    }
     return dataFlow.expressionDataflow(exprPath, context, nullnessPropagation);
   }
 
@@ -153,6 +176,17 @@ public final class AccessPathNullnessAnalysis {
    * @return fields guaranteed to be nonnull at exit of method (or initializer block)
    */
   public Set<Element> getNonnullFieldsOfReceiverAtExit(TreePath path, Context context) {
+    if (summaryCache != null) {
+      return summaryCache.getOrCompute(
+          path,
+          PersistentSummaryCache.SummaryKind.NONNULL_RECEIVER_FIELDS_AT_EXIT,
+          context,
+          () -> computeNonnullFieldsOfReceiverAtExit(path, context));
+    }
+    return computeNonnullFieldsOfReceiverAtExit(path, context);
+  }
+
+  private Set<Element> computeNonnullFieldsOfReceiverAtExit(TreePath path, Context context) {
     NullnessStore nullnessResult = dataFlow.finalResult(path, context, nullnessPropagation);
     if (nullnessResult == null) {
       // this case can occur if the method always throws an exception
@@ -304,6 +338,17 @@ public final class AccessPathNullnessAnalysis {
    * @return fields guaranteed to be nonnull at exit of static method (or initializer block)
    */
   public Set<Element> getNonnullStaticFieldsAtExit(TreePath path, Context context) {
+    if (summaryCache != null) {
+      return summaryCache.getOrCompute(
+          path,
+          PersistentSummaryCache.SummaryKind.NONNULL_STATIC_FIELDS_AT_EXIT,
+          context,
+          () -> computeNonnullStaticFieldsAtExit(path, context));
+    }
+    return computeNonnullStaticFieldsAtExit(path, context);
+  }
+
+  private Set<Element> computeNonnullStaticFieldsAtExit(TreePath path, Context context) {
     NullnessStore nullnessResult = dataFlow.finalResult(path, context, nullnessPropagation);
     if (nullnessResult == null) {
       // this case can occur if the method always throws an exception
@@ -383,5 +428,38 @@ public final class AccessPathNullnessAnalysis {
   /** invalidate all caches */
   public void invalidateCaches() {
     dataFlow.invalidateCaches();
+    clearCompilationUnitState();
+  }
+
+  /**
+   * Release cached dataflow results if {@code compilationUnit} is not the one they were computed
+   * for. See {@link DataFlow#enterCompilationUnit(CompilationUnitTree)}.
+   *
+   * @param compilationUnit the compilation unit containing the top-level class being checked
+   */
+  public void enterCompilationUnit(CompilationUnitTree compilationUnit) {
+    if (dataFlow.enterCompilationUnit(compilationUnit)) {
+      clearCompilationUnitState();
+    }
+  }
+
+  /** Clears per-compilation-unit state other than the dataflow caches. */
+  private void clearCompilationUnitState() {
+    apContext.clearInternedAccessPaths();
+    if (sparseDataflowPrepass != null) {
+      sparseDataflowPrepass.clear();
+    }
+    if (summaryCache != null) {
+      summaryCache.clear();
+    }
+  }
+
+  /**
+   * Get the underlying dataflow wrapper, e.g., to inspect its cache statistics.
+   *
+   * @return the {@link DataFlow} instance used by this analysis
+   */
+  public DataFlow getDataFlow() {
+    return dataFlow;
   }
 }
@@ -200,8 +200,11 @@ public class AccessPathNullnessPropagation
   @Override
   public NullnessStore initialStore(
       UnderlyingAST underlyingAST, List<LocalVariableNode> parameters) {
-    return nullnessStoreInitializer.getInitialStore(
-        underlyingAST, parameters, handler, state.context, state.getTypes(), config);
+    // all stores of the analysis share the table of the initial store, even if it has no facts
+    return nullnessStoreInitializer
+        .getInitialStore(
+            underlyingAST, parameters, handler, state.context, state.getTypes(), config)
+        .withAccessPathTable();
   }
 
   @Override
@@ -610,7 +613,8 @@ public class AccessPathNullnessPropagation
                 "expected call to next(), instead saw "
                     + state.getSourceForNode(methodInv.getTree()));
           }
-          updates.set(AccessPath.replaceMapKey(mapGetPath, AccessPath.fromLocal(lhs)), NONNULL);
+          updates.set(
+              AccessPath.replaceMapKey(mapGetPath, AccessPath.fromLocal(lhs, apContext)), NONNULL);
         }
       }
     }
@@ -690,7 +694,7 @@ public class AccessPathNullnessPropagation
     Nullness nullness =
         hasPrimitiveType(node) || hasNonNullConstantValue(node)
             ? NONNULL
-            : values.valueOfLocalVariable(node, defaultAssumption);
+            : values.valueOfLocalVariable(node, defaultAssumption, apContext);
     return new RegularTransferResult<>(nullness, values);
   }
 
@@ -810,7 +814,8 @@ public class AccessPathNullnessPropagation
   @Override
   public TransferResult<Nullness, NullnessStore> visitReturn(
       ReturnNode returnNode, TransferInput<Nullness, NullnessStore> input) {
-    handler.onDataflowVisitReturn(returnNode.getTree(), input.getThenStore(), input.getElseStore());
+    handler.onDataflowVisitReturn(
+        returnNode.getTree(), input.getThenStore(), input.getElseStore(), state.context);
     return noStoreChanges(NULLABLE, input);
   }
 
@@ -818,7 +823,7 @@ public class AccessPathNullnessPropagation
   public TransferResult<Nullness, NullnessStore> visitLambdaResultExpression(
       LambdaResultExpressionNode resultNode, TransferInput<Nullness, NullnessStore> input) {
     handler.onDataflowVisitLambdaResultExpression(
-        resultNode.getTree(), input.getThenStore(), input.getElseStore());
+        resultNode.getTree(), input.getThenStore(), input.getElseStore(), state.context);
     SubNodeValues values = values(input);
     Nullness nullness = values.valueOfSubNode(resultNode.getResult());
     return noStoreChanges(nullness, input);
@@ -1008,7 +1013,8 @@ public class AccessPathNullnessPropagation
       nullness = input.getRegularStore().valueOfMethodCall(node, state, NULLABLE, apContext);
     } else if (node == null
         || methodReturnsNonNull.test(node)
-        || !Nullness.hasNullableAnnotation((Symbol) node.getTarget().getMethod(), config)) {
+        || !getCodeAnnotationInfo(state)
+            .hasNullableAnnotation((Symbol) node.getTarget().getMethod(), config)) {
       // definite non-null return
       nullness = NONNULL;
     } else {
@@ -1081,6 +1087,13 @@ public class AccessPathNullnessPropagation
 
   @CheckReturnValue
   private static ResultingStore updateStore(NullnessStore oldStore, ReadableUpdates... updates) {
+    boolean noUpdates = true;
+    for (ReadableUpdates update : updates) {
+      noUpdates &= update.values.isEmpty();
+    }
+    if (noUpdates) {
+      return new ResultingStore(oldStore, false);
+    }
     NullnessStore.Builder builder = oldStore.toBuilder();
     for (ReadableUpdates update : updates) {
       for (Map.Entry<AccessPath, Nullness> entry : update.values.entrySet()) {
@@ -1137,12 +1150,12 @@ public class AccessPathNullnessPropagation
 
     @Override
     public void set(LocalVariableNode node, Nullness value) {
-      values.put(AccessPath.fromLocal(node), value);
+      values.put(AccessPath.fromLocal(node, apContext), value);
     }
 
     @Override
     public void set(VariableDeclarationNode node, Nullness value) {
-      values.put(AccessPath.fromVarDecl(node), value);
+      values.put(AccessPath.fromVarDecl(node, apContext), value);
     }
 
     @Override
@@ -48,7 +48,12 @@ class CoreNullnessStoreInitializer extends NullnessStoreInitializer {
           getCodeAnnotationInfo(context));
     } else {
       return methodInitialStore(
-          (UnderlyingAST.CFGMethod) underlyingAST, parameters, handler, context, config);
+          (UnderlyingAST.CFGMethod) underlyingAST,
+          parameters,
+          handler,
+          context,
+          config,
+          getCodeAnnotationInfo(context));
     }
   }
 
@@ -57,17 +62,18 @@ class CoreNullnessStoreInitializer extends NullnessStoreInitializer {
       List<LocalVariableNode> parameters,
       Handler handler,
       Context context,
-      Config config) {
+      Config config,
+      CodeAnnotationInfo codeAnnotationInfo) {
     ClassTree classTree = underlyingAST.getClassTree();
     NullnessStore envStore = getEnvNullnessStoreForClass(classTree, context);
     NullnessStore.Builder result = envStore.toBuilder();
     for (LocalVariableNode param : parameters) {
       Element element = param.getElement();
       Nullness assumed =
-          Nullness.hasNullableAnnotation((Symbol) element, config) ? NULLABLE : NONNULL;
+          codeAnnotationInfo.hasNullableAnnotation((Symbol) element, config) ? NULLABLE : NONNULL;
       result.setInformation(AccessPath.fromLocal(param), assumed);
     }
-    result = handler.onDataflowInitialStore(underlyingAST, parameters, result);
+    result = handler.onDataflowInitialStore(underlyingAST, parameters, result, context);
     return result.build();
   }
 
@@ -98,7 +104,9 @@ class CoreNullnessStoreInitializer extends NullnessStoreInitializer {
     if (isFIAnnotated) {
       for (int i = 0; i < fiMethodParameters.size(); i++) {
         fiArgumentPositionNullness[i] =
-            Nullness.hasNullableAnnotation(fiMethodParameters.get(i), config) ? NULLABLE : NONNULL;
+            codeAnnotationInfo.hasNullableAnnotation(fiMethodParameters.get(i), config)
+                ? NULLABLE
+                : NONNULL;
       }
     }
     fiArgumentPositionNullness =
@@ -112,7 +120,7 @@ class CoreNullnessStoreInitializer extends NullnessStoreInitializer {
       Nullness assumed;
       // we treat lambda parameters differently; they "inherit" the nullability of the
       // corresponding functional interface parameter, unless they are explicitly annotated
-      if (Nullness.hasNullableAnnotation((Symbol) element, config)) {
+      if (codeAnnotationInfo.hasNullableAnnotation((Symbol) element, config)) {
         assumed = NULLABLE;
       } else if (!NullabilityUtil.lambdaParamIsImplicitlyTyped(variableTree)) {
         // the parameter has a declared type with no @Nullable annotation
@@ -123,7 +131,7 @@ class CoreNullnessStoreInitializer extends NullnessStoreInitializer {
       }
       result.setInformation(AccessPath.fromLocal(param), assumed);
     }
-    result = handler.onDataflowInitialStore(underlyingAST, parameters, result);
+    result = handler.onDataflowInitialStore(underlyingAST, parameters, result, context);
     return result.build();
   }
 
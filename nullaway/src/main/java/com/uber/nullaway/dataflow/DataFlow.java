@@ -25,10 +25,12 @@ import com.google.auto.value.AutoValue;
 import com.google.common.base.Preconditions;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
 import com.google.common.cache.LoadingCache;
 import com.google.errorprone.util.ASTHelpers;
 import com.sun.source.tree.BlockTree;
 import com.sun.source.tree.ClassTree;
+import com.sun.source.tree.CompilationUnitTree;
 import com.sun.source.tree.ExpressionTree;
 import com.sun.source.tree.LambdaExpressionTree;
 import com.sun.source.tree.MethodTree;
@@ -64,80 +66,114 @@ public final class DataFlow {
    * We cache both the control flow graph and the analyses that are run on it.
    *
    * Unlike in Error Prone's core analyses, sometimes we do not complete all analyses on a CFG
-   * before moving on to the next one.  So, here we set a reasonable maximum size to avoid leaks,
+   * before moving on to the next one.  So, here we bound the size of the caches to avoid leaks,
    * and also expose an API method to clear the caches.
+   *
+   * The bound is not a fixed number of entries, since a single CFG for a large generated method can
+   * be orders of magnitude bigger than that of a small lambda.  Instead, each entry is weighted by
+   * the number of nodes in its CFG, and the total weight is derived from a (configurable) memory
+   * budget, which is split evenly between the two caches.
    */
-  private static final int MAX_CACHE_SIZE = 50;
+
+  /**
+   * A rough estimate of the retained size of a single CFG node, plus the dataflow values and stores
+   * associated with it. Only used to translate the cache budget in MB into a maximum weight.
+   */
+  private static final long ESTIMATED_BYTES_PER_CFG_NODE = 512;
 
   private final boolean assertsEnabled;
 
   private final Handler handler;
 
-  DataFlow(boolean assertsEnabled, Handler handler) {
+  private final LoadingCache<AnalysisParams, Analysis<?, ?, ?>> analysisCache;
+
+  private final LoadingCache<CfgParams, ControlFlowGraph> cfgCache;
+
+  /**
+   * The compilation unit whose methods, lambdas and initializers are currently held in the caches.
+   * See {@link #enterCompilationUnit(CompilationUnitTree)}.
+   */
+  @Nullable private CompilationUnitTree currentCompilationUnit;
+
+  /**
+   * Creates a new dataflow wrapper.
+   *
+   * @param assertsEnabled whether assert statements should be modeled in the CFG
+   * @param handler the handler for the analysis
+   * @param cacheBudgetMB approximate total size in megabytes of the CFG and analysis caches
+   */
+  DataFlow(boolean assertsEnabled, Handler handler, int cacheBudgetMB) {
     this.assertsEnabled = assertsEnabled;
     this.handler = handler;
+    long maxWeightPerCache = (cacheBudgetMB * 1024L * 1024L) / ESTIMATED_BYTES_PER_CFG_NODE / 2;
+    this.analysisCache =
+        CacheBuilder.newBuilder()
+            .maximumWeight(maxWeightPerCache)
+            .weigher((AnalysisParams key, Analysis<?, ?, ?> value) -> cfgWeight(key.cfg()))
+            .recordStats()
+            .build(
+                new CacheLoader<AnalysisParams, Analysis<?, ?, ?>>() {
+                  @Override
+                  public Analysis<?, ?, ?> load(AnalysisParams key) {
+                    final ControlFlowGraph cfg = key.cfg();
+                    final ForwardTransferFunction<?, ?> transfer = key.transferFunction();
+
+                    @SuppressWarnings({"unchecked", "rawtypes"})
+                    final Analysis<?, ?, ?> analysis = new ForwardAnalysisImpl<>(transfer);
+                    analysis.performAnalysis(cfg);
+                    return analysis;
+                  }
+                });
+    this.cfgCache =
+        CacheBuilder.newBuilder()
+            .maximumWeight(maxWeightPerCache)
+            .weigher((CfgParams key, ControlFlowGraph value) -> cfgWeight(value))
+            .recordStats()
+            .build(
+                new CacheLoader<CfgParams, ControlFlowGraph>() {
+                  @Override
+                  public ControlFlowGraph load(CfgParams key) {
+                    return buildCfg(key);
+                  }
+                });
   }
 
-  private final LoadingCache<AnalysisParams, Analysis<?, ?, ?>> analysisCache =
-      CacheBuilder.newBuilder()
-          .maximumSize(MAX_CACHE_SIZE)
-          .build(
-              new CacheLoader<AnalysisParams, Analysis<?, ?, ?>>() {
-                @Override
-                public Analysis<?, ?, ?> load(AnalysisParams key) {
-                  final ControlFlowGraph cfg = key.cfg();
-                  final ForwardTransferFunction<?, ?> transfer = key.transferFunction();
-
-                  @SuppressWarnings({"unchecked", "rawtypes"})
-                  final Analysis<?, ?, ?> analysis = new ForwardAnalysisImpl<>(transfer);
-                  analysis.performAnalysis(cfg);
-                  return analysis;
-                }
-              });
-
-  private final LoadingCache<CfgParams, ControlFlowGraph> cfgCache =
-      CacheBuilder.newBuilder()
-          .maximumSize(MAX_CACHE_SIZE)
-          .build(
-              new CacheLoader<CfgParams, ControlFlowGraph>() {
-                @Override
-                public ControlFlowGraph load(CfgParams key) {
-                  final TreePath codePath = key.codePath();
-                  final TreePath bodyPath;
-                  final UnderlyingAST ast;
-                  final ProcessingEnvironment env = key.environment();
-                  if (codePath.getLeaf() instanceof LambdaExpressionTree) {
-                    LambdaExpressionTree lambdaExpressionTree =
-                        (LambdaExpressionTree) codePath.getLeaf();
-                    MethodTree enclMethod =
-                        ASTHelpers.findEnclosingNode(codePath, MethodTree.class);
-                    ClassTree enclClass =
-                        castToNonNull(ASTHelpers.findEnclosingNode(codePath, ClassTree.class));
-                    ast = new UnderlyingAST.CFGLambda(lambdaExpressionTree, enclClass, enclMethod);
-                    bodyPath = new TreePath(codePath, lambdaExpressionTree.getBody());
-                  } else if (codePath.getLeaf() instanceof MethodTree) {
-                    MethodTree method = (MethodTree) codePath.getLeaf();
-                    ClassTree enclClass =
-                        castToNonNull(ASTHelpers.findEnclosingNode(codePath, ClassTree.class));
-                    ast = new UnderlyingAST.CFGMethod(method, enclClass);
-                    BlockTree body = method.getBody();
-                    if (body == null) {
-                      throw new IllegalStateException(
-                          "trying to compute CFG for method " + method + ", which has no body");
-                    }
-                    bodyPath = new TreePath(codePath, body);
-                  } else {
-                    // must be an initializer per findEnclosingMethodOrLambdaOrInitializer
-                    ast =
-                        new UnderlyingAST.CFGStatement(
-                            codePath.getLeaf(), (ClassTree) codePath.getParentPath().getLeaf());
-                    bodyPath = codePath;
-                  }
+  private static int cfgWeight(ControlFlowGraph cfg) {
+    // an entry with weight 0 would never be evicted, so count at least one node per CFG
+    return Math.max(1, cfg.getAllNodes().size());
+  }
 
-                  return NullAwayCFGBuilder.build(
-                      bodyPath, ast, assertsEnabled, !assertsEnabled, env, handler);
-                }
-              });
+  private ControlFlowGraph buildCfg(CfgParams key) {
+    final TreePath codePath = key.codePath();
+    final TreePath bodyPath;
+    final UnderlyingAST ast;
+    final ProcessingEnvironment env = key.environment();
+    if (codePath.getLeaf() instanceof LambdaExpressionTree) {
+      LambdaExpressionTree lambdaExpressionTree = (LambdaExpressionTree) codePath.getLeaf();
+      MethodTree enclMethod = ASTHelpers.findEnclosingNode(codePath, MethodTree.class);
+      ClassTree enclClass = castToNonNull(ASTHelpers.findEnclosingNode(codePath, ClassTree.class));
+      ast = new UnderlyingAST.CFGLambda(lambdaExpressionTree, enclClass, enclMethod);
+      bodyPath = new TreePath(codePath, lambdaExpressionTree.getBody());
+    } else if (codePath.getLeaf() instanceof MethodTree) {
+      MethodTree method = (MethodTree) codePath.getLeaf();
+      ClassTree enclClass = castToNonNull(ASTHelpers.findEnclosingNode(codePath, ClassTree.class));
+      ast = new UnderlyingAST.CFGMethod(method, enclClass);
+      BlockTree body = method.getBody();
+      if (body == null) {
+        throw new IllegalStateException(
+            "trying to compute CFG for method " + method + ", which has no body");
+      }
+      bodyPath = new TreePath(codePath, body);
+    } else {
+      // must be an initializer per findEnclosingMethodOrLambdaOrInitializer
+      ast =
+          new UnderlyingAST.CFGStatement(
+              codePath.getLeaf(), (ClassTree) codePath.getParentPath().getLeaf());
+      bodyPath = codePath;
+    }
+
+    return NullAwayCFGBuilder.build(bodyPath, ast, assertsEnabled, !assertsEnabled, env, handler);
+  }
 
   /**
    * Run the {@code transfer} dataflow analysis over the method, lambda or initializer which is the
@@ -294,6 +330,47 @@ public final class DataFlow {
   public void invalidateCaches() {
     cfgCache.invalidateAll();
     analysisCache.invalidateAll();
+    currentCompilationUnit = null;
+  }
+
+  /**
+   * Notify the caches that checking of a top-level class in {@code compilationUnit} is starting.
+   *
+   * <p>Cached CFGs and analysis results only depend on the trees of their own compilation unit, so
+   * they stay valid across the different top-level classes of a single compilation unit, and can be
+   * reused when, e.g., initialization checking for one class needs results for another. Error Prone
+   * checks all top-level classes of a compilation unit in a single pass, but javac may lower (and
+   * hence mutate) the trees of a compilation unit once that pass is done, so all entries are
+   * released as soon as a different compilation unit is entered.
+   *
+   * @param compilationUnit the compilation unit containing the top-level class being checked
+   * @return true if cached entries for a previous compilation unit were released
+   */
+  public boolean enterCompilationUnit(CompilationUnitTree compilationUnit) {
+    if (compilationUnit != currentCompilationUnit) {
+      invalidateCaches();
+      currentCompilationUnit = compilationUnit;
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Get hit / miss / eviction statistics for the CFG cache.
+   *
+   * @return statistics for the CFG cache, accumulated since this object was created
+   */
+  public CacheStats getCfgCacheStats() {
+    return cfgCache.stats();
+  }
+
+  /**
+   * Get hit / miss / eviction statistics for the analysis cache.
+   *
+   * @return statistics for the analysis cache, accumulated since this object was created
+   */
+  public CacheStats getAnalysisCacheStats() {
+    return analysisCache.stats();
   }
 
   @AutoValue
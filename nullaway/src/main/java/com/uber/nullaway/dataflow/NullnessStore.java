@@ -17,18 +17,20 @@
 package com.uber.nullaway.dataflow;
 
 import static com.google.common.base.Preconditions.checkNotNull;
-import static com.google.common.collect.Sets.intersection;
 
-import com.google.common.collect.ImmutableMap;
 import com.google.errorprone.VisitorState;
 import com.uber.nullaway.Nullness;
 import com.uber.nullaway.dataflow.AccessPath.IteratorContentsKey;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.function.Predicate;
-import java.util.stream.Collectors;
 import javax.annotation.Nullable;
 import javax.lang.model.element.Element;
 import org.checkerframework.nullaway.dataflow.analysis.Store;
@@ -40,16 +42,71 @@ import org.checkerframework.nullaway.dataflow.expression.JavaExpression;
 
 /**
  * Highly based on {@link com.google.errorprone.dataflow.LocalStore}, but for {@link AccessPath}s.
+ *
+ * <p>Rather than a map, a store is represented by a bitset of the access paths it holds facts for,
+ * and an array holding the {@link Nullness} fact for each, indexed by the position of the access
+ * path in an {@link AccessPathTable}. All stores built from a common prototype share the same
+ * (append-only) table. The initial store of each dataflow analysis gets a table even if it is
+ * empty, and stores keep their table when they lose all their facts, so there is one table per
+ * analyzed method (lambdas and local classes continue the table of their environment). So, for
+ * stores with the same table, joins and equality checks work word by word on the bitsets, without
+ * hashing access paths or allocating maps. Stores with different tables are still supported, but
+ * operations on them go through access path lookups.
+ *
+ * <p>The bitset and facts are split into immutable {@link Chunk}s of 64 slots, forming a two-level
+ * persistent trie. Updating a single access path copies only the array of chunk references and
+ * the one chunk holding the path, so a store shares all other chunks with its predecessor. Joins
+ * and equality checks skip chunks that are shared between the two stores.
  */
 public class NullnessStore implements Store<NullnessStore> {
 
-  private static final NullnessStore EMPTY = new NullnessStore(ImmutableMap.of());
+  private static final Chunk[] NO_CHUNKS = new Chunk[0];
+
+  private static final NullnessStore EMPTY = new NullnessStore(null, NO_CHUNKS);
 
-  private final ImmutableMap<AccessPath, Nullness> contents;
+  private static final Nullness[] NULLNESS_VALUES = Nullness.values();
 
-  private NullnessStore(Map<AccessPath, Nullness> contents) {
-    this.contents = ImmutableMap.copyOf(contents);
+  /** {@code LEAST_UPPER_BOUNDS[a][b]} is the ordinal of the least upper bound of ordinals a, b */
+  private static final byte[][] LEAST_UPPER_BOUNDS = new byte[NULLNESS_VALUES.length][];
+
+  static {
+    for (Nullness a : NULLNESS_VALUES) {
+      LEAST_UPPER_BOUNDS[a.ordinal()] = new byte[NULLNESS_VALUES.length];
+      for (Nullness b : NULLNESS_VALUES) {
+        LEAST_UPPER_BOUNDS[a.ordinal()][b.ordinal()] = (byte) a.leastUpperBound(b).ordinal();
+      }
+    }
   }
+
+  /**
+   * Table of the access paths this store may hold facts for; null only for {@link #EMPTY}, which is
+   * the only store that does not belong to a dataflow analysis.
+   */
+  @Nullable private final AccessPathTable table;
+
+  /**
+   * Facts for the i-th access path of {@link #table} are in chunk {@code i / 64}. A null entry is
+   * an empty chunk, and there is no trailing null entry.
+   */
+  private final @Nullable Chunk[] chunks;
+
+  private final int size;
+
+  /** Cached hash code, 0 if not yet computed */
+  private int hashCode;
+
+  private NullnessStore(@Nullable AccessPathTable table, @Nullable Chunk[] chunks) {
+    this.table = table;
+    this.chunks = chunks;
+    int size = 0;
+    for (Chunk chunk : chunks) {
+      if (chunk != null) {
+        size += Long.bitCount(chunk.present);
+      }
+    }
+    this.size = size;
+  }
+
   /**
    * Produce an empty store.
    *
@@ -67,7 +124,20 @@ public class NullnessStore implements Store<NullnessStore> {
    * @return fact associated with local
    */
   public Nullness valueOfLocalVariable(LocalVariableNode node, Nullness defaultValue) {
-    return contents.getOrDefault(AccessPath.fromLocal(node), defaultValue);
+    return getOrDefault(AccessPath.fromLocal(node), defaultValue);
+  }
+
+  /**
+   * Get the nullness for a local variable, reusing the canonical access path of the local.
+   *
+   * @param node node representing local variable
+   * @param defaultValue default value if we have no fact
+   * @param apContext access path context, holding the canonical access path for the local
+   * @return fact associated with local
+   */
+  public Nullness valueOfLocalVariable(
+      LocalVariableNode node, Nullness defaultValue, AccessPath.AccessPathContext apContext) {
+    return getOrDefault(AccessPath.fromLocal(node, apContext), defaultValue);
   }
 
   /**
@@ -83,7 +153,7 @@ public class NullnessStore implements Store<NullnessStore> {
     if (path == null) {
       return defaultValue;
     }
-    return contents.getOrDefault(path, defaultValue);
+    return getOrDefault(path, defaultValue);
   }
 
   /**
@@ -102,7 +172,7 @@ public class NullnessStore implements Store<NullnessStore> {
     if (accessPath == null) {
       return defaultValue;
     }
-    return contents.getOrDefault(accessPath, defaultValue);
+    return getOrDefault(accessPath, defaultValue);
   }
 
   /**
@@ -113,9 +183,9 @@ public class NullnessStore implements Store<NullnessStore> {
    */
   public Set<AccessPath> getAccessPathsWithValue(Nullness value) {
     Set<AccessPath> result = new LinkedHashSet<>();
-    for (Map.Entry<AccessPath, Nullness> entry : contents.entrySet()) {
-      if (value.equals(entry.getValue())) {
-        result.add(entry.getKey());
+    for (int i = nextPresent(0); i >= 0; i = nextPresent(i + 1)) {
+      if (valueAt(i) == value.ordinal()) {
+        result.add(accessPathAt(i));
       }
     }
     return result;
@@ -128,7 +198,8 @@ public class NullnessStore implements Store<NullnessStore> {
    */
   @Nullable
   public AccessPath getMapGetIteratorContentsAccessPath(LocalVariableNode iteratorVar) {
-    for (AccessPath accessPath : contents.keySet()) {
+    for (int i = nextPresent(0); i >= 0; i = nextPresent(i + 1)) {
+      AccessPath accessPath = accessPathAt(i);
       MapKey mapGetArg = accessPath.getMapGetArg();
       if (mapGetArg instanceof IteratorContentsKey) {
         IteratorContentsKey iteratorContentsKey = (IteratorContentsKey) mapGetArg;
@@ -146,16 +217,50 @@ public class NullnessStore implements Store<NullnessStore> {
    * @return The {@link Nullness} value of the access path.
    */
   public Nullness getNullnessOfAccessPath(AccessPath accessPath) {
-    if (contents == null) {
-      return Nullness.NULLABLE;
-    }
-    return contents.getOrDefault(accessPath, Nullness.NULLABLE);
+    return getOrDefault(accessPath, Nullness.NULLABLE);
   }
 
   public Builder toBuilder() {
     return new Builder(this);
   }
 
+  /**
+   * Returns a store with the same facts as this one and an access path table, so that all stores
+   * derived from it share a single table. Used to seed the initial store of a dataflow analysis.
+   *
+   * @return this store if it has a table, otherwise an empty store with a new table
+   */
+  NullnessStore withAccessPathTable() {
+    return table != null ? this : new AccessPathTable().emptyStore;
+  }
+
+  /**
+   * Checks whether two stores index their facts with the same access path table, in which case
+   * joins and equality checks work on the bitsets.
+   *
+   * @param other the other store
+   * @return true iff both stores have the same (non-null) table
+   */
+  boolean hasSameAccessPathTable(NullnessStore other) {
+    return table != null && table == other.table;
+  }
+
+  /**
+   * Checks whether two stores share the chunk holding the fact for an access path, rather than
+   * holding copies of it. Only meant for tests of structural sharing.
+   *
+   * @param other the other store
+   * @param accessPath the access path
+   * @return true iff both stores have a fact for the access path, held by the same chunk
+   */
+  boolean sharesChunkWith(NullnessStore other, AccessPath accessPath) {
+    if (!hasSameAccessPathTable(other)) {
+      return false;
+    }
+    int i = castToNonNull(table).indexOf(accessPath);
+    return i >= 0 && isPresent(i) && other.isPresent(i) && chunks[i >>> 6] == other.chunks[i >>> 6];
+  }
+
   @Override
   public NullnessStore copy() {
     return this;
@@ -163,17 +268,39 @@ public class NullnessStore implements Store<NullnessStore> {
 
   @Override
   public NullnessStore leastUpperBound(NullnessStore other) {
-    NullnessStore.Builder result = NullnessStore.empty().toBuilder();
-    for (AccessPath ap : intersection(contents.keySet(), other.contents.keySet())) {
-      Nullness apContents = contents.get(ap);
-      if (apContents == null) {
-        throw new RuntimeException("null contents for " + ap);
+    if (this == other) {
+      return this;
+    }
+    if (table == null || other.table == null) {
+      // one of the stores is EMPTY
+      return emptyStore(table != null ? table : other.table);
+    }
+    if (table != other.table) {
+      return leastUpperBoundWithOtherTable(other);
+    }
+    int length = Math.min(chunks.length, other.chunks.length);
+    Chunk[] result = new Chunk[length];
+    for (int c = 0; c < length; c++) {
+      Chunk chunk = chunks[c];
+      Chunk otherChunk = other.chunks[c];
+      if (chunk == otherChunk) {
+        // shared chunk (or both empty); the join of a fact with itself is the same fact
+        result[c] = chunk;
+      } else if (chunk != null && otherChunk != null) {
+        result[c] = chunk.leastUpperBound(otherChunk);
       }
-      Nullness otherAPContents = other.contents.get(ap);
-      if (otherAPContents == null) {
-        throw new RuntimeException("null other contents for " + ap);
+    }
+    return fromChunks(table, result, length);
+  }
+
+  private NullnessStore leastUpperBoundWithOtherTable(NullnessStore other) {
+    NullnessStore.Builder result = new Builder(table);
+    for (int i = nextPresent(0); i >= 0; i = nextPresent(i + 1)) {
+      AccessPath ap = accessPathAt(i);
+      Nullness otherAPContents = other.get(ap);
+      if (otherAPContents != null) {
+        result.setInformation(ap, NULLNESS_VALUES[valueAt(i)].leastUpperBound(otherAPContents));
       }
-      result.contents.put(ap, apContents.leastUpperBound(otherAPContents));
     }
     return result.build();
   }
@@ -185,21 +312,62 @@ public class NullnessStore implements Store<NullnessStore> {
 
   @Override
   public boolean equals(@Nullable Object o) {
+    if (this == o) {
+      return true;
+    }
     if (!(o instanceof NullnessStore)) {
       return false;
     }
     NullnessStore other = (NullnessStore) o;
-    return contents.equals(other.contents);
+    if (size != other.size) {
+      return false;
+    }
+    if (table == other.table) {
+      // stores have no trailing empty chunks, so equal key sets have equal lengths
+      if (chunks.length != other.chunks.length) {
+        return false;
+      }
+      for (int c = 0; c < chunks.length; c++) {
+        Chunk chunk = chunks[c];
+        Chunk otherChunk = other.chunks[c];
+        if (chunk != otherChunk
+            && (chunk == null || otherChunk == null || !chunk.sameFacts(otherChunk))) {
+          return false;
+        }
+      }
+      return true;
+    }
+    for (int i = nextPresent(0); i >= 0; i = nextPresent(i + 1)) {
+      if (other.get(accessPathAt(i)) != NULLNESS_VALUES[valueAt(i)]) {
+        return false;
+      }
+    }
+    return true;
   }
 
+  /** Same as the hash code of the equivalent {@code Map<AccessPath, Nullness>}. */
   @Override
   public int hashCode() {
-    return contents.hashCode();
+    int result = hashCode;
+    if (result == 0) {
+      for (int i = nextPresent(0); i >= 0; i = nextPresent(i + 1)) {
+        result += accessPathAt(i).hashCode() ^ NULLNESS_VALUES[valueAt(i)].hashCode();
+      }
+      hashCode = result;
+    }
+    return result;
   }
 
   @Override
   public String toString() {
-    return contents.toString();
+    StringBuilder result = new StringBuilder("{");
+    for (int i = nextPresent(0); i >= 0; i = nextPresent(i + 1)) {
+      if (result.length() > 1) {
+        result.append(", ");
+      }
+      result.append(accessPathAt(i)).append('=').append(NULLNESS_VALUES[valueAt(i)]);
+    }
+    return result.append('}').toString();
   }
 
   @Override
@@ -229,8 +397,9 @@ public class NullnessStore implements Store<NullnessStore> {
    */
   public NullnessStore uprootAccessPaths(
       Map<LocalVariableNode, LocalVariableNode> localVarTranslations) {
-    NullnessStore.Builder nullnessBuilder = NullnessStore.empty().toBuilder();
-    for (AccessPath ap : contents.keySet()) {
+    NullnessStore.Builder nullnessBuilder = new Builder(table);
+    for (int i = nextPresent(0); i >= 0; i = nextPresent(i + 1)) {
+      AccessPath ap = accessPathAt(i);
       Element element = ap.getRoot();
       if (element == null) {
         // Access path is rooted at the receiver, so we don't need to uproot it
@@ -240,7 +409,7 @@ public class NullnessStore implements Store<NullnessStore> {
         if (element.equals(fromVar.getElement())) {
           LocalVariableNode toVar = localVarTranslations.get(fromVar);
           AccessPath newAP = AccessPath.switchRoot(ap, toVar.getElement());
-          nullnessBuilder.setInformation(newAP, contents.get(ap));
+          nullnessBuilder.setInformation(newAP, NULLNESS_VALUES[valueAt(i)]);
         }
       }
     }
@@ -254,19 +423,224 @@ public class NullnessStore implements Store<NullnessStore> {
    * @return NullnessStore containing only AccessPaths that pass the predicate
    */
   public NullnessStore filterAccessPaths(Predicate<AccessPath> pred) {
+    NullnessStore.Builder result = new Builder(table);
+    for (int i = nextPresent(0); i >= 0; i = nextPresent(i + 1)) {
+      AccessPath ap = accessPathAt(i);
+      if (pred.test(ap)) {
+        result.setInformation(ap, NULLNESS_VALUES[valueAt(i)]);
+      }
+    }
+    return result.build();
+  }
+
+  private Nullness getOrDefault(AccessPath accessPath, Nullness defaultValue) {
+    Nullness value = get(accessPath);
+    return value != null ? value : defaultValue;
+  }
+
+  @Nullable
+  private Nullness get(AccessPath accessPath) {
+    if (table == null) {
+      return null;
+    }
+    int i = table.indexOf(accessPath);
+    return i >= 0 && isPresent(i) ? NULLNESS_VALUES[valueAt(i)] : null;
+  }
+
+  private boolean isPresent(int i) {
+    int c = i >>> 6;
+    if (c >= chunks.length) {
+      return false;
+    }
+    Chunk chunk = chunks[c];
+    return chunk != null && (chunk.present & (1L << i)) != 0;
+  }
+
+  /** Returns the ordinal of the fact for index {@code i}, which must be present */
+  private byte valueAt(int i) {
+    return castToNonNull(chunks[i >>> 6]).values[i & (Chunk.SIZE - 1)];
+  }
+
+  /** Returns the first index at or after {@code from} with a fact in this store, or -1 if none */
+  private int nextPresent(int from) {
+    int c = from >>> 6;
+    if (c >= chunks.length) {
+      return -1;
+    }
+    Chunk chunk = chunks[c];
+    long bits = chunk == null ? 0 : chunk.present & (-1L << from);
+    while (bits == 0) {
+      if (++c == chunks.length) {
+        return -1;
+      }
+      chunk = chunks[c];
+      bits = chunk == null ? 0 : chunk.present;
+    }
+    return c * Chunk.SIZE + Long.numberOfTrailingZeros(bits);
+  }
+
+  /** Builds a store from the first {@code length} entries of {@code chunks}, trimming them */
+  private static NullnessStore fromChunks(
+      @Nullable AccessPathTable table, @Nullable Chunk[] chunks, int length) {
+    while (length > 0 && chunks[length - 1] == null) {
+      length--;
+    }
+    if (length == 0) {
+      return emptyStore(table);
+    }
     return new NullnessStore(
-        contents.entrySet().stream()
-            .filter(e -> pred.test(e.getKey()))
-            .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue)));
+        table, length == chunks.length ? chunks : Arrays.copyOf(chunks, length));
+  }
+
+  /** Returns the empty store with the given table, so that stores derived from it share it */
+  private static NullnessStore emptyStore(@Nullable AccessPathTable table) {
+    return table == null ? EMPTY : table.emptyStore;
+  }
+
+  private static AccessPathTable castToNonNull(@Nullable AccessPathTable table) {
+    if (table == null) {
+      throw new IllegalStateException("no access path table for a store with facts");
+    }
+    return table;
+  }
+
+  private static Chunk castToNonNull(@Nullable Chunk chunk) {
+    if (chunk == null) {
+      throw new IllegalStateException("no facts for an index assumed to be present");
+    }
+    return chunk;
+  }
+
+  /**
+   * The facts for 64 consecutive indices of an {@link AccessPathTable}. Immutable once it is
+   * reachable from a store; a {@link Builder} only mutates chunks it created itself.
+   */
+  private static final class Chunk {
+
+    static final int SIZE = Long.SIZE;
+
+    /** Bit i is set iff there is a fact for the i-th index in the chunk */
+    long present;
+
+    /** Ordinal of the fact for the i-th index in the chunk, if present */
+    final byte[] values;
+
+    Chunk(long present, byte[] values) {
+      this.present = present;
+      this.values = values;
+    }
+
+    Chunk copy() {
+      return new Chunk(present, values.clone());
+    }
+
+    /** Returns the join of the two chunks, reusing one of them if possible; null if empty */
+    @Nullable
+    Chunk leastUpperBound(Chunk other) {
+      long both = present & other.present;
+      if (both == 0) {
+        return null;
+      }
+      boolean sameAsThis = both == present;
+      boolean sameAsOther = both == other.present;
+      byte[] result = new byte[SIZE];
+      for (long bits = both; bits != 0; bits &= bits - 1) {
+        int i = Long.numberOfTrailingZeros(bits);
+        byte lub = LEAST_UPPER_BOUNDS[values[i]][other.values[i]];
+        result[i] = lub;
+        sameAsThis &= lub == values[i];
+        sameAsOther &= lub == other.values[i];
+      }
+      if (sameAsThis) {
+        return this;
+      }
+      if (sameAsOther) {
+        return other;
+      }
+      return new Chunk(both, result);
+    }
+
+    boolean sameFacts(Chunk other) {
+      if (present != other.present) {
+        return false;
+      }
+      for (long bits = present; bits != 0; bits &= bits - 1) {
+        int i = Long.numberOfTrailingZeros(bits);
+        if (values[i] != other.values[i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  private AccessPath accessPathAt(int i) {
+    if (table == null) {
+      // only reachable if a store without a table has some key, which build() never produces
+      throw new IllegalStateException("non-empty store without an access path table");
+    }
+    return table.get(i);
+  }
+
+  /**
+   * Append-only table interning the access paths of stores built from a common prototype, so they
+   * can be referred to by index.
+   */
+  private static final class AccessPathTable {
+
+    private final Map<AccessPath, Integer> indices = new HashMap<>();
+
+    private final List<AccessPath> accessPaths = new ArrayList<>();
+
+    /** The empty store with this table, returned whenever a store with this table has no facts */
+    final NullnessStore emptyStore = new NullnessStore(this, NO_CHUNKS);
+
+    int indexOf(AccessPath accessPath) {
+      Integer index = indices.get(accessPath);
+      return index == null ? -1 : index;
+    }
+
+    int intern(AccessPath accessPath) {
+      Integer index = indices.get(accessPath);
+      if (index == null) {
+        index = accessPaths.size();
+        accessPaths.add(accessPath);
+        indices.put(accessPath, index);
+      }
+      return index;
+    }
+
+    AccessPath get(int index) {
+      return accessPaths.get(index);
+    }
   }
 
   /** class for building up instances of the store. */
   public static final class Builder {
-    private final Map<AccessPath, Nullness> contents;
+
+    @Nullable private AccessPathTable table;
+
+    private @Nullable Chunk[] chunks;
+
+    /** Whether {@link #chunks} is shared with a store, and must be copied before writing */
+    private boolean shared;
+
+    /**
+     * Chunks created by this builder since the last {@link #build()}, which it may mutate in place;
+     * all others are shared with some store.
+     */
+    private final Set<Chunk> ownedChunks = Collections.newSetFromMap(new IdentityHashMap<>());
 
     Builder(NullnessStore prototype) {
+      table = prototype.table;
+      chunks = prototype.chunks;
+      shared = true;
+    }
 
-      contents = new HashMap<>(prototype.contents);
+    private Builder(@Nullable AccessPathTable table) {
+      this.table = table;
+      chunks = NO_CHUNKS;
+      shared = true;
     }
 
     /**
@@ -280,7 +654,42 @@ public class NullnessStore implements Store<NullnessStore> {
      * @return the new builder
      */
     public NullnessStore.Builder setInformation(AccessPath ap, Nullness value) {
-      contents.put(checkNotNull(ap), checkNotNull(value));
+      checkNotNull(ap);
+      checkNotNull(value);
+      if (table == null) {
+        table = new AccessPathTable();
+      }
+      int i = table.intern(ap);
+      int c = i >>> 6;
+      byte ordinal = (byte) value.ordinal();
+      if (c < chunks.length) {
+        Chunk existing = chunks[c];
+        if (existing != null
+            && (existing.present & (1L << i)) != 0
+            && existing.values[i & (Chunk.SIZE - 1)] == ordinal) {
+          // unchanged; keep sharing the chunk
+          return this;
+        }
+      }
+      if (c >= chunks.length) {
+        chunks = Arrays.copyOf(chunks, Math.max(c + 1, chunks.length * 2));
+        shared = false;
+      } else if (shared) {
+        chunks = chunks.clone();
+        shared = false;
+      }
+      Chunk chunk = chunks[c];
+      if (chunk == null) {
+        chunk = new Chunk(0, new byte[Chunk.SIZE]);
+        ownedChunks.add(chunk);
+        chunks[c] = chunk;
+      } else if (!ownedChunks.contains(chunk)) {
+        chunk = chunk.copy();
+        ownedChunks.add(chunk);
+        chunks[c] = chunk;
+      }
+      chunk.present |= 1L << i;
+      chunk.values[i & (Chunk.SIZE - 1)] = ordinal;
       return this;
     }
 
@@ -290,7 +699,12 @@ public class NullnessStore implements Store<NullnessStore> {
      * @return a store constructed from everything added to the builder
      */
     public NullnessStore build() {
-      return new NullnessStore(contents);
+      NullnessStore result = fromChunks(table, chunks, chunks.length);
+      // later calls to setInformation must not modify the built store
+      chunks = result.chunks;
+      shared = true;
+      ownedChunks.clear();
+      return result;
     }
   }
 }
@@ -0,0 +1,530 @@
+package com.uber.nullaway.dataflow;
+
+import static com.uber.nullaway.NullabilityUtil.castToNonNull;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.errorprone.util.ASTHelpers;
+import com.sun.source.tree.BlockTree;
+import com.sun.source.tree.ClassTree;
+import com.sun.source.tree.IdentifierTree;
+import com.sun.source.tree.MemberSelectTree;
+import com.sun.source.tree.MethodTree;
+import com.sun.source.tree.NewClassTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.util.TaskEvent;
+import com.sun.source.util.TaskListener;
+import com.sun.source.util.TreePath;
+import com.sun.source.util.TreeScanner;
+import com.sun.tools.javac.api.MultiTaskListener;
+import com.sun.tools.javac.code.Attribute;
+import com.sun.tools.javac.code.Symbol;
+import com.sun.tools.javac.code.Type;
+import com.sun.tools.javac.util.Context;
+import com.sun.tools.javac.util.Log;
+import com.sun.tools.javac.util.Name;
+import com.sun.tools.javac.util.Names;
+import com.uber.nullaway.CodeAnnotationInfo;
+import com.uber.nullaway.Config;
+import com.uber.nullaway.NullAwayVersion;
+import com.uber.nullaway.handlers.Handler;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.Nullable;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.NestingKind;
+
+/**
+ * Cache of the fields guaranteed to be non-null at the exit of methods and initializer blocks,
+ * which persists across compilations in a binary file; see {@link
+ * Config#getSummaryCacheDirectory()}.
+ *
+ * <p>A summary is keyed by a hash of the NullAway version (see {@link NullAwayVersion}), options
+ * and models loaded by handlers (see {@link Handler#onRegisterModelsFingerprint()}), the source of
+ * the method (or block), and a description of every declaration the source refers to: its type,
+ * its annotations, whether it is in annotated code, and for methods, whether handlers consider that
+ * it may return null. So, a summary is reused only if none of the facts dataflow analysis of the
+ * method could rely on has changed, even if the method is recompiled because some other part of
+ * its compilation unit changed. Methods of local and anonymous classes are never cached, as their
+ * dataflow also depends on the nullness of captured locals. The cache is disabled if the NullAway
+ * version is unknown.
+ *
+ * <p>The cache file is read into memory when the first summary is looked up, and only an index
+ * from keys to offsets is built eagerly; summaries are decoded on a hit. The file is not
+ * memory-mapped, so that it can be replaced while the compiler is running, including on Windows.
+ * New summaries are written back when javac finishes the compilation. Errors reading or writing the
+ * file are ignored, or logged as a warning, since the cache only saves work: in the worst case,
+ * summaries are recomputed.
+ */
+final class PersistentSummaryCache {
+
+  static final String FILE_NAME = "nullaway-summaries.bin";
+
+  private static final int MAGIC = 0x4e41534d;
+
+  private static final int FORMAT_VERSION = 1;
+
+  /** Beyond this many entries, summaries not used by the current compilation are dropped */
+  private static final int MAX_ENTRIES = 1 << 18;
+
+  private static final char FIELD_SEPARATOR = '#';
+
+  private final Config config;
+
+  private final Handler handler;
+
+  private final String version;
+
+  private final String modelsFingerprint;
+
+  private final Path cacheFile;
+
+  private final Log log;
+
+  /** Contents of the cache file, or null if not loaded yet or if it could not be read */
+  @Nullable private ByteBuffer loadedBuffer;
+
+  /** Offsets in {@link #loadedBuffer} of the summary for each key, built on first use */
+  @Nullable private Map<HashCode, Integer> loadedOffsets;
+
+  /** Summaries computed or found in the file in this compilation, to be written back */
+  private final Map<HashCode, ImmutableList<String>> usedSummaries = new LinkedHashMap<>();
+
+  private boolean hasNewSummaries;
+
+  /** Resolved summaries of each kind for trees of the current compilation unit */
+  private final Map<SummaryKind, Map<Tree, Set<Element>>> resolvedSummaries =
+      new EnumMap<>(SummaryKind.class);
+
+  private PersistentSummaryCache(
+      Config config, Handler handler, String version, String directory, Context context) {
+    this.config = config;
+    this.handler = handler;
+    this.version = version;
+    this.modelsFingerprint = handler.onRegisterModelsFingerprint();
+    this.cacheFile = Paths.get(directory).resolve(FILE_NAME);
+    this.log = Log.instance(context);
+    MultiTaskListener.instance(context)
+        .add(
+            new TaskListener() {
+              @Override
+              public void finished(TaskEvent e) {
+                if (e.getKind() == TaskEvent.Kind.COMPILATION) {
+                  flush();
+                }
+              }
+            });
+  }
+
+  /**
+   * Creates the cache for a compilation.
+   *
+   * @param config analysis config
+   * @param handler handler instance
+   * @param directory directory of the cache file
+   * @param context Javac context of the compilation
+   * @return the cache, or {@code null} if the NullAway version is unknown, since summaries written
+   *     by another version could then be reused
+   */
+  @Nullable
+  static PersistentSummaryCache create(
+      Config config, Handler handler, String directory, Context context) {
+    String version = NullAwayVersion.get();
+    if (version == null) {
+      Log.instance(context)
+          .printRawLines(
+              Log.WriterKind.WARNING,
+              "warning: NullAway summary cache disabled, as the NullAway version is unknown");
+      return null;
+    }
+    return new PersistentSummaryCache(config, handler, version, directory, context);
+  }
+
+  /** The kinds of summaries stored in the cache */
+  enum SummaryKind {
+    /** instance fields of the receiver which are non-null at exit */
+    NONNULL_RECEIVER_FIELDS_AT_EXIT,
+    /** static fields which are non-null at exit */
+    NONNULL_STATIC_FIELDS_AT_EXIT
+  }
+
+  /** A function computing the summary of a method or initializer block, on a cache miss */
+  interface SummaryComputation {
+    Set<Element> compute();
+  }
+
+  /**
+   * Gets the summary for a method or initializer block, from the cache if possible.
+   *
+   * @param path tree path of the method or initializer block
+   * @param kind the kind of summary
+   * @param context Javac context
+   * @param computation computes the summary on a cache miss
+   * @return the summary
+   */
+  Set<Element> getOrCompute(
+      TreePath path, SummaryKind kind, Context context, SummaryComputation computation) {
+    Tree tree = path.getLeaf();
+    Map<Tree, Set<Element>> resolved =
+        resolvedSummaries.computeIfAbsent(kind, k -> new IdentityHashMap<>());
+    Set<Element> result = resolved.get(tree);
+    if (result != null) {
+      return result;
+    }
+    Symbol.ClassSymbol enclosingClass = getEnclosingClass(path);
+    if (enclosingClass == null || isInLocalClass(enclosingClass)) {
+      return computation.compute();
+    }
+    Map<String, Symbol> referencedFields = new LinkedHashMap<>();
+    HashCode key = computeKey(tree, kind, enclosingClass, referencedFields, context);
+    ImmutableList<String> encoded = lookup(key);
+    if (encoded != null) {
+      result = resolve(encoded, enclosingClass, referencedFields, Names.instance(context));
+    }
+    if (result == null) {
+      result = computation.compute();
+      ImmutableList<String> newEncoded = encode(result);
+      if (newEncoded == null) {
+        // some field cannot be referenced by name; do not persist the summary
+        resolved.put(tree, result);
+        return result;
+      }
+      encoded = newEncoded;
+      hasNewSummaries = true;
+    }
+    usedSummaries.put(key, encoded);
+    resolved.put(tree, result);
+    return result;
+  }
+
+  /** Clears summaries resolved for the current compilation unit. */
+  void clear() {
+    resolvedSummaries.clear();
+  }
+
+  @Nullable
+  private static Symbol.ClassSymbol getEnclosingClass(TreePath path) {
+    Tree tree = path.getLeaf();
+    if (tree instanceof MethodTree) {
+      Symbol.MethodSymbol methodSymbol = ASTHelpers.getSymbol((MethodTree) tree);
+      return methodSymbol == null ? null : methodSymbol.enclClass();
+    }
+    TreePath parent = path.getParentPath();
+    if (!(tree instanceof BlockTree)
+        || parent == null
+        || !(parent.getLeaf() instanceof ClassTree)) {
+      return null;
+    }
+    return ASTHelpers.getSymbol((ClassTree) parent.getLeaf());
+  }
+
+  private static boolean isInLocalClass(Symbol.ClassSymbol classSymbol) {
+    for (Symbol s = classSymbol; s instanceof Symbol.ClassSymbol; s = s.owner) {
+      NestingKind nestingKind = ((Symbol.ClassSymbol) s).getNestingKind();
+      if (nestingKind == NestingKind.LOCAL || nestingKind == NestingKind.ANONYMOUS) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private HashCode computeKey(
+      Tree tree,
+      SummaryKind kind,
+      Symbol.ClassSymbol enclosingClass,
+      Map<String, Symbol> referencedFields,
+      Context context) {
+    Hasher hasher = Hashing.murmur3_128().newHasher();
+    hasher.putInt(FORMAT_VERSION);
+    putString(hasher, version);
+    putString(hasher, config.getConfigFingerprint());
+    putString(hasher, modelsFingerprint);
+    putString(hasher, kind.name());
+    putString(hasher, enclosingClass.flatName().toString());
+    putString(hasher, tree.toString());
+    CodeAnnotationInfo codeAnnotationInfo = CodeAnnotationInfo.instance(context);
+    putDeclaration(hasher, enclosingClass, codeAnnotationInfo, context);
+    if (tree instanceof MethodTree) {
+      Symbol.MethodSymbol methodSymbol = ASTHelpers.getSymbol((MethodTree) tree);
+      if (methodSymbol != null) {
+        putDeclaration(hasher, methodSymbol, codeAnnotationInfo, context);
+      }
+    }
+    new TreeScanner<Void, Void>() {
+      @Override
+      public Void visitIdentifier(IdentifierTree node, Void unused) {
+        putReference(ASTHelpers.getSymbol(node));
+        return null;
+      }
+
+      @Override
+      public Void visitMemberSelect(MemberSelectTree node, Void unused) {
+        putReference(ASTHelpers.getSymbol(node));
+        return super.visitMemberSelect(node, unused);
+      }
+
+      @Override
+      public Void visitNewClass(NewClassTree node, Void unused) {
+        putReference(ASTHelpers.getSymbol(node));
+        return super.visitNewClass(node, unused);
+      }
+
+      private void putReference(@Nullable Symbol symbol) {
+        if (symbol == null) {
+          return;
+        }
+        if (symbol.getKind() == ElementKind.FIELD) {
+          referencedFields.put(fieldName(symbol), symbol);
+        }
+        putDeclaration(hasher, symbol, codeAnnotationInfo, context);
+      }
+    }.scan(tree, null);
+    return hasher.hash();
+  }
+
+  private void putDeclaration(
+      Hasher hasher, Symbol symbol, CodeAnnotationInfo codeAnnotationInfo, Context context) {
+    putString(hasher, symbol.getKind().name());
+    Symbol owner = symbol.owner;
+    putString(
+        hasher,
+        owner instanceof Symbol.ClassSymbol
+            ? ((Symbol.ClassSymbol) owner).flatName().toString()
+            : (owner == null ? "" : owner.name.toString()));
+    putString(hasher, symbol.name.toString());
+    Type type = symbol.asType();
+    putString(hasher, type == null ? "" : type.toString());
+    for (Attribute.Compound annotation : symbol.getRawAttributes()) {
+      putString(hasher, annotation.toString());
+    }
+    for (Attribute.TypeCompound annotation : symbol.getRawTypeAttributes()) {
+      putString(hasher, annotation.toString());
+    }
+    if (symbol instanceof Symbol.MethodSymbol) {
+      Symbol.MethodSymbol methodSymbol = (Symbol.MethodSymbol) symbol;
+      for (Symbol.VarSymbol param : methodSymbol.getParameters()) {
+        for (Attribute.Compound annotation : param.getRawAttributes()) {
+          putString(hasher, annotation.toString());
+        }
+      }
+      hasher.putBoolean(
+          handler.onSparseDataflowMayReturnNull(
+              context,
+              methodSymbol,
+              codeAnnotationInfo.hasNullableAnnotation(methodSymbol, config)));
+    }
+    if (owner instanceof Symbol.ClassSymbol || symbol instanceof Symbol.ClassSymbol) {
+      hasher.putBoolean(codeAnnotationInfo.isSymbolUnannotated(symbol, config));
+    }
+  }
+
+  private static void putString(Hasher hasher, String s) {
+    hasher.putInt(s.length());
+    hasher.putString(s, UTF_8);
+  }
+
+  private static String fieldName(Symbol field) {
+    return ((Symbol.ClassSymbol) field.owner).flatName().toString() + FIELD_SEPARATOR + field.name;
+  }
+
+  @Nullable
+  private static ImmutableList<String> encode(Set<Element> fields) {
+    ImmutableList.Builder<String> builder = ImmutableList.builder();
+    for (Element field : fields) {
+      if (!(((Symbol) field).owner instanceof Symbol.ClassSymbol)) {
+        return null;
+      }
+      builder.add(fieldName((Symbol) field));
+    }
+    return builder.build();
+  }
+
+  /**
+   * Finds the field symbols named in a cached summary, among the fields referenced by the method
+   * and the fields of its enclosing classes and their superclasses. Returns null if some field
+   * cannot be found, in which case the summary is recomputed.
+   */
+  @Nullable
+  private static Set<Element> resolve(
+      ImmutableList<String> encoded,
+      Symbol.ClassSymbol enclosingClass,
+      Map<String, Symbol> referencedFields,
+      Names names) {
+    Set<Element> result = new LinkedHashSet<>();
+    for (String name : encoded) {
+      Symbol field = referencedFields.get(name);
+      if (field == null) {
+        field = findField(name, enclosingClass, names);
+      }
+      if (field == null) {
+        return null;
+      }
+      result.add(field);
+    }
+    return result;
+  }
+
+  @Nullable
+  private static Symbol findField(String name, Symbol.ClassSymbol enclosingClass, Names names) {
+    int separator = name.lastIndexOf(FIELD_SEPARATOR);
+    String ownerName = name.substring(0, separator);
+    Name fieldName = names.fromString(name.substring(separator + 1));
+    for (Symbol outer = enclosingClass; outer instanceof Symbol.ClassSymbol; outer = outer.owner) {
+      Symbol.ClassSymbol c = (Symbol.ClassSymbol) outer;
+      while (c != null) {
+        if (c.flatName().contentEquals(ownerName)) {
+          for (Symbol member : c.members().getSymbolsByName(fieldName)) {
+            if (member.getKind() == ElementKind.FIELD) {
+              return member;
+            }
+          }
+          return null;
+        }
+        Type superclass = c.getSuperclass();
+        c =
+            superclass.tsym instanceof Symbol.ClassSymbol
+                ? (Symbol.ClassSymbol) superclass.tsym
+                : null;
+      }
+    }
+    return null;
+  }
+
+  @Nullable
+  private ImmutableList<String> lookup(HashCode key) {
+    ImmutableList<String> summary = usedSummaries.get(key);
+    if (summary != null) {
+      return summary;
+    }
+    if (loadedOffsets == null) {
+      loadedOffsets = load();
+    }
+    Integer offset = loadedOffsets.get(key);
+    if (offset == null || loadedBuffer == null) {
+      return null;
+    }
+    return decodeSummary(loadedBuffer, offset);
+  }
+
+  /**
+   * Reads the cache file and indexes its entries. The layout is: magic number, format version,
+   * number of entries, then for each entry a 16-byte key, the number of fields, and the UTF-8 bytes
+   * of each field name, preceded by their length.
+   */
+  private Map<HashCode, Integer> load() {
+    if (!Files.isRegularFile(cacheFile)) {
+      return Collections.emptyMap();
+    }
+    try {
+      ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(cacheFile));
+      if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+        return Collections.emptyMap();
+      }
+      int count = buffer.getInt();
+      Map<HashCode, Integer> offsets = new LinkedHashMap<>();
+      byte[] keyBytes = new byte[16];
+      for (int i = 0; i < count; i++) {
+        buffer.get(keyBytes);
+        offsets.put(HashCode.fromBytes(keyBytes), buffer.position());
+        int fields = buffer.getInt();
+        for (int j = 0; j < fields; j++) {
+          int length = buffer.getInt();
+          buffer.position(buffer.position() + length);
+        }
+      }
+      loadedBuffer = buffer;
+      return offsets;
+    } catch (IOException | BufferUnderflowException | IllegalArgumentException e) {
+      // unreadable or truncated file; start from an empty cache
+      return Collections.emptyMap();
+    }
+  }
+
+  private static ImmutableList<String> decodeSummary(ByteBuffer loaded, int offset) {
+    ByteBuffer buffer = loaded.duplicate();
+    buffer.position(offset);
+    int fields = buffer.getInt();
+    ImmutableList.Builder<String> builder = ImmutableList.builder();
+    for (int j = 0; j < fields; j++) {
+      byte[] bytes = new byte[buffer.getInt()];
+      buffer.get(bytes);
+      builder.add(new String(bytes, UTF_8));
+    }
+    return builder.build();
+  }
+
+  /**
+   * Writes back the cache file, if new summaries were computed. Summaries from the previous file
+   * that were not used are kept, unless the file has grown beyond {@link #MAX_ENTRIES}.
+   */
+  private void flush() {
+    if (!hasNewSummaries) {
+      return;
+    }
+    Map<HashCode, ImmutableList<String>> entries = new LinkedHashMap<>();
+    ByteBuffer buffer = loadedBuffer;
+    Map<HashCode, Integer> offsets = loadedOffsets;
+    if (buffer != null
+        && offsets != null
+        && offsets.size() + usedSummaries.size() <= MAX_ENTRIES) {
+      for (Map.Entry<HashCode, Integer> entry : offsets.entrySet()) {
+        entries.put(entry.getKey(), decodeSummary(buffer, entry.getValue()));
+      }
+    }
+    entries.putAll(usedSummaries);
+    hasNewSummaries = false;
+    Path directory = castToNonNull(cacheFile.getParent());
+    Path tempFile = null;
+    try {
+      Files.createDirectories(directory);
+      tempFile = Files.createTempFile(directory, FILE_NAME, ".tmp");
+      try (OutputStream out = Files.newOutputStream(tempFile);
+          DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out))) {
+        data.writeInt(MAGIC);
+        data.writeInt(FORMAT_VERSION);
+        data.writeInt(entries.size());
+        for (Map.Entry<HashCode, ImmutableList<String>> entry : entries.entrySet()) {
+          data.write(entry.getKey().asBytes());
+          data.writeInt(entry.getValue().size());
+          for (String field : entry.getValue()) {
+            byte[] bytes = field.getBytes(UTF_8);
+            data.writeInt(bytes.length);
+            data.write(bytes);
+          }
+        }
+      }
+      Files.move(tempFile, cacheFile, StandardCopyOption.REPLACE_EXISTING);
+    } catch (IOException | RuntimeException e) {
+      // the cache is only an optimization; the next compilation recomputes missing summaries
+      log.printRawLines(
+          Log.WriterKind.WARNING,
+          "warning: NullAway could not write the summary cache file " + cacheFile + ": " + e);
+      if (tempFile != null) {
+        try {
+          Files.deleteIfExists(tempFile);
+        } catch (IOException | RuntimeException ignored) {
+          // leave the temporary file behind
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,182 @@
+package com.uber.nullaway.dataflow;
+
+import com.google.errorprone.util.ASTHelpers;
+import com.sun.source.tree.ClassTree;
+import com.sun.source.tree.CompoundAssignmentTree;
+import com.sun.source.tree.IdentifierTree;
+import com.sun.source.tree.LambdaExpressionTree;
+import com.sun.source.tree.LiteralTree;
+import com.sun.source.tree.MemberSelectTree;
+import com.sun.source.tree.MethodInvocationTree;
+import com.sun.source.tree.MethodTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.util.TreePath;
+import com.sun.source.util.TreeScanner;
+import com.sun.tools.javac.code.Symbol;
+import com.sun.tools.javac.code.Type;
+import com.sun.tools.javac.util.Context;
+import com.uber.nullaway.CodeAnnotationInfo;
+import com.uber.nullaway.Config;
+import com.uber.nullaway.NullabilityUtil;
+import com.uber.nullaway.handlers.Handler;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.annotation.Nullable;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.type.TypeKind;
+
+/**
+ * Cheap syntactic pre-pass used by the sparse dataflow mode; see {@link
+ * Config#isSparseDataflow()}.
+ *
+ * <p>For a method body, we check whether any {@code null} value can flow into the method's locals.
+ * The possible sources are: null literals, {@code @Nullable} parameters, reads of {@code @Nullable}
+ * fields, invocations of methods which may return null (per their annotations or per handlers, see
+ * {@link Handler#onSparseDataflowMayReturnNull(Context, Symbol.MethodSymbol, boolean)}), and reads
+ * of locals captured from an enclosing method. If there are none, dataflow would compute every
+ * expression in the method to be non-null, so we can answer queries without building the CFG.
+ *
+ * <p>Lambdas and local / anonymous classes within the method body are skipped, since they cannot
+ * write the method's locals; queries for expressions inside them always run dataflow.
+ */
+final class SparseDataflowPrepass {
+
+  private final Config config;
+
+  private final Handler handler;
+
+  /** Whether each already-scanned method may have null values flowing into its locals. */
+  private final Map<MethodTree, Boolean> methodMayHaveNullSources = new LinkedHashMap<>();
+
+  SparseDataflowPrepass(Config config, Handler handler) {
+    this.config = config;
+    this.handler = handler;
+  }
+
+  /**
+   * Checks whether dataflow analysis can be skipped for an expression.
+   *
+   * @param exprPath tree path of the expression
+   * @param context Javac context
+   * @return true if the expression is directly within a method into which no null value can flow,
+   *     meaning the expression is non-null; false if dataflow analysis must be run
+   */
+  boolean canSkipDataflow(TreePath exprPath, Context context) {
+    TreePath enclosingPath = NullabilityUtil.findEnclosingMethodOrLambdaOrInitializer(exprPath);
+    if (enclosingPath == null || !(enclosingPath.getLeaf() instanceof MethodTree)) {
+      return false;
+    }
+    MethodTree methodTree = (MethodTree) enclosingPath.getLeaf();
+    if (methodTree.getBody() == null) {
+      return false;
+    }
+    Boolean mayHaveNullSources = methodMayHaveNullSources.get(methodTree);
+    if (mayHaveNullSources == null) {
+      Symbol.MethodSymbol methodSymbol = ASTHelpers.getSymbol(methodTree);
+      mayHaveNullSources =
+          Boolean.TRUE.equals(
+              new NullSourceScanner(methodSymbol, context).scan(methodTree.getBody(), null));
+      methodMayHaveNullSources.put(methodTree, mayHaveNullSources);
+    }
+    return !mayHaveNullSources;
+  }
+
+  /** Clear the per-method results; must be called whenever the dataflow caches are invalidated. */
+  void clear() {
+    methodMayHaveNullSources.clear();
+  }
+
+  /** Returns true for a tree if any null source occurs within it. */
+  private final class NullSourceScanner extends TreeScanner<Boolean, Void> {
+
+    private final Symbol.MethodSymbol methodSymbol;
+
+    private final Context context;
+
+    private final CodeAnnotationInfo codeAnnotationInfo;
+
+    NullSourceScanner(Symbol.MethodSymbol methodSymbol, Context context) {
+      this.methodSymbol = methodSymbol;
+      this.context = context;
+      this.codeAnnotationInfo = CodeAnnotationInfo.instance(context);
+    }
+
+    @Override
+    public Boolean reduce(@Nullable Boolean r1, @Nullable Boolean r2) {
+      return Boolean.TRUE.equals(r1) || Boolean.TRUE.equals(r2);
+    }
+
+    @Override
+    public Boolean visitLiteral(LiteralTree tree, Void unused) {
+      return tree.getKind() == Tree.Kind.NULL_LITERAL;
+    }
+
+    @Override
+    public Boolean visitIdentifier(IdentifierTree tree, Void unused) {
+      return isNullSource(ASTHelpers.getSymbol(tree));
+    }
+
+    @Override
+    public Boolean visitMemberSelect(MemberSelectTree tree, Void unused) {
+      return isNullSource(ASTHelpers.getSymbol(tree)) || super.visitMemberSelect(tree, unused);
+    }
+
+    @Override
+    public Boolean visitMethodInvocation(MethodInvocationTree tree, Void unused) {
+      Symbol.MethodSymbol callee = ASTHelpers.getSymbol(tree);
+      if (callee != null && mayReturnNull(callee)) {
+        return true;
+      }
+      return super.visitMethodInvocation(tree, unused);
+    }
+
+    @Override
+    public Boolean visitCompoundAssignment(CompoundAssignmentTree tree, Void unused) {
+      // our transfer function gives string concatenation assignments a nullable value
+      Type type = ASTHelpers.getType(tree);
+      return (type != null && !type.isPrimitive()) || super.visitCompoundAssignment(tree, unused);
+    }
+
+    @Override
+    public Boolean visitLambdaExpression(LambdaExpressionTree tree, Void unused) {
+      return false;
+    }
+
+    @Override
+    public Boolean visitClass(ClassTree tree, Void unused) {
+      return false;
+    }
+
+    private boolean isNullSource(@Nullable Symbol symbol) {
+      if (symbol == null) {
+        return false;
+      }
+      ElementKind kind = symbol.getKind();
+      if (kind == ElementKind.FIELD) {
+        return codeAnnotationInfo.hasNullableAnnotation(symbol, config);
+      }
+      if (kind == ElementKind.PARAMETER
+          || kind == ElementKind.LOCAL_VARIABLE
+          || kind == ElementKind.EXCEPTION_PARAMETER
+          || kind == ElementKind.RESOURCE_VARIABLE) {
+        if (!methodSymbol.equals(symbol.owner)) {
+          // captured from an enclosing method, so its nullness comes from the enclosing
+          // environment
+          return true;
+        }
+        return kind == ElementKind.PARAMETER
+            && codeAnnotationInfo.hasNullableAnnotation(symbol, config);
+      }
+      return false;
+    }
+
+    private boolean mayReturnNull(Symbol.MethodSymbol callee) {
+      Type returnType = callee.getReturnType();
+      if (returnType.isPrimitive() || returnType.getKind() == TypeKind.VOID) {
+        return false;
+      }
+      return handler.onSparseDataflowMayReturnNull(
+          context, callee, codeAnnotationInfo.hasNullableAnnotation(callee, config));
+    }
+  }
+}
@@ -0,0 +1,202 @@
+package com.uber.nullaway.fixserialization;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary format of the output files of Fix Serialization, used by serialization versions whose
+ * adapter reports {@link
+ * com.uber.nullaway.fixserialization.adapters.SerializationAdapter#isBinaryFormat()}.
+ *
+ * <p>Each file holds the same table as the corresponding TSV file. It starts with {@link #MAGIC},
+ * the serialization version, the number of columns and the column names. Rows follow until the end
+ * of the file, with one string reference per column. Since most values (class names, method
+ * signatures and paths) repeat across rows, strings are interned in a per-file dictionary which is
+ * built while writing: a reference is a variable-length integer, which is {@code 0} for a string
+ * stored inline and not added to the dictionary, {@code 1} for a string stored inline and added to
+ * the dictionary with the next id, and {@code id + 2} for a string already in the dictionary.
+ * Inline strings are stored as their length in UTF-8 bytes, as a variable-length integer, followed
+ * by their bytes. Variable-length integers use 7 bits per byte, least significant group first, with
+ * the high bit set on all bytes but the last. Strings are not escaped.
+ */
+public final class BinaryTableFormat {
+
+  /** Magic number at the start of every binary output file. */
+  public static final int MAGIC = 0x4E415342;
+
+  /** Reference to a string stored inline and not added to the dictionary. */
+  private static final int INLINE = 0;
+
+  /** Reference to a string stored inline and added to the dictionary. */
+  private static final int NEW_ENTRY = 1;
+
+  /** Offset of dictionary ids in string references. */
+  private static final int FIRST_ID = 2;
+
+  /**
+   * Maximum number of dictionary entries per file. Once reached, new strings are stored inline, so
+   * that unique values (e.g. error messages) do not grow the dictionary without bound.
+   */
+  private static final int MAX_DICTIONARY_SIZE = 1 << 16;
+
+  private BinaryTableFormat() {}
+
+  /** Writes the rows of a single output file, keeping its string dictionary. */
+  static final class Encoder {
+
+    private final Map<String, Integer> dictionary = new HashMap<>();
+
+    private final int columnCount;
+
+    Encoder(int columnCount) {
+      this.columnCount = columnCount;
+    }
+
+    /**
+     * Writes the start of a file.
+     *
+     * @param out stream of the file.
+     * @param version serialization version.
+     * @param columns names of the columns.
+     */
+    static void writeHeader(OutputStream out, int version, List<String> columns)
+        throws IOException {
+      writeInt(out, MAGIC);
+      writeInt(out, version);
+      writeVarInt(out, columns.size());
+      for (String column : columns) {
+        writeBytes(out, column.getBytes(StandardCharsets.UTF_8));
+      }
+    }
+
+    /**
+     * Writes a row.
+     *
+     * @param out stream of the file, positioned after the header or a previous row.
+     * @param row values of the row, one per column.
+     */
+    void writeRow(OutputStream out, List<String> row) throws IOException {
+      if (row.size() != columnCount) {
+        throw new IllegalArgumentException(
+            "Expected " + columnCount + " values but found " + row.size() + ": " + row);
+      }
+      for (String value : row) {
+        Integer id = dictionary.get(value);
+        if (id != null) {
+          writeVarInt(out, id + FIRST_ID);
+        } else {
+          if (dictionary.size() < MAX_DICTIONARY_SIZE) {
+            dictionary.put(value, dictionary.size());
+            writeVarInt(out, NEW_ENTRY);
+          } else {
+            writeVarInt(out, INLINE);
+          }
+          writeBytes(out, value.getBytes(StandardCharsets.UTF_8));
+        }
+      }
+    }
+
+    private static void writeInt(OutputStream out, int value) throws IOException {
+      out.write(value >>> 24);
+      out.write(value >>> 16);
+      out.write(value >>> 8);
+      out.write(value);
+    }
+
+    private static void writeVarInt(OutputStream out, int value) throws IOException {
+      while ((value & ~0x7F) != 0) {
+        out.write((value & 0x7F) | 0x80);
+        value >>>= 7;
+      }
+      out.write(value);
+    }
+
+    private static void writeBytes(OutputStream out, byte[] bytes) throws IOException {
+      writeVarInt(out, bytes.length);
+      out.write(bytes);
+    }
+  }
+
+  /**
+   * Reads a binary output file.
+   *
+   * @param path path to the file.
+   * @return the rows of the file, starting with the column names.
+   * @throws IOException if the file cannot be read or is not in the binary format.
+   */
+  public static List<List<String>> read(Path path) throws IOException {
+    try (DataInputStream in =
+        new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+      if (in.readInt() != MAGIC) {
+        throw new IOException("Not a binary serialization output: " + path);
+      }
+      in.readInt(); // serialization version
+      int columnCount = readVarInt(in);
+      List<List<String>> rows = new ArrayList<>();
+      List<String> header = new ArrayList<>(columnCount);
+      for (int i = 0; i < columnCount; i++) {
+        header.add(readString(in));
+      }
+      rows.add(header);
+      List<String> dictionary = new ArrayList<>();
+      int first;
+      while ((first = in.read()) != -1) {
+        List<String> row = new ArrayList<>(columnCount);
+        for (int i = 0; i < columnCount; i++) {
+          int ref = i == 0 ? readVarInt(in, first) : readVarInt(in);
+          if (ref >= FIRST_ID) {
+            row.add(dictionary.get(ref - FIRST_ID));
+          } else {
+            String value = readString(in);
+            if (ref == NEW_ENTRY) {
+              dictionary.add(value);
+            }
+            row.add(value);
+          }
+        }
+        rows.add(row);
+      }
+      return rows;
+    }
+  }
+
+  private static int readVarInt(InputStream in) throws IOException {
+    int first = in.read();
+    if (first == -1) {
+      throw new EOFException();
+    }
+    return readVarInt(in, first);
+  }
+
+  private static int readVarInt(InputStream in, int first) throws IOException {
+    int value = first & 0x7F;
+    int shift = 7;
+    int current = first;
+    while ((current & 0x80) != 0) {
+      current = in.read();
+      if (current == -1) {
+        throw new EOFException();
+      }
+      value |= (current & 0x7F) << shift;
+      shift += 7;
+    }
+    return value;
+  }
+
+  private static String readString(DataInputStream in) throws IOException {
+    byte[] bytes = new byte[readVarInt(in)];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+}
@@ -26,6 +26,7 @@ import com.google.common.base.Preconditions;
 import com.uber.nullaway.fixserialization.adapters.SerializationAdapter;
 import com.uber.nullaway.fixserialization.adapters.SerializationV1Adapter;
 import com.uber.nullaway.fixserialization.adapters.SerializationV2Adapter;
+import com.uber.nullaway.fixserialization.adapters.SerializationV3Adapter;
 import com.uber.nullaway.fixserialization.out.SuggestedNullableFixInfo;
 import java.io.IOException;
 import java.nio.file.Files;
@@ -138,12 +139,14 @@ public class FixSerializationConfig {
         return new SerializationV1Adapter();
       case 2:
         return new SerializationV2Adapter();
+      case 3:
+        return new SerializationV3Adapter();
       default:
         throw new RuntimeException(
             "Unrecognized NullAway serialization version: "
                 + version
                 + ". Supported versions: 1 to "
-                + SerializationAdapter.LATEST_VERSION
+                + SerializationAdapter.HIGHEST_SUPPORTED_VERSION
                 + ".");
     }
   }
@@ -103,12 +103,12 @@ public class SerializationService {
     if (trees.getPath(target) == null) {
       return;
     }
-    SymbolLocation location = SymbolLocation.createLocationFromSymbol(target);
-    SuggestedNullableFixInfo suggestedNullableFixInfo =
-        buildFixMetadata(state.getPath(), errorMessage, location);
     Serializer serializer = serializationConfig.getSerializer();
     Preconditions.checkNotNull(
         serializer, "Serializer shouldn't be null at this point, error in configuration setting!");
+    SymbolLocation location = SymbolLocation.createLocationFromSymbol(target, serializer);
+    SuggestedNullableFixInfo suggestedNullableFixInfo =
+        buildFixMetadata(state.getPath(), errorMessage, location);
     serializer.serializeSuggestedFixInfo(
         suggestedNullableFixInfo, serializationConfig.suggestEnclosing);
   }
@@ -130,7 +130,8 @@ public class SerializationService {
     Serializer serializer = config.getSerializationConfig().getSerializer();
     Preconditions.checkNotNull(
         serializer, "Serializer shouldn't be null at this point, error in configuration setting!");
-    serializer.serializeErrorInfo(new ErrorInfo(state.getPath(), errorTree, errorMessage, target));
+    serializer.serializeErrorInfo(
+        new ErrorInfo(state.getPath(), errorTree, errorMessage, target, serializer));
   }
 
   /**
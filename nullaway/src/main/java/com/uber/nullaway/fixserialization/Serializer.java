@@ -22,12 +22,17 @@
 
 package com.uber.nullaway.fixserialization;
 
+import com.sun.source.util.TaskEvent;
+import com.sun.source.util.TaskListener;
+import com.sun.tools.javac.api.MultiTaskListener;
 import com.sun.tools.javac.code.Symbol;
+import com.sun.tools.javac.util.Context;
 import com.uber.nullaway.ErrorMessage;
 import com.uber.nullaway.fixserialization.adapters.SerializationAdapter;
 import com.uber.nullaway.fixserialization.out.ErrorInfo;
 import com.uber.nullaway.fixserialization.out.FieldInitializationInfo;
 import com.uber.nullaway.fixserialization.out.SuggestedNullableFixInfo;
+import java.io.BufferedOutputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
@@ -37,11 +42,24 @@ import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import javax.annotation.Nullable;
 
 /**
  * Serializer class where all generated files in Fix Serialization package is created through APIs
  * of this class.
+ *
+ * <p>Rows are appended through a buffered stream per output file, which is kept open until the
+ * compilation finishes (see {@link #listenForCompilationEnd(Context)}). Streams are also flushed on
+ * JVM shutdown, in case the compilation end is never reported.
+ *
+ * <p>Output files are written as TSV, or in the {@link BinaryTableFormat} if the adapter requests
+ * it, in which case their extension is ".bin" instead of ".tsv".
  */
 public class Serializer {
   /** Path to write errors. */
@@ -57,11 +75,35 @@ public class Serializer {
    */
   private final SerializationAdapter serializationAdapter;
 
+  /** Streams of the output files opened since the last compilation end, by path. */
+  private final Map<Path, OutputStream> openStreams = new LinkedHashMap<>();
+
+  /** Encoders of the output files, by path, if outputs are written in the binary format. */
+  private final Map<Path, BinaryTableFormat.Encoder> binaryEncoders = new LinkedHashMap<>();
+
+  /** Hook closing {@link #openStreams} on JVM shutdown, registered while any stream is open. */
+  @Nullable private Thread shutdownHook;
+
+  /**
+   * Key of the marker put in the context of each compilation for which we registered a listener for
+   * the end of compilation. Compilations sharing this serializer may run concurrently, so whether
+   * a listener was registered is tracked per compilation.
+   */
+  private final Context.Key<Boolean> compilationEndListenerKey = new Context.Key<>();
+
+  /**
+   * Real paths of source files, by URI, resolved by this serializer since the last compilation
+   * end. Every serialized error and fix resolves the path of its source file, and resolving a real
+   * path hits the file system, while only a few distinct files are involved in a compilation.
+   */
+  private final Map<URI, Path> realPaths = new HashMap<>();
+
   public Serializer(FixSerializationConfig config, SerializationAdapter serializationAdapter) {
     String outputDirectory = config.outputDirectory;
-    this.errorOutputPath = Paths.get(outputDirectory, "errors.tsv");
-    this.suggestedFixesOutputPath = Paths.get(outputDirectory, "fixes.tsv");
-    this.fieldInitializationOutputPath = Paths.get(outputDirectory, "field_init.tsv");
+    String extension = serializationAdapter.isBinaryFormat() ? ".bin" : ".tsv";
+    this.errorOutputPath = Paths.get(outputDirectory, "errors" + extension);
+    this.suggestedFixesOutputPath = Paths.get(outputDirectory, "fixes" + extension);
+    this.fieldInitializationOutputPath = Paths.get(outputDirectory, "field_init" + extension);
     this.serializationAdapter = serializationAdapter;
     serializeVersion(outputDirectory);
     initializeOutputFiles(config);
@@ -77,9 +119,13 @@ public class Serializer {
     if (enclosing) {
       suggestedNullableFixInfo.initEnclosing();
     }
-    appendToFile(
-        suggestedNullableFixInfo.tabSeparatedToString(serializationAdapter),
-        suggestedFixesOutputPath);
+    if (serializationAdapter.isBinaryFormat()) {
+      appendRow(suggestedNullableFixInfo.toColumns(serializationAdapter), suggestedFixesOutputPath);
+    } else {
+      appendToFile(
+          suggestedNullableFixInfo.tabSeparatedToString(serializationAdapter),
+          suggestedFixesOutputPath);
+    }
   }
 
   /**
@@ -89,11 +135,19 @@ public class Serializer {
    */
   public void serializeErrorInfo(ErrorInfo errorInfo) {
     errorInfo.initEnclosing();
-    appendToFile(serializationAdapter.serializeError(errorInfo), errorOutputPath);
+    if (serializationAdapter.isBinaryFormat()) {
+      appendRow(serializationAdapter.serializeErrorColumns(errorInfo), errorOutputPath);
+    } else {
+      appendToFile(serializationAdapter.serializeError(errorInfo), errorOutputPath);
+    }
   }
 
   public void serializeFieldInitializationInfo(FieldInitializationInfo info) {
-    appendToFile(info.tabSeparatedToString(serializationAdapter), fieldInitializationOutputPath);
+    if (serializationAdapter.isBinaryFormat()) {
+      appendRow(info.toColumns(serializationAdapter), fieldInitializationOutputPath);
+    } else {
+      appendToFile(info.tabSeparatedToString(serializationAdapter), fieldInitializationOutputPath);
+    }
   }
 
   /** Cleared the content of the file if exists and writes the header in the first line. */
@@ -103,9 +157,15 @@ public class Serializer {
     } catch (IOException e) {
       throw new RuntimeException("Could not clear file at: " + path, e);
     }
-    try (OutputStream os = new FileOutputStream(path.toFile())) {
-      header += "\n";
-      os.write(header.getBytes(Charset.defaultCharset()), 0, header.length());
+    try (OutputStream os = new BufferedOutputStream(new FileOutputStream(path.toFile()))) {
+      if (serializationAdapter.isBinaryFormat()) {
+        List<String> columns = Arrays.asList(header.split("\t"));
+        BinaryTableFormat.Encoder.writeHeader(
+            os, serializationAdapter.getSerializationVersion(), columns);
+        binaryEncoders.put(path, new BinaryTableFormat.Encoder(columns.size()));
+      } else {
+        os.write((header + "\n").getBytes(Charset.defaultCharset()));
+      }
       os.flush();
     } catch (IOException e) {
       throw new RuntimeException("Could not finish resetting File at Path: " + path, e);
@@ -153,22 +213,108 @@ public class Serializer {
     }
   }
 
-  private void appendToFile(String row, Path path) {
-    // Since there is no method available in API of either javac or errorprone to inform NullAway
-    // that the analysis is finished, we cannot open a single stream and flush it within a finalize
-    // method. Must open and close a new stream everytime we are appending a new line to a file.
+  /**
+   * Registers a listener closing the output files when the compilation of the given context
+   * finishes, unless one was already registered for that context. Must be called before rows are
+   * serialized in a new compilation.
+   *
+   * @param context Javac context of the current compilation.
+   */
+  public synchronized void listenForCompilationEnd(Context context) {
+    if (context.get(compilationEndListenerKey) != null) {
+      return;
+    }
+    context.put(compilationEndListenerKey, Boolean.TRUE);
+    MultiTaskListener.instance(context)
+        .add(
+            new TaskListener() {
+              @Override
+              public void finished(TaskEvent e) {
+                if (e.getKind() == TaskEvent.Kind.COMPILATION) {
+                  // files may be moved or relinked before the next compilation
+                  clearRealPaths();
+                  closeOpenStreams();
+                }
+              }
+            });
+  }
+
+  private synchronized void appendToFile(String row, Path path) {
     if (row == null || row.equals("")) {
       return;
     }
-    row = row + "\n";
-    try (OutputStream os = new FileOutputStream(path.toFile(), true)) {
-      os.write(row.getBytes(Charset.defaultCharset()), 0, row.length());
-      os.flush();
+    try {
+      getOpenStream(path).write((row + "\n").getBytes(Charset.defaultCharset()));
     } catch (IOException e) {
       throw new RuntimeException("Error happened for writing at file: " + path, e);
     }
   }
 
+  /** Appends a row to a file in the binary format, see {@link BinaryTableFormat}. */
+  private synchronized void appendRow(List<String> columns, Path path) {
+    BinaryTableFormat.Encoder encoder = binaryEncoders.get(path);
+    if (encoder == null) {
+      throw new IllegalStateException("Output file was not initialized: " + path);
+    }
+    try {
+      encoder.writeRow(getOpenStream(path), columns);
+    } catch (IOException e) {
+      throw new RuntimeException("Error happened for writing at file: " + path, e);
+    }
+  }
+
+  private OutputStream getOpenStream(Path path) throws IOException {
+    OutputStream stream = openStreams.get(path);
+    if (stream == null) {
+      stream =
+          new BufferedOutputStream(
+              Files.newOutputStream(path, StandardOpenOption.CREATE, StandardOpenOption.APPEND));
+      openStreams.put(path, stream);
+      registerShutdownHook();
+    }
+    return stream;
+  }
+
+  private void registerShutdownHook() {
+    if (shutdownHook == null) {
+      Thread hook = new Thread(this::closeOpenStreams, "NullAway serializer shutdown");
+      Runtime.getRuntime().addShutdownHook(hook);
+      shutdownHook = hook;
+    }
+  }
+
+  /** Flushes and closes all open output files, which are reopened on the next write. */
+  private synchronized void closeOpenStreams() {
+    RuntimeException failure = null;
+    for (Map.Entry<Path, OutputStream> entry : openStreams.entrySet()) {
+      try {
+        entry.getValue().close();
+      } catch (IOException e) {
+        if (failure == null) {
+          failure =
+              new RuntimeException("Error happened for writing at file: " + entry.getKey(), e);
+        }
+      }
+    }
+    openStreams.clear();
+    Thread hook = shutdownHook;
+    if (hook != null && Thread.currentThread() != hook) {
+      try {
+        Runtime.getRuntime().removeShutdownHook(hook);
+      } catch (IllegalStateException e) {
+        // the JVM is already shutting down, and the hook will find no open streams
+      }
+    }
+    shutdownHook = null;
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  private synchronized void clearRealPaths() {
+    realPaths.clear();
+  }
+
   /**
    * Converts the given uri to the real path. Note, in NullAway CI tests, source files exists in
    * memory and there is no real path leading to those files. Instead, we just serialize the path
@@ -189,6 +335,25 @@ public class Serializer {
     if (!"file".equals(uri.getScheme())) {
       return null;
     }
+    return resolveRealPath(uri);
+  }
+
+  /**
+   * Same as {@link #pathToSourceFileFromURI(URI)}, but real paths are cached by this serializer
+   * until the end of the compilation.
+   *
+   * @param uri Given uri.
+   * @return Real path for the give uri.
+   */
+  @Nullable
+  public synchronized Path getSourceFilePath(@Nullable URI uri) {
+    if (uri == null || !"file".equals(uri.getScheme())) {
+      return pathToSourceFileFromURI(uri);
+    }
+    return realPaths.computeIfAbsent(uri, Serializer::resolveRealPath);
+  }
+
+  private static Path resolveRealPath(URI uri) {
     Path path = Paths.get(uri);
     try {
       return path.toRealPath();
@@ -24,12 +24,14 @@ package com.uber.nullaway.fixserialization.adapters;
 
 import com.sun.tools.javac.code.Symbol;
 import com.uber.nullaway.fixserialization.out.ErrorInfo;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * Adapter for serialization service to provide its output according to the requested serialization
- * version. Outputs are currently produced in TSV format and columns in these files may change
- * future releases. Subclasses of this interface are used to maintain backward compatibility and
- * produce the exact output of previous NullAway versions.
+ * version. Outputs are produced in TSV format, or in a binary format from version 3 on, and
+ * columns in these files may change future releases. Subclasses of this interface are used to
+ * maintain backward compatibility and produce the exact output of previous NullAway versions.
  */
 public interface SerializationAdapter {
 
@@ -39,6 +41,12 @@ public interface SerializationAdapter {
    */
   int LATEST_VERSION = 2;
 
+  /**
+   * Highest serialization version supported, which may be higher than {@link #LATEST_VERSION} while
+   * its format is opt-in.
+   */
+  int HIGHEST_SUPPORTED_VERSION = 3;
+
   /**
    * Returns header of "errors.tsv" which contains all serialized {@link ErrorInfo} reported by
    * NullAway.
@@ -57,6 +65,27 @@ public interface SerializationAdapter {
    */
   String serializeError(ErrorInfo errorInfo);
 
+  /**
+   * Serializes contents of the given {@link ErrorInfo} according to the defined header into the
+   * values of its columns.
+   *
+   * @param errorInfo Given errorInfo to serialize.
+   * @return Values of the columns of "errors.tsv" for the given {@link ErrorInfo}.
+   */
+  default List<String> serializeErrorColumns(ErrorInfo errorInfo) {
+    return Arrays.asList(serializeError(errorInfo).split("\t", -1));
+  }
+
+  /**
+   * Checks if outputs are written in the binary format of {@link
+   * com.uber.nullaway.fixserialization.BinaryTableFormat} instead of TSV.
+   *
+   * @return true, if outputs are written in the binary format.
+   */
+  default boolean isBinaryFormat() {
+    return false;
+  }
+
   /**
    * Returns the associated version number with this adapter.
    *
@@ -27,7 +27,6 @@ import static com.uber.nullaway.fixserialization.out.ErrorInfo.EMPTY_NONNULL_TAR
 import com.sun.tools.javac.code.Symbol;
 import com.uber.nullaway.fixserialization.SerializationService;
 import com.uber.nullaway.fixserialization.Serializer;
-import com.uber.nullaway.fixserialization.location.SymbolLocation;
 import com.uber.nullaway.fixserialization.out.ErrorInfo;
 
 /** Adapter for version 1. Base version for serializations. */
@@ -57,9 +56,8 @@ public class SerializationV1Adapter implements SerializationAdapter {
         SerializationService.escapeSpecialCharacters(errorInfo.getErrorMessage().getMessage()),
         Serializer.serializeSymbol(errorInfo.getRegionClass(), this),
         Serializer.serializeSymbol(errorInfo.getRegionMember(), this),
-        (errorInfo.getNonnullTarget() != null
-            ? SymbolLocation.createLocationFromSymbol(errorInfo.getNonnullTarget())
-                .tabSeparatedToString(this)
+        (errorInfo.getNonnullTargetLocation() != null
+            ? errorInfo.getNonnullTargetLocation().tabSeparatedToString(this)
             : EMPTY_NONNULL_TARGET_LOCATION_STRING));
   }
 
@@ -27,7 +27,6 @@ import static com.uber.nullaway.fixserialization.out.ErrorInfo.EMPTY_NONNULL_TAR
 import com.sun.tools.javac.code.Symbol;
 import com.uber.nullaway.fixserialization.SerializationService;
 import com.uber.nullaway.fixserialization.Serializer;
-import com.uber.nullaway.fixserialization.location.SymbolLocation;
 import com.uber.nullaway.fixserialization.out.ErrorInfo;
 
 /**
@@ -72,9 +71,8 @@ public class SerializationV2Adapter implements SerializationAdapter {
         Serializer.serializeSymbol(errorInfo.getRegionMember(), this),
         String.valueOf(errorInfo.getOffset()),
         errorInfo.getPath() != null ? errorInfo.getPath().toString() : "null",
-        (errorInfo.getNonnullTarget() != null
-            ? SymbolLocation.createLocationFromSymbol(errorInfo.getNonnullTarget())
-                .tabSeparatedToString(this)
+        (errorInfo.getNonnullTargetLocation() != null
+            ? errorInfo.getNonnullTargetLocation().tabSeparatedToString(this)
             : EMPTY_NONNULL_TARGET_LOCATION_STRING));
   }
 
@@ -0,0 +1,55 @@
+package com.uber.nullaway.fixserialization.adapters;
+
+import com.uber.nullaway.fixserialization.Serializer;
+import com.uber.nullaway.fixserialization.location.SymbolLocation;
+import com.uber.nullaway.fixserialization.out.ErrorInfo;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Adapter for serialization version 3.
+ *
+ * <p>Updates to previous version (version 2):
+ *
+ * <ul>
+ *   <li>All outputs are written in the binary format of {@link
+ *       com.uber.nullaway.fixserialization.BinaryTableFormat}, with the same columns as in version
+ *       2, to files with a ".bin" extension instead of ".tsv".
+ *   <li>Values are not escaped, since the binary format stores them length-prefixed.
+ * </ul>
+ */
+public class SerializationV3Adapter extends SerializationV2Adapter {
+
+  /** Number of columns of a symbol location, see {@link SymbolLocation#header()}. */
+  private static final int SYMBOL_LOCATION_COLUMNS = 6;
+
+  @Override
+  public List<String> serializeErrorColumns(ErrorInfo errorInfo) {
+    List<String> columns = new ArrayList<>();
+    columns.addAll(
+        Arrays.asList(
+            errorInfo.getErrorMessage().getMessageType().toString(),
+            errorInfo.getErrorMessage().getMessage(),
+            Serializer.serializeSymbol(errorInfo.getRegionClass(), this),
+            Serializer.serializeSymbol(errorInfo.getRegionMember(), this),
+            String.valueOf(errorInfo.getOffset()),
+            errorInfo.getPath() != null ? errorInfo.getPath().toString() : "null"));
+    columns.addAll(
+        errorInfo.getNonnullTargetLocation() != null
+            ? errorInfo.getNonnullTargetLocation().toColumns(this)
+            : Collections.nCopies(SYMBOL_LOCATION_COLUMNS, "null"));
+    return columns;
+  }
+
+  @Override
+  public boolean isBinaryFormat() {
+    return true;
+  }
+
+  @Override
+  public int getSerializationVersion() {
+    return 3;
+  }
+}
@@ -44,6 +44,19 @@ public abstract class AbstractSymbolLocation implements SymbolLocation {
   protected final Symbol.ClassSymbol enclosingClass;
 
   public AbstractSymbolLocation(ElementKind type, Symbol target) {
+    this(type, target, null);
+  }
+
+  /**
+   * Creates the location of a symbol.
+   *
+   * @param type Element kind of the targeted symbol.
+   * @param target Targeted symbol.
+   * @param serializer Serializer caching the paths of source files, or {@code null} to resolve the
+   *     path of the file containing the symbol without caching it.
+   */
+  protected AbstractSymbolLocation(
+      ElementKind type, Symbol target, @Nullable Serializer serializer) {
     Preconditions.checkArgument(
         type.equals(target.getKind()),
         "Cannot instantiate element of type: "
@@ -62,6 +75,9 @@ public abstract class AbstractSymbolLocation implements SymbolLocation {
         enclosingClass.sourcefile != null
             ? enclosingClass.sourcefile.toUri()
             : (enclosingClass.classfile != null ? enclosingClass.classfile.toUri() : null);
-    this.path = Serializer.pathToSourceFileFromURI(pathInURI);
+    this.path =
+        serializer != null
+            ? serializer.getSourceFilePath(pathInURI)
+            : Serializer.pathToSourceFileFromURI(pathInURI);
   }
 }
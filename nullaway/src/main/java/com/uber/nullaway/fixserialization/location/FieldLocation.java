@@ -25,6 +25,9 @@ package com.uber.nullaway.fixserialization.location;
 import com.sun.tools.javac.code.Symbol;
 import com.uber.nullaway.fixserialization.Serializer;
 import com.uber.nullaway.fixserialization.adapters.SerializationAdapter;
+import java.util.Arrays;
+import java.util.List;
+import javax.annotation.Nullable;
 import javax.lang.model.element.ElementKind;
 
 /** subtype of {@link AbstractSymbolLocation} targeting class fields. */
@@ -34,14 +37,17 @@ public class FieldLocation extends AbstractSymbolLocation {
   protected final Symbol.VarSymbol variableSymbol;
 
   public FieldLocation(Symbol target) {
-    super(ElementKind.FIELD, target);
+    this(target, null);
+  }
+
+  public FieldLocation(Symbol target, @Nullable Serializer serializer) {
+    super(ElementKind.FIELD, target, serializer);
     variableSymbol = (Symbol.VarSymbol) target;
   }
 
   @Override
-  public String tabSeparatedToString(SerializationAdapter adapter) {
-    return String.join(
-        "\t",
+  public List<String> toColumns(SerializationAdapter adapter) {
+    return Arrays.asList(
         type.toString(),
         Serializer.serializeSymbol(enclosingClass, adapter),
         "null",
@@ -25,6 +25,9 @@ package com.uber.nullaway.fixserialization.location;
 import com.sun.tools.javac.code.Symbol;
 import com.uber.nullaway.fixserialization.Serializer;
 import com.uber.nullaway.fixserialization.adapters.SerializationAdapter;
+import java.util.Arrays;
+import java.util.List;
+import javax.annotation.Nullable;
 import javax.lang.model.element.ElementKind;
 
 /** subtype of {@link AbstractSymbolLocation} targeting methods. */
@@ -34,14 +37,17 @@ public class MethodLocation extends AbstractSymbolLocation {
   protected final Symbol.MethodSymbol enclosingMethod;
 
   public MethodLocation(Symbol target) {
-    super(ElementKind.METHOD, target);
+    this(target, null);
+  }
+
+  public MethodLocation(Symbol target, @Nullable Serializer serializer) {
+    super(ElementKind.METHOD, target, serializer);
     enclosingMethod = (Symbol.MethodSymbol) target;
   }
 
   @Override
-  public String tabSeparatedToString(SerializationAdapter adapter) {
-    return String.join(
-        "\t",
+  public List<String> toColumns(SerializationAdapter adapter) {
+    return Arrays.asList(
         type.toString(),
         Serializer.serializeSymbol(enclosingClass, adapter),
         Serializer.serializeSymbol(enclosingMethod, adapter),
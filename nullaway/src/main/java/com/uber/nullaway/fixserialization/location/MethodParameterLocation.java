@@ -26,6 +26,9 @@ import com.google.common.base.Preconditions;
 import com.sun.tools.javac.code.Symbol;
 import com.uber.nullaway.fixserialization.Serializer;
 import com.uber.nullaway.fixserialization.adapters.SerializationAdapter;
+import java.util.Arrays;
+import java.util.List;
+import javax.annotation.Nullable;
 import javax.lang.model.element.ElementKind;
 
 /** subtype of {@link AbstractSymbolLocation} targeting a method parameter. */
@@ -39,7 +42,11 @@ public class MethodParameterLocation extends AbstractSymbolLocation {
   private final int index;
 
   public MethodParameterLocation(Symbol target) {
-    super(ElementKind.PARAMETER, target);
+    this(target, null);
+  }
+
+  public MethodParameterLocation(Symbol target, @Nullable Serializer serializer) {
+    super(ElementKind.PARAMETER, target, serializer);
     this.paramSymbol = (Symbol.VarSymbol) target;
     Symbol cursor = target;
     // Look for the enclosing method.
@@ -60,9 +67,8 @@ public class MethodParameterLocation extends AbstractSymbolLocation {
   }
 
   @Override
-  public String tabSeparatedToString(SerializationAdapter adapter) {
-    return String.join(
-        "\t",
+  public List<String> toColumns(SerializationAdapter adapter) {
+    return Arrays.asList(
         type.toString(),
         Serializer.serializeSymbol(enclosingClass, adapter),
         Serializer.serializeSymbol(enclosingMethod, adapter),
@@ -23,20 +23,34 @@
 package com.uber.nullaway.fixserialization.location;
 
 import com.sun.tools.javac.code.Symbol;
+import com.uber.nullaway.fixserialization.Serializer;
 import com.uber.nullaway.fixserialization.adapters.SerializationAdapter;
+import java.util.List;
+import javax.annotation.Nullable;
 
 /** Provides method for symbol locations. */
 public interface SymbolLocation {
 
   /**
-   * returns string representation of contents of the instance. It must have the format below: kind
-   * of the element, symbol of the containing class, symbol of the enclosing method, symbol of the
+   * returns the contents of the instance as column values, in the order below: kind of the
+   * element, symbol of the containing class, symbol of the enclosing method, symbol of the
    * variable, index of the element and uri to containing file.
    *
    * @param adapter adapter used to serialize symbols.
+   * @return values of the columns of {@link #header()}.
+   */
+  List<String> toColumns(SerializationAdapter adapter);
+
+  /**
+   * returns string representation of contents of the instance, see {@link
+   * #toColumns(SerializationAdapter)}.
+   *
+   * @param adapter adapter used to serialize symbols.
    * @return string representation of contents in a line seperated by tabs.
    */
-  String tabSeparatedToString(SerializationAdapter adapter);
+  default String tabSeparatedToString(SerializationAdapter adapter) {
+    return String.join("\t", toColumns(adapter));
+  }
 
   /**
    * Creates header of an output file containing all {@link SymbolLocation} written in string which
@@ -55,13 +69,25 @@ public interface SymbolLocation {
    * @return subtype of {@link SymbolLocation} matching target's type.
    */
   static SymbolLocation createLocationFromSymbol(Symbol target) {
+    return createLocationFromSymbol(target, null);
+  }
+
+  /**
+   * returns the appropriate subtype of {@link SymbolLocation} based on the target kind.
+   *
+   * @param target Target element.
+   * @param serializer Serializer caching the paths of source files, or {@code null} to resolve the
+   *     path of the file containing the target without caching it.
+   * @return subtype of {@link SymbolLocation} matching target's type.
+   */
+  static SymbolLocation createLocationFromSymbol(Symbol target, @Nullable Serializer serializer) {
     switch (target.getKind()) {
       case PARAMETER:
-        return new MethodParameterLocation(target);
+        return new MethodParameterLocation(target, serializer);
       case METHOD:
-        return new MethodLocation(target);
+        return new MethodLocation(target, serializer);
       case FIELD:
-        return new FieldLocation(target);
+        return new FieldLocation(target, serializer);
       default:
         throw new IllegalArgumentException("Cannot locate node: " + target);
     }
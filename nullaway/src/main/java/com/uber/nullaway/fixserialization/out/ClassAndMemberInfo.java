@@ -67,51 +67,55 @@ public class ClassAndMemberInfo {
       // Values are already computed.
       return;
     }
-    MethodTree enclosingMethod;
+    Tree leaf = path.getLeaf();
     // If the error is reported on a method, that method itself is the relevant program point.
-    // Otherwise, use the enclosing method (if present).
-    enclosingMethod =
-        path.getLeaf() instanceof MethodTree
-            ? (MethodTree) path.getLeaf()
-            : ASTHelpers.findEnclosingNode(path, MethodTree.class);
-    // If the error is reported on a class, that class itself is the relevant program point.
-    // Otherwise, use the enclosing class.
-    ClassTree classTree =
-        path.getLeaf() instanceof ClassTree
-            ? (ClassTree) path.getLeaf()
-            : ASTHelpers.findEnclosingNode(path, ClassTree.class);
-    if (classTree != null) {
-      clazz = ASTHelpers.getSymbol(classTree);
-      if (enclosingMethod != null) {
-        // It is possible that the computed method is not enclosed by the computed class, e.g., for
-        // the following case:
-        //  class C {
-        //    void foo() {
-        //      class Local {
-        //        Object f = null; // error
-        //      }
-        //    }
-        //  }
-        // Here the above code will compute clazz to be Local and method as foo().  In such cases,
-        // set method to null, we always want the corresponding method to be nested in the
-        // corresponding class.
-        Symbol.MethodSymbol methodSymbol = ASTHelpers.getSymbol(enclosingMethod);
-        if (!methodSymbol.isEnclosedBy(clazz)) {
-          enclosingMethod = null;
+    // Otherwise, use the enclosing method (if present). Similarly, if the error is reported on a
+    // class, that class itself is the relevant program point. Otherwise, use the enclosing class.
+    MethodTree enclosingMethod = leaf instanceof MethodTree ? (MethodTree) leaf : null;
+    ClassTree classTree = leaf instanceof ClassTree ? (ClassTree) leaf : null;
+    // The nearest variable declaration enclosing the program point, which can only be relevant if
+    // it is declared in the enclosing class.
+    VariableTree fieldDeclTree = null;
+    // Find all enclosing nodes in a single walk of the path, which stops at the enclosing class.
+    // We always want the corresponding method to be nested in the corresponding class, so methods
+    // above the enclosing class are ignored, e.g., for the following case:
+    //  class C {
+    //    void foo() {
+    //      class Local {
+    //        Object f = null; // error
+    //      }
+    //    }
+    //  }
+    // clazz is Local and there is no enclosing method, rather than foo().
+    for (TreePath current = path.getParentPath();
+        current != null && classTree == null;
+        current = current.getParentPath()) {
+      Tree node = current.getLeaf();
+      if (node instanceof ClassTree) {
+        classTree = (ClassTree) node;
+      } else if (node instanceof MethodTree) {
+        if (enclosingMethod == null) {
+          enclosingMethod = (MethodTree) node;
+        }
+      } else if (node instanceof VariableTree) {
+        if (fieldDeclTree == null) {
+          fieldDeclTree = (VariableTree) node;
         }
       }
+    }
+    if (classTree != null) {
+      clazz = ASTHelpers.getSymbol(classTree);
       if (enclosingMethod != null) {
         member = ASTHelpers.getSymbol(enclosingMethod);
       } else {
         // Node is not enclosed by any method, can be a field declaration or enclosed by it.
-        Symbol sym = ASTHelpers.getSymbol(path.getLeaf());
+        Symbol sym = ASTHelpers.getSymbol(leaf);
         Symbol.VarSymbol fieldSymbol = null;
         if (sym != null && sym.getKind().isField() && sym.isEnclosedBy(clazz)) {
           // Directly on a field declaration.
           fieldSymbol = (Symbol.VarSymbol) sym;
         } else {
           // Can be enclosed by a field declaration tree.
-          VariableTree fieldDeclTree = ASTHelpers.findEnclosingNode(path, VariableTree.class);
           if (fieldDeclTree != null) {
             fieldSymbol = ASTHelpers.getSymbol(fieldDeclTree);
           }
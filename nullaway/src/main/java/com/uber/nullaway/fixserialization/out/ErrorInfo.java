@@ -31,6 +31,8 @@ import com.sun.tools.javac.code.Symbol;
 import com.sun.tools.javac.util.JCDiagnostic;
 import com.uber.nullaway.ErrorMessage;
 import com.uber.nullaway.fixserialization.Serializer;
+import com.uber.nullaway.fixserialization.location.SymbolLocation;
+import java.net.URI;
 import java.nio.file.Path;
 import javax.annotation.Nullable;
 
@@ -56,9 +58,32 @@ public class ErrorInfo {
   private final int offset;
   /** Path to the containing source file where this error is reported. */
   @Nullable private final Path path;
+  /** Serializer caching the paths of source files, if any. */
+  @Nullable private final Serializer serializer;
+  /** Location of {@link ErrorInfo#nonnullTarget}, created on first use. */
+  @Nullable private SymbolLocation nonnullTargetLocation;
 
   public ErrorInfo(
       TreePath path, Tree errorTree, ErrorMessage errorMessage, @Nullable Symbol nonnullTarget) {
+    this(path, errorTree, errorMessage, nonnullTarget, null);
+  }
+
+  /**
+   * Creates the information of a reported error.
+   *
+   * @param path Path to the program point where the error is reported.
+   * @param errorTree Tree of the element involved in the error.
+   * @param errorMessage Error message.
+   * @param nonnullTarget Target of the pseudo-assignment causing the error, if any.
+   * @param serializer Serializer caching the paths of source files, or {@code null} to resolve
+   *     paths without caching them.
+   */
+  public ErrorInfo(
+      TreePath path,
+      Tree errorTree,
+      ErrorMessage errorMessage,
+      @Nullable Symbol nonnullTarget,
+      @Nullable Serializer serializer) {
     this.classAndMemberInfo =
         (errorMessage.getMessageType().equals(FIELD_NO_INIT)
                 || errorMessage.getMessageType().equals(METHOD_NO_INIT))
@@ -68,8 +93,12 @@ public class ErrorInfo {
     this.nonnullTarget = nonnullTarget;
     JCDiagnostic.DiagnosticPosition treePosition = (JCDiagnostic.DiagnosticPosition) errorTree;
     this.offset = treePosition.getStartPosition();
+    this.serializer = serializer;
+    URI uri = path.getCompilationUnit().getSourceFile().toUri();
     this.path =
-        Serializer.pathToSourceFileFromURI(path.getCompilationUnit().getSourceFile().toUri());
+        serializer != null
+            ? serializer.getSourceFilePath(uri)
+            : Serializer.pathToSourceFileFromURI(uri);
   }
 
   /**
@@ -113,6 +142,19 @@ public class ErrorInfo {
     return nonnullTarget;
   }
 
+  /**
+   * Returns the location of the symbol returned by {@link #getNonnullTarget()}, if any.
+   *
+   * @return The location of the {@code @Nonnull} element if exists, and {@code null} otherwise.
+   */
+  @Nullable
+  public SymbolLocation getNonnullTargetLocation() {
+    if (nonnullTargetLocation == null && nonnullTarget != null) {
+      nonnullTargetLocation = SymbolLocation.createLocationFromSymbol(nonnullTarget, serializer);
+    }
+    return nonnullTargetLocation;
+  }
+
   /**
    * Returns offset of program point where this error is reported.
    *
@@ -26,6 +26,9 @@ import com.sun.tools.javac.code.Symbol;
 import com.uber.nullaway.fixserialization.Serializer;
 import com.uber.nullaway.fixserialization.adapters.SerializationAdapter;
 import com.uber.nullaway.fixserialization.location.SymbolLocation;
+import java.util.ArrayList;
+import java.util.List;
+import javax.annotation.Nullable;
 
 /**
  * Stores information regarding a method that initializes a class field and leaves it
@@ -39,7 +42,21 @@ public class FieldInitializationInfo {
   private final Symbol field;
 
   public FieldInitializationInfo(Symbol.MethodSymbol initializerMethod, Symbol field) {
-    this.initializerMethodLocation = SymbolLocation.createLocationFromSymbol(initializerMethod);
+    this(initializerMethod, field, null);
+  }
+
+  /**
+   * Creates the information of an initializer method.
+   *
+   * @param initializerMethod Symbol of the initializer method.
+   * @param field Symbol of the initialized class field.
+   * @param serializer Serializer caching the paths of source files, or {@code null} to resolve
+   *     paths without caching them.
+   */
+  public FieldInitializationInfo(
+      Symbol.MethodSymbol initializerMethod, Symbol field, @Nullable Serializer serializer) {
+    this.initializerMethodLocation =
+        SymbolLocation.createLocationFromSymbol(initializerMethod, serializer);
     this.field = field;
   }
 
@@ -50,9 +67,19 @@ public class FieldInitializationInfo {
    * @return string representation of contents of an object in a line seperated by tabs.
    */
   public String tabSeparatedToString(SerializationAdapter adapter) {
-    return initializerMethodLocation.tabSeparatedToString(adapter)
-        + '\t'
-        + Serializer.serializeSymbol(field, adapter);
+    return String.join("\t", toColumns(adapter));
+  }
+
+  /**
+   * Returns the content of an object as column values.
+   *
+   * @param adapter adapter used to serialize symbols.
+   * @return values of the columns of {@link #header()}.
+   */
+  public List<String> toColumns(SerializationAdapter adapter) {
+    List<String> columns = new ArrayList<>(initializerMethodLocation.toColumns(adapter));
+    columns.add(Serializer.serializeSymbol(field, adapter));
+    return columns;
   }
 
   /**
@@ -27,6 +27,9 @@ import com.uber.nullaway.ErrorMessage;
 import com.uber.nullaway.fixserialization.Serializer;
 import com.uber.nullaway.fixserialization.adapters.SerializationAdapter;
 import com.uber.nullaway.fixserialization.location.SymbolLocation;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Objects;
 
 /** Stores information suggesting adding @Nullable on an element in source code. */
@@ -73,13 +76,24 @@ public class SuggestedNullableFixInfo {
    * @return string representation of contents of an object in a line separated by tabs.
    */
   public String tabSeparatedToString(SerializationAdapter adapter) {
-    return String.join(
-        "\t",
-        symbolLocation.tabSeparatedToString(adapter),
-        errorMessage.getMessageType().toString(),
-        "nullable",
-        Serializer.serializeSymbol(classAndMemberInfo.getClazz(), adapter),
-        Serializer.serializeSymbol(classAndMemberInfo.getMember(), adapter));
+    return String.join("\t", toColumns(adapter));
+  }
+
+  /**
+   * returns the content of an object as column values.
+   *
+   * @param adapter adapter used to serialize symbols.
+   * @return values of the columns of {@link #header()}.
+   */
+  public List<String> toColumns(SerializationAdapter adapter) {
+    List<String> columns = new ArrayList<>(symbolLocation.toColumns(adapter));
+    columns.addAll(
+        Arrays.asList(
+            errorMessage.getMessageType().toString(),
+            "nullable",
+            Serializer.serializeSymbol(classAndMemberInfo.getClazz(), adapter),
+            Serializer.serializeSymbol(classAndMemberInfo.getMember(), adapter)));
+    return columns;
   }
 
   /** Finds the class and member of program point where triggered this type change. */
@@ -21,16 +21,13 @@
  */
 package com.uber.nullaway.handlers;
 
-import com.google.common.base.Preconditions;
 import com.google.errorprone.VisitorState;
 import com.google.errorprone.suppliers.Supplier;
 import com.google.errorprone.suppliers.Suppliers;
 import com.google.errorprone.util.ASTHelpers;
-import com.sun.source.tree.ClassTree;
 import com.sun.tools.javac.code.Symbol;
 import com.sun.tools.javac.code.Type;
-import com.sun.tools.javac.code.Types;
-import com.uber.nullaway.NullAway;
+import com.sun.tools.javac.util.Context;
 import com.uber.nullaway.Nullness;
 import com.uber.nullaway.dataflow.AccessPath;
 import com.uber.nullaway.dataflow.AccessPathNullnessPropagation;
@@ -53,15 +50,22 @@ public class ApacheThriftIsSetHandler extends BaseNoOpHandler {
 
   private static final Supplier<Type> TBASE_TYPE_SUPPLIER = Suppliers.typeFromString(TBASE_NAME);
 
-  @Nullable private Optional<Type> tbaseType;
+  private final MethodNameIndex isSetMethodNames = MethodNameIndex.ofPrefixes("isSet");
 
-  @Override
-  public void onMatchTopLevelClass(
-      NullAway analysis, ClassTree tree, VisitorState state, Symbol.ClassSymbol classSymbol) {
+  /**
+   * Key of the erased {@code TBase} type in the context of each compilation, empty if it is not on
+   * the classpath. Types are specific to a compilation, so they are not shared between them.
+   */
+  private final Context.Key<Optional<Type>> tbaseTypeKey = new Context.Key<>();
+
+  private Optional<Type> getTBaseType(VisitorState state) {
+    Optional<Type> tbaseType = state.context.get(tbaseTypeKey);
     if (tbaseType == null) {
       tbaseType =
           Optional.ofNullable(TBASE_TYPE_SUPPLIER.get(state)).map(state.getTypes()::erasure);
+      state.context.put(tbaseTypeKey, tbaseType);
     }
+    return tbaseType;
   }
 
   @Override
@@ -74,7 +78,7 @@ public class ApacheThriftIsSetHandler extends BaseNoOpHandler {
       AccessPathNullnessPropagation.Updates elseUpdates,
       AccessPathNullnessPropagation.Updates bothUpdates) {
     Symbol.MethodSymbol symbol = ASTHelpers.getSymbol(node.getTree());
-    if (thriftIsSetCall(symbol, state.getTypes())) {
+    if (isSetMethodNames.mayMatch(symbol, state.context) && thriftIsSetCall(symbol, state)) {
       String methodName = symbol.getSimpleName().toString();
       // remove "isSet"
       String capPropName = methodName.substring(5);
@@ -171,13 +175,12 @@ public class ApacheThriftIsSetHandler extends BaseNoOpHandler {
     return new String(c);
   }
 
-  private boolean thriftIsSetCall(Symbol.MethodSymbol symbol, Types types) {
-    Preconditions.checkNotNull(tbaseType);
-    // noinspection ConstantConditions
+  private boolean thriftIsSetCall(Symbol.MethodSymbol symbol, VisitorState state) {
+    Optional<Type> tbaseType = getTBaseType(state);
     return tbaseType.isPresent()
         && symbol.getSimpleName().toString().startsWith("isSet")
         // weeds out the isSet() method in TBase itself
         && symbol.getParameters().length() == 0
-        && types.isSubtype(symbol.owner.type, tbaseType.get());
+        && state.getTypes().isSubtype(symbol.owner.type, tbaseType.get());
   }
 }
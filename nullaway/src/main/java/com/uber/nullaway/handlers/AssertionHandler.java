@@ -36,12 +36,6 @@ import org.checkerframework.nullaway.dataflow.cfg.node.Node;
 /** This Handler deals with assertions which ensure that their arguments cannot be null. */
 public class AssertionHandler extends BaseNoOpHandler {
 
-  private final MethodNameUtil methodNameUtil;
-
-  AssertionHandler(MethodNameUtil methodNameUtil) {
-    this.methodNameUtil = methodNameUtil;
-  }
-
   @Override
   public NullnessHint onDataflowVisitMethodInvocation(
       MethodInvocationNode node,
@@ -56,9 +50,7 @@ public class AssertionHandler extends BaseNoOpHandler {
       return NullnessHint.UNKNOWN;
     }
 
-    if (!methodNameUtil.isUtilInitialized()) {
-      methodNameUtil.initializeMethodNames(callee.name.table);
-    }
+    MethodNameUtil methodNameUtil = MethodNameUtil.instance(state.context);
 
     // Look for statements of the form: assertThat(A).isNotNull() or
     // assertThat(A).isInstanceOf(Foo.class)
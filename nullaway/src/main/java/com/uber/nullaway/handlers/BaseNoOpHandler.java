@@ -135,11 +135,19 @@ public abstract class BaseNoOpHandler implements Handler {
     return exprMayBeNull;
   }
 
+  @Override
+  public boolean onSparseDataflowMayReturnNull(
+      Context context, Symbol.MethodSymbol methodSymbol, boolean mayReturnNull) {
+    // NoOp
+    return mayReturnNull;
+  }
+
   @Override
   public NullnessStore.Builder onDataflowInitialStore(
       UnderlyingAST underlyingAST,
       List<LocalVariableNode> parameters,
-      NullnessStore.Builder result) {
+      NullnessStore.Builder result,
+      Context context) {
     return result;
   }
 
@@ -156,6 +164,13 @@ public abstract class BaseNoOpHandler implements Handler {
     return NullnessHint.UNKNOWN;
   }
 
+  @Override
+  @Nullable
+  public ImmutableSet<String> onRegisterDataflowMethodInvocationNames() {
+    // Any method
+    return null;
+  }
+
   @Override
   public NullnessHint onDataflowVisitFieldAccess(
       FieldAccessNode node,
@@ -171,13 +186,13 @@ public abstract class BaseNoOpHandler implements Handler {
 
   @Override
   public void onDataflowVisitReturn(
-      ReturnTree tree, NullnessStore thenStore, NullnessStore elseStore) {
+      ReturnTree tree, NullnessStore thenStore, NullnessStore elseStore, Context context) {
     // NoOp
   }
 
   @Override
   public void onDataflowVisitLambdaResultExpression(
-      ExpressionTree tree, NullnessStore thenStore, NullnessStore elseStore) {
+      ExpressionTree tree, NullnessStore thenStore, NullnessStore elseStore, Context context) {
     // NoOp
   }
 
@@ -197,6 +212,11 @@ public abstract class BaseNoOpHandler implements Handler {
     return ImmutableSet.of();
   }
 
+  @Override
+  public String onRegisterModelsFingerprint() {
+    return "";
+  }
+
   @Override
   public void onNonNullFieldAssignment(
       Symbol field, AccessPathNullnessAnalysis analysis, VisitorState state) {
@@ -23,6 +23,7 @@
 package com.uber.nullaway.handlers;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.errorprone.VisitorState;
 import com.sun.source.tree.ClassTree;
@@ -43,8 +44,11 @@ import com.uber.nullaway.dataflow.AccessPathNullnessAnalysis;
 import com.uber.nullaway.dataflow.AccessPathNullnessPropagation;
 import com.uber.nullaway.dataflow.NullnessStore;
 import com.uber.nullaway.dataflow.cfg.NullAwayCFGBuilder;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import javax.annotation.Nullable;
 import org.checkerframework.nullaway.dataflow.cfg.UnderlyingAST;
 import org.checkerframework.nullaway.dataflow.cfg.node.FieldAccessNode;
@@ -59,17 +63,237 @@ import org.checkerframework.nullaway.dataflow.cfg.node.MethodInvocationNode;
  */
 class CompositeHandler implements Handler {
 
-  private final List<Handler> handlers;
+  private final ImmutableList<Handler> handlers;
+
+  // Handlers overriding each hook, in registration order. Calls to a hook are only dispatched to
+  // those handlers, as the no-op implementation of BaseNoOpHandler leaves any input unchanged.
+  private final Handler[] onMatchTopLevelClassHandlers;
+  private final Handler[] onMatchMethodHandlers;
+  private final Handler[] onMatchLambdaExpressionHandlers;
+  private final Handler[] onMatchMethodReferenceHandlers;
+  private final Handler[] onMatchMethodInvocationHandlers;
+  private final Handler[] onMatchReturnHandlers;
+  private final Handler[] onOverrideMethodInvocationReturnNullabilityHandlers;
+  private final Handler[] onOverrideMethodInvocationParametersNullabilityHandlers;
+  private final Handler[] onOverrideMayBeNullExprHandlers;
+  private final Handler[] onSparseDataflowMayReturnNullHandlers;
+  private final Handler[] onDataflowInitialStoreHandlers;
+  private final Handler[] onDataflowVisitFieldAccessHandlers;
+  private final Handler[] onDataflowVisitReturnHandlers;
+  private final Handler[] onDataflowVisitLambdaResultExpressionHandlers;
+  private final Handler[] onExpressionDereferenceHandlers;
+  private final Handler[] includeApInfoInSavedContextHandlers;
+  private final Handler[] onRegisterImmutableTypesHandlers;
+  private final Handler[] onRegisterModelsFingerprintHandlers;
+  private final Handler[] onNonNullFieldAssignmentHandlers;
+  private final Handler[] onCFGBuildPhase1AfterVisitMethodInvocationHandlers;
+  private final Handler[] castToNonNullArgumentPositionsForMethodHandlers;
+
+  /**
+   * Handlers overriding {@link #onDataflowVisitMethodInvocation} for invocations of methods not in
+   * {@link #dataflowMethodInvocationHandlersByName}, i.e. those not declaring method names through
+   * {@link Handler#onRegisterDataflowMethodInvocationNames()}.
+   */
+  private final Handler[] onDataflowVisitMethodInvocationHandlers;
+
+  /**
+   * Handlers overriding {@link #onDataflowVisitMethodInvocation} for invocations of methods with a
+   * given simple name: those that may act on invocations of any method, and those declaring that
+   * name.
+   */
+  private final ImmutableMap<String, Handler[]> dataflowMethodInvocationHandlersByName;
 
   CompositeHandler(ImmutableList<Handler> handlers) {
     // Attach default handlers
     this.handlers = handlers;
+    this.onMatchTopLevelClassHandlers =
+        handlersOverriding(
+            "onMatchTopLevelClass",
+            NullAway.class,
+            ClassTree.class,
+            VisitorState.class,
+            Symbol.ClassSymbol.class);
+    this.onMatchMethodHandlers =
+        handlersOverriding(
+            "onMatchMethod",
+            NullAway.class,
+            MethodTree.class,
+            VisitorState.class,
+            Symbol.MethodSymbol.class);
+    this.onMatchLambdaExpressionHandlers =
+        handlersOverriding(
+            "onMatchLambdaExpression",
+            NullAway.class,
+            LambdaExpressionTree.class,
+            VisitorState.class,
+            Symbol.MethodSymbol.class);
+    this.onMatchMethodReferenceHandlers =
+        handlersOverriding(
+            "onMatchMethodReference",
+            NullAway.class,
+            MemberReferenceTree.class,
+            VisitorState.class,
+            Symbol.MethodSymbol.class);
+    this.onMatchMethodInvocationHandlers =
+        handlersOverriding(
+            "onMatchMethodInvocation",
+            NullAway.class,
+            MethodInvocationTree.class,
+            VisitorState.class,
+            Symbol.MethodSymbol.class);
+    this.onMatchReturnHandlers =
+        handlersOverriding("onMatchReturn", NullAway.class, ReturnTree.class, VisitorState.class);
+    this.onOverrideMethodInvocationReturnNullabilityHandlers =
+        handlersOverriding(
+            "onOverrideMethodInvocationReturnNullability",
+            Symbol.MethodSymbol.class,
+            VisitorState.class,
+            boolean.class,
+            Nullness.class);
+    this.onOverrideMethodInvocationParametersNullabilityHandlers =
+        handlersOverriding(
+            "onOverrideMethodInvocationParametersNullability",
+            Context.class,
+            Symbol.MethodSymbol.class,
+            boolean.class,
+            Nullness[].class);
+    this.onOverrideMayBeNullExprHandlers =
+        handlersOverriding(
+            "onOverrideMayBeNullExpr",
+            NullAway.class,
+            ExpressionTree.class,
+            VisitorState.class,
+            boolean.class);
+    this.onSparseDataflowMayReturnNullHandlers =
+        handlersOverriding(
+            "onSparseDataflowMayReturnNull",
+            Context.class,
+            Symbol.MethodSymbol.class,
+            boolean.class);
+    this.onDataflowInitialStoreHandlers =
+        handlersOverriding(
+            "onDataflowInitialStore",
+            UnderlyingAST.class,
+            List.class,
+            NullnessStore.Builder.class,
+            Context.class);
+    this.onDataflowVisitFieldAccessHandlers =
+        handlersOverriding(
+            "onDataflowVisitFieldAccess",
+            FieldAccessNode.class,
+            Symbol.class,
+            Types.class,
+            Context.class,
+            AccessPath.AccessPathContext.class,
+            AccessPathNullnessPropagation.SubNodeValues.class,
+            AccessPathNullnessPropagation.Updates.class);
+    this.onDataflowVisitReturnHandlers =
+        handlersOverriding(
+            "onDataflowVisitReturn",
+            ReturnTree.class,
+            NullnessStore.class,
+            NullnessStore.class,
+            Context.class);
+    this.onDataflowVisitLambdaResultExpressionHandlers =
+        handlersOverriding(
+            "onDataflowVisitLambdaResultExpression",
+            ExpressionTree.class,
+            NullnessStore.class,
+            NullnessStore.class,
+            Context.class);
+    this.onExpressionDereferenceHandlers =
+        handlersOverriding(
+            "onExpressionDereference",
+            ExpressionTree.class,
+            ExpressionTree.class,
+            VisitorState.class);
+    this.includeApInfoInSavedContextHandlers =
+        handlersOverriding("includeApInfoInSavedContext", AccessPath.class, VisitorState.class);
+    this.onRegisterImmutableTypesHandlers = handlersOverriding("onRegisterImmutableTypes");
+    this.onRegisterModelsFingerprintHandlers = handlersOverriding("onRegisterModelsFingerprint");
+    this.onNonNullFieldAssignmentHandlers =
+        handlersOverriding(
+            "onNonNullFieldAssignment",
+            Symbol.class,
+            AccessPathNullnessAnalysis.class,
+            VisitorState.class);
+    this.onCFGBuildPhase1AfterVisitMethodInvocationHandlers =
+        handlersOverriding(
+            "onCFGBuildPhase1AfterVisitMethodInvocation",
+            NullAwayCFGBuilder.NullAwayCFGTranslationPhaseOne.class,
+            MethodInvocationTree.class,
+            MethodInvocationNode.class);
+    this.castToNonNullArgumentPositionsForMethodHandlers =
+        handlersOverriding(
+            "castToNonNullArgumentPositionsForMethod",
+            NullAway.class,
+            VisitorState.class,
+            Symbol.MethodSymbol.class,
+            List.class,
+            Integer.class);
+    Handler[] methodInvocationHandlers =
+        handlersOverriding(
+            "onDataflowVisitMethodInvocation",
+            MethodInvocationNode.class,
+            VisitorState.class,
+            AccessPath.AccessPathContext.class,
+            AccessPathNullnessPropagation.SubNodeValues.class,
+            AccessPathNullnessPropagation.Updates.class,
+            AccessPathNullnessPropagation.Updates.class,
+            AccessPathNullnessPropagation.Updates.class);
+    List<Handler> anyMethodHandlers = new ArrayList<>();
+    Set<String> names = new LinkedHashSet<>();
+    for (Handler h : methodInvocationHandlers) {
+      ImmutableSet<String> handlerNames = h.onRegisterDataflowMethodInvocationNames();
+      if (handlerNames == null) {
+        anyMethodHandlers.add(h);
+      } else {
+        names.addAll(handlerNames);
+      }
+    }
+    this.onDataflowVisitMethodInvocationHandlers = anyMethodHandlers.toArray(new Handler[0]);
+    ImmutableMap.Builder<String, Handler[]> byName = ImmutableMap.builder();
+    for (String name : names) {
+      List<Handler> handlersForName = new ArrayList<>();
+      for (Handler h : methodInvocationHandlers) {
+        ImmutableSet<String> handlerNames = h.onRegisterDataflowMethodInvocationNames();
+        if (handlerNames == null || handlerNames.contains(name)) {
+          handlersForName.add(h);
+        }
+      }
+      byName.put(name, handlersForName.toArray(new Handler[0]));
+    }
+    this.dataflowMethodInvocationHandlersByName = byName.build();
+  }
+
+  /**
+   * Returns the handlers overriding a given hook, i.e. not inheriting its implementation from
+   * {@link BaseNoOpHandler}, in registration order.
+   *
+   * @param hook name of the hook method.
+   * @param parameterTypes parameter types of the hook method.
+   * @return the handlers overriding the hook.
+   */
+  private Handler[] handlersOverriding(String hook, Class<?>... parameterTypes) {
+    List<Handler> result = new ArrayList<>();
+    for (Handler h : handlers) {
+      Class<?> declaringClass;
+      try {
+        declaringClass = h.getClass().getMethod(hook, parameterTypes).getDeclaringClass();
+      } catch (NoSuchMethodException e) {
+        throw new IllegalStateException("No handler hook " + hook, e);
+      }
+      if (!declaringClass.equals(BaseNoOpHandler.class)) {
+        result.add(h);
+      }
+    }
+    return result.toArray(new Handler[0]);
   }
 
   @Override
   public void onMatchTopLevelClass(
       NullAway analysis, ClassTree tree, VisitorState state, Symbol.ClassSymbol classSymbol) {
-    for (Handler h : handlers) {
+    for (Handler h : onMatchTopLevelClassHandlers) {
       h.onMatchTopLevelClass(analysis, tree, state, classSymbol);
     }
   }
@@ -77,7 +301,7 @@ class CompositeHandler implements Handler {
   @Override
   public void onMatchMethod(
       NullAway analysis, MethodTree tree, VisitorState state, Symbol.MethodSymbol methodSymbol) {
-    for (Handler h : handlers) {
+    for (Handler h : onMatchMethodHandlers) {
       h.onMatchMethod(analysis, tree, state, methodSymbol);
     }
   }
@@ -88,7 +312,7 @@ class CompositeHandler implements Handler {
       LambdaExpressionTree tree,
       VisitorState state,
       Symbol.MethodSymbol methodSymbol) {
-    for (Handler h : handlers) {
+    for (Handler h : onMatchLambdaExpressionHandlers) {
       h.onMatchLambdaExpression(analysis, tree, state, methodSymbol);
     }
   }
@@ -99,7 +323,7 @@ class CompositeHandler implements Handler {
       MemberReferenceTree tree,
       VisitorState state,
       Symbol.MethodSymbol methodSymbol) {
-    for (Handler h : handlers) {
+    for (Handler h : onMatchMethodReferenceHandlers) {
       h.onMatchMethodReference(analysis, tree, state, methodSymbol);
     }
   }
@@ -110,14 +334,14 @@ class CompositeHandler implements Handler {
       MethodInvocationTree tree,
       VisitorState state,
       Symbol.MethodSymbol methodSymbol) {
-    for (Handler h : handlers) {
+    for (Handler h : onMatchMethodInvocationHandlers) {
       h.onMatchMethodInvocation(analysis, tree, state, methodSymbol);
     }
   }
 
   @Override
   public void onMatchReturn(NullAway analysis, ReturnTree tree, VisitorState state) {
-    for (Handler h : handlers) {
+    for (Handler h : onMatchReturnHandlers) {
       h.onMatchReturn(analysis, tree, state);
     }
   }
@@ -128,7 +352,7 @@ class CompositeHandler implements Handler {
       VisitorState state,
       boolean isAnnotated,
       Nullness returnNullness) {
-    for (Handler h : handlers) {
+    for (Handler h : onOverrideMethodInvocationReturnNullabilityHandlers) {
       returnNullness =
           h.onOverrideMethodInvocationReturnNullability(
               methodSymbol, state, isAnnotated, returnNullness);
@@ -142,7 +366,7 @@ class CompositeHandler implements Handler {
       Symbol.MethodSymbol methodSymbol,
       boolean isAnnotated,
       Nullness[] argumentPositionNullness) {
-    for (Handler h : handlers) {
+    for (Handler h : onOverrideMethodInvocationParametersNullabilityHandlers) {
       argumentPositionNullness =
           h.onOverrideMethodInvocationParametersNullability(
               context, methodSymbol, isAnnotated, argumentPositionNullness);
@@ -153,19 +377,29 @@ class CompositeHandler implements Handler {
   @Override
   public boolean onOverrideMayBeNullExpr(
       NullAway analysis, ExpressionTree expr, VisitorState state, boolean exprMayBeNull) {
-    for (Handler h : handlers) {
+    for (Handler h : onOverrideMayBeNullExprHandlers) {
       exprMayBeNull = h.onOverrideMayBeNullExpr(analysis, expr, state, exprMayBeNull);
     }
     return exprMayBeNull;
   }
 
+  @Override
+  public boolean onSparseDataflowMayReturnNull(
+      Context context, Symbol.MethodSymbol methodSymbol, boolean mayReturnNull) {
+    for (Handler h : onSparseDataflowMayReturnNullHandlers) {
+      mayReturnNull = h.onSparseDataflowMayReturnNull(context, methodSymbol, mayReturnNull);
+    }
+    return mayReturnNull;
+  }
+
   @Override
   public NullnessStore.Builder onDataflowInitialStore(
       UnderlyingAST underlyingAST,
       List<LocalVariableNode> parameters,
-      NullnessStore.Builder result) {
-    for (Handler h : handlers) {
-      result = h.onDataflowInitialStore(underlyingAST, parameters, result);
+      NullnessStore.Builder result,
+      Context context) {
+    for (Handler h : onDataflowInitialStoreHandlers) {
+      result = h.onDataflowInitialStore(underlyingAST, parameters, result, context);
     }
     return result;
   }
@@ -180,7 +414,7 @@ class CompositeHandler implements Handler {
       AccessPathNullnessPropagation.Updates elseUpdates,
       AccessPathNullnessPropagation.Updates bothUpdates) {
     NullnessHint nullnessHint = NullnessHint.UNKNOWN;
-    for (Handler h : handlers) {
+    for (Handler h : handlersFor(node)) {
       NullnessHint n =
           h.onDataflowVisitMethodInvocation(
               node, state, apContext, inputs, thenUpdates, elseUpdates, bothUpdates);
@@ -189,6 +423,20 @@ class CompositeHandler implements Handler {
     return nullnessHint;
   }
 
+  private Handler[] handlersFor(MethodInvocationNode node) {
+    Handler[] handlersForName =
+        dataflowMethodInvocationHandlersByName.get(
+            node.getTarget().getMethod().getSimpleName().toString());
+    return handlersForName != null ? handlersForName : onDataflowVisitMethodInvocationHandlers;
+  }
+
+  @Override
+  @Nullable
+  public ImmutableSet<String> onRegisterDataflowMethodInvocationNames() {
+    // Dispatch is filtered per handler
+    return null;
+  }
+
   @Override
   public NullnessHint onDataflowVisitFieldAccess(
       FieldAccessNode node,
@@ -199,7 +447,7 @@ class CompositeHandler implements Handler {
       AccessPathNullnessPropagation.SubNodeValues inputs,
       AccessPathNullnessPropagation.Updates updates) {
     NullnessHint nullnessHint = NullnessHint.UNKNOWN;
-    for (Handler h : handlers) {
+    for (Handler h : onDataflowVisitFieldAccessHandlers) {
       NullnessHint n =
           h.onDataflowVisitFieldAccess(node, symbol, types, context, apContext, inputs, updates);
       nullnessHint = nullnessHint.merge(n);
@@ -209,17 +457,17 @@ class CompositeHandler implements Handler {
 
   @Override
   public void onDataflowVisitReturn(
-      ReturnTree tree, NullnessStore thenStore, NullnessStore elseStore) {
-    for (Handler h : handlers) {
-      h.onDataflowVisitReturn(tree, thenStore, elseStore);
+      ReturnTree tree, NullnessStore thenStore, NullnessStore elseStore, Context context) {
+    for (Handler h : onDataflowVisitReturnHandlers) {
+      h.onDataflowVisitReturn(tree, thenStore, elseStore, context);
     }
   }
 
   @Override
   public void onDataflowVisitLambdaResultExpression(
-      ExpressionTree tree, NullnessStore thenStore, NullnessStore elseStore) {
-    for (Handler h : handlers) {
-      h.onDataflowVisitLambdaResultExpression(tree, thenStore, elseStore);
+      ExpressionTree tree, NullnessStore thenStore, NullnessStore elseStore, Context context) {
+    for (Handler h : onDataflowVisitLambdaResultExpressionHandlers) {
+      h.onDataflowVisitLambdaResultExpression(tree, thenStore, elseStore, context);
     }
   }
 
@@ -227,7 +475,7 @@ class CompositeHandler implements Handler {
   public Optional<ErrorMessage> onExpressionDereference(
       ExpressionTree expr, ExpressionTree baseExpr, VisitorState state) {
     Optional<ErrorMessage> optionalErrorMessage;
-    for (Handler h : handlers) {
+    for (Handler h : onExpressionDereferenceHandlers) {
       optionalErrorMessage = h.onExpressionDereference(expr, baseExpr, state);
       if (optionalErrorMessage.isPresent()) {
         return optionalErrorMessage;
@@ -239,7 +487,7 @@ class CompositeHandler implements Handler {
   @Override
   public boolean includeApInfoInSavedContext(AccessPath accessPath, VisitorState state) {
     boolean shouldFilter = false;
-    for (Handler h : handlers) {
+    for (Handler h : includeApInfoInSavedContextHandlers) {
       shouldFilter |= h.includeApInfoInSavedContext(accessPath, state);
     }
     return shouldFilter;
@@ -248,16 +496,29 @@ class CompositeHandler implements Handler {
   @Override
   public ImmutableSet<String> onRegisterImmutableTypes() {
     ImmutableSet.Builder<String> builder = ImmutableSet.<String>builder();
-    for (Handler h : handlers) {
+    for (Handler h : onRegisterImmutableTypesHandlers) {
       builder.addAll(h.onRegisterImmutableTypes());
     }
     return builder.build();
   }
 
+  @Override
+  public String onRegisterModelsFingerprint() {
+    StringBuilder fingerprint = new StringBuilder();
+    for (Handler h : onRegisterModelsFingerprintHandlers) {
+      fingerprint
+          .append(h.getClass().getName())
+          .append('=')
+          .append(h.onRegisterModelsFingerprint())
+          .append(';');
+    }
+    return fingerprint.toString();
+  }
+
   @Override
   public void onNonNullFieldAssignment(
       Symbol field, AccessPathNullnessAnalysis analysis, VisitorState state) {
-    for (Handler h : handlers) {
+    for (Handler h : onNonNullFieldAssignmentHandlers) {
       h.onNonNullFieldAssignment(field, analysis, state);
     }
   }
@@ -268,7 +529,7 @@ class CompositeHandler implements Handler {
       MethodInvocationTree tree,
       MethodInvocationNode originalNode) {
     MethodInvocationNode currentNode = originalNode;
-    for (Handler h : handlers) {
+    for (Handler h : onCFGBuildPhase1AfterVisitMethodInvocationHandlers) {
       currentNode = h.onCFGBuildPhase1AfterVisitMethodInvocation(phase, tree, currentNode);
     }
     return currentNode;
@@ -282,7 +543,7 @@ class CompositeHandler implements Handler {
       Symbol.MethodSymbol methodSymbol,
       List<? extends ExpressionTree> actualParams,
       @Nullable Integer previousArgumentPosition) {
-    for (Handler h : handlers) {
+    for (Handler h : castToNonNullArgumentPositionsForMethodHandlers) {
       previousArgumentPosition =
           h.castToNonNullArgumentPositionsForMethod(
               analysis, state, methodSymbol, actualParams, previousArgumentPosition);
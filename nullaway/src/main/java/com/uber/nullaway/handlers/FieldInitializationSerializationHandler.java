@@ -30,6 +30,7 @@ import com.sun.tools.javac.code.Symbol;
 import com.uber.nullaway.NullabilityUtil;
 import com.uber.nullaway.dataflow.AccessPathNullnessAnalysis;
 import com.uber.nullaway.fixserialization.FixSerializationConfig;
+import com.uber.nullaway.fixserialization.Serializer;
 import com.uber.nullaway.fixserialization.out.FieldInitializationInfo;
 import javax.lang.model.element.ElementKind;
 
@@ -88,7 +89,8 @@ public class FieldInitializationSerializationHandler extends BaseNoOpHandler {
       // Initializer.
       return;
     }
-    NullabilityUtil.castToNonNull(config.getSerializer())
-        .serializeFieldInitializationInfo(new FieldInitializationInfo(methodSymbol, field));
+    Serializer serializer = NullabilityUtil.castToNonNull(config.getSerializer());
+    serializer.serializeFieldInitializationInfo(
+        new FieldInitializationInfo(methodSymbol, field, serializer));
   }
 }
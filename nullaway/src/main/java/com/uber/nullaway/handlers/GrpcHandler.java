@@ -23,18 +23,16 @@ package com.uber.nullaway.handlers;
 
 import static com.uber.nullaway.NullabilityUtil.castToNonNull;
 
-import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableSet;
 import com.google.errorprone.VisitorState;
 import com.google.errorprone.suppliers.Supplier;
 import com.google.errorprone.suppliers.Suppliers;
 import com.google.errorprone.util.ASTHelpers;
-import com.sun.source.tree.ClassTree;
 import com.sun.source.tree.MethodInvocationTree;
 import com.sun.tools.javac.code.Symbol;
 import com.sun.tools.javac.code.Type;
 import com.sun.tools.javac.code.Types;
-import com.uber.nullaway.NullAway;
+import com.sun.tools.javac.util.Context;
 import com.uber.nullaway.Nullness;
 import com.uber.nullaway.dataflow.AccessPath;
 import com.uber.nullaway.dataflow.AccessPathNullnessPropagation;
@@ -54,19 +52,24 @@ public class GrpcHandler extends BaseNoOpHandler {
   private static final String GRPC_CONTAINSKEY_MNAME = "containsKey";
   private static final String GRPC_GETTER_MNAME = "get";
 
+  private final MethodNameIndex containsKeyMethodNames =
+      MethodNameIndex.ofPrefixes(GRPC_CONTAINSKEY_MNAME);
+
   private static final Supplier<Type> GRPC_METADATA_TYPE_SUPPLIER =
       Suppliers.typeFromString(GRPC_METADATA_TNAME);
 
   private static final Supplier<Type> GRPC_METADATA_KEY_TYPE_SUPPLIER =
       Suppliers.typeFromString(GRPC_METADATA_KEY_TNAME);
 
-  @Nullable private Optional<Type> grpcMetadataType;
-  @Nullable private Optional<Type> grpcKeyType;
+  /**
+   * Erased gRPC types of a compilation, empty if they are not on the classpath. Types are specific
+   * to a compilation, so they are kept in the context of each compilation.
+   */
+  private static final class GrpcTypes {
+    final Optional<Type> grpcMetadataType;
+    final Optional<Type> grpcKeyType;
 
-  @Override
-  public void onMatchTopLevelClass(
-      NullAway analysis, ClassTree tree, VisitorState state, Symbol.ClassSymbol classSymbol) {
-    if (grpcMetadataType == null || grpcKeyType == null) {
+    GrpcTypes(VisitorState state) {
       grpcMetadataType =
           Optional.ofNullable(GRPC_METADATA_TYPE_SUPPLIER.get(state))
               .map(state.getTypes()::erasure);
@@ -76,6 +79,17 @@ public class GrpcHandler extends BaseNoOpHandler {
     }
   }
 
+  private final Context.Key<GrpcTypes> grpcTypesKey = new Context.Key<>();
+
+  private GrpcTypes getGrpcTypes(VisitorState state) {
+    GrpcTypes grpcTypes = state.context.get(grpcTypesKey);
+    if (grpcTypes == null) {
+      grpcTypes = new GrpcTypes(state);
+      state.context.put(grpcTypesKey, grpcTypes);
+    }
+    return grpcTypes;
+  }
+
   @Override
   public NullnessHint onDataflowVisitMethodInvocation(
       MethodInvocationNode node,
@@ -87,10 +101,14 @@ public class GrpcHandler extends BaseNoOpHandler {
       AccessPathNullnessPropagation.Updates bothUpdates) {
     MethodInvocationTree tree = castToNonNull(node.getTree());
     Symbol.MethodSymbol symbol = ASTHelpers.getSymbol(tree);
+    if (!containsKeyMethodNames.mayMatch(symbol, state.context)) {
+      return NullnessHint.UNKNOWN;
+    }
     Types types = state.getTypes();
-    if (grpcIsMetadataContainsKeyCall(symbol, types)) {
+    GrpcTypes grpcTypes = getGrpcTypes(state);
+    if (grpcIsMetadataContainsKeyCall(symbol, types, grpcTypes)) {
       // On seeing o.containsKey(k), set AP for o.get(k) to @NonNull
-      Element getter = getGetterForMetadataSubtype(symbol.enclClass(), types);
+      Element getter = getGetterForMetadataSubtype(symbol.enclClass(), types, grpcTypes);
       Node base = node.getTarget().getReceiver();
       // Argument list and types should be already checked by grpcIsMetadataContainsKeyCall
       Symbol keyArgSymbol = ASTHelpers.getSymbol(tree.getArguments().get(0));
@@ -118,12 +136,12 @@ public class GrpcHandler extends BaseNoOpHandler {
 
   @Nullable
   private Symbol.MethodSymbol getGetterForMetadataSubtype(
-      Symbol.ClassSymbol classSymbol, Types types) {
+      Symbol.ClassSymbol classSymbol, Types types, GrpcTypes grpcTypes) {
     // Is there a better way than iteration?
     for (Symbol elem : classSymbol.getEnclosedElements()) {
       if (elem.getKind().equals(ElementKind.METHOD)) {
         Symbol.MethodSymbol methodSymbol = (Symbol.MethodSymbol) elem;
-        if (grpcIsMetadataGetCall(methodSymbol, types)) {
+        if (grpcIsMetadataGetCall(methodSymbol, types, grpcTypes)) {
           return methodSymbol;
         }
       }
@@ -131,10 +149,10 @@ public class GrpcHandler extends BaseNoOpHandler {
     return null;
   }
 
-  private boolean grpcIsMetadataContainsKeyCall(Symbol.MethodSymbol symbol, Types types) {
-    Preconditions.checkNotNull(grpcMetadataType);
-    Preconditions.checkNotNull(grpcKeyType);
-    // noinspection ConstantConditions
+  private boolean grpcIsMetadataContainsKeyCall(
+      Symbol.MethodSymbol symbol, Types types, GrpcTypes grpcTypes) {
+    Optional<Type> grpcMetadataType = grpcTypes.grpcMetadataType;
+    Optional<Type> grpcKeyType = grpcTypes.grpcKeyType;
     return grpcMetadataType.isPresent()
         && grpcKeyType.isPresent()
         // Check declaring class type first, as that will short-circuit 99% of cases
@@ -145,10 +163,10 @@ public class GrpcHandler extends BaseNoOpHandler {
         && symbol.getReturnType().getKind() == TypeKind.BOOLEAN;
   }
 
-  private boolean grpcIsMetadataGetCall(Symbol.MethodSymbol symbol, Types types) {
-    Preconditions.checkNotNull(grpcMetadataType);
-    Preconditions.checkNotNull(grpcKeyType);
-    // noinspection ConstantConditions
+  private boolean grpcIsMetadataGetCall(
+      Symbol.MethodSymbol symbol, Types types, GrpcTypes grpcTypes) {
+    Optional<Type> grpcMetadataType = grpcTypes.grpcMetadataType;
+    Optional<Type> grpcKeyType = grpcTypes.grpcKeyType;
     return grpcMetadataType.isPresent()
         && grpcKeyType.isPresent()
         && types.isSubtype(symbol.owner.type, grpcMetadataType.get())
@@ -1,11 +1,12 @@
 package com.uber.nullaway.handlers;
 
-import com.google.common.base.Preconditions;
 import com.google.errorprone.util.ASTHelpers;
 import com.sun.source.tree.MethodInvocationTree;
 import com.sun.tools.javac.code.Symbol;
+import com.sun.tools.javac.processing.JavacProcessingEnvironment;
+import com.sun.tools.javac.util.Context;
+import com.sun.tools.javac.util.Names;
 import com.uber.nullaway.dataflow.cfg.NullAwayCFGBuilder;
-import javax.annotation.Nullable;
 import javax.lang.model.element.Name;
 import javax.lang.model.type.TypeMirror;
 import org.checkerframework.nullaway.dataflow.cfg.node.MethodInvocationNode;
@@ -22,27 +23,26 @@ public class GuavaAssertionsHandler extends BaseNoOpHandler {
   private static final String VERIFY_CLASS_NAME = "com.google.common.base.Verify";
   private static final String VERIFY_METHOD_NAME = "verify";
 
-  @Nullable private Name preconditionsClass;
-  @Nullable private Name verifyClass;
-  @Nullable private Name checkArgumentMethod;
-  @Nullable private Name checkStateMethod;
-  @Nullable private Name verifyMethod;
-  @Nullable TypeMirror preconditionCheckArgumentErrorType;
-  @Nullable TypeMirror preconditionCheckStateErrorType;
-  @Nullable TypeMirror verifyErrorType;
+  /**
+   * Names and error types of a compilation. Names are only comparable within the name table of a
+   * single compilation, so they are kept in the context of each compilation.
+   */
+  private static final class CompilationState {
+    final Name preconditionsClass;
+    final Name verifyClass;
+    final Name checkArgumentMethod;
+    final Name checkStateMethod;
+    final Name verifyMethod;
+    final TypeMirror preconditionCheckArgumentErrorType;
+    final TypeMirror preconditionCheckStateErrorType;
+    final TypeMirror verifyErrorType;
 
-  @Override
-  public MethodInvocationNode onCFGBuildPhase1AfterVisitMethodInvocation(
-      NullAwayCFGBuilder.NullAwayCFGTranslationPhaseOne phase,
-      MethodInvocationTree tree,
-      MethodInvocationNode originalNode) {
-    Symbol.MethodSymbol callee = ASTHelpers.getSymbol(tree);
-    if (preconditionsClass == null) {
-      preconditionsClass = callee.name.table.fromString(PRECONDITIONS_CLASS_NAME);
-      verifyClass = callee.name.table.fromString(VERIFY_CLASS_NAME);
-      checkArgumentMethod = callee.name.table.fromString(CHECK_ARGUMENT_METHOD_NAME);
-      checkStateMethod = callee.name.table.fromString(CHECK_STATE_METHOD_NAME);
-      verifyMethod = callee.name.table.fromString(VERIFY_METHOD_NAME);
+    CompilationState(NullAwayCFGBuilder.NullAwayCFGTranslationPhaseOne phase, Names names) {
+      preconditionsClass = names.fromString(PRECONDITIONS_CLASS_NAME);
+      verifyClass = names.fromString(VERIFY_CLASS_NAME);
+      checkArgumentMethod = names.fromString(CHECK_ARGUMENT_METHOD_NAME);
+      checkStateMethod = names.fromString(CHECK_STATE_METHOD_NAME);
+      verifyMethod = names.fromString(VERIFY_METHOD_NAME);
       preconditionCheckArgumentErrorType = phase.classToErrorType(IllegalArgumentException.class);
       preconditionCheckStateErrorType = phase.classToErrorType(IllegalStateException.class);
       // We treat the Verify.* APIs as throwing a RuntimeException to avoid any issues with
@@ -50,25 +50,46 @@ public class GuavaAssertionsHandler extends BaseNoOpHandler {
       // affect the analysis result)
       verifyErrorType = phase.classToErrorType(RuntimeException.class);
     }
-    Preconditions.checkNotNull(preconditionCheckArgumentErrorType);
-    Preconditions.checkNotNull(preconditionCheckStateErrorType);
-    Preconditions.checkNotNull(verifyErrorType);
-    if (callee.enclClass().getQualifiedName().equals(preconditionsClass)
+  }
+
+  private final Context.Key<CompilationState> compilationStateKey = new Context.Key<>();
+
+  private CompilationState getCompilationState(
+      NullAwayCFGBuilder.NullAwayCFGTranslationPhaseOne phase) {
+    Context context = ((JavacProcessingEnvironment) phase.getProcessingEnvironment()).getContext();
+    CompilationState compilationState = context.get(compilationStateKey);
+    if (compilationState == null) {
+      compilationState = new CompilationState(phase, Names.instance(context));
+      context.put(compilationStateKey, compilationState);
+    }
+    return compilationState;
+  }
+
+  @Override
+  public MethodInvocationNode onCFGBuildPhase1AfterVisitMethodInvocation(
+      NullAwayCFGBuilder.NullAwayCFGTranslationPhaseOne phase,
+      MethodInvocationTree tree,
+      MethodInvocationNode originalNode) {
+    Symbol.MethodSymbol callee = ASTHelpers.getSymbol(tree);
+    CompilationState compilationState = getCompilationState(phase);
+    if (callee.enclClass().getQualifiedName().equals(compilationState.preconditionsClass)
         && !callee.getParameters().isEmpty()) {
       // Attempt to match Precondition check methods to the expected exception type, providing as
       // much context as possible for static analysis.
       // In practice this may not be strictly necessary because the conditional throw is inserted
       // after the method invocation, thus analysis must assume that the preconditions call is
       // capable of throwing any unchecked throwable.
-      if (callee.name.equals(checkArgumentMethod)) {
-        phase.insertThrowOnFalse(originalNode.getArgument(0), preconditionCheckArgumentErrorType);
-      } else if (callee.name.equals(checkStateMethod)) {
-        phase.insertThrowOnFalse(originalNode.getArgument(0), preconditionCheckStateErrorType);
+      if (callee.name.equals(compilationState.checkArgumentMethod)) {
+        phase.insertThrowOnFalse(
+            originalNode.getArgument(0), compilationState.preconditionCheckArgumentErrorType);
+      } else if (callee.name.equals(compilationState.checkStateMethod)) {
+        phase.insertThrowOnFalse(
+            originalNode.getArgument(0), compilationState.preconditionCheckStateErrorType);
       }
-    } else if (callee.enclClass().getQualifiedName().equals(verifyClass)
+    } else if (callee.enclClass().getQualifiedName().equals(compilationState.verifyClass)
         && !callee.getParameters().isEmpty()
-        && callee.name.equals(verifyMethod)) {
-      phase.insertThrowOnFalse(originalNode.getArgument(0), verifyErrorType);
+        && callee.name.equals(compilationState.verifyMethod)) {
+      phase.insertThrowOnFalse(originalNode.getArgument(0), compilationState.verifyErrorType);
     }
     return originalNode;
   }
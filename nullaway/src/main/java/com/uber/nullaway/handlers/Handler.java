@@ -34,6 +34,7 @@ import com.sun.source.tree.ReturnTree;
 import com.sun.tools.javac.code.Symbol;
 import com.sun.tools.javac.code.Types;
 import com.sun.tools.javac.util.Context;
+import com.uber.nullaway.Config;
 import com.uber.nullaway.ErrorMessage;
 import com.uber.nullaway.LibraryModels;
 import com.uber.nullaway.NullAway;
@@ -149,6 +150,27 @@ public interface Handler {
   boolean onOverrideMayBeNullExpr(
       NullAway analysis, ExpressionTree expr, VisitorState state, boolean exprMayBeNull);
 
+  /**
+   * Called by the syntactic pre-pass of the sparse dataflow mode (see {@link
+   * com.uber.nullaway.Config#isSparseDataflow()}) for each method invocation in a method body, to
+   * decide whether the invocation may introduce a {@code null} value into that method.
+   *
+   * <p>Any handler which may make dataflow treat the return value of a method as nullable (e.g. by
+   * returning {@link NullnessHint#HINT_NULLABLE} from {@link
+   * #onDataflowVisitMethodInvocation(MethodInvocationNode, VisitorState,
+   * AccessPath.AccessPathContext, AccessPathNullnessPropagation.SubNodeValues,
+   * AccessPathNullnessPropagation.Updates, AccessPathNullnessPropagation.Updates,
+   * AccessPathNullnessPropagation.Updates)}) must return true here for that method.
+   *
+   * @param context The current context.
+   * @param methodSymbol The method symbol for the invoked method.
+   * @param mayReturnNull Whether the method may return null according to its annotations or
+   *     upstream handlers.
+   * @return Whether the method may return null, as updated by this handler.
+   */
+  boolean onSparseDataflowMayReturnNull(
+      Context context, Symbol.MethodSymbol methodSymbol, boolean mayReturnNull);
+
   /**
    * Called to potentially override the nullability of an annotated or unannotated method's return,
    * when only the method symbol (and not a full invocation tree) is available. This is used
@@ -207,11 +229,14 @@ public interface Handler {
    *     hook is called, represented as a builder. Usually, implementors of this hook will either
    *     take {@code result} and call {@code setInformation(...)} on it to add additional nullness
    *     facts, or replace it with a new builder altogether.
+   * @param context the javac Context object (or Error Prone SubContext), for state kept per
+   *     compilation.
    */
   NullnessStore.Builder onDataflowInitialStore(
       UnderlyingAST underlyingAST,
       List<LocalVariableNode> parameters,
-      NullnessStore.Builder result);
+      NullnessStore.Builder result,
+      Context context);
 
   /**
    * Called when the Dataflow analysis visits each method invocation.
@@ -240,6 +265,22 @@ public interface Handler {
       AccessPathNullnessPropagation.Updates elseUpdates,
       AccessPathNullnessPropagation.Updates bothUpdates);
 
+  /**
+   * Called when handlers are registered, to declare which method invocations this handler may act
+   * on in {@link #onDataflowVisitMethodInvocation}.
+   *
+   * <p>The dataflow analysis visits every method invocation, while most handlers only act on calls
+   * to a few methods. If this method returns a set of simple method names, {@link
+   * #onDataflowVisitMethodInvocation} is only called for invocations of methods with one of those
+   * names, and must return {@link NullnessHint#UNKNOWN} and add no updates for any other
+   * invocation.
+   *
+   * @return The simple names of the methods whose invocations this handler may act on, or {@code
+   *     null} if it may act on invocations of any method.
+   */
+  @Nullable
+  ImmutableSet<String> onRegisterDataflowMethodInvocationNames();
+
   /**
    * Called when the Dataflow analysis visits each field access.
    *
@@ -272,8 +313,11 @@ public interface Handler {
    *     statement.
    * @param elseStore The NullnessStore for the false case of the expression inside the return
    *     statement.
+   * @param context the javac Context object (or Error Prone SubContext), for state kept per
+   *     compilation.
    */
-  void onDataflowVisitReturn(ReturnTree tree, NullnessStore thenStore, NullnessStore elseStore);
+  void onDataflowVisitReturn(
+      ReturnTree tree, NullnessStore thenStore, NullnessStore elseStore, Context context);
 
   /**
    * Called when the Dataflow analysis visits the result expression inside the body of lambda.
@@ -292,9 +336,11 @@ public interface Handler {
    *     statement.
    * @param elseStore The NullnessStore for the false case of the expression inside the return
    *     statement.
+   * @param context the javac Context object (or Error Prone SubContext), for state kept per
+   *     compilation.
    */
   void onDataflowVisitLambdaResultExpression(
-      ExpressionTree tree, NullnessStore thenStore, NullnessStore elseStore);
+      ExpressionTree tree, NullnessStore thenStore, NullnessStore elseStore, Context context);
 
   /**
    * It should return an error wrapped in Optional if any of the handlers detect an error in
@@ -334,6 +380,17 @@ public interface Handler {
    */
   ImmutableSet<String> onRegisterImmutableTypes();
 
+  /**
+   * Called when the persistent summary cache is set up, to fingerprint the models this handler
+   * loaded from outside the code being compiled, such as library models or stubx files.
+   *
+   * <p>Summaries cached across compilations (see {@link Config#getSummaryCacheDirectory()}) are
+   * only reused while the fingerprints of all handlers are unchanged.
+   *
+   * @return A digest of the models loaded by this handler, or the empty string if it loads none.
+   */
+  String onRegisterModelsFingerprint();
+
   /**
    * Called when a method writes a {@code @NonNull} value to a class field.
    *
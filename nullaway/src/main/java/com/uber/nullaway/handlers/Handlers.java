@@ -42,7 +42,6 @@ public class Handlers {
    */
   public static Handler buildDefault(Config config) {
     ImmutableList.Builder<Handler> handlerListBuilder = ImmutableList.builder();
-    final MethodNameUtil methodNameUtil = new MethodNameUtil();
 
     if (config.acknowledgeRestrictiveAnnotations()) {
       // This runs before LibraryModelsHandler, so that library models can override third-party
@@ -53,7 +52,7 @@ public class Handlers {
       handlerListBuilder.add(new InferredJARModelsHandler(config));
     }
     if (config.handleTestAssertionLibraries()) {
-      handlerListBuilder.add(new AssertionHandler(methodNameUtil));
+      handlerListBuilder.add(new AssertionHandler());
     }
     handlerListBuilder.add(new GuavaAssertionsHandler());
     handlerListBuilder.add(new LibraryModelsHandler(config));
@@ -69,7 +68,7 @@ public class Handlers {
           new FieldInitializationSerializationHandler(config.getSerializationConfig()));
     }
     if (config.checkOptionalEmptiness()) {
-      handlerListBuilder.add(new OptionalEmptinessHandler(config, methodNameUtil));
+      handlerListBuilder.add(new OptionalEmptinessHandler(config));
     }
     if (config.checkContracts()) {
       handlerListBuilder.add(new ContractCheckHandler(config));
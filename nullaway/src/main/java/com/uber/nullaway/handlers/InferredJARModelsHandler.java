@@ -23,6 +23,7 @@
 package com.uber.nullaway.handlers;
 
 import com.google.common.base.Preconditions;
+import com.google.common.hash.Hashing;
 import com.google.errorprone.VisitorState;
 import com.google.errorprone.util.ASTHelpers;
 import com.sun.source.tree.ExpressionTree;
@@ -37,11 +38,17 @@ import com.uber.nullaway.Nullness;
 import com.uber.nullaway.dataflow.AccessPath;
 import com.uber.nullaway.dataflow.AccessPathNullnessPropagation;
 import com.uber.nullaway.jarinfer.JarInferStubxProvider;
+import java.io.ByteArrayInputStream;
 import java.io.DataInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.LinkedHashMap;
-import java.util.LinkedHashSet;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.ServiceLoader;
 import java.util.Set;
@@ -66,25 +73,49 @@ public class InferredJARModelsHandler extends BaseNoOpHandler {
   private static final String ANDROID_MODEL_CLASS =
       "com.uber.nullaway.jarinfer.AndroidJarInferModels";
 
-  private static final int RETURN = -1; // '-1' indexes Return type in the Annotation Cache
+  private static final int RETURN = -1; // '-1' indexes Return type in the stubx records
 
-  private final Map<String, Map<String, Map<Integer, Set<String>>>> argAnnotCache;
+  private static final String NONNULL_ANNOTATION = "javax.annotation.Nonnull";
+  private static final String NULLABLE_ANNOTATION = "javax.annotation.Nullable";
+
+  /**
+   * Names of the classes with at least one method model in a version 0 stubx file, with '$'
+   * replaced by '.'.
+   */
+  private final Set<String> modeledClasses;
+
+  /** Indexes of the version 1 stubx files, whose method records are decoded on demand. */
+  private final List<StubxIndex> stubxIndexes = new ArrayList<>();
+
+  /** Method models from version 0 stubx files, keyed by the method signature used in them. */
+  private final Map<String, MethodModel> methodModels;
+
+  /**
+   * Key of the models resolved for the method symbols of each compilation, so that we build the
+   * signature of a method at most once per compilation. The map holds {@link MethodModel#NONE} for
+   * symbols without a model. Symbols are specific to a compilation, so the map is kept in its
+   * context, and discarded with it.
+   */
+  private final Context.Key<Map<Symbol.MethodSymbol, MethodModel>> symbolModelsKey =
+      new Context.Key<>();
+
+  /** Digests of the contents of the loaded stubx files, in loading order. */
+  private final List<String> stubxFingerprints = new ArrayList<>();
 
   private final Config config;
 
   public InferredJARModelsHandler(Config config) {
     super();
     this.config = config;
-    argAnnotCache = new LinkedHashMap<>();
+    modeledClasses = new HashSet<>();
+    methodModels = new HashMap<>();
     loadStubxFiles();
     // Load Android SDK JarInfer models
     try {
-      InputStream androidStubxIS =
-          Class.forName(ANDROID_MODEL_CLASS)
-              .getClassLoader()
-              .getResourceAsStream(ANDROID_ASTUBX_LOCATION);
-      if (androidStubxIS != null) {
-        parseStubStream(androidStubxIS, "android.jar: " + ANDROID_ASTUBX_LOCATION);
+      URL androidStubxURL =
+          Class.forName(ANDROID_MODEL_CLASS).getClassLoader().getResource(ANDROID_ASTUBX_LOCATION);
+      if (androidStubxURL != null) {
+        loadStubx(androidStubxURL, "android.jar: " + ANDROID_ASTUBX_LOCATION);
         LOG(DEBUG, "DEBUG", "Loaded Android RT models.");
       }
     } catch (ClassNotFoundException e) {
@@ -110,10 +141,13 @@ public class InferredJARModelsHandler extends BaseNoOpHandler {
     for (JarInferStubxProvider provider : astubxProviders) {
       for (String astubxPath : provider.pathsToStubxFiles()) {
         Class<? extends JarInferStubxProvider> providerClass = provider.getClass();
-        InputStream stubxInputStream = providerClass.getResourceAsStream(astubxPath);
+        URL stubxURL = providerClass.getResource(astubxPath);
         String stubxLocation = providerClass + ":" + astubxPath;
         try {
-          parseStubStream(stubxInputStream, stubxLocation);
+          if (stubxURL == null) {
+            throw new IOException("stubx file not found");
+          }
+          loadStubx(stubxURL, stubxLocation);
           LOG(DEBUG, "DEBUG", "loaded stubx file " + stubxLocation);
         } catch (IOException e) {
           throw new RuntimeException("could not parse stubx file " + stubxLocation, e);
@@ -122,6 +156,28 @@ public class InferredJARModelsHandler extends BaseNoOpHandler {
     }
   }
 
+  /**
+   * Loads a stubx file. Version 1 files are only indexed, and their method records are decoded on
+   * demand by {@link #lookupMethodModel(Symbol.MethodSymbol, Context)}, while version 0 files are
+   * parsed eagerly.
+   */
+  private void loadStubx(URL stubxURL, String stubxLocation) throws IOException {
+    ByteBuffer contents = StubxIndex.readContents(stubxURL);
+    stubxFingerprints.add(Hashing.murmur3_128().hashBytes(contents.duplicate()).toString());
+    if (StubxIndex.isVersion1(contents)) {
+      stubxIndexes.add(StubxIndex.open(contents));
+    } else {
+      byte[] bytes = new byte[contents.remaining()];
+      contents.duplicate().get(bytes);
+      parseStubStream(new ByteArrayInputStream(bytes), stubxLocation);
+    }
+  }
+
+  @Override
+  public String onRegisterModelsFingerprint() {
+    return String.join(",", stubxFingerprints);
+  }
+
   @Override
   public Nullness[] onOverrideMethodInvocationParametersNullability(
       Context context,
@@ -142,35 +198,21 @@ public class InferredJARModelsHandler extends BaseNoOpHandler {
       // model of JarInfer on a normal jar/aar is to add bytecode annotations.
       return argumentPositionNullness;
     }
-    Symbol.ClassSymbol classSymbol = methodSymbol.enclClass();
-    String className = classSymbol.getQualifiedName().toString();
     if (methodSymbol.getModifiers().contains(Modifier.ABSTRACT)) {
       LOG(
           VERBOSE,
           "Warn",
-          "Skipping abstract method: " + className + " : " + methodSymbol.getQualifiedName());
-      return argumentPositionNullness;
-    }
-    if (!argAnnotCache.containsKey(className)) {
-      return argumentPositionNullness;
-    }
-    String methodSign = getMethodSignature(methodSymbol);
-    Map<Integer, Set<String>> methodArgAnnotations = lookupMethodInCache(className, methodSign);
-    if (methodArgAnnotations == null) {
+          "Skipping abstract method: "
+              + methodSymbol.enclClass().getQualifiedName()
+              + " : "
+              + methodSymbol.getQualifiedName());
       return argumentPositionNullness;
     }
-    Set<Integer> jiNonNullParams = new LinkedHashSet<>();
-    for (Map.Entry<Integer, Set<String>> annotationEntry : methodArgAnnotations.entrySet()) {
-      if (annotationEntry.getKey() != RETURN
-          && annotationEntry.getValue().contains("javax.annotation.Nonnull")) {
-        // Skip 'this' param for non-static methods
-        int nonNullPosition = annotationEntry.getKey() - (methodSymbol.isStatic() ? 0 : 1);
-        jiNonNullParams.add(nonNullPosition);
-        argumentPositionNullness[nonNullPosition] = Nullness.NONNULL;
-      }
-    }
-    if (!jiNonNullParams.isEmpty()) {
-      LOG(DEBUG, "DEBUG", "Nonnull params: " + jiNonNullParams.toString() + " for " + methodSign);
+    BitSet nonNullArgs = lookupMethodModel(methodSymbol, context).nonNullArgs;
+    // Skip 'this' param for non-static methods
+    int thisOffset = methodSymbol.isStatic() ? 0 : 1;
+    for (int i = nonNullArgs.nextSetBit(0); i >= 0; i = nonNullArgs.nextSetBit(i + 1)) {
+      argumentPositionNullness[i - thisOffset] = Nullness.NONNULL;
     }
     return argumentPositionNullness;
   }
@@ -184,91 +226,125 @@ public class InferredJARModelsHandler extends BaseNoOpHandler {
       AccessPathNullnessPropagation.Updates thenUpdates,
       AccessPathNullnessPropagation.Updates elseUpdates,
       AccessPathNullnessPropagation.Updates bothUpdates) {
-    if (isReturnAnnotatedNullable(ASTHelpers.getSymbol(node.getTree()))) {
+    if (isReturnAnnotatedNullable(ASTHelpers.getSymbol(node.getTree()), state.context)) {
       return NullnessHint.HINT_NULLABLE;
     }
     return NullnessHint.UNKNOWN;
   }
 
+  @Override
+  public boolean onSparseDataflowMayReturnNull(
+      Context context, Symbol.MethodSymbol methodSymbol, boolean mayReturnNull) {
+    return mayReturnNull || isReturnAnnotatedNullable(methodSymbol, context);
+  }
+
   @Override
   public boolean onOverrideMayBeNullExpr(
       NullAway analysis, ExpressionTree expr, VisitorState state, boolean exprMayBeNull) {
     if (expr.getKind().equals(Tree.Kind.METHOD_INVOCATION)) {
       return exprMayBeNull
-          || isReturnAnnotatedNullable(ASTHelpers.getSymbol((MethodInvocationTree) expr));
+          || isReturnAnnotatedNullable(
+              ASTHelpers.getSymbol((MethodInvocationTree) expr), state.context);
     }
     return exprMayBeNull;
   }
 
-  private boolean isReturnAnnotatedNullable(Symbol.MethodSymbol methodSymbol) {
+  private boolean isReturnAnnotatedNullable(Symbol.MethodSymbol methodSymbol, Context context) {
     if (config.isJarInferUseReturnAnnotations()) {
       Preconditions.checkNotNull(methodSymbol);
-      Symbol.ClassSymbol classSymbol = methodSymbol.enclClass();
-      String className = classSymbol.getQualifiedName().toString();
-      if (argAnnotCache.containsKey(className)) {
+      return lookupMethodModel(methodSymbol, context).nullableReturn;
+    }
+    return false;
+  }
+
+  /** Returns the model of a method, or {@link MethodModel#NONE}, memoized per symbol. */
+  private MethodModel lookupMethodModel(Symbol.MethodSymbol methodSymbol, Context context) {
+    Map<Symbol.MethodSymbol, MethodModel> symbolModels = context.get(symbolModelsKey);
+    if (symbolModels == null) {
+      symbolModels = new HashMap<>();
+      context.put(symbolModelsKey, symbolModels);
+    }
+    MethodModel model = symbolModels.get(methodSymbol);
+    if (model == null) {
+      model = MethodModel.NONE;
+      String className = methodSymbol.enclClass().getQualifiedName().toString();
+      if (modeledClasses.contains(className) || hasIndexedClass(className)) {
         String methodSign = getMethodSignature(methodSymbol);
-        Map<Integer, Set<String>> methodArgAnnotations = lookupMethodInCache(className, methodSign);
-        if (methodArgAnnotations != null) {
-          Set<String> methodAnnotations = methodArgAnnotations.get(RETURN);
-          if (methodAnnotations != null) {
-            if (methodAnnotations.contains("javax.annotation.Nullable")) {
-              LOG(DEBUG, "DEBUG", "Nullable return for method: " + methodSign);
-              return true;
-            }
-          }
+        MethodModel found = findMethodModel(methodSign);
+        if (found == null) {
+          LOG(
+              VERBOSE,
+              "Warn",
+              "Cannot find model for method: " + methodSign + " in class: " + className);
+        } else {
+          LOG(DEBUG, "DEBUG", "Found model for method: " + methodSign + " -- " + found);
+          model = found;
         }
       }
+      symbolModels.put(methodSymbol, model);
+    }
+    return model;
+  }
+
+  private boolean hasIndexedClass(String className) {
+    for (StubxIndex index : stubxIndexes) {
+      if (index.hasClass(className)) {
+        return true;
+      }
     }
     return false;
   }
 
+  /**
+   * Returns the model of a method, merged from all stubx files, or {@code null} if no file has a
+   * model for the method.
+   */
   @Nullable
-  private Map<Integer, Set<String>> lookupMethodInCache(String className, String methodSign) {
-    if (!argAnnotCache.containsKey(className)) {
-      return null;
-    }
-    Map<Integer, Set<String>> methodArgAnnotations = argAnnotCache.get(className).get(methodSign);
-    if (methodArgAnnotations == null) {
-      LOG(
-          VERBOSE,
-          "Warn",
-          "Cannot find Annotation Cache entry for method: "
-              + methodSign
-              + " in class: "
-              + className);
-      return null;
+  private MethodModel findMethodModel(String methodSign) {
+    MethodModel model = methodModels.get(methodSign);
+    for (StubxIndex index : stubxIndexes) {
+      StubxIndex.MethodRecord record = index.lookup(methodSign);
+      if (record == null) {
+        continue;
+      }
+      // Do not modify the models of version 0 files, which may be shared with other signatures
+      MethodModel merged = new MethodModel();
+      if (model != null) {
+        merged.nonNullArgs.or(model.nonNullArgs);
+        merged.nullableReturn = model.nullableReturn;
+      }
+      if (record.methodAnnotations.contains(NULLABLE_ANNOTATION)) {
+        merged.nullableReturn = true;
+      }
+      for (Map.Entry<Integer, String> argument : record.argumentAnnotations.entries()) {
+        if (argument.getKey() != RETURN && argument.getValue().equals(NONNULL_ANNOTATION)) {
+          merged.nonNullArgs.set(argument.getKey());
+        }
+      }
+      model = merged;
     }
-    LOG(
-        DEBUG,
-        "DEBUG",
-        "Found Annotation Cache entry for method: "
-            + methodSign
-            + " in class: "
-            + className
-            + " -- "
-            + methodArgAnnotations.toString());
-    return methodArgAnnotations;
+    return model;
   }
 
   private String getMethodSignature(Symbol.MethodSymbol method) {
     // Generate method signature
-    String methodSign =
-        method.enclClass().getQualifiedName().toString()
-            + ":"
-            + (method.isStaticOrInstanceInit()
-                ? ""
-                : getSimpleTypeName(method.getReturnType()) + " ")
-            + method.getSimpleName()
-            + "(";
-    if (!method.getParameters().isEmpty()) {
-      for (Symbol.VarSymbol var : method.getParameters()) {
-        methodSign += getSimpleTypeName(var.type) + ", ";
+    StringBuilder methodSign = new StringBuilder();
+    methodSign.append(method.enclClass().getQualifiedName()).append(':');
+    if (!method.isStaticOrInstanceInit()) {
+      methodSign.append(getSimpleTypeName(method.getReturnType())).append(' ');
+    }
+    methodSign.append(method.getSimpleName()).append('(');
+    boolean first = true;
+    for (Symbol.VarSymbol var : method.getParameters()) {
+      if (!first) {
+        methodSign.append(", ");
       }
-      methodSign = methodSign.substring(0, methodSign.lastIndexOf(','));
+      first = false;
+      methodSign.append(getSimpleTypeName(var.type));
     }
-    methodSign += ")";
+    methodSign.append(')');
     LOG(DEBUG, "DEBUG", "@ method sign: " + methodSign);
-    return methodSign;
+    return methodSign.toString();
   }
 
   private String getSimpleTypeName(Type typ) {
@@ -311,21 +387,31 @@ public class InferredJARModelsHandler extends BaseNoOpHandler {
       in.readInt(); // String typeName = strings[in.readInt()];
       in.readInt(); // String annotation = strings[in.readInt()];
     }
+    // Models for the method signatures in the string dictionary, by dictionary index, so that we
+    // look up each signature at most once
+    MethodModel[] modelsByString = new MethodModel[numStrings];
     // Read the number of (method, annotation) entries
     int numMethods = in.readInt();
     // Read each (method, annotation) record
     for (int i = 0; i < numMethods; ++i) {
-      String methodSig = strings[in.readInt()];
+      int methodSigIndex = in.readInt();
       String annotation = strings[in.readInt()];
-      LOG(DEBUG, "DEBUG", "method: " + methodSig + ", return annotation: " + annotation);
-      cacheAnnotation(methodSig, RETURN, annotation);
+      LOG(
+          DEBUG,
+          "DEBUG",
+          "method: " + strings[methodSigIndex] + ", return annotation: " + annotation);
+      if (annotation.equals(NULLABLE_ANNOTATION)) {
+        getMethodModel(methodSigIndex, strings, modelsByString).nullableReturn = true;
+      }
     }
     // Read the number of (method, argument, annotation) entries
     int numArgumentRecords = in.readInt();
     // Read each (method, argument, annotation) record
     for (int i = 0; i < numArgumentRecords; ++i) {
-      String methodSig = strings[in.readInt()];
-      if (methodSig.lastIndexOf(':') == -1 || methodSig.split(":")[0].lastIndexOf('.') == -1) {
+      int methodSigIndex = in.readInt();
+      String methodSig = strings[methodSigIndex];
+      int classEnd = methodSig.indexOf(':');
+      if (classEnd == -1 || methodSig.lastIndexOf('.', classEnd - 1) == -1) {
         throw new Error(
             "Invalid method signature " + methodSig + " in stubx file " + stubxLocation);
       }
@@ -335,19 +421,45 @@ public class InferredJARModelsHandler extends BaseNoOpHandler {
           DEBUG,
           "DEBUG",
           "method: " + methodSig + ", argNum: " + argNum + ", arg annotation: " + annotation);
-      cacheAnnotation(methodSig, argNum, annotation);
+      if (argNum != RETURN && annotation.equals(NONNULL_ANNOTATION)) {
+        getMethodModel(methodSigIndex, strings, modelsByString).nonNullArgs.set(argNum);
+      }
     }
   }
 
-  private void cacheAnnotation(String methodSig, Integer argNum, String annotation) {
-    // TODO: handle inner classes properly
-    String className = methodSig.split(":")[0].replace('$', '.');
-    Map<String, Map<Integer, Set<String>>> cacheForClass =
-        argAnnotCache.computeIfAbsent(className, s -> new LinkedHashMap<>());
-    Map<Integer, Set<String>> cacheForMethod =
-        cacheForClass.computeIfAbsent(methodSig, s -> new LinkedHashMap<>());
-    Set<String> cacheForArgument =
-        cacheForMethod.computeIfAbsent(argNum, s -> new LinkedHashSet<>());
-    cacheForArgument.add(annotation);
+  private MethodModel getMethodModel(
+      int methodSigIndex, String[] strings, MethodModel[] modelsByString) {
+    MethodModel model = modelsByString[methodSigIndex];
+    if (model == null) {
+      String methodSig = strings[methodSigIndex];
+      model = methodModels.computeIfAbsent(methodSig, s -> new MethodModel());
+      modelsByString[methodSigIndex] = model;
+      // TODO: handle inner classes properly
+      int classEnd = methodSig.indexOf(':');
+      String className = classEnd == -1 ? methodSig : methodSig.substring(0, classEnd);
+      modeledClasses.add(className.replace('$', '.'));
+    }
+    return model;
+  }
+
+  /** The JarInfer model of a single method. */
+  private static final class MethodModel {
+
+    /** Shared model for methods which have none; never modified after loading. */
+    static final MethodModel NONE = new MethodModel();
+
+    /**
+     * Positions of the arguments inferred to be {@code @Nonnull}, counting the receiver as
+     * argument 0 for instance methods.
+     */
+    final BitSet nonNullArgs = new BitSet();
+
+    /** Whether the return value is inferred to be {@code @Nullable}. */
+    boolean nullableReturn;
+
+    @Override
+    public String toString() {
+      return "nonNullArgs=" + nonNullArgs + ", nullableReturn=" + nullableReturn;
+    }
   }
 }
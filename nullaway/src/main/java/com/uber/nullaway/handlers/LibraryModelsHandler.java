@@ -23,12 +23,16 @@
 package com.uber.nullaway.handlers;
 
 import static com.uber.nullaway.LibraryModels.MethodRef.methodRef;
+import static com.uber.nullaway.NullabilityUtil.castToNonNull;
 import static com.uber.nullaway.Nullness.NONNULL;
 import static com.uber.nullaway.Nullness.NULLABLE;
 
 import com.google.common.base.Preconditions;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSetMultimap;
+import com.google.common.collect.Maps;
 import com.google.errorprone.VisitorState;
 import com.google.errorprone.util.ASTHelpers;
 import com.sun.source.tree.ExpressionTree;
@@ -36,6 +40,7 @@ import com.sun.source.tree.Tree;
 import com.sun.tools.javac.code.Symbol;
 import com.sun.tools.javac.code.Types;
 import com.sun.tools.javac.util.Context;
+import com.sun.tools.javac.util.Log;
 import com.sun.tools.javac.util.Name;
 import com.sun.tools.javac.util.Names;
 import com.uber.nullaway.CodeAnnotationInfo;
@@ -46,11 +51,17 @@ import com.uber.nullaway.NullAway;
 import com.uber.nullaway.Nullness;
 import com.uber.nullaway.dataflow.AccessPath;
 import com.uber.nullaway.dataflow.AccessPathNullnessPropagation;
+import com.uber.nullaway.handlers.LibraryModelsIndex.ModelKind;
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.ServiceLoader;
 import java.util.Set;
 import java.util.function.Function;
@@ -68,14 +79,56 @@ import org.checkerframework.nullaway.dataflow.cfg.node.Node;
 public class LibraryModelsHandler extends BaseNoOpHandler {
 
   private final Config config;
-  private final LibraryModels libraryModels;
 
-  @Nullable private OptimizedLibraryModels optLibraryModels;
+  /** The precompiled library models index, if one was configured and could be loaded. */
+  @Nullable private final LibraryModelsIndex libraryModelsIndex;
+
+  /** Why the configured library models index could not be loaded, reported in each compilation. */
+  @Nullable private final String libraryModelsIndexWarning;
+
+  /** Library models loaded from their providers, when there is no index. */
+  @Nullable private final LibraryModels libraryModels;
+
+  /**
+   * Key of the optimized models in the context of each compilation. They are indexed by the names
+   * of a compilation, and memoize lookups by symbol, so they are not shared between compilations.
+   */
+  private final Context.Key<OptimizedLibraryModels> optLibraryModelsKey = new Context.Key<>();
+
+  /** Digest of the library models, computed on first use. */
+  private final Supplier<String> modelsFingerprint;
 
   public LibraryModelsHandler(Config config) {
     super();
     this.config = config;
-    libraryModels = loadLibraryModels();
+    String indexPath = config.getLibraryModelsIndexPath();
+    LibraryModelsIndex index = null;
+    String indexWarning = null;
+    if (indexPath != null) {
+      try {
+        index = LibraryModelsIndex.load(Paths.get(indexPath));
+      } catch (IOException | RuntimeException e) {
+        indexWarning =
+            "warning: NullAway ignores the library models index "
+                + indexPath
+                + " and loads the library models instead: "
+                + e;
+      }
+    }
+    libraryModelsIndex = index;
+    libraryModelsIndexWarning = indexWarning;
+    libraryModels = libraryModelsIndex == null ? loadLibraryModels() : null;
+    modelsFingerprint =
+        Suppliers.memoize(
+            () ->
+                libraryModelsIndex != null
+                    ? libraryModelsIndex.fingerprint()
+                    : LibraryModelsIndex.fingerprint(castToNonNull(libraryModels)));
+  }
+
+  @Override
+  public String onRegisterModelsFingerprint() {
+    return modelsFingerprint.get();
   }
 
   @Override
@@ -133,7 +186,8 @@ public class LibraryModelsHandler extends BaseNoOpHandler {
       // and any of its overriding implementations.
       // see https://github.com/uber/NullAway/issues/445 for why this is needed.
       boolean isMethodAnnotated =
-          !getCodeAnnotationInfo(state.context).isSymbolUnannotated(methodSymbol, this.config);
+          !CodeAnnotationInfo.instance(state.context)
+              .isSymbolUnannotated(methodSymbol, this.config);
       if (optLibraryModels.hasNullableReturn(methodSymbol, state.getTypes(), !isMethodAnnotated)
           || !optLibraryModels.nullImpliesNullParameters(methodSymbol).isEmpty()) {
         // These mean the method might be null, depending on dataflow and arguments. We force
@@ -148,6 +202,18 @@ public class LibraryModelsHandler extends BaseNoOpHandler {
     return exprMayBeNull;
   }
 
+  @Override
+  public boolean onSparseDataflowMayReturnNull(
+      Context context, Symbol.MethodSymbol methodSymbol, boolean mayReturnNull) {
+    OptimizedLibraryModels optLibraryModels = getOptLibraryModels(context);
+    boolean isMethodAnnotated =
+        !CodeAnnotationInfo.instance(context).isSymbolUnannotated(methodSymbol, this.config);
+    return mayReturnNull
+        || optLibraryModels.hasNullableReturn(
+            methodSymbol, Types.instance(context), !isMethodAnnotated)
+        || !optLibraryModels.nullImpliesNullParameters(methodSymbol).isEmpty();
+  }
+
   @Override
   @Nullable
   public Integer castToNonNullArgumentPositionsForMethod(
@@ -171,15 +237,6 @@ public class LibraryModelsHandler extends BaseNoOpHandler {
     return newPositions.stream().findAny().orElse(previousArgumentPosition);
   }
 
-  @Nullable private CodeAnnotationInfo codeAnnotationInfo;
-
-  private CodeAnnotationInfo getCodeAnnotationInfo(Context context) {
-    if (codeAnnotationInfo == null) {
-      codeAnnotationInfo = CodeAnnotationInfo.instance(context);
-    }
-    return codeAnnotationInfo;
-  }
-
   @Override
   public NullnessHint onDataflowVisitMethodInvocation(
       MethodInvocationNode node,
@@ -192,7 +249,7 @@ public class LibraryModelsHandler extends BaseNoOpHandler {
     Symbol.MethodSymbol callee = ASTHelpers.getSymbol(node.getTree());
     Preconditions.checkNotNull(callee);
     boolean isMethodAnnotated =
-        !getCodeAnnotationInfo(state.context).isSymbolUnannotated(callee, this.config);
+        !CodeAnnotationInfo.instance(state.context).isSymbolUnannotated(callee, this.config);
     setUnconditionalArgumentNullness(bothUpdates, node.getArguments(), callee, state, apContext);
     setConditionalArgumentNullness(
         thenUpdates, elseUpdates, node.getArguments(), callee, state, apContext);
@@ -263,8 +320,17 @@ public class LibraryModelsHandler extends BaseNoOpHandler {
   }
 
   private OptimizedLibraryModels getOptLibraryModels(Context context) {
+    OptimizedLibraryModels optLibraryModels = context.get(optLibraryModelsKey);
     if (optLibraryModels == null) {
-      optLibraryModels = new OptimizedLibraryModels(libraryModels, context);
+      if (libraryModelsIndex != null) {
+        optLibraryModels = new OptimizedLibraryModels(libraryModelsIndex);
+      } else {
+        optLibraryModels = new OptimizedLibraryModels(castToNonNull(libraryModels), context);
+      }
+      context.put(optLibraryModelsKey, optLibraryModels);
+      if (libraryModelsIndexWarning != null) {
+        Log.instance(context).printRawLines(Log.WriterKind.WARNING, libraryModelsIndexWarning);
+      }
     }
     return optLibraryModels;
   }
@@ -283,7 +349,7 @@ public class LibraryModelsHandler extends BaseNoOpHandler {
     }
   }
 
-  private static LibraryModels loadLibraryModels() {
+  static LibraryModels loadLibraryModels() {
     Iterable<LibraryModels> externalLibraryModels =
         ServiceLoader.load(LibraryModels.class, LibraryModels.class.getClassLoader());
     ImmutableSet.Builder<LibraryModels> libModelsBuilder = new ImmutableSet.Builder<>();
@@ -887,28 +953,71 @@ public class LibraryModelsHandler extends BaseNoOpHandler {
      * name as an optimization. The {@link Name} data structure is used to avoid unnecessary String
      * conversions when looking up {@link com.sun.tools.javac.code.Symbol.MethodSymbol}s.
      *
+     * <p>Since building a {@link MethodRef} for a symbol requires building its class name and
+     * signature strings, results for symbols whose name matches some model are memoized by symbol
+     * identity. Symbols are unique within a compilation, and the {@link OptimizedLibraryModels}
+     * holding this map is created once per compilation.
+     *
      * @param <T> the type of the associated state.
      */
     private static class NameIndexedMap<T> {
 
       private final Map<Name, Map<MethodRef, T>> state;
 
+      /**
+       * Loads the entries for a method name on first lookup, or {@code null} if {@link #state} is
+       * complete.
+       */
+      @Nullable private final Function<Name, Map<MethodRef, T>> entriesLoader;
+
+      /** Memoized results of {@link #get(Symbol.MethodSymbol)}, empty if there is no entry. */
+      private final Map<Symbol.MethodSymbol, Optional<T>> symbolLookupCache =
+          new IdentityHashMap<>();
+
+      /**
+       * Memoized results of the overridden methods search in {@link #lookupHandlingOverrides},
+       * empty if no overridden method has an entry.
+       */
+      private final Map<Symbol.MethodSymbol, Optional<Symbol.MethodSymbol>> superMethodCache =
+          new IdentityHashMap<>();
+
       NameIndexedMap(Map<Name, Map<MethodRef, T>> state) {
         this.state = state;
+        this.entriesLoader = null;
+      }
+
+      NameIndexedMap(Function<Name, Map<MethodRef, T>> entriesLoader) {
+        this.state = new HashMap<>();
+        this.entriesLoader = entriesLoader;
+      }
+
+      @Nullable
+      private Map<MethodRef, T> entriesForName(Name name) {
+        Map<MethodRef, T> entries = state.get(name);
+        if (entries == null && entriesLoader != null) {
+          entries = entriesLoader.apply(name);
+          state.put(name, entries);
+        }
+        return (entries == null || entries.isEmpty()) ? null : entries;
       }
 
       @Nullable
       public T get(Symbol.MethodSymbol symbol) {
-        Map<MethodRef, T> methodRefTMap = state.get(symbol.name);
+        Map<MethodRef, T> methodRefTMap = entriesForName(symbol.name);
         if (methodRefTMap == null) {
           return null;
         }
-        MethodRef ref = MethodRef.fromSymbol(symbol);
-        return methodRefTMap.get(ref);
+        Optional<T> result = symbolLookupCache.get(symbol);
+        if (result == null) {
+          MethodRef ref = MethodRef.fromSymbol(symbol);
+          result = Optional.ofNullable(methodRefTMap.get(ref));
+          symbolLookupCache.put(symbol, result);
+        }
+        return result.orElse(null);
       }
 
       public boolean nameNotPresent(Symbol.MethodSymbol symbol) {
-        return state.get(symbol.name) == null;
+        return entriesForName(symbol.name) == null;
       }
     }
 
@@ -937,6 +1046,23 @@ public class LibraryModelsHandler extends BaseNoOpHandler {
       castToNonNullMethods = makeOptimizedIntSetLookup(names, models.castToNonNullMethods());
     }
 
+    /** Creates a view of a precompiled index, which is only decoded for looked up method names. */
+    public OptimizedLibraryModels(LibraryModelsIndex index) {
+      failIfNullParams = makeIndexedIntSetLookup(index, ModelKind.FAIL_IF_NULL_PARAMETERS);
+      explicitlyNullableParams =
+          makeIndexedIntSetLookup(index, ModelKind.EXPLICITLY_NULLABLE_PARAMETERS);
+      nonNullParams = makeIndexedIntSetLookup(index, ModelKind.NON_NULL_PARAMETERS);
+      nullImpliesTrueParams =
+          makeIndexedIntSetLookup(index, ModelKind.NULL_IMPLIES_TRUE_PARAMETERS);
+      nullImpliesFalseParams =
+          makeIndexedIntSetLookup(index, ModelKind.NULL_IMPLIES_FALSE_PARAMETERS);
+      nullImpliesNullParams =
+          makeIndexedIntSetLookup(index, ModelKind.NULL_IMPLIES_NULL_PARAMETERS);
+      nullableRet = makeIndexedBoolLookup(index, ModelKind.NULLABLE_RETURNS);
+      nonNullRet = makeIndexedBoolLookup(index, ModelKind.NON_NULL_RETURNS);
+      castToNonNullMethods = makeIndexedIntSetLookup(index, ModelKind.CAST_TO_NON_NULL_METHODS);
+    }
+
     public boolean hasNonNullReturn(Symbol.MethodSymbol symbol, Types types, boolean checkSuper) {
       return lookupHandlingOverrides(symbol, types, nonNullRet, checkSuper) != null;
     }
@@ -989,6 +1115,17 @@ public class LibraryModelsHandler extends BaseNoOpHandler {
       return makeOptimizedLookup(names, refs, (ref) -> true);
     }
 
+    private static NameIndexedMap<ImmutableSet<Integer>> makeIndexedIntSetLookup(
+        LibraryModelsIndex index, ModelKind kind) {
+      return new NameIndexedMap<>(name -> index.lookup(kind, name.toString()));
+    }
+
+    private static NameIndexedMap<Boolean> makeIndexedBoolLookup(
+        LibraryModelsIndex index, ModelKind kind) {
+      return new NameIndexedMap<>(
+          name -> Maps.toMap(index.lookup(kind, name.toString()).keySet(), ref -> true));
+    }
+
     private <T> NameIndexedMap<T> makeOptimizedLookup(
         Names names, Set<MethodRef> refs, Function<MethodRef, T> getValForRef) {
       Map<Name, Map<MethodRef, T>> nameMapping = new LinkedHashMap<>();
@@ -1024,12 +1161,18 @@ public class LibraryModelsHandler extends BaseNoOpHandler {
       }
       // For unannotated code, we allow a single model to cover all overriding implementations /
       // subtypes
-      for (Symbol.MethodSymbol superSymbol : ASTHelpers.findSuperMethods(symbol, types)) {
-        if (optLookup.get(superSymbol) != null) {
-          return superSymbol;
+      Optional<Symbol.MethodSymbol> result = optLookup.superMethodCache.get(symbol);
+      if (result == null) {
+        result = Optional.empty();
+        for (Symbol.MethodSymbol superSymbol : ASTHelpers.findSuperMethods(symbol, types)) {
+          if (optLookup.get(superSymbol) != null) {
+            result = Optional.of(superSymbol);
+            break;
+          }
         }
+        optLookup.superMethodCache.put(symbol, result);
       }
-      return null;
+      return result.orElse(null);
     }
   }
 }
@@ -0,0 +1,382 @@
+package com.uber.nullaway.handlers;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import com.google.common.hash.Hashing;
+import com.google.common.primitives.UnsignedBytes;
+import com.uber.nullaway.LibraryModels;
+import com.uber.nullaway.LibraryModels.MethodRef;
+import com.uber.nullaway.NullAwayVersion;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import javax.annotation.Nullable;
+
+/**
+ * A precompiled table of library models, merged from all {@link LibraryModels} implementations
+ * and indexed by method name.
+ *
+ * <p>Normally, {@link LibraryModelsHandler} instantiates every {@link LibraryModels} provider
+ * through {@link java.util.ServiceLoader} and merges and re-indexes all their models at the start
+ * of each compilation. An index file can instead be generated once at build time, by running this
+ * class with NullAway and the jars providing library models on the classpath:
+ *
+ * <pre>
+ *   java -cp &lt;classpath&gt; com.uber.nullaway.handlers.LibraryModelsIndex &lt;output file&gt;
+ * </pre>
+ *
+ * <p>and passed to NullAway with {@code -XepOpt:NullAway:LibraryModelsIndex=<output file>}. The
+ * file is read into memory, and the models for a method name are only decoded when a method with
+ * that name is looked up. Note that the index must be regenerated whenever the library models
+ * change. The index records the NullAway version and the names of the {@link LibraryModels}
+ * providers it was generated with, and NullAway falls back to loading the providers, with a
+ * warning, if either differs from the current ones.
+ *
+ * <p>File format: a header with a magic number, the format version, the offset of the table of
+ * each {@link ModelKind}, and the stamp of the NullAway version and providers (see {@link
+ * #computeStamp()}). Each table holds the number of distinct method names, followed by the
+ * offsets of the records for each name, sorted by the UTF-8 bytes of the name. A record holds the
+ * method name, then the number of models for that name and, for each, the enclosing class, the
+ * method signature (as in {@link MethodRef}) and the argument positions. Strings are stored as
+ * their UTF-8 length followed by their bytes.
+ */
+public final class LibraryModelsIndex {
+
+  /** The kinds of library models, in the order of their tables in an index file. */
+  enum ModelKind {
+    FAIL_IF_NULL_PARAMETERS,
+    EXPLICITLY_NULLABLE_PARAMETERS,
+    NON_NULL_PARAMETERS,
+    NULL_IMPLIES_TRUE_PARAMETERS,
+    NULL_IMPLIES_FALSE_PARAMETERS,
+    NULL_IMPLIES_NULL_PARAMETERS,
+    NULLABLE_RETURNS,
+    NON_NULL_RETURNS,
+    CAST_TO_NON_NULL_METHODS
+  }
+
+  private static final int MAGIC = 0x4E554C4D;
+
+  private static final int FORMAT_VERSION = 2;
+
+  private static final int HEADER_SIZE = 8 + 4 * ModelKind.values().length;
+
+  private static final Comparator<byte[]> UTF8_ORDER = UnsignedBytes.lexicographicalComparator();
+
+  private final ByteBuffer buffer;
+
+  private LibraryModelsIndex(ByteBuffer buffer) {
+    this.buffer = buffer;
+  }
+
+  /**
+   * Reads an index file.
+   *
+   * @param path path of the index file
+   * @return the index
+   * @throws IOException if the file cannot be read, is not an index, or was generated by another
+   *     version of NullAway or with other library models providers
+   */
+  static LibraryModelsIndex load(Path path) throws IOException {
+    // Not memory-mapped, as a mapped file cannot be replaced on Windows until it is unmapped
+    ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+    if (buffer.limit() < HEADER_SIZE
+        || buffer.getInt(0) != MAGIC
+        || buffer.getInt(4) != FORMAT_VERSION) {
+      throw new IOException("not a library models index of this version of NullAway");
+    }
+    String stamp = computeStamp();
+    if (stamp == null) {
+      throw new IOException("the NullAway version is unknown");
+    }
+    ByteBuffer header = buffer.duplicate();
+    header.position(HEADER_SIZE);
+    String indexStamp;
+    try {
+      indexStamp = readString(header);
+    } catch (BufferUnderflowException | NegativeArraySizeException e) {
+      throw new IOException("truncated library models index", e);
+    }
+    if (!indexStamp.equals(stamp)) {
+      throw new IOException(
+          "generated by another version of NullAway or with other library models providers");
+    }
+    return new LibraryModelsIndex(buffer);
+  }
+
+  /**
+   * Computes the stamp of the current NullAway version and {@link LibraryModels} providers, i.e.,
+   * the version followed by the sorted class names of the providers, as listed in the service
+   * configuration files visible to {@link LibraryModelsHandler#loadLibraryModels()}.
+   *
+   * @return the stamp, or {@code null} if the NullAway version is unknown
+   * @throws IOException if a service configuration file cannot be read
+   */
+  @Nullable
+  private static String computeStamp() throws IOException {
+    String version = NullAwayVersion.get();
+    if (version == null) {
+      return null;
+    }
+    Set<String> providers = new TreeSet<>();
+    Enumeration<URL> configs =
+        LibraryModels.class
+            .getClassLoader()
+            .getResources("META-INF/services/" + LibraryModels.class.getName());
+    while (configs.hasMoreElements()) {
+      try (BufferedReader reader =
+          new BufferedReader(
+              new InputStreamReader(configs.nextElement().openStream(), StandardCharsets.UTF_8))) {
+        String line;
+        while ((line = reader.readLine()) != null) {
+          int comment = line.indexOf('#');
+          String provider = (comment >= 0 ? line.substring(0, comment) : line).trim();
+          if (!provider.isEmpty()) {
+            providers.add(provider);
+          }
+        }
+      }
+    }
+    return version + "\n" + String.join("\n", providers);
+  }
+
+  /**
+   * Looks up the models of a given kind for methods with a given name.
+   *
+   * @param kind the kind of models
+   * @param methodName the method name, {@code <init>} for constructors
+   * @return a map from each modeled method with that name to its argument positions (empty for
+   *     kinds of models that apply to the return value)
+   */
+  ImmutableMap<MethodRef, ImmutableSet<Integer>> lookup(ModelKind kind, String methodName) {
+    byte[] key = methodName.getBytes(StandardCharsets.UTF_8);
+    int table = buffer.getInt(8 + 4 * kind.ordinal());
+    int low = 0;
+    int high = buffer.getInt(table) - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      int record = buffer.getInt(table + 4 + 4 * mid);
+      int cmp = compareString(record, key);
+      if (cmp < 0) {
+        low = mid + 1;
+      } else if (cmp > 0) {
+        high = mid - 1;
+      } else {
+        return readRecord(record + 4 + key.length);
+      }
+    }
+    return ImmutableMap.of();
+  }
+
+  /** Compares the string stored at the given offset with the given UTF-8 bytes. */
+  private int compareString(int offset, byte[] key) {
+    int length = buffer.getInt(offset);
+    int common = Math.min(length, key.length);
+    for (int i = 0; i < common; i++) {
+      int cmp = UnsignedBytes.compare(buffer.get(offset + 4 + i), key[i]);
+      if (cmp != 0) {
+        return cmp;
+      }
+    }
+    return Integer.compare(length, key.length);
+  }
+
+  private ImmutableMap<MethodRef, ImmutableSet<Integer>> readRecord(int offset) {
+    ByteBuffer record = buffer.duplicate();
+    record.position(offset);
+    int count = record.getInt();
+    ImmutableMap.Builder<MethodRef, ImmutableSet<Integer>> result = ImmutableMap.builder();
+    for (int i = 0; i < count; i++) {
+      String enclosingClass = readString(record);
+      String methodSignature = readString(record);
+      int argCount = record.getInt();
+      ImmutableSet.Builder<Integer> args = ImmutableSet.builder();
+      for (int j = 0; j < argCount; j++) {
+        args.add(record.getInt());
+      }
+      result.put(MethodRef.methodRef(enclosingClass, methodSignature), args.build());
+    }
+    return result.build();
+  }
+
+  private static String readString(ByteBuffer record) {
+    byte[] bytes = new byte[record.getInt()];
+    record.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Writes an index file for the given library models.
+   *
+   * @param models the library models
+   * @param path path of the index file to write
+   * @throws IOException if the file cannot be written
+   */
+  public static void write(LibraryModels models, Path path) throws IOException {
+    String stamp = computeStamp();
+    if (stamp == null) {
+      throw new IOException("the NullAway version is unknown");
+    }
+    byte[] bytes = toBytes(models, stamp);
+    Path parent = path.toAbsolutePath().getParent();
+    if (parent != null) {
+      Files.createDirectories(parent);
+    }
+    Files.write(path, bytes);
+  }
+
+  /**
+   * Computes a digest of this index, which changes whenever the models it holds change.
+   *
+   * @return the digest, as a hexadecimal string
+   */
+  String fingerprint() {
+    return Hashing.murmur3_128().hashBytes(buffer.duplicate()).toString();
+  }
+
+  /**
+   * Computes a digest of the given library models, which changes whenever they change.
+   *
+   * @param models the library models
+   * @return the digest, as a hexadecimal string
+   */
+  static String fingerprint(LibraryModels models) {
+    try {
+      return Hashing.murmur3_128().hashBytes(toBytes(models, "")).toString();
+    } catch (IOException e) {
+      throw new RuntimeException("could not serialize library models", e);
+    }
+  }
+
+  private static byte[] toBytes(LibraryModels models, String stamp) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeInt(MAGIC);
+    out.writeInt(FORMAT_VERSION);
+    byte[] stampBytes = stamp.getBytes(StandardCharsets.UTF_8);
+    List<byte[]> tables = new ArrayList<>();
+    int offset = HEADER_SIZE + 4 + stampBytes.length;
+    for (ModelKind kind : ModelKind.values()) {
+      byte[] table = writeTable(modelsOfKind(models, kind), offset);
+      out.writeInt(offset);
+      tables.add(table);
+      offset += table.length;
+    }
+    writeBytes(out, stampBytes);
+    for (byte[] table : tables) {
+      out.write(table);
+    }
+    out.flush();
+    return bytes.toByteArray();
+  }
+
+  private static Map<MethodRef, Collection<Integer>> modelsOfKind(
+      LibraryModels models, ModelKind kind) {
+    switch (kind) {
+      case FAIL_IF_NULL_PARAMETERS:
+        return models.failIfNullParameters().asMap();
+      case EXPLICITLY_NULLABLE_PARAMETERS:
+        return models.explicitlyNullableParameters().asMap();
+      case NON_NULL_PARAMETERS:
+        return models.nonNullParameters().asMap();
+      case NULL_IMPLIES_TRUE_PARAMETERS:
+        return models.nullImpliesTrueParameters().asMap();
+      case NULL_IMPLIES_FALSE_PARAMETERS:
+        return models.nullImpliesFalseParameters().asMap();
+      case NULL_IMPLIES_NULL_PARAMETERS:
+        return models.nullImpliesNullParameters().asMap();
+      case NULLABLE_RETURNS:
+        return Maps.toMap(models.nullableReturns(), ref -> ImmutableSet.of());
+      case NON_NULL_RETURNS:
+        return Maps.toMap(models.nonNullReturns(), ref -> ImmutableSet.of());
+      case CAST_TO_NON_NULL_METHODS:
+        return models.castToNonNullMethods().asMap();
+    }
+    throw new AssertionError("unexpected model kind " + kind);
+  }
+
+  /**
+   * Serializes the table for one kind of models.
+   *
+   * @param models the models, mapping each method to its argument positions
+   * @param tableOffset offset at which the table will be written in the index file
+   * @return the serialized table
+   */
+  private static byte[] writeTable(Map<MethodRef, Collection<Integer>> models, int tableOffset)
+      throws IOException {
+    Map<byte[], List<Map.Entry<MethodRef, Collection<Integer>>>> modelsByName =
+        new TreeMap<>(UTF8_ORDER);
+    for (Map.Entry<MethodRef, Collection<Integer>> model : models.entrySet()) {
+      byte[] name = model.getKey().methodName.getBytes(StandardCharsets.UTF_8);
+      modelsByName.computeIfAbsent(name, k -> new ArrayList<>()).add(model);
+    }
+    ByteArrayOutputStream recordBytes = new ByteArrayOutputStream();
+    DataOutputStream records = new DataOutputStream(recordBytes);
+    ByteArrayOutputStream tableBytes = new ByteArrayOutputStream();
+    DataOutputStream table = new DataOutputStream(tableBytes);
+    table.writeInt(modelsByName.size());
+    int recordsOffset = tableOffset + 4 + 4 * modelsByName.size();
+    for (Map.Entry<byte[], List<Map.Entry<MethodRef, Collection<Integer>>>> entry :
+        modelsByName.entrySet()) {
+      table.writeInt(recordsOffset + records.size());
+      writeBytes(records, entry.getKey());
+      List<Map.Entry<MethodRef, Collection<Integer>>> modelsForName = entry.getValue();
+      // sort for a deterministic output
+      modelsForName.sort(Comparator.comparing(model -> model.getKey().toString()));
+      records.writeInt(modelsForName.size());
+      for (Map.Entry<MethodRef, Collection<Integer>> model : modelsForName) {
+        MethodRef ref = model.getKey();
+        writeBytes(records, ref.enclosingClass.getBytes(StandardCharsets.UTF_8));
+        writeBytes(records, ref.fullMethodSig.getBytes(StandardCharsets.UTF_8));
+        Collection<Integer> args = model.getValue();
+        records.writeInt(args.size());
+        for (int arg : args) {
+          records.writeInt(arg);
+        }
+      }
+    }
+    records.flush();
+    table.write(recordBytes.toByteArray());
+    table.flush();
+    return tableBytes.toByteArray();
+  }
+
+  private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  /**
+   * Generates an index file from the default library models and all {@link LibraryModels}
+   * implementations on the classpath.
+   *
+   * @param args a single argument, the path of the index file to write
+   * @throws IOException if the file cannot be written
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length != 1) {
+      throw new IllegalArgumentException(
+          "expected a single argument, the path of the library models index to write");
+    }
+    write(LibraryModelsHandler.loadLibraryModels(), Paths.get(args[0]));
+  }
+}
@@ -0,0 +1,107 @@
+package com.uber.nullaway.handlers;
+
+import com.google.common.collect.ImmutableSet;
+import com.sun.tools.javac.code.Symbol;
+import com.sun.tools.javac.util.Context;
+import java.util.HashMap;
+import java.util.Map;
+import javax.annotation.Nullable;
+import javax.lang.model.element.Name;
+
+/**
+ * An index of the simple names of the methods an API-specific handler acts on, used to skip
+ * invocations of any other method before running more expensive checks (e.g. subtyping checks on
+ * the receiver or owner type).
+ *
+ * <p>Methods can be matched either by their exact simple name or by a prefix of it. The result for
+ * each {@link Name} is memoized, so that the set and prefix checks run once per distinct method
+ * name rather than once per invocation. Names are only comparable within the name table of a
+ * single compilation, so the memo is kept in the context of each compilation.
+ */
+final class MethodNameIndex {
+
+  private final ImmutableSet<String> names;
+
+  private final ImmutableSet<String> prefixes;
+
+  private final Context.Key<Map<Name, Boolean>> matchesByNameKey = new Context.Key<>();
+
+  private MethodNameIndex(ImmutableSet<String> names, ImmutableSet<String> prefixes) {
+    this.names = names;
+    this.prefixes = prefixes;
+  }
+
+  /**
+   * Creates an index matching methods by their exact simple name.
+   *
+   * @param names the simple names of the methods to match.
+   * @return the index.
+   */
+  static MethodNameIndex ofNames(Iterable<String> names) {
+    return new MethodNameIndex(ImmutableSet.copyOf(names), ImmutableSet.of());
+  }
+
+  /**
+   * Creates an index matching methods whose simple name starts with one of the given prefixes.
+   *
+   * @param prefixes the prefixes of the simple names of the methods to match.
+   * @return the index.
+   */
+  static MethodNameIndex ofPrefixes(String... prefixes) {
+    return new MethodNameIndex(ImmutableSet.of(), ImmutableSet.copyOf(prefixes));
+  }
+
+  /**
+   * Checks whether a method may be one of the methods of this index.
+   *
+   * @param methodSymbol the method.
+   * @param context the context of the current compilation.
+   * @return {@code false} if the simple name of the method matches no name or prefix of this index.
+   */
+  boolean mayMatch(Symbol.MethodSymbol methodSymbol, Context context) {
+    return mayMatch(methodSymbol.getSimpleName(), context);
+  }
+
+  /**
+   * Checks whether a simple method name matches a name or prefix of this index.
+   *
+   * @param name the simple method name.
+   * @param context the context of the current compilation, from whose name table the name is.
+   * @return {@code true} iff the name matches.
+   */
+  boolean mayMatch(Name name, Context context) {
+    Map<Name, Boolean> matchesByName = context.get(matchesByNameKey);
+    if (matchesByName == null) {
+      matchesByName = new HashMap<>();
+      context.put(matchesByNameKey, matchesByName);
+    }
+    Boolean matches = matchesByName.get(name);
+    if (matches == null) {
+      matches = computeMatch(name.toString());
+      matchesByName.put(name, matches);
+    }
+    return matches;
+  }
+
+  private boolean computeMatch(String name) {
+    if (names.contains(name)) {
+      return true;
+    }
+    for (String prefix : prefixes) {
+      if (name.startsWith(prefix)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns the names of this index, for {@link Handler#onRegisterDataflowMethodInvocationNames()}.
+   *
+   * @return the exact simple names matched by this index, or {@code null} if it matches prefixes.
+   */
+  @Nullable
+  ImmutableSet<String> exactNames() {
+    return prefixes.isEmpty() ? names : null;
+  }
+}
@@ -22,9 +22,12 @@ package com.uber.nullaway.handlers;
  * THE SOFTWARE.
  */
 
+import com.google.common.collect.ImmutableSet;
 import com.google.errorprone.util.ASTHelpers;
 import com.sun.tools.javac.code.Symbol;
+import com.sun.tools.javac.util.Context;
 import com.sun.tools.javac.util.Name;
+import com.sun.tools.javac.util.Names;
 import com.uber.nullaway.annotations.Initializer;
 import org.checkerframework.nullaway.dataflow.cfg.node.MethodInvocationNode;
 import org.checkerframework.nullaway.dataflow.cfg.node.Node;
@@ -34,9 +37,14 @@ import org.checkerframework.nullaway.dataflow.cfg.node.Node;
  * com.uber.nullaway.handlers.AssertionHandler} requires it, while {@link
  * com.uber.nullaway.handlers.OptionalEmptinessHandler} uses it only when AssertionHandler is
  * enabled.
+ *
+ * <p>Names are only comparable within the Table of a single compilation, so there is one instance
+ * per compilation context; see {@link #instance(Context)}.
  */
 class MethodNameUtil {
 
+  private static final Context.Key<MethodNameUtil> METHOD_NAME_UTIL_KEY = new Context.Key<>();
+
   // Strings corresponding to the names of the methods (and their owners) used to identify
   // assertions in this handler.
   private static final String IS_NOT_NULL_METHOD = "isNotNull";
@@ -76,6 +84,18 @@ class MethodNameUtil {
   private static final String NULL_VALUE_MATCHER = "nullValue";
   private static final String INSTANCE_OF_MATCHER = "instanceOf";
 
+  // Simple names of the assertion methods that can ensure an Optional is present, see
+  // OptionalEmptinessHandler: assertTrue(o.isPresent()), assertThat(o.isPresent()).isTrue(),
+  // assertThat(o).isPresent(), etc.
+  static final ImmutableSet<String> OPTIONAL_ASSERTION_METHOD_NAMES =
+      ImmutableSet.of(
+          ASSERT_TRUE_METHOD,
+          ASSERT_FALSE_METHOD,
+          IS_TRUE_METHOD,
+          IS_FALSE_METHOD,
+          IS_PRESENT_METHOD,
+          IS_NOT_EMPTY_METHOD);
+
   // Names of the methods (and their owners) used to identify assertions in this handler. Name used
   // here refers to com.sun.tools.javac.util.Name. Comparing methods using Names is faster than
   // comparing using strings.
@@ -282,7 +302,19 @@ class MethodNameUtil {
         && methodSymbol.owner.getQualifiedName().equals(toMatchOwnerName);
   }
 
-  boolean isUtilInitialized() {
-    return isNotNull != null;
+  /**
+   * Returns the names of a compilation, initializing them on first use.
+   *
+   * @param context the javac Context object (or Error Prone SubContext) of the compilation
+   * @return the names from the Table of the compilation
+   */
+  static MethodNameUtil instance(Context context) {
+    MethodNameUtil instance = context.get(METHOD_NAME_UTIL_KEY);
+    if (instance == null) {
+      instance = new MethodNameUtil();
+      instance.initializeMethodNames(Names.instance(context).table);
+      context.put(METHOD_NAME_UTIL_KEY, instance);
+    }
+    return instance;
   }
 }
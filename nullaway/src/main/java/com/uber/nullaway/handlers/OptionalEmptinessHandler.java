@@ -69,22 +69,48 @@ import org.checkerframework.nullaway.dataflow.cfg.node.Node;
  */
 public class OptionalEmptinessHandler extends BaseNoOpHandler {
 
-  @Nullable private ImmutableSet<Type> optionalTypes;
-  private @Nullable NullAway analysis;
+  /**
+   * State of this handler for a single compilation, kept in its {@link Context} rather than in
+   * fields of the handler, as Error Prone may share a handler between concurrent compilations.
+   */
+  private static final class CompilationState {
+
+    @Nullable private ImmutableSet<Type> optionalTypes;
+
+    private @Nullable NullAway analysis;
+  }
+
+  private final Context.Key<CompilationState> compilationStateKey = new Context.Key<>();
 
   private final Config config;
-  private final MethodNameUtil methodNameUtil;
 
-  OptionalEmptinessHandler(Config config, MethodNameUtil methodNameUtil) {
+  // Simple names of the methods whose invocations this handler learns emptiness facts from
+  private final MethodNameIndex dataflowMethodNames;
+
+  OptionalEmptinessHandler(Config config) {
     this.config = config;
-    this.methodNameUtil = methodNameUtil;
+    ImmutableSet.Builder<String> names = ImmutableSet.builder();
+    names.add("isPresent", "isEmpty");
+    if (config.handleTestAssertionLibraries()) {
+      names.addAll(MethodNameUtil.OPTIONAL_ASSERTION_METHOD_NAMES);
+    }
+    this.dataflowMethodNames = MethodNameIndex.ofNames(names.build());
+  }
+
+  private CompilationState getCompilationState(Context context) {
+    CompilationState compilationState = context.get(compilationStateKey);
+    if (compilationState == null) {
+      compilationState = new CompilationState();
+      context.put(compilationStateKey, compilationState);
+    }
+    return compilationState;
   }
 
   @Override
   public boolean onOverrideMayBeNullExpr(
       NullAway analysis, ExpressionTree expr, VisitorState state, boolean exprMayBeNull) {
     if (expr.getKind() == Tree.Kind.METHOD_INVOCATION
-        && optionalIsGetCall((Symbol.MethodSymbol) ASTHelpers.getSymbol(expr), state.getTypes())) {
+        && optionalIsGetCall((Symbol.MethodSymbol) ASTHelpers.getSymbol(expr), state)) {
       return true;
     }
     return exprMayBeNull;
@@ -93,11 +119,12 @@ public class OptionalEmptinessHandler extends BaseNoOpHandler {
   @Override
   public void onMatchTopLevelClass(
       NullAway analysis, ClassTree tree, VisitorState state, Symbol.ClassSymbol classSymbol) {
+    CompilationState compilationState = getCompilationState(state.context);
 
-    this.analysis = analysis;
+    compilationState.analysis = analysis;
 
-    if (optionalTypes == null) {
-      optionalTypes =
+    if (compilationState.optionalTypes == null) {
+      compilationState.optionalTypes =
           config.getOptionalClassPaths().stream()
               .map(state::getTypeFromString)
               .filter(Objects::nonNull)
@@ -116,12 +143,14 @@ public class OptionalEmptinessHandler extends BaseNoOpHandler {
       AccessPathNullnessPropagation.Updates elseUpdates,
       AccessPathNullnessPropagation.Updates bothUpdates) {
     Symbol.MethodSymbol symbol = ASTHelpers.getSymbol(node.getTree());
+    if (!dataflowMethodNames.mayMatch(symbol, state.context)) {
+      return NullnessHint.UNKNOWN;
+    }
 
-    Types types = state.getTypes();
-    if (optionalIsPresentCall(symbol, types)) {
+    if (optionalIsPresentCall(symbol, state)) {
       updateNonNullAPsForOptionalContent(
           state.context, thenUpdates, node.getTarget().getReceiver(), apContext);
-    } else if (optionalIsEmptyCall(symbol, types)) {
+    } else if (optionalIsEmptyCall(symbol, state)) {
       updateNonNullAPsForOptionalContent(
           state.context, elseUpdates, node.getTarget().getReceiver(), apContext);
     } else if (config.handleTestAssertionLibraries()) {
@@ -130,13 +159,20 @@ public class OptionalEmptinessHandler extends BaseNoOpHandler {
     return NullnessHint.UNKNOWN;
   }
 
+  @Override
+  @Nullable
+  public ImmutableSet<String> onRegisterDataflowMethodInvocationNames() {
+    return dataflowMethodNames.exactNames();
+  }
+
   @Override
   public Optional<ErrorMessage> onExpressionDereference(
       ExpressionTree expr, ExpressionTree baseExpr, VisitorState state) {
+    NullAway analysis = getCompilationState(state.context).analysis;
     Preconditions.checkNotNull(analysis);
     Symbol symbol = ASTHelpers.getSymbol(expr);
     if (symbol instanceof Symbol.MethodSymbol
-        && optionalIsGetCall((Symbol.MethodSymbol) symbol, state.getTypes())
+        && optionalIsGetCall((Symbol.MethodSymbol) symbol, state)
         && isOptionalContentNullable(state, baseExpr, analysis.getNullnessAnalysis(state))) {
       final String message = "Invoking get() on possibly empty Optional " + baseExpr;
       return Optional.of(
@@ -177,6 +213,7 @@ public class OptionalEmptinessHandler extends BaseNoOpHandler {
       MethodInvocationNode node,
       Symbol.MethodSymbol symbol) {
 
+    MethodNameUtil methodNameUtil = MethodNameUtil.instance(state.context);
     Consumer<Node> nonNullMarker =
         nonNullNode ->
             updateNonNullAPsForOptionalContent(state.context, bothUpdates, nonNullNode, apContext);
@@ -198,7 +235,7 @@ public class OptionalEmptinessHandler extends BaseNoOpHandler {
       if (assertedOnMethod.isPresent()) {
         handleBooleanAssertionOnMethod(
             nonNullMarker,
-            state.getTypes(),
+            state,
             assertedOnMethod.get(),
             isAssertTrueMethod,
             isAssertFalseMethod);
@@ -207,37 +244,38 @@ public class OptionalEmptinessHandler extends BaseNoOpHandler {
       // asertThat(optionalFoo.isPresent()).isTrue()
       // asertThat(optionalFoo.isEmpty()).isFalse()
       Optional<MethodInvocationNode> wrappedMethod =
-          getNodeWrappedByAssertThat(node)
+          getNodeWrappedByAssertThat(node, methodNameUtil)
               .filter(n -> n instanceof MethodInvocationNode)
               .map(n -> (MethodInvocationNode) n)
-              .map(this::maybeUnwrapBooleanValueOf);
+              .map(n -> maybeUnwrapBooleanValueOf(n, methodNameUtil));
       if (wrappedMethod.isPresent()) {
         handleBooleanAssertionOnMethod(
-            nonNullMarker, state.getTypes(), wrappedMethod.get(), isTrueMethod, isFalseMethod);
+            nonNullMarker, state, wrappedMethod.get(), isTrueMethod, isFalseMethod);
       }
     } else if (methodNameUtil.isMethodThatEnsuresOptionalPresent(symbol)) {
       // assertThat(optionalRef).isPresent()
       // assertThat(methodReturningOptional()).isNotEmpty()
       // assertThat(mapWithOptionalValues.get("key")).isNotEmpty()
-      getNodeWrappedByAssertThat(node).ifPresent(nonNullMarker);
+      getNodeWrappedByAssertThat(node, methodNameUtil).ifPresent(nonNullMarker);
     }
   }
 
   private void handleBooleanAssertionOnMethod(
       Consumer<Node> nonNullMarker,
-      Types types,
+      VisitorState state,
       MethodInvocationNode node,
       boolean assertsTrue,
       boolean assertsFalse) {
     Symbol.MethodSymbol methodSymbol = ASTHelpers.getSymbol(node.getTree());
-    boolean ensuresIsPresent = assertsTrue && optionalIsPresentCall(methodSymbol, types);
-    boolean ensuresNotEmpty = assertsFalse && optionalIsEmptyCall(methodSymbol, types);
+    boolean ensuresIsPresent = assertsTrue && optionalIsPresentCall(methodSymbol, state);
+    boolean ensuresNotEmpty = assertsFalse && optionalIsEmptyCall(methodSymbol, state);
     if (ensuresIsPresent || ensuresNotEmpty) {
       nonNullMarker.accept(node.getTarget().getReceiver());
     }
   }
 
-  private Optional<Node> getNodeWrappedByAssertThat(MethodInvocationNode node) {
+  private Optional<Node> getNodeWrappedByAssertThat(
+      MethodInvocationNode node, MethodNameUtil methodNameUtil) {
     Node receiver = node.getTarget().getReceiver();
     if (receiver instanceof MethodInvocationNode) {
       MethodInvocationNode receiverMethod = (MethodInvocationNode) receiver;
@@ -251,7 +289,8 @@ public class OptionalEmptinessHandler extends BaseNoOpHandler {
     return Optional.empty();
   }
 
-  private MethodInvocationNode maybeUnwrapBooleanValueOf(MethodInvocationNode node) {
+  private MethodInvocationNode maybeUnwrapBooleanValueOf(
+      MethodInvocationNode node, MethodNameUtil methodNameUtil) {
     // Due to autoboxing in the java compiler
     // Truth.assertThat(a.isPresent()) changes to
     // Truth.assertThat(Boolean.valueOf(a.isPresent()))
@@ -281,21 +320,23 @@ public class OptionalEmptinessHandler extends BaseNoOpHandler {
     }
   }
 
-  private boolean optionalIsPresentCall(Symbol.MethodSymbol symbol, Types types) {
-    return isZeroArgOptionalMethod("isPresent", symbol, types);
+  private boolean optionalIsPresentCall(Symbol.MethodSymbol symbol, VisitorState state) {
+    return isZeroArgOptionalMethod("isPresent", symbol, state);
   }
 
-  private boolean optionalIsEmptyCall(Symbol.MethodSymbol symbol, Types types) {
-    return isZeroArgOptionalMethod("isEmpty", symbol, types);
+  private boolean optionalIsEmptyCall(Symbol.MethodSymbol symbol, VisitorState state) {
+    return isZeroArgOptionalMethod("isEmpty", symbol, state);
   }
 
   private boolean isZeroArgOptionalMethod(
-      String methodName, Symbol.MethodSymbol symbol, Types types) {
+      String methodName, Symbol.MethodSymbol symbol, VisitorState state) {
+    ImmutableSet<Type> optionalTypes = getCompilationState(state.context).optionalTypes;
     Preconditions.checkNotNull(optionalTypes);
     if (!(symbol.getSimpleName().toString().equals(methodName)
         && symbol.getParameters().length() == 0)) {
       return false;
     }
+    Types types = state.getTypes();
     for (Type optionalType : optionalTypes) {
       if (types.isSubtype(symbol.owner.type, optionalType)) {
         return true;
@@ -304,8 +345,8 @@ public class OptionalEmptinessHandler extends BaseNoOpHandler {
     return false;
   }
 
-  private boolean optionalIsGetCall(Symbol.MethodSymbol symbol, Types types) {
-    return isZeroArgOptionalMethod("get", symbol, types);
+  private boolean optionalIsGetCall(Symbol.MethodSymbol symbol, VisitorState state) {
+    return isZeroArgOptionalMethod("get", symbol, state);
   }
 
   /**
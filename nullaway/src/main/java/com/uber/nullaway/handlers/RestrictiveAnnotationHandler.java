@@ -35,7 +35,6 @@ import com.uber.nullaway.NullAway;
 import com.uber.nullaway.Nullness;
 import com.uber.nullaway.dataflow.AccessPath;
 import com.uber.nullaway.dataflow.AccessPathNullnessPropagation;
-import javax.annotation.Nullable;
 import org.checkerframework.nullaway.dataflow.cfg.node.FieldAccessNode;
 import org.checkerframework.nullaway.dataflow.cfg.node.MethodInvocationNode;
 
@@ -62,12 +61,12 @@ public class RestrictiveAnnotationHandler extends BaseNoOpHandler {
    *     nullable.
    */
   private boolean isSymbolRestrictivelyNullable(Symbol symbol, Context context) {
-    CodeAnnotationInfo codeAnnotationInfo = getCodeAnnotationInfo(context);
+    CodeAnnotationInfo codeAnnotationInfo = CodeAnnotationInfo.instance(context);
     return (codeAnnotationInfo.isSymbolUnannotated(symbol, config)
         // with the generated-as-unannotated option enabled, we want to ignore annotations in
         // generated code no matter what
         && !(config.treatGeneratedAsUnannotated() && codeAnnotationInfo.isGenerated(symbol, config))
-        && Nullness.hasNullableAnnotation(symbol, config));
+        && codeAnnotationInfo.hasNullableAnnotation(symbol, config));
   }
 
   @Override
@@ -81,15 +80,6 @@ public class RestrictiveAnnotationHandler extends BaseNoOpHandler {
     return exprMayBeNull;
   }
 
-  @Nullable private CodeAnnotationInfo codeAnnotationInfo;
-
-  private CodeAnnotationInfo getCodeAnnotationInfo(Context context) {
-    if (codeAnnotationInfo == null) {
-      codeAnnotationInfo = CodeAnnotationInfo.instance(context);
-    }
-    return codeAnnotationInfo;
-  }
-
   @Override
   public Nullness[] onOverrideMethodInvocationParametersNullability(
       Context context,
@@ -101,8 +91,9 @@ public class RestrictiveAnnotationHandler extends BaseNoOpHandler {
       // already handled by NullAway's core algorithm.
       return argumentPositionNullness;
     }
+    CodeAnnotationInfo codeAnnotationInfo = CodeAnnotationInfo.instance(context);
     for (int i = 0; i < methodSymbol.getParameters().size(); ++i) {
-      if (Nullness.paramHasNonNullAnnotation(methodSymbol, i, config)) {
+      if (codeAnnotationInfo.paramHasNonNullAnnotation(methodSymbol, i, config)) {
         if (methodSymbol.isVarArgs() && i == methodSymbol.getParameters().size() - 1) {
           // Special handling: ignore org.jetbrains.annotations.NotNull on varargs parameters
           // to handle kotlinc generated jars (see #720)
@@ -118,7 +109,7 @@ public class RestrictiveAnnotationHandler extends BaseNoOpHandler {
           }
         }
         argumentPositionNullness[i] = Nullness.NONNULL;
-      } else if (Nullness.paramHasNullableAnnotation(methodSymbol, i, config)) {
+      } else if (codeAnnotationInfo.paramHasNullableAnnotation(methodSymbol, i, config)) {
         argumentPositionNullness[i] = Nullness.NULLABLE;
       }
     }
@@ -137,9 +128,10 @@ public class RestrictiveAnnotationHandler extends BaseNoOpHandler {
     if (isAnnotated) {
       return returnNullness;
     }
-    if (Nullness.hasNullableAnnotation(methodSymbol, config)) {
+    CodeAnnotationInfo codeAnnotationInfo = CodeAnnotationInfo.instance(state.context);
+    if (codeAnnotationInfo.hasNullableAnnotation(methodSymbol, config)) {
       return Nullness.NULLABLE;
-    } else if (Nullness.hasNonNullAnnotation(methodSymbol, config)) {
+    } else if (codeAnnotationInfo.hasNonNullAnnotation(methodSymbol, config)) {
       return Nullness.NONNULL;
     }
     return returnNullness;
@@ -24,6 +24,7 @@ package com.uber.nullaway.handlers;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.errorprone.VisitorState;
 import com.google.errorprone.util.ASTHelpers;
 import com.sun.source.tree.ClassTree;
@@ -41,6 +42,7 @@ import com.sun.source.util.TreePath;
 import com.sun.tools.javac.code.Symbol;
 import com.sun.tools.javac.code.Type;
 import com.sun.tools.javac.tree.JCTree;
+import com.sun.tools.javac.util.Context;
 import com.uber.nullaway.NullAway;
 import com.uber.nullaway.NullabilityUtil;
 import com.uber.nullaway.Nullness;
@@ -99,74 +101,110 @@ class StreamNullabilityPropagator extends BaseNoOpHandler {
    * topmost scope (e.g. not a method called from an anonymous inner class inside another method or a lambda).
    */
 
-  // Set of filter methods found thus far (e.g. A.filter, see above)
-  private final Set<Tree> filterMethodOrLambdaSet = new LinkedHashSet<>();
+  /**
+   * The maps described above, for a single compilation. Error Prone may share a handler between
+   * concurrent compilations in the same JVM, each with its own {@link Context} and running on a
+   * single thread, so these maps are kept in the context rather than in fields of the handler.
+   */
+  private static final class ChainState {
 
-  // Maps each call in the observable call chain to its outer call (see above).
-  private final Map<MethodInvocationTree, MethodInvocationTree> observableOuterCallInChain =
-      new LinkedHashMap<>();
+    // Set of filter methods found thus far (e.g. A.filter, see above)
+    private final Set<Tree> filterMethodOrLambdaSet = new LinkedHashSet<>();
 
-  // Maps the call in the observable call chain to the relevant inner method or lambda.
-  // e.g. In the example above:
-  //   observable.filter() => A.filter
-  //   observable.filter().map() => B.apply
-  private final Map<MethodInvocationTree, Tree> observableCallToInnerMethodOrLambda =
-      new LinkedHashMap<>();
+    // Maps each call in the observable call chain to its outer call (see above).
+    private final Map<MethodInvocationTree, MethodInvocationTree> observableOuterCallInChain =
+        new LinkedHashMap<>();
 
-  // Map from map method (or lambda) to corresponding previous filter method (e.g. B.apply =>
-  // A.filter)
-  private final Map<Tree, MaplikeToFilterInstanceRecord> mapToFilterMap = new LinkedHashMap<>();
+    // Maps the call in the observable call chain to the relevant inner method or lambda.
+    // e.g. In the example above:
+    //   observable.filter() => A.filter
+    //   observable.filter().map() => B.apply
+    private final Map<MethodInvocationTree, Tree> observableCallToInnerMethodOrLambda =
+        new LinkedHashMap<>();
 
-  /*
-   * Note that the above methods imply a diagram like the following:
-   *
-   *                              /--- observable.filter(new A() {
-   *                              |      \->public boolean filter(T o) {<---\
-   * [observableOuterCallInChain] |             ...                         |
-   *                              |         }                               | [mapToFilterMap]
-   *                              \--> }.map(new B() {                      |
-   *                                     \->public T apply(T o) {        ---/
-   *                                            ...
-   *                                        }
-   *                                   }
-   */
+    // Map from map method (or lambda) to corresponding previous filter method (e.g. B.apply =>
+    // A.filter)
+    private final Map<Tree, MaplikeToFilterInstanceRecord> mapToFilterMap =
+        new LinkedHashMap<>();
+
+    /*
+     * Note that the above methods imply a diagram like the following:
+     *
+     *                              /--- observable.filter(new A() {
+     *                              |      \->public boolean filter(T o) {<---\
+     * [observableOuterCallInChain] |             ...                         |
+     *                              |         }                               | [mapToFilterMap]
+     *                              \--> }.map(new B() {                      |
+     *                                     \->public T apply(T o) {        ---/
+     *                                            ...
+     *                                        }
+     *                                   }
+     */
+
+    // Map from filter method (or lambda) to corresponding nullability info after the function
+    // returns true.
+    // Specifically, this is the least upper bound of the "then" store on the branch of every return
+    // statement in which the expression after the return can be true.
+    private final Map<Tree, NullnessStore> filterToNSMap = new LinkedHashMap<>();
 
-  // Map from filter method (or lambda) to corresponding nullability info after the function returns
-  // true.
-  // Specifically, this is the least upper bound of the "then" store on the branch of every return
-  // statement in which the expression after the return can be true.
-  private final Map<Tree, NullnessStore> filterToNSMap = new LinkedHashMap<>();
+    // Maps the body of a method or lambda to the corresponding enclosing tree, used because the
+    // dataflow analysis
+    // loses the pointer to the tree by the time we hook into its body.
+    private final Map<Tree, Tree> bodyToMethodOrLambda = new LinkedHashMap<>();
 
-  // Maps the body of a method or lambda to the corresponding enclosing tree, used because the
-  // dataflow analysis
-  // loses the pointer to the tree by the time we hook into its body.
-  private final Map<Tree, Tree> bodyToMethodOrLambda = new LinkedHashMap<>();
+    // Maps the return statements of the filter method to the filter tree itself, similar issue as
+    // above.
+    private final Map<ReturnTree, Tree> returnToEnclosingMethodOrLambda = new LinkedHashMap<>();
+
+    // Similar to above, but mapping expression-bodies to their enclosing lambdas
+    private final Map<ExpressionTree, LambdaExpressionTree> expressionBodyToFilterLambda =
+        new LinkedHashMap<>();
+
+    /** Clears the compilation unit specific state. */
+    private void clear() {
+      filterMethodOrLambdaSet.clear();
+      observableOuterCallInChain.clear();
+      observableCallToInnerMethodOrLambda.clear();
+      mapToFilterMap.clear();
+      filterToNSMap.clear();
+      bodyToMethodOrLambda.clear();
+      returnToEnclosingMethodOrLambda.clear();
+    }
+  }
 
-  // Maps the return statements of the filter method to the filter tree itself, similar issue as
-  // above.
-  private final Map<ReturnTree, Tree> returnToEnclosingMethodOrLambda = new LinkedHashMap<>();
+  /** Key of the {@link ChainState} of this handler in the context of each compilation. */
+  private final Context.Key<ChainState> chainStateKey = new Context.Key<>();
 
-  // Similar to above, but mapping expression-bodies to their enclosing lambdas
-  private final Map<ExpressionTree, LambdaExpressionTree> expressionBodyToFilterLambda =
-      new LinkedHashMap<>();
   private final ImmutableList<StreamTypeRecord> models;
 
+  // Simple names of the filter, map and passthrough methods of all models. Only invocations of
+  // methods with these names can be part of a call chain we track, so invocations of any other
+  // method are skipped before checking their receiver type against every model.
+  private final MethodNameIndex modelMethodNames;
+
   StreamNullabilityPropagator(ImmutableList<StreamTypeRecord> models) {
     super();
     this.models = models;
+    ImmutableSet.Builder<String> names = ImmutableSet.builder();
+    for (StreamTypeRecord streamType : models) {
+      names.addAll(streamType.getMethodNames());
+    }
+    this.modelMethodNames = MethodNameIndex.ofNames(names.build());
+  }
+
+  private ChainState getChainState(Context context) {
+    ChainState chainState = context.get(chainStateKey);
+    if (chainState == null) {
+      chainState = new ChainState();
+      context.put(chainStateKey, chainState);
+    }
+    return chainState;
   }
 
   @Override
   public void onMatchTopLevelClass(
       NullAway analysis, ClassTree tree, VisitorState state, Symbol.ClassSymbol classSymbol) {
-    // Clear compilation unit specific state
-    this.filterMethodOrLambdaSet.clear();
-    this.observableOuterCallInChain.clear();
-    this.observableCallToInnerMethodOrLambda.clear();
-    this.mapToFilterMap.clear();
-    this.filterToNSMap.clear();
-    this.bodyToMethodOrLambda.clear();
-    this.returnToEnclosingMethodOrLambda.clear();
+    getChainState(state.context).clear();
   }
 
   @Override
@@ -175,11 +213,15 @@ class StreamNullabilityPropagator extends BaseNoOpHandler {
       MethodInvocationTree tree,
       VisitorState state,
       Symbol.MethodSymbol methodSymbol) {
+    if (!modelMethodNames.mayMatch(methodSymbol, state.context)) {
+      return;
+    }
+    ChainState chainState = getChainState(state.context);
     Type receiverType = ASTHelpers.getReceiverType(tree);
     for (StreamTypeRecord streamType : models) {
       if (streamType.matchesType(receiverType, state)) {
         // Build observable call chain
-        buildObservableCallChain(tree);
+        buildObservableCallChain(chainState, tree);
 
         // Dispatch to code handling specific observer methods
         if (streamType.isFilterMethod(methodSymbol) && methodSymbol.getParameters().length() == 1) {
@@ -191,11 +233,11 @@ class StreamNullabilityPropagator extends BaseNoOpHandler {
             // for
             // filters.
             if (annonClassBody != null) {
-              handleFilterAnonClass(streamType, tree, annonClassBody, state);
+              handleFilterAnonClass(chainState, streamType, tree, annonClassBody, state);
             }
           } else if (argTree instanceof LambdaExpressionTree) {
             LambdaExpressionTree lambdaTree = (LambdaExpressionTree) argTree;
-            handleFilterLambda(streamType, tree, lambdaTree, state);
+            handleFilterLambda(chainState, streamType, tree, lambdaTree, state);
           }
         } else if (streamType.isMapMethod(methodSymbol)
             && methodSymbol.getParameters().length() == 1) {
@@ -205,29 +247,30 @@ class StreamNullabilityPropagator extends BaseNoOpHandler {
             // Ensure that this `new B() ...` has a custom class body, otherwise, we skip for now.
             if (annonClassBody != null) {
               MaplikeMethodRecord methodRecord = streamType.getMaplikeMethodRecord(methodSymbol);
-              handleMapAnonClass(methodRecord, tree, annonClassBody);
+              handleMapAnonClass(chainState, methodRecord, tree, annonClassBody);
             }
           } else if (argTree instanceof LambdaExpressionTree) {
-            observableCallToInnerMethodOrLambda.put(tree, argTree);
+            chainState.observableCallToInnerMethodOrLambda.put(tree, argTree);
           } else if (argTree instanceof MemberReferenceTree) {
-            observableCallToInnerMethodOrLambda.put(tree, argTree);
+            chainState.observableCallToInnerMethodOrLambda.put(tree, argTree);
           }
         }
       }
     }
   }
 
-  private void buildObservableCallChain(MethodInvocationTree tree) {
+  private void buildObservableCallChain(ChainState chainState, MethodInvocationTree tree) {
     ExpressionTree methodSelect = tree.getMethodSelect();
     if (methodSelect instanceof MemberSelectTree) {
       ExpressionTree receiverExpression = ((MemberSelectTree) methodSelect).getExpression();
       if (receiverExpression instanceof MethodInvocationTree) {
-        observableOuterCallInChain.put((MethodInvocationTree) receiverExpression, tree);
+        chainState.observableOuterCallInChain.put((MethodInvocationTree) receiverExpression, tree);
       }
     } // ToDo: What else can be here? If there are other cases than MemberSelectTree, handle them.
   }
 
   private void handleChainFromFilter(
+      ChainState chainState,
       StreamTypeRecord streamType,
       MethodInvocationTree observableDotFilter,
       Tree filterMethodOrLambda,
@@ -238,17 +281,18 @@ class StreamNullabilityPropagator extends BaseNoOpHandler {
     }
     // Traverse the observable call chain out through any pass-through methods
     do {
-      outerCallInChain = observableOuterCallInChain.get(outerCallInChain);
+      outerCallInChain = chainState.observableOuterCallInChain.get(outerCallInChain);
       // Check for a map method (which might be a pass-through method or the first method after a
       // pass-through chain)
-      if (observableCallToInnerMethodOrLambda.containsKey(outerCallInChain)) {
+      if (chainState.observableCallToInnerMethodOrLambda.containsKey(outerCallInChain)) {
         // Update mapToFilterMap
         Symbol.MethodSymbol mapMethod = ASTHelpers.getSymbol(outerCallInChain);
         if (streamType.isMapMethod(mapMethod)) {
           MaplikeToFilterInstanceRecord record =
               new MaplikeToFilterInstanceRecord(
                   streamType.getMaplikeMethodRecord(mapMethod), filterMethodOrLambda);
-          mapToFilterMap.put(observableCallToInnerMethodOrLambda.get(outerCallInChain), record);
+          chainState.mapToFilterMap.put(
+              chainState.observableCallToInnerMethodOrLambda.get(outerCallInChain), record);
         }
       }
     } while (outerCallInChain != null
@@ -257,37 +301,40 @@ class StreamNullabilityPropagator extends BaseNoOpHandler {
   }
 
   private void handleFilterAnonClass(
+      ChainState chainState,
       StreamTypeRecord streamType,
       MethodInvocationTree observableDotFilter,
       ClassTree annonClassBody,
       VisitorState state) {
     for (Tree t : annonClassBody.getMembers()) {
       if (t instanceof MethodTree && ((MethodTree) t).getName().toString().equals("test")) {
-        filterMethodOrLambdaSet.add(t);
-        observableCallToInnerMethodOrLambda.put(observableDotFilter, t);
-        handleChainFromFilter(streamType, observableDotFilter, t, state);
+        chainState.filterMethodOrLambdaSet.add(t);
+        chainState.observableCallToInnerMethodOrLambda.put(observableDotFilter, t);
+        handleChainFromFilter(chainState, streamType, observableDotFilter, t, state);
       }
     }
   }
 
   private void handleFilterLambda(
+      ChainState chainState,
       StreamTypeRecord streamType,
       MethodInvocationTree observableDotFilter,
       LambdaExpressionTree lambdaTree,
       VisitorState state) {
-    filterMethodOrLambdaSet.add(lambdaTree);
-    observableCallToInnerMethodOrLambda.put(observableDotFilter, lambdaTree);
-    handleChainFromFilter(streamType, observableDotFilter, lambdaTree, state);
+    chainState.filterMethodOrLambdaSet.add(lambdaTree);
+    chainState.observableCallToInnerMethodOrLambda.put(observableDotFilter, lambdaTree);
+    handleChainFromFilter(chainState, streamType, observableDotFilter, lambdaTree, state);
   }
 
   private void handleMapAnonClass(
+      ChainState chainState,
       MaplikeMethodRecord methodRecord,
       MethodInvocationTree observableDotMap,
       ClassTree annonClassBody) {
     for (Tree t : annonClassBody.getMembers()) {
       if (t instanceof MethodTree
           && ((MethodTree) t).getName().toString().equals(methodRecord.getInnerMethodName())) {
-        observableCallToInnerMethodOrLambda.put(observableDotMap, t);
+        chainState.observableCallToInnerMethodOrLambda.put(observableDotMap, t);
       }
     }
   }
@@ -295,8 +342,9 @@ class StreamNullabilityPropagator extends BaseNoOpHandler {
   @Override
   public void onMatchMethod(
       NullAway analysis, MethodTree tree, VisitorState state, Symbol.MethodSymbol methodSymbol) {
-    if (mapToFilterMap.containsKey(tree)) {
-      bodyToMethodOrLambda.put(tree.getBody(), tree);
+    ChainState chainState = getChainState(state.context);
+    if (chainState.mapToFilterMap.containsKey(tree)) {
+      chainState.bodyToMethodOrLambda.put(tree.getBody(), tree);
     }
   }
 
@@ -306,16 +354,17 @@ class StreamNullabilityPropagator extends BaseNoOpHandler {
       LambdaExpressionTree tree,
       VisitorState state,
       Symbol.MethodSymbol methodSymbol) {
-    if (filterMethodOrLambdaSet.contains(tree)
+    ChainState chainState = getChainState(state.context);
+    if (chainState.filterMethodOrLambdaSet.contains(tree)
         && tree.getBodyKind().equals(LambdaExpressionTree.BodyKind.EXPRESSION)) {
-      expressionBodyToFilterLambda.put((ExpressionTree) tree.getBody(), tree);
+      chainState.expressionBodyToFilterLambda.put((ExpressionTree) tree.getBody(), tree);
       // Single expression lambda, onMatchReturn will not be triggered, force the dataflow analysis
       // here
       AccessPathNullnessAnalysis nullnessAnalysis = analysis.getNullnessAnalysis(state);
       nullnessAnalysis.forceRunOnMethod(state.getPath(), state.context);
     }
-    if (mapToFilterMap.containsKey(tree)) {
-      bodyToMethodOrLambda.put(tree.getBody(), tree);
+    if (chainState.mapToFilterMap.containsKey(tree)) {
+      chainState.bodyToMethodOrLambda.put(tree.getBody(), tree);
     }
   }
 
@@ -325,7 +374,8 @@ class StreamNullabilityPropagator extends BaseNoOpHandler {
       MemberReferenceTree tree,
       VisitorState state,
       Symbol.MethodSymbol methodSymbol) {
-    MaplikeToFilterInstanceRecord callInstanceRecord = mapToFilterMap.get(tree);
+    ChainState chainState = getChainState(state.context);
+    MaplikeToFilterInstanceRecord callInstanceRecord = chainState.mapToFilterMap.get(tree);
     if (callInstanceRecord != null && ((JCTree.JCMemberReference) tree).kind.isUnbound()) {
       // Unbound method reference, check if we know the corresponding path to be NonNull from the
       // previous filter.
@@ -337,7 +387,7 @@ class StreamNullabilityPropagator extends BaseNoOpHandler {
                 + " "
                 + state.getSourceForNode(filterTree));
       }
-      NullnessStore filterNullnessStore = filterToNSMap.get(filterTree);
+      NullnessStore filterNullnessStore = chainState.filterToNSMap.get(filterTree);
       if (filterNullnessStore == null) {
         throw new IllegalStateException(
             "null filterNullStore for tree " + state.getSourceForNode(filterTree));
@@ -364,7 +414,7 @@ class StreamNullabilityPropagator extends BaseNoOpHandler {
           // We found our method, and it was non-null when called inside the filter, so we mark the
           // return of the
           // method reference as non-null here
-          analysis.setComputedNullness(tree, Nullness.NONNULL);
+          analysis.setComputedNullness(tree, Nullness.NONNULL, state);
         }
       }
     }
@@ -399,8 +449,9 @@ class StreamNullabilityPropagator extends BaseNoOpHandler {
           "return statement outside of a method or lambda! (e.g. in an initializer block)");
     }
     Tree leaf = enclosingMethodOrLambda.getLeaf();
-    if (filterMethodOrLambdaSet.contains(leaf)) {
-      returnToEnclosingMethodOrLambda.put(tree, leaf);
+    ChainState chainState = getChainState(state.context);
+    if (chainState.filterMethodOrLambdaSet.contains(leaf)) {
+      chainState.returnToEnclosingMethodOrLambda.put(tree, leaf);
       // We need to manually trigger the dataflow analysis to run on the filter method,
       // this ensures onDataflowVisitReturn(...) gets called for all return statements in this
       // method before
@@ -415,13 +466,15 @@ class StreamNullabilityPropagator extends BaseNoOpHandler {
   public NullnessStore.Builder onDataflowInitialStore(
       UnderlyingAST underlyingAST,
       List<LocalVariableNode> parameters,
-      NullnessStore.Builder nullnessBuilder) {
-    Tree tree = bodyToMethodOrLambda.get(underlyingAST.getCode());
+      NullnessStore.Builder nullnessBuilder,
+      Context context) {
+    ChainState chainState = getChainState(context);
+    Tree tree = chainState.bodyToMethodOrLambda.get(underlyingAST.getCode());
     if (tree == null) {
       return nullnessBuilder;
     }
     assert (tree instanceof MethodTree || tree instanceof LambdaExpressionTree);
-    MaplikeToFilterInstanceRecord callInstanceRecord = mapToFilterMap.get(tree);
+    MaplikeToFilterInstanceRecord callInstanceRecord = chainState.mapToFilterMap.get(tree);
     if (callInstanceRecord != null) {
       // Plug Nullness info from filter method into entry to map method.
       Tree filterTree = callInstanceRecord.getFilter();
@@ -442,7 +495,7 @@ class StreamNullabilityPropagator extends BaseNoOpHandler {
           mapLocalName =
               new LocalVariableNode(((LambdaExpressionTree) tree).getParameters().get(argIdx));
         }
-        NullnessStore filterNullnessStore = filterToNSMap.get(filterTree);
+        NullnessStore filterNullnessStore = chainState.filterToNSMap.get(filterTree);
         if (filterNullnessStore == null) {
           throw new IllegalStateException("null filterNullStore for tree");
         }
@@ -458,13 +511,14 @@ class StreamNullabilityPropagator extends BaseNoOpHandler {
 
   @Override
   public void onDataflowVisitReturn(
-      ReturnTree tree, NullnessStore thenStore, NullnessStore elseStore) {
-    Tree filterTree = returnToEnclosingMethodOrLambda.get(tree);
+      ReturnTree tree, NullnessStore thenStore, NullnessStore elseStore, Context context) {
+    ChainState chainState = getChainState(context);
+    Tree filterTree = chainState.returnToEnclosingMethodOrLambda.get(tree);
     if (filterTree != null) {
       assert (filterTree instanceof MethodTree || filterTree instanceof LambdaExpressionTree);
       ExpressionTree retExpression = tree.getExpression();
       if (canBooleanExpressionEvalToTrue(retExpression)) {
-        filterToNSMap.compute(
+        chainState.filterToNSMap.compute(
             filterTree,
             (key, value) -> value == null ? thenStore : value.leastUpperBound(thenStore));
       }
@@ -473,11 +527,12 @@ class StreamNullabilityPropagator extends BaseNoOpHandler {
 
   @Override
   public void onDataflowVisitLambdaResultExpression(
-      ExpressionTree tree, NullnessStore thenStore, NullnessStore elseStore) {
-    LambdaExpressionTree filterTree = expressionBodyToFilterLambda.get(tree);
+      ExpressionTree tree, NullnessStore thenStore, NullnessStore elseStore, Context context) {
+    ChainState chainState = getChainState(context);
+    LambdaExpressionTree filterTree = chainState.expressionBodyToFilterLambda.get(tree);
     if (filterTree != null) {
       if (canBooleanExpressionEvalToTrue(tree)) {
-        filterToNSMap.put(filterTree, thenStore);
+        chainState.filterToNSMap.put(filterTree, thenStore);
       }
     }
   }
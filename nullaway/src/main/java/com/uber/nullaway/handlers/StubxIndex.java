@@ -0,0 +1,196 @@
+package com.uber.nullaway.handlers;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSetMultimap;
+import com.google.common.io.ByteStreams;
+import com.google.common.primitives.UnsignedBytes;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import javax.annotation.Nullable;
+
+/**
+ * Reader for version 1 astubx files, as written by JarInfer's {@code StubxWriter}.
+ *
+ * <p>Only the header and the annotation dictionary are decoded when the file is opened. Method
+ * records are looked up by binary search over the method index of the file, which is sorted by the
+ * UTF-8 bytes of the method signatures, and decoded on demand. Files are read into heap buffers
+ * rather than memory-mapped, as a mapped file stays locked on Windows until it is garbage
+ * collected.
+ */
+final class StubxIndex {
+
+  /** The file magic number for version 1 .astubx files. */
+  static final int VERSION_1_FILE_MAGIC_NUMBER = 691458792;
+
+  private final ByteBuffer buffer;
+
+  /** Names of the annotations, which records refer to by index. */
+  private final String[] annotations;
+
+  /** Offset of the method index, i.e. the number of methods followed by their record offsets. */
+  private final int methodIndexOffset;
+
+  private final int numMethods;
+
+  /** The annotations of a single method. */
+  static final class MethodRecord {
+
+    /** Annotations of the method itself, i.e. of its return value. */
+    final ImmutableSet<String> methodAnnotations;
+
+    /** Annotations of the arguments, by position, counting the receiver as argument 0. */
+    final ImmutableSetMultimap<Integer, String> argumentAnnotations;
+
+    private MethodRecord(
+        ImmutableSet<String> methodAnnotations,
+        ImmutableSetMultimap<Integer, String> argumentAnnotations) {
+      this.methodAnnotations = methodAnnotations;
+      this.argumentAnnotations = argumentAnnotations;
+    }
+  }
+
+  private StubxIndex(ByteBuffer buffer) {
+    this.buffer = buffer;
+    this.methodIndexOffset = buffer.getInt(4);
+    ByteBuffer dictionary = buffer.duplicate();
+    dictionary.position(8);
+    annotations = new String[dictionary.getInt()];
+    for (int i = 0; i < annotations.length; i++) {
+      annotations[i] = readString(dictionary);
+    }
+    this.numMethods = buffer.getInt(methodIndexOffset);
+  }
+
+  /**
+   * Checks whether a stubx file is in the version 1 format.
+   *
+   * @param contents the contents of the file
+   * @return {@code true} iff the file starts with the version 1 magic number
+   */
+  static boolean isVersion1(ByteBuffer contents) {
+    return contents.limit() >= 8 && contents.getInt(0) == VERSION_1_FILE_MAGIC_NUMBER;
+  }
+
+  /**
+   * Reads the contents of a stubx file, without decoding them.
+   *
+   * @param url location of the file, as returned by {@link Class#getResource(String)}
+   * @return the contents of the file
+   * @throws IOException if the file cannot be read
+   */
+  static ByteBuffer readContents(URL url) throws IOException {
+    try (InputStream in = url.openStream()) {
+      return ByteBuffer.wrap(ByteStreams.toByteArray(in));
+    }
+  }
+
+  /**
+   * Opens a version 1 stubx file.
+   *
+   * @param contents the contents of the file, for which {@link #isVersion1(ByteBuffer)} holds
+   * @return the index
+   */
+  static StubxIndex open(ByteBuffer contents) {
+    return new StubxIndex(contents);
+  }
+
+  /**
+   * Checks whether this file has models for methods of a class.
+   *
+   * @param className the qualified name of the class
+   * @return {@code true} iff a method signature in this file starts with {@code className:}
+   */
+  boolean hasClass(String className) {
+    byte[] prefix = (className + ":").getBytes(StandardCharsets.UTF_8);
+    int first = lowerBound(prefix);
+    return first < numMethods && startsWith(recordOffset(first), prefix);
+  }
+
+  /**
+   * Looks up the record of a method.
+   *
+   * @param methodSig the method signature, in the stubx format
+   * @return the annotations of the method, or {@code null} if this file has none
+   */
+  @Nullable
+  MethodRecord lookup(String methodSig) {
+    byte[] key = methodSig.getBytes(StandardCharsets.UTF_8);
+    int index = lowerBound(key);
+    if (index == numMethods) {
+      return null;
+    }
+    int record = recordOffset(index);
+    if (compareString(record, key) != 0) {
+      return null;
+    }
+    ByteBuffer in = buffer.duplicate();
+    in.position(record + 4 + key.length);
+    int numMethodAnnotations = in.getInt();
+    ImmutableSet.Builder<String> methodAnnotations = ImmutableSet.builder();
+    for (int i = 0; i < numMethodAnnotations; i++) {
+      methodAnnotations.add(annotations[in.getInt()]);
+    }
+    int numArgumentAnnotations = in.getInt();
+    ImmutableSetMultimap.Builder<Integer, String> argumentAnnotations =
+        ImmutableSetMultimap.builder();
+    for (int i = 0; i < numArgumentAnnotations; i++) {
+      int argNum = in.getInt();
+      argumentAnnotations.put(argNum, annotations[in.getInt()]);
+    }
+    return new MethodRecord(methodAnnotations.build(), argumentAnnotations.build());
+  }
+
+  private int recordOffset(int index) {
+    return buffer.getInt(methodIndexOffset + 4 + 4 * index);
+  }
+
+  /** Returns the index of the first method whose signature is not less than the given key. */
+  private int lowerBound(byte[] key) {
+    int low = 0;
+    int high = numMethods;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (compareString(recordOffset(mid), key) < 0) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /** Compares the string stored at the given offset with the given UTF-8 bytes. */
+  private int compareString(int offset, byte[] key) {
+    int length = buffer.getInt(offset);
+    int common = Math.min(length, key.length);
+    for (int i = 0; i < common; i++) {
+      int cmp = UnsignedBytes.compare(buffer.get(offset + 4 + i), key[i]);
+      if (cmp != 0) {
+        return cmp;
+      }
+    }
+    return Integer.compare(length, key.length);
+  }
+
+  /** Checks whether the string stored at the given offset starts with the given UTF-8 bytes. */
+  private boolean startsWith(int offset, byte[] prefix) {
+    if (buffer.getInt(offset) < prefix.length) {
+      return false;
+    }
+    for (int i = 0; i < prefix.length; i++) {
+      if (buffer.get(offset + 4 + i) != prefix[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static String readString(ByteBuffer in) {
+    byte[] bytes = new byte[in.getInt()];
+    in.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+}
@@ -32,6 +32,8 @@ import com.google.errorprone.util.ASTHelpers;
 import com.sun.source.tree.ClassTree;
 import com.sun.source.tree.MethodInvocationTree;
 import com.sun.tools.javac.code.Symbol;
+import com.sun.tools.javac.processing.JavacProcessingEnvironment;
+import com.sun.tools.javac.util.Context;
 import com.uber.nullaway.Config;
 import com.uber.nullaway.ErrorMessage;
 import com.uber.nullaway.NullAway;
@@ -85,23 +87,42 @@ public class ContractHandler extends BaseNoOpHandler {
 
   private final Config config;
 
-  private @Nullable NullAway analysis;
+  /**
+   * State of this handler for a single compilation, kept in its {@link Context} rather than in
+   * fields of the handler, as Error Prone may share a handler between concurrent compilations.
+   */
+  private static final class CompilationState {
+
+    private @Nullable NullAway analysis;
+
+    // Cached on visiting the top-level class and used for
+    // onCFGBuildPhase1AfterVisitMethodInvocation, where no VisitorState is otherwise available.
+    private @Nullable VisitorState storedVisitorState;
 
-  // Cached on visiting the top-level class and used for onCFGBuildPhase1AfterVisitMethodInvocation,
-  // where no VisitorState is otherwise available.
-  private @Nullable VisitorState storedVisitorState;
+    private @Nullable TypeMirror runtimeExceptionType;
+  }
 
-  private @Nullable TypeMirror runtimeExceptionType;
+  private final Context.Key<CompilationState> compilationStateKey = new Context.Key<>();
 
   public ContractHandler(Config config) {
     this.config = config;
   }
 
+  private CompilationState getCompilationState(Context context) {
+    CompilationState compilationState = context.get(compilationStateKey);
+    if (compilationState == null) {
+      compilationState = new CompilationState();
+      context.put(compilationStateKey, compilationState);
+    }
+    return compilationState;
+  }
+
   @Override
   public void onMatchTopLevelClass(
       NullAway analysis, ClassTree tree, VisitorState state, Symbol.ClassSymbol classSymbol) {
-    this.analysis = analysis;
-    this.storedVisitorState = state;
+    CompilationState compilationState = getCompilationState(state.context);
+    compilationState.analysis = analysis;
+    compilationState.storedVisitorState = state;
   }
 
   @Override
@@ -109,6 +130,11 @@ public class ContractHandler extends BaseNoOpHandler {
       NullAwayCFGBuilder.NullAwayCFGTranslationPhaseOne phase,
       MethodInvocationTree tree,
       MethodInvocationNode originalNode) {
+    CompilationState compilationState =
+        getCompilationState(
+            ((JavacProcessingEnvironment) phase.getProcessingEnvironment()).getContext());
+    VisitorState storedVisitorState = compilationState.storedVisitorState;
+    NullAway analysis = compilationState.analysis;
     Preconditions.checkNotNull(storedVisitorState);
     Preconditions.checkNotNull(analysis);
     Symbol.MethodSymbol callee = ASTHelpers.getSymbol(tree);
@@ -156,8 +182,10 @@ public class ContractHandler extends BaseNoOpHandler {
         }
       }
       if (arg != null && supported) {
+        TypeMirror runtimeExceptionType = compilationState.runtimeExceptionType;
         if (runtimeExceptionType == null) {
           runtimeExceptionType = phase.classToErrorType(RuntimeException.class);
+          compilationState.runtimeExceptionType = runtimeExceptionType;
         }
         // In practice the failure may not be RuntimeException, however the conditional
         // throw is inserted after the method invocation where we must assume that
@@ -182,6 +210,7 @@ public class ContractHandler extends BaseNoOpHandler {
       AccessPathNullnessPropagation.Updates thenUpdates,
       AccessPathNullnessPropagation.Updates elseUpdates,
       AccessPathNullnessPropagation.Updates bothUpdates) {
+    NullAway analysis = getCompilationState(state.context).analysis;
     Preconditions.checkNotNull(analysis);
     Symbol.MethodSymbol callee = ASTHelpers.getSymbol(node.getTree());
     Preconditions.checkNotNull(callee);
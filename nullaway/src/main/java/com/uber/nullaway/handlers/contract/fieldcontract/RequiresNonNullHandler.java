@@ -32,6 +32,7 @@ import com.sun.source.tree.ExpressionTree;
 import com.sun.source.tree.MethodInvocationTree;
 import com.sun.source.tree.MethodTree;
 import com.sun.tools.javac.code.Symbol;
+import com.sun.tools.javac.util.Context;
 import com.uber.nullaway.ErrorMessage;
 import com.uber.nullaway.NullAway;
 import com.uber.nullaway.NullabilityUtil;
@@ -179,9 +180,10 @@ public class RequiresNonNullHandler extends AbstractFieldContractHandler {
   public NullnessStore.Builder onDataflowInitialStore(
       UnderlyingAST underlyingAST,
       List<LocalVariableNode> parameters,
-      NullnessStore.Builder result) {
+      NullnessStore.Builder result,
+      Context context) {
     if (!(underlyingAST instanceof UnderlyingAST.CFGMethod)) {
-      return super.onDataflowInitialStore(underlyingAST, parameters, result);
+      return super.onDataflowInitialStore(underlyingAST, parameters, result, context);
     }
     MethodTree methodTree = ((UnderlyingAST.CFGMethod) underlyingAST).getMethod();
     ClassTree classTree = ((UnderlyingAST.CFGMethod) underlyingAST).getClassTree();
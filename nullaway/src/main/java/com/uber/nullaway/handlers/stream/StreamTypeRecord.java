@@ -24,6 +24,7 @@ import static com.uber.nullaway.NullabilityUtil.castToNonNull;
 
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
 import com.google.errorprone.VisitorState;
 import com.google.errorprone.predicates.TypePredicate;
 import com.sun.tools.javac.code.Symbol;
@@ -54,6 +55,9 @@ public class StreamTypeRecord {
   private final ImmutableSet<String> passthroughMethodSigs;
   private final ImmutableSet<String> passthroughMethodSimpleNames;
 
+  // Simple names of all the filter, map and passthrough methods above
+  private final ImmutableSet<String> methodNames;
+
   public StreamTypeRecord(
       TypePredicate typePredicate,
       ImmutableSet<String> filterMethodSigs,
@@ -69,12 +73,41 @@ public class StreamTypeRecord {
     this.mapMethodSimpleNameToRecord = mapMethodSimpleNameToRecord;
     this.passthroughMethodSigs = passthroughMethodSigs;
     this.passthroughMethodSimpleNames = passthroughMethodSimpleNames;
+    ImmutableSet.Builder<String> methodNamesBuilder = ImmutableSet.builder();
+    for (String sig :
+        Iterables.concat(filterMethodSigs, mapMethodSigToRecord.keySet(), passthroughMethodSigs)) {
+      methodNamesBuilder.add(simpleNameFromSignature(sig));
+    }
+    methodNamesBuilder.addAll(filterMethodSimpleNames);
+    methodNamesBuilder.addAll(mapMethodSimpleNameToRecord.keySet());
+    methodNamesBuilder.addAll(passthroughMethodSimpleNames);
+    this.methodNames = methodNamesBuilder.build();
+  }
+
+  /**
+   * Extracts the simple name from a method signature, e.g. {@code map} from {@code
+   * <R>map(java.util.function.Function<? super T,? extends R>)}.
+   */
+  private static String simpleNameFromSignature(String methodSig) {
+    int paramsStart = methodSig.indexOf('(');
+    String nameWithTypeParams = paramsStart < 0 ? methodSig : methodSig.substring(0, paramsStart);
+    return nameWithTypeParams.substring(nameWithTypeParams.lastIndexOf('>') + 1);
   }
 
   public boolean matchesType(Type type, VisitorState state) {
     return typePredicate.apply(type, state);
   }
 
+  /**
+   * Returns the simple names of all the filter, map and passthrough methods of this type. Methods
+   * with any other name are none of these.
+   *
+   * @return The simple method names.
+   */
+  public ImmutableSet<String> getMethodNames() {
+    return methodNames;
+  }
+
   public boolean isFilterMethod(Symbol.MethodSymbol methodSymbol) {
     return filterMethodSigs.contains(methodSymbol.toString())
         || filterMethodSimpleNames.contains(methodSymbol.getQualifiedName().toString());
@@ -0,0 +1,135 @@
+package com.uber.nullaway;
+
+import com.google.errorprone.BugCheckerRefactoringTestHelper;
+import com.google.errorprone.ErrorProneFlags;
+import java.io.IOException;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests running several compilations through a single {@link NullAway} instance, as build tools
+ * may do. Suppressions are suggested for all errors, so that an error shows up as a change of the
+ * output.
+ */
+@RunWith(JUnit4.class)
+public class NullAwayCheckerReuseTest {
+
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private NullAway checker;
+
+  @Before
+  public void setup() {
+    ErrorProneFlags.Builder b = ErrorProneFlags.builder();
+    b.putFlag("NullAway:AnnotatedPackages", "com.uber");
+    b.putFlag("NullAway:AcknowledgeRestrictiveAnnotations", "true");
+    b.putFlag("NullAway:SuggestSuppressions", "true");
+    checker = new NullAway(b.build());
+  }
+
+  // See NullAwayAutoSuggestTest for why we use the deprecated newInstance() method, which is also
+  // the one that lets us pass the same checker instance to each compilation
+  @SuppressWarnings("deprecation")
+  private BugCheckerRefactoringTestHelper makeTestHelper() {
+    return BugCheckerRefactoringTestHelper.newInstance(checker, getClass())
+        .setArgs(
+            "-d",
+            temporaryFolder.getRoot().getAbsolutePath(),
+            "-XepOpt:NullAway:AnnotatedPackages=com.uber",
+            "-XepOpt:NullAway:AcknowledgeRestrictiveAnnotations=true",
+            "-XepOpt:NullAway:SuggestSuppressions=true");
+  }
+
+  @Test
+  public void handlersInSecondCompilation() throws IOException {
+    // The first compilation has no TBase type, and initializes the state of the handlers
+    makeTestHelper()
+        .addInputLines(
+            "First.java",
+            "package com.uber;",
+            "import com.google.common.base.Preconditions;",
+            "import javax.annotation.Nullable;",
+            "class First {",
+            "  void checkState(@Nullable Object a) {",
+            "    Preconditions.checkState(a != null);",
+            "    a.toString();",
+            "  }",
+            "}")
+        .expectUnchanged()
+        .doTest();
+    makeTestHelper()
+        .addInputLines("TBase.java", "package org.apache.thrift;", "public interface TBase {}")
+        .expectUnchanged()
+        .addInputLines(
+            "Generated.java",
+            "package com.uber;",
+            "import javax.annotation.Nullable;",
+            "public class Generated implements org.apache.thrift.TBase {",
+            "  public @Nullable Object id;",
+            "  @Nullable public Object getId() { return this.id; }",
+            "  public boolean isSetId() { return this.id != null; }",
+            "}")
+        .expectUnchanged()
+        .addInputLines(
+            "Test.java",
+            "package com.uber;",
+            "import com.google.common.base.Preconditions;",
+            "import io.grpc.Metadata;",
+            "import javax.annotation.Nullable;",
+            "class Test {",
+            "  static final Metadata.Key<String> KEY =",
+            "      Metadata.Key.of(\"KEY\", Metadata.ASCII_STRING_MARSHALLER);",
+            "  void takesNonNull(Object o) {}",
+            "  void checkArgument(@Nullable Object a) {",
+            "    Preconditions.checkArgument(a != null);",
+            "    a.toString();",
+            "  }",
+            "  void isSet(Generated g) {",
+            "    if (g.isSetId()) {",
+            "      g.getId().toString();",
+            "    }",
+            "  }",
+            "  void containsKey(Metadata headers) {",
+            "    if (headers.containsKey(KEY)) {",
+            "      takesNonNull(headers.get(KEY));",
+            "    }",
+            "  }",
+            "  void unchecked(Metadata headers) {",
+            "    takesNonNull(headers.get(KEY));",
+            "  }",
+            "}")
+        .addOutputLines(
+            "out/Test.java",
+            "package com.uber;",
+            "import com.google.common.base.Preconditions;",
+            "import io.grpc.Metadata;",
+            "import javax.annotation.Nullable;",
+            "class Test {",
+            "  static final Metadata.Key<String> KEY =",
+            "      Metadata.Key.of(\"KEY\", Metadata.ASCII_STRING_MARSHALLER);",
+            "  void takesNonNull(Object o) {}",
+            "  void checkArgument(@Nullable Object a) {",
+            "    Preconditions.checkArgument(a != null);",
+            "    a.toString();",
+            "  }",
+            "  void isSet(Generated g) {",
+            "    if (g.isSetId()) {",
+            "      g.getId().toString();",
+            "    }",
+            "  }",
+            "  void containsKey(Metadata headers) {",
+            "    if (headers.containsKey(KEY)) {",
+            "      takesNonNull(headers.get(KEY));",
+            "    }",
+            "  }",
+            "  @SuppressWarnings(\"NullAway\") void unchecked(Metadata headers) {",
+            "    takesNonNull(headers.get(KEY));",
+            "  }",
+            "}")
+        .doTest();
+  }
+}
@@ -22,6 +22,13 @@
 
 package com.uber.nullaway;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.errorprone.CompilationTestHelper;
+import java.io.File;
+import java.io.IOException;
 import java.util.Arrays;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -342,6 +349,205 @@ public class NullAwayCoreTests extends NullAwayTestsBase {
         .doTest();
   }
 
+  @Test
+  public void zeroDataflowCacheBudget() {
+    // with an empty budget nothing is retained in the dataflow caches, so every query recomputes
+    // the CFG and analysis; results must be unchanged
+    makeTestHelperWithArgs(
+            Arrays.asList(
+                "-d",
+                temporaryFolder.getRoot().getAbsolutePath(),
+                "-XepOpt:NullAway:AnnotatedPackages=com.uber",
+                "-XepOpt:NullAway:DataflowCacheBudgetMB=0"))
+        .addSourceLines(
+            "Test.java",
+            "package com.uber;",
+            "import javax.annotation.Nullable;",
+            "class Test {",
+            "  @Nullable Object f;",
+            "  void foo(@Nullable Object o) {",
+            "    if (o != null && f != null) {",
+            "      o.toString();",
+            "      f.toString();",
+            "    }",
+            "    // BUG: Diagnostic contains: dereferenced expression o is @Nullable",
+            "    o.toString();",
+            "    Runnable r = () -> {",
+            "      if (f != null) { f.hashCode(); }",
+            "    };",
+            "  }",
+            "}")
+        .doTest();
+  }
+
+  @Test
+  public void dataflowAcrossTopLevelClassesInCompilationUnit() {
+    // dataflow results are kept for all top-level classes of a compilation unit, and released
+    // when moving on to the next compilation unit
+    defaultCompilationHelper
+        .addSourceLines(
+            "A.java",
+            "package com.uber;",
+            "import javax.annotation.Nullable;",
+            "class A {",
+            "  Object f;",
+            "  A(@Nullable Object o) {",
+            "    f = (o != null) ? o : new Object();",
+            "    if (o != null) { o.toString(); }",
+            "  }",
+            "}",
+            "class A2 {",
+            "  Object g;",
+            "  // BUG: Diagnostic contains: initializer method does not guarantee @NonNull field g",
+            "  A2(@Nullable Object o) {",
+            "    if (o != null) { g = o; }",
+            "  }",
+            "}")
+        .addSourceLines(
+            "B.java",
+            "package com.uber;",
+            "import javax.annotation.Nullable;",
+            "class B {",
+            "  Object f;",
+            "  B(@Nullable Object o) {",
+            "    f = (o != null) ? o : new Object();",
+            "    // BUG: Diagnostic contains: dereferenced expression o is @Nullable",
+            "    o.toString();",
+            "  }",
+            "}")
+        .doTest();
+  }
+
+  @Test
+  public void sparseDataflow() {
+    // dataflow is skipped for methods with no possible null sources; every other method must still
+    // get the same errors as with the default mode
+    makeTestHelperWithArgs(
+            Arrays.asList(
+                "-d",
+                temporaryFolder.getRoot().getAbsolutePath(),
+                "-XepOpt:NullAway:AnnotatedPackages=com.uber",
+                "-XepOpt:NullAway:SparseDataflow=true"))
+        .addSourceLines(
+            "Test.java",
+            "package com.uber;",
+            "import java.util.Map;",
+            "import javax.annotation.Nullable;",
+            "class Test {",
+            "  @Nullable Object f;",
+            "  Object g = new Object();",
+            "  @Nullable Object nullable() { return null; }",
+            "  Object nullFree(Object o, String s) {",
+            "    Object x = g;",
+            "    x.toString();",
+            "    return o.toString() + s.length();",
+            "  }",
+            "  void nullLiteral() {",
+            "    Object x = null;",
+            "    // BUG: Diagnostic contains: dereferenced expression x is @Nullable",
+            "    x.toString();",
+            "  }",
+            "  void nullableParam(@Nullable Object o) {",
+            "    Object x = o;",
+            "    // BUG: Diagnostic contains: dereferenced expression x is @Nullable",
+            "    x.toString();",
+            "  }",
+            "  void nullableField() {",
+            "    Object x = f;",
+            "    // BUG: Diagnostic contains: dereferenced expression x is @Nullable",
+            "    x.toString();",
+            "  }",
+            "  void nullableReturn() {",
+            "    Object x = nullable();",
+            "    // BUG: Diagnostic contains: dereferenced expression x is @Nullable",
+            "    x.toString();",
+            "  }",
+            "  void libraryModel(Map<String, Object> m) {",
+            "    Object x = m.get(\"k\");",
+            "    // BUG: Diagnostic contains: dereferenced expression x is @Nullable",
+            "    x.toString();",
+            "  }",
+            "  void captured(@Nullable Object o) {",
+            "    final Object c = o;",
+            "    Runnable r = new Runnable() {",
+            "      public void run() {",
+            "        // BUG: Diagnostic contains: dereferenced expression c is @Nullable",
+            "        c.toString();",
+            "      }",
+            "    };",
+            "  }",
+            "}")
+        .doTest();
+  }
+
+  @Test
+  public void persistentSummaryCache() throws IOException {
+    // the cached summary for the constructor of Test must not be reused once the annotations of
+    // Helper.make() change, even though Test itself is unchanged
+    File cacheDir = temporaryFolder.newFolder("summaries");
+    File cacheFile = new File(cacheDir, "nullaway-summaries.bin");
+    makeSummaryCacheTestHelper(cacheDir)
+        .addSourceLines(
+            "Helper.java",
+            "package com.uber;",
+            "class Helper {",
+            "  Object make() { return new Object(); }",
+            "}")
+        .addSourceLines(
+            "Test.java",
+            "package com.uber;",
+            "class Test {",
+            "  Object f;",
+            "  Test(Helper h) {",
+            "    f = h.make();",
+            "  }",
+            "}")
+        .doTest();
+    assertTrue(cacheFile.exists());
+    // the file is only written back when some summary was computed rather than found in the cache
+    long staleTime = 1_000_000_000L;
+    assertTrue(cacheFile.setLastModified(staleTime));
+    compileWithNullableMake(cacheDir);
+    // the summary of Test() was recomputed for the new Helper.make()
+    assertNotEquals(staleTime, cacheFile.lastModified());
+    assertTrue(cacheFile.setLastModified(staleTime));
+    compileWithNullableMake(cacheDir);
+    // with the same inputs again, the stored summary of Test() was reused
+    assertEquals(staleTime, cacheFile.lastModified());
+  }
+
+  private void compileWithNullableMake(File cacheDir) {
+    makeSummaryCacheTestHelper(cacheDir)
+        .addSourceLines(
+            "Helper.java",
+            "package com.uber;",
+            "import javax.annotation.Nullable;",
+            "class Helper {",
+            "  @Nullable Object make() { return null; }",
+            "}")
+        .addSourceLines(
+            "Test.java",
+            "package com.uber;",
+            "class Test {",
+            "  Object f;",
+            "  // BUG: Diagnostic contains: initializer method does not guarantee @NonNull field f",
+            "  Test(Helper h) {",
+            "    // BUG: Diagnostic contains: assigning @Nullable expression to @NonNull field",
+            "    f = h.make();",
+            "  }",
+            "}")
+        .doTest();
+  }
+
+  private CompilationTestHelper makeSummaryCacheTestHelper(File cacheDir) {
+    return makeTestHelperWithArgs(
+        Arrays.asList(
+            "-d",
+            temporaryFolder.getRoot().getAbsolutePath(),
+            "-XepOpt:NullAway:AnnotatedPackages=com.uber",
+            "-XepOpt:NullAway:SummaryCacheDir=" + cacheDir.getAbsolutePath()));
+  }
+
   @Test
   public void invokeNativeFromInitializer() {
     defaultCompilationHelper
@@ -22,8 +22,14 @@
 
 package com.uber.nullaway;
 
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSetMultimap;
 import com.google.errorprone.CompilationTestHelper;
+import com.uber.nullaway.handlers.LibraryModelsIndex;
 import com.uber.nullaway.testlibrarymodels.TestLibraryModels;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -107,4 +113,122 @@ public class NullAwayCustomLibraryModelsTests extends NullAwayTestsBase {
             "}")
         .doTest();
   }
+
+  @Test
+  public void libraryModelsIndex() throws IOException {
+    Path indexPath = temporaryFolder.newFolder().toPath().resolve("models.idx");
+    LibraryModelsIndex.write(new IndexOnlyLibraryModels(), indexPath);
+    makeLibraryModelsTestHelperWithArgs(
+            Arrays.asList(
+                "-d",
+                temporaryFolder.getRoot().getAbsolutePath(),
+                "-XepOpt:NullAway:AnnotatedPackages=com.uber",
+                "-XepOpt:NullAway:LibraryModelsIndex=" + indexPath))
+        .addSourceLines(
+            "Foo.java",
+            "package com.uber;",
+            "public class Foo {",
+            "   Object bar() {",
+            "      return new Object();",
+            "   }",
+            "   Object baz(Object o) {",
+            "      return o;",
+            "   }",
+            "   Object nullableReturn() {",
+            "       // BUG: Diagnostic contains: returning @Nullable",
+            "       return baz(new Object());",
+            "   }",
+            "   Object nonNullReturn() {",
+            "       // only the models in the index are used, not those from TestLibraryModels",
+            "       return bar();",
+            "   }",
+            "}")
+        .doTest();
+  }
+
+  @Test
+  public void staleLibraryModelsIndex() throws IOException {
+    Path indexPath = temporaryFolder.newFolder().toPath().resolve("models.idx");
+    LibraryModelsIndex.write(new IndexOnlyLibraryModels(), indexPath);
+    // Alter the first byte of the NullAway version recorded in the index, which follows the table
+    // offsets in the header and the length of the version and providers stamp
+    byte[] bytes = Files.readAllBytes(indexPath);
+    bytes[8 + 4 * 9 + 4]++;
+    Files.write(indexPath, bytes);
+    makeLibraryModelsTestHelperWithArgs(
+            Arrays.asList(
+                "-d",
+                temporaryFolder.getRoot().getAbsolutePath(),
+                "-XepOpt:NullAway:AnnotatedPackages=com.uber",
+                "-XepOpt:NullAway:LibraryModelsIndex=" + indexPath))
+        .addSourceLines(
+            "Foo.java",
+            "package com.uber;",
+            "public class Foo {",
+            "   Object bar() {",
+            "      return new Object();",
+            "   }",
+            "   Object baz(Object o) {",
+            "      return o;",
+            "   }",
+            "   Object nullableReturn() {",
+            "       // the stale index is ignored",
+            "       return baz(new Object());",
+            "   }",
+            "   Object nonNullReturn() {",
+            "       // BUG: Diagnostic contains: returning @Nullable",
+            "       return bar();",
+            "   }",
+            "}")
+        .doTest();
+  }
+
+  /** Library models which are not loaded through the ServiceLoader, only through an index. */
+  private static class IndexOnlyLibraryModels implements LibraryModels {
+
+    @Override
+    public ImmutableSetMultimap<MethodRef, Integer> failIfNullParameters() {
+      return ImmutableSetMultimap.of();
+    }
+
+    @Override
+    public ImmutableSetMultimap<MethodRef, Integer> explicitlyNullableParameters() {
+      return ImmutableSetMultimap.of();
+    }
+
+    @Override
+    public ImmutableSetMultimap<MethodRef, Integer> nonNullParameters() {
+      return ImmutableSetMultimap.of();
+    }
+
+    @Override
+    public ImmutableSetMultimap<MethodRef, Integer> nullImpliesTrueParameters() {
+      return ImmutableSetMultimap.of();
+    }
+
+    @Override
+    public ImmutableSetMultimap<MethodRef, Integer> nullImpliesFalseParameters() {
+      return ImmutableSetMultimap.of();
+    }
+
+    @Override
+    public ImmutableSetMultimap<MethodRef, Integer> nullImpliesNullParameters() {
+      return ImmutableSetMultimap.of();
+    }
+
+    @Override
+    public ImmutableSet<MethodRef> nullableReturns() {
+      return ImmutableSet.of(MethodRef.methodRef("com.uber.Foo", "baz(java.lang.Object)"));
+    }
+
+    @Override
+    public ImmutableSet<MethodRef> nonNullReturns() {
+      return ImmutableSet.of();
+    }
+
+    @Override
+    public ImmutableSetMultimap<MethodRef, Integer> castToNonNullMethods() {
+      return ImmutableSetMultimap.of();
+    }
+  }
 }
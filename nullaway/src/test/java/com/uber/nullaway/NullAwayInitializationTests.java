@@ -30,6 +30,87 @@ public class NullAwayInitializationTests extends NullAwayTestsBase {
         .doTest();
   }
 
+  @Test
+  public void readBeforeInitWithSafeInitCallees() {
+    // reads do not dereference the fields, so that only safe init callees can initialize them
+    defaultCompilationHelper
+        .addSourceLines(
+            "Test.java",
+            "package com.uber;",
+            "class Test {",
+            "  Object f;",
+            "  Object g;",
+            "  Test() {",
+            "    // BUG: Diagnostic contains: read of @NonNull field f before initialization",
+            "    Object beforeBoth = f;",
+            "    initF();",
+            "    Object fAfterF = f;",
+            "    // BUG: Diagnostic contains: read of @NonNull field g before initialization",
+            "    Object gAfterF = g;",
+            "    initG();",
+            "    Object fAfterBoth = f;",
+            "    Object gAfterBoth = g;",
+            "  }",
+            "  Test(int i) {",
+            "    initF();",
+            "    // BUG: Diagnostic contains: read of @NonNull field g before initialization",
+            "    Object g1 = g;",
+            "    initG();",
+            "  }",
+            "  private void initF() {",
+            "    f = new Object();",
+            "  }",
+            "  private void initG() {",
+            "    g = new Object();",
+            "  }",
+            "}")
+        .doTest();
+  }
+
+  @Test
+  public void readBeforeInitWithSafeInitCalleesInTryFinally() {
+    defaultCompilationHelper
+        .addSourceLines(
+            "Test.java",
+            "package com.uber;",
+            "class Test {",
+            "  Object f;",
+            "  Object g;",
+            "  Object h;",
+            "  Test() {",
+            "    try {",
+            "      // BUG: Diagnostic contains: read of @NonNull field f before initialization",
+            "      Object beforeF = f;",
+            "      initF();",
+            "      Object fAfterF = f;",
+            "      // BUG: Diagnostic contains: read of @NonNull field g before initialization",
+            "      Object gInTry = g;",
+            "    } finally {",
+            "      // BUG: Diagnostic contains: read of @NonNull field g before initialization",
+            "      Object gBeforeG = g;",
+            "      initG();",
+            "      Object gAfterG = g;",
+            "    }",
+            "    Object fAfterTry = f;",
+            "    Object gAfterTry = g;",
+            "    // BUG: Diagnostic contains: read of @NonNull field h before initialization",
+            "    Object hAfterTry = h;",
+            "    initH();",
+            "    Object hAfterH = h;",
+            "  }",
+            "  private void initF() {",
+            "    f = new Object();",
+            "  }",
+            "  private void initG() {",
+            "    g = new Object();",
+            "  }",
+            "  private void initH() {",
+            "    h = new Object();",
+            "  }",
+            "}")
+        .doTest();
+  }
+
   @Test
   public void externalInitSupport() {
     defaultCompilationHelper
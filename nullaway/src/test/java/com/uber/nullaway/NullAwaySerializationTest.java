@@ -1427,6 +1427,135 @@ public class NullAwaySerializationTest extends NullAwayTestsBase {
         .doTest();
   }
 
+  @Test
+  public void errorSerializationTestEnclosingMembersOfLocalAndAnonymousClasses() {
+    // The enclosing member is always a member of the enclosing class, which is the closest class
+    // enclosing the error, even if that class is itself enclosed by a method or a field.
+    SerializationTestHelper<ErrorDisplay> tester = new SerializationTestHelper<>(root);
+    tester
+        .setArgs(
+            Arrays.asList(
+                "-d",
+                temporaryFolder.getRoot().getAbsolutePath(),
+                "-XepOpt:NullAway:AnnotatedPackages=com.uber",
+                "-XepOpt:NullAway:SerializeFixMetadata=true",
+                "-XepOpt:NullAway:FixSerializationConfigPath=" + configPath))
+        .addSourceLines(
+            "com/uber/Main.java",
+            "package com.uber;",
+            "import javax.annotation.Nullable;",
+            "public class Main {",
+            "   void takesNonNull(Object o) { }",
+            "   // BUG: Diagnostic contains: passing @Nullable parameter",
+            "   Runnable r = () -> takesNonNull(null);", // Member should be "r"
+            "   Object anon = new Object() {",
+            "     // BUG: Diagnostic contains: assigning @Nullable expression",
+            "     Object g = null;", // Member should be "g", and class Main$1
+            "     {",
+            "       // BUG: Diagnostic contains: passing @Nullable parameter",
+            "       takesNonNull(null);", // Member should be "null", not "anon"
+            "     }",
+            "   };",
+            "   void run() {",
+            "     class Local {",
+            "       // BUG: Diagnostic contains: assigning @Nullable expression",
+            "       Object h = null;", // Member should be "h", not "run()"
+            "       // BUG: Diagnostic contains: passing @Nullable parameter",
+            "       Runnable r2 = () -> takesNonNull(null);", // Member should be "r2"
+            "     }",
+            "     Runnable r3 = new Runnable() {",
+            "       @Override",
+            "       public void run() {",
+            "         // BUG: Diagnostic contains: passing @Nullable parameter",
+            "         takesNonNull(null);", // Member should be "run()" of Main$2
+            "       }",
+            "     };",
+            "   }",
+            "}")
+        .setExpectedOutputs(
+            new ErrorDisplay(
+                "PASS_NULLABLE",
+                "passing @Nullable parameter",
+                "com.uber.Main",
+                "r",
+                189,
+                "com/uber/Main.java",
+                "PARAMETER",
+                "com.uber.Main",
+                "takesNonNull(java.lang.Object)",
+                "o",
+                "0",
+                "com/uber/Main.java"),
+            new ErrorDisplay(
+                "ASSIGN_FIELD_NULLABLE",
+                "assigning @Nullable expression to @NonNull field",
+                "com.uber.Main$1",
+                "g",
+                311,
+                "com/uber/Main.java",
+                "FIELD",
+                "com.uber.Main$1",
+                "null",
+                "g",
+                "null",
+                "com/uber/Main.java"),
+            new ErrorDisplay(
+                "PASS_NULLABLE",
+                "passing @Nullable parameter",
+                "com.uber.Main$1",
+                "null",
+                406,
+                "com/uber/Main.java",
+                "PARAMETER",
+                "com.uber.Main",
+                "takesNonNull(java.lang.Object)",
+                "o",
+                "0",
+                "com/uber/Main.java"),
+            new ErrorDisplay(
+                "ASSIGN_FIELD_NULLABLE",
+                "assigning @Nullable expression to @NonNull field",
+                "com.uber.Main$1Local",
+                "h",
+                548,
+                "com/uber/Main.java",
+                "FIELD",
+                "com.uber.Main$1Local",
+                "null",
+                "h",
+                "null",
+                "com/uber/Main.java"),
+            new ErrorDisplay(
+                "PASS_NULLABLE",
+                "passing @Nullable parameter",
+                "com.uber.Main$1Local",
+                "r2",
+                656,
+                "com/uber/Main.java",
+                "PARAMETER",
+                "com.uber.Main",
+                "takesNonNull(java.lang.Object)",
+                "o",
+                "0",
+                "com/uber/Main.java"),
+            new ErrorDisplay(
+                "PASS_NULLABLE",
+                "passing @Nullable parameter",
+                "com.uber.Main$2",
+                "run()",
+                838,
+                "com/uber/Main.java",
+                "PARAMETER",
+                "com.uber.Main",
+                "takesNonNull(java.lang.Object)",
+                "o",
+                "0",
+                "com/uber/Main.java"))
+        .setFactory(errorDisplayFactory)
+        .setOutputFileNameAndHeader(ERROR_FILE_NAME, ERROR_FILE_HEADER)
+        .doTest();
+  }
+
   @Test
   public void verifySerializationVersionIsSerialized() {
     // Check for serialization version 1.
@@ -1999,6 +2128,84 @@ public class NullAwaySerializationTest extends NullAwayTestsBase {
         .doTest();
   }
 
+  @Test
+  public void errorSerializationVersion3() {
+    SerializationTestHelper<ErrorDisplay> tester = new SerializationTestHelper<>(root);
+    tester
+        .setArgs(
+            Arrays.asList(
+                "-d",
+                temporaryFolder.getRoot().getAbsolutePath(),
+                "-XepOpt:NullAway:AnnotatedPackages=com.uber",
+                "-XepOpt:NullAway:SerializeFixMetadata=true",
+                "-XepOpt:NullAway:SerializeFixMetadataVersion=3",
+                "-XepOpt:NullAway:FixSerializationConfigPath=" + configPath))
+        .addSourceLines(
+            "com/uber/Super.java",
+            "package com.uber;",
+            "import javax.annotation.Nullable;",
+            "public class Super {",
+            "   Object foo;",
+            "   // BUG: Diagnostic contains: initializer method does not guarantee @NonNull field foo",
+            "   Super(boolean b) {",
+            "   }",
+            "   String test(@Nullable Object o) {",
+            "     // BUG: Diagnostic contains: assigning @Nullable expression to @NonNull",
+            "     foo = null;",
+            "     if(o == null) {",
+            "       // BUG: Diagnostic contains: dereferenced expression",
+            "       return o.toString();",
+            "     }",
+            "     // BUG: Diagnostic contains: returning @Nullable expression",
+            "     return null;",
+            "   }",
+            "}")
+        .setExpectedOutputs(
+            new ErrorDisplay(
+                "METHOD_NO_INIT",
+                "initializer method does not guarantee @NonNull field foo",
+                "com.uber.Super",
+                "Super(boolean)",
+                180,
+                "com/uber/Super.java"),
+            new ErrorDisplay(
+                "ASSIGN_FIELD_NULLABLE",
+                "assigning @Nullable expression to @NonNull field",
+                "com.uber.Super",
+                "test(java.lang.Object)",
+                323,
+                "com/uber/Super.java",
+                "FIELD",
+                "com.uber.Super",
+                "null",
+                "foo",
+                "null",
+                "com/uber/Super.java"),
+            new ErrorDisplay(
+                "DEREFERENCE_NULLABLE",
+                "dereferenced expression o is @Nullable",
+                "com.uber.Super",
+                "test(java.lang.Object)",
+                430,
+                "com/uber/Super.java"),
+            new ErrorDisplay(
+                "RETURN_NULLABLE",
+                "returning @Nullable expression from method",
+                "com.uber.Super",
+                "test(java.lang.Object)",
+                521,
+                "com/uber/Super.java",
+                "METHOD",
+                "com.uber.Super",
+                "test(java.lang.Object)",
+                "null",
+                "null",
+                "com/uber/Super.java"))
+        .setFactory(errorDisplayFactory)
+        .setOutputFileNameAndHeader("errors.bin", ERROR_FILE_HEADER)
+        .doTest();
+  }
+
   /**
    * Helper method to verify the correct serialization version number is written in
    * "serialization_version.txt". Version number can be configured via Error Prone flags by the
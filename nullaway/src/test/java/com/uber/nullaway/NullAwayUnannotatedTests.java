@@ -234,4 +234,42 @@ public class NullAwayUnannotatedTests extends NullAwayTestsBase {
             "}")
         .doTest();
   }
+
+  @Test
+  public void unannotatedSubPackagesOverrideAnnotatedPackages() {
+    makeTestHelperWithArgs(
+            Arrays.asList(
+                "-d",
+                temporaryFolder.getRoot().getAbsolutePath(),
+                "-XepOpt:NullAway:AnnotatedPackages=com.uber",
+                "-XepOpt:NullAway:UnannotatedSubPackages=com.uber.lib.unannotated"))
+        .addSourceLines(
+            "Unannotated.java",
+            "package com.uber.lib.unannotated;",
+            "public class Unannotated {",
+            "  static void foo() {",
+            "    Object x = null; x.toString();",
+            "  }",
+            "}")
+        .addSourceLines(
+            "UnannotatedSub.java",
+            "package com.uber.lib.unannotated.sub;",
+            "public class UnannotatedSub {",
+            "  static class Inner {",
+            "    static void foo() {",
+            "      Object x = null; x.toString();",
+            "    }",
+            "  }",
+            "}")
+        .addSourceLines(
+            "Annotated.java",
+            "package com.uber.lib.unannotatedx;",
+            "public class Annotated {",
+            "  static void foo() {",
+            "    // BUG: Diagnostic contains: dereferenced expression x is @Nullable",
+            "    Object x = null; x.toString();",
+            "  }",
+            "}")
+        .doTest();
+  }
 }
@@ -0,0 +1,182 @@
+package com.uber.nullaway;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.errorprone.ErrorProneFlags;
+import com.sun.tools.javac.code.Symbol;
+import com.sun.tools.javac.util.Context;
+import com.sun.tools.javac.util.Names;
+import java.util.regex.Pattern;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests that {@link PackagePrefixes} matches exactly the class names matched by the regular
+ * expression NullAway historically built from the prefixes.
+ */
+@RunWith(JUnit4.class)
+public class PackagePrefixesTest {
+
+  private static final ImmutableList<String> CLASS_NAMES =
+      ImmutableList.of(
+          "Foo",
+          "com",
+          "com.Foo",
+          "com.foo",
+          "com.foo.Bar",
+          "com.foo.Bar.Inner",
+          "com.foo.bar.Baz",
+          "com.foobar",
+          "com.foobar.Baz",
+          "com.fo.Bar",
+          "com.foo$Bar",
+          "com.foo$.Bar",
+          "com.caf\u00e9.Bar",
+          "com.caf\u00e9bar.Baz",
+          "org.foo.Bar");
+
+  @Test
+  public void prefixMatchesWholeSegmentsOnly() {
+    PackagePrefixes prefixes = assertSameAsRegex("com.foo");
+    assertTrue(prefixes.matches("com.foo"));
+    assertTrue(prefixes.matches("com.foo.Bar"));
+    assertTrue(prefixes.matches("com.foo.bar.Baz"));
+    assertFalse(prefixes.matches("com.foobar"));
+    assertFalse(prefixes.matches("com.foobar.Baz"));
+    assertFalse(prefixes.matches("com.fo.Bar"));
+    assertFalse(prefixes.matches("com"));
+    assertSameAsRegex("com.foo", "com.foo.bar", "org");
+    assertSameAsRegex("com.foo.Bar");
+  }
+
+  @Test
+  public void trailingDotAndEmptyPrefixes() {
+    // "com.foo." only matches names with an empty segment after "com.foo", i.e. no class
+    PackagePrefixes prefixes = assertSameAsRegex("com.foo.");
+    assertFalse(prefixes.matches("com.foo"));
+    assertFalse(prefixes.matches("com.foo.Bar"));
+    // the empty prefix only matches names starting with a dot, i.e. no class either
+    prefixes = assertSameAsRegex("");
+    assertFalse(prefixes.matches("Foo"));
+    assertFalse(prefixes.matches("com.foo.Bar"));
+    prefixes = assertSameAsRegex("", "com.foo");
+    assertTrue(prefixes.matches("com.foo.Bar"));
+    assertFalse(prefixes.matches("com.foobar.Baz"));
+    assertSameAsRegex();
+  }
+
+  @Test
+  public void regexFallback() {
+    // With the regex, "$" is an end anchor rather than part of the name, so "com.foo$" matches
+    // "com.foo" but not "com.foo$Bar"
+    PackagePrefixes prefixes = assertSameAsRegex("com.foo$");
+    assertTrue(prefixes.matches("com.foo"));
+    assertFalse(prefixes.matches("com.foo$Bar"));
+    assertFalse(prefixes.matches("com.foo.Bar"));
+    // A single prefix with a metacharacter makes the whole set fall back to the regex
+    prefixes = assertSameAsRegex("org", "com.foo$");
+    assertTrue(prefixes.matches("org.foo.Bar"));
+    assertTrue(prefixes.matches("com.foo"));
+    // Non-ASCII letters are not in the plain prefix alphabet, but match literally in the regex
+    prefixes = assertSameAsRegex("com.caf\u00e9");
+    assertTrue(prefixes.matches("com.caf\u00e9.Bar"));
+    assertFalse(prefixes.matches("com.caf\u00e9bar.Baz"));
+  }
+
+  @Test
+  public void classSymbols() {
+    PackagePrefixes prefixes = PackagePrefixes.of(ImmutableSet.of("com.foo.Bar", "org"));
+    Names names = Names.instance(new Context());
+    Symbol.PackageSymbol comFoo = packageSymbol(names, "com.foo");
+    Symbol.ClassSymbol bar = classSymbol(names, "Bar", comFoo);
+    Symbol.ClassSymbol baz = classSymbol(names, "Baz", comFoo);
+    // Both top-level classes share the memoized state of their package
+    assertTrue(prefixes.matches(bar));
+    assertFalse(prefixes.matches(baz));
+    assertTrue(prefixes.matches(bar));
+    // Nested classes are matched by their qualified name
+    assertTrue(prefixes.matches(classSymbol(names, "Inner", bar)));
+    assertFalse(prefixes.matches(classSymbol(names, "Bar", baz)));
+    // Packages enclosed by a prefix, or matching none of the prefixes
+    assertTrue(prefixes.matches(classSymbol(names, "Foo", packageSymbol(names, "org.foo"))));
+    assertFalse(prefixes.matches(classSymbol(names, "Bar", packageSymbol(names, "com.foobar"))));
+    assertFalse(prefixes.matches(classSymbol(names, "Bar", packageSymbol(names, "com"))));
+    assertFalse(prefixes.matches(classSymbol(names, "Bar", packageSymbol(names, ""))));
+    // Symbols of another compilation get the same result from the memo
+    Names otherNames = Names.instance(new Context());
+    Symbol.PackageSymbol otherComFoo = packageSymbol(otherNames, "com.foo");
+    assertTrue(prefixes.matches(classSymbol(otherNames, "Bar", otherComFoo)));
+    assertFalse(prefixes.matches(classSymbol(otherNames, "Baz", otherComFoo)));
+  }
+
+  @Test
+  public void classSymbolInUnnamedPackage() {
+    PackagePrefixes prefixes = PackagePrefixes.of(ImmutableSet.of("Foo"));
+    Names names = Names.instance(new Context());
+    Symbol.PackageSymbol unnamed = packageSymbol(names, "");
+    assertTrue(prefixes.matches(classSymbol(names, "Foo", unnamed)));
+    assertFalse(prefixes.matches(classSymbol(names, "Foobar", unnamed)));
+  }
+
+  @Test
+  public void unannotatedSubPackagesOverrideAnnotatedPackages() {
+    ErrorProneFlags flags =
+        ErrorProneFlags.builder()
+            .putFlag("NullAway:AnnotatedPackages", "com.foo")
+            .putFlag("NullAway:UnannotatedSubPackages", "com.foo.generated")
+            .build();
+    Config config = new ErrorProneCLIFlagsConfig(flags);
+    Names names = Names.instance(new Context());
+    Symbol.ClassSymbol annotated = classSymbol(names, "Bar", packageSymbol(names, "com.foo"));
+    Symbol.ClassSymbol generated =
+        classSymbol(names, "Bar", packageSymbol(names, "com.foo.generated.sub"));
+    Symbol.ClassSymbol generatedPrefix =
+        classSymbol(names, "Bar", packageSymbol(names, "com.foo.generatedx"));
+    assertTrue(config.fromExplicitlyAnnotatedPackage(annotated));
+    assertFalse(config.fromExplicitlyUnannotatedPackage(annotated));
+    assertTrue(config.fromExplicitlyAnnotatedPackage(generated));
+    assertTrue(config.fromExplicitlyUnannotatedPackage(generated));
+    assertTrue(config.fromExplicitlyUnannotatedPackage("com.foo.generated.sub.Bar"));
+    assertTrue(config.fromExplicitlyAnnotatedPackage(generatedPrefix));
+    assertFalse(config.fromExplicitlyUnannotatedPackage(generatedPrefix));
+    assertFalse(config.fromExplicitlyUnannotatedPackage("com.foo.generatedx.Bar"));
+  }
+
+  /**
+   * Checks that the prefixes match the same class names as the regular expression.
+   *
+   * @return the prefixes
+   */
+  private static PackagePrefixes assertSameAsRegex(String... prefixList) {
+    ImmutableSet<String> prefixSet = ImmutableSet.copyOf(prefixList);
+    PackagePrefixes prefixes = PackagePrefixes.of(prefixSet);
+    Pattern pattern = AbstractConfig.getPackagePattern(prefixSet);
+    for (String className : CLASS_NAMES) {
+      assertEquals(
+          prefixSet + " matching " + className,
+          pattern.matcher(className).matches(),
+          prefixes.matches(className));
+    }
+    return prefixes;
+  }
+
+  private static Symbol.PackageSymbol packageSymbol(Names names, String qualifiedName) {
+    Symbol.PackageSymbol packageSymbol = new Symbol.PackageSymbol(names.empty, null);
+    if (qualifiedName.isEmpty()) {
+      return packageSymbol;
+    }
+    for (String segment : qualifiedName.split("\\.")) {
+      packageSymbol = new Symbol.PackageSymbol(names.fromString(segment), packageSymbol);
+    }
+    return packageSymbol;
+  }
+
+  private static Symbol.ClassSymbol classSymbol(Names names, String simpleName, Symbol owner) {
+    return new Symbol.ClassSymbol(0, names.fromString(simpleName), owner);
+  }
+}
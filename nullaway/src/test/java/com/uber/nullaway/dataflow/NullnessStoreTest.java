@@ -0,0 +1,162 @@
+package com.uber.nullaway.dataflow;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.google.common.collect.ImmutableSet;
+import com.uber.nullaway.Nullness;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.VariableElement;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class NullnessStoreTest {
+
+  /** Enough access paths to span three chunks of a store */
+  private static final int NUM_PATHS = 130;
+
+  private final List<AccessPath> paths = new ArrayList<>();
+
+  @Before
+  public void setup() {
+    for (int i = 0; i < NUM_PATHS; i++) {
+      VariableElement field = mock(VariableElement.class);
+      when(field.getKind()).thenReturn(ElementKind.FIELD);
+      paths.add(AccessPath.fromFieldElement(field));
+    }
+  }
+
+  @Test
+  public void emptyInitialStoreSharesTableWithDerivedStores() {
+    NullnessStore initial = NullnessStore.empty().withAccessPathTable();
+    NullnessStore thenStore =
+        initial.toBuilder().setInformation(paths.get(0), Nullness.NONNULL).build();
+    NullnessStore elseStore =
+        initial.toBuilder().setInformation(paths.get(1), Nullness.NULLABLE).build();
+    assertTrue(thenStore.hasSameAccessPathTable(elseStore));
+    // the join has no facts, but must keep the table for the stores derived from it
+    NullnessStore join = thenStore.leastUpperBound(elseStore);
+    assertEquals(NullnessStore.empty(), join);
+    assertTrue(join.hasSameAccessPathTable(thenStore));
+    NullnessStore afterJoin =
+        join.toBuilder().setInformation(paths.get(2), Nullness.NONNULL).build();
+    assertTrue(afterJoin.hasSameAccessPathTable(thenStore));
+    assertTrue(thenStore.leastUpperBound(NullnessStore.empty()).hasSameAccessPathTable(initial));
+    assertTrue(NullnessStore.empty().leastUpperBound(thenStore).hasSameAccessPathTable(initial));
+  }
+
+  @Test
+  public void singleKeyUpdateSharesOtherChunks() {
+    NullnessStore base =
+        storeWithAll(NullnessStore.empty().withAccessPathTable(), Nullness.NONNULL);
+    NullnessStore updated =
+        base.toBuilder().setInformation(paths.get(100), Nullness.NULLABLE).build();
+    assertEquals(Nullness.NULLABLE, updated.getNullnessOfAccessPath(paths.get(100)));
+    assertEquals(Nullness.NONNULL, base.getNullnessOfAccessPath(paths.get(100)));
+    assertFalse(updated.sharesChunkWith(base, paths.get(100)));
+    assertTrue(updated.sharesChunkWith(base, paths.get(0)));
+    assertTrue(updated.sharesChunkWith(base, paths.get(NUM_PATHS - 1)));
+    // an update to the same value leaves the store unchanged
+    NullnessStore unchanged =
+        base.toBuilder().setInformation(paths.get(100), Nullness.NONNULL).build();
+    assertTrue(unchanged.sharesChunkWith(base, paths.get(100)));
+    assertEquals(base, unchanged);
+    // joining with an unrelated update only recomputes the updated chunk
+    NullnessStore join = base.leastUpperBound(updated);
+    assertTrue(join.sharesChunkWith(base, paths.get(0)));
+    assertEquals(Nullness.NULLABLE, join.getNullnessOfAccessPath(paths.get(100)));
+  }
+
+  @Test
+  public void builderDoesNotModifyBuiltStores() {
+    NullnessStore.Builder builder = NullnessStore.empty().withAccessPathTable().toBuilder();
+    NullnessStore first = builder.setInformation(paths.get(0), Nullness.NONNULL).build();
+    NullnessStore second = builder.setInformation(paths.get(0), Nullness.NULLABLE).build();
+    assertEquals(Nullness.NONNULL, first.getNullnessOfAccessPath(paths.get(0)));
+    assertEquals(Nullness.NULLABLE, second.getNullnessOfAccessPath(paths.get(0)));
+  }
+
+  @Test
+  public void joinAcrossTables() {
+    // stores built from NullnessStore.empty() get their own tables, interning paths in a
+    // different order here
+    NullnessStore.Builder builder = NullnessStore.empty().toBuilder();
+    builder.setInformation(paths.get(0), Nullness.NONNULL);
+    builder.setInformation(paths.get(1), Nullness.NONNULL);
+    builder.setInformation(paths.get(70), Nullness.NULL);
+    NullnessStore store = builder.build();
+    NullnessStore.Builder otherBuilder = NullnessStore.empty().toBuilder();
+    otherBuilder.setInformation(paths.get(70), Nullness.NONNULL);
+    otherBuilder.setInformation(paths.get(1), Nullness.NONNULL);
+    otherBuilder.setInformation(paths.get(2), Nullness.NONNULL);
+    NullnessStore otherStore = otherBuilder.build();
+    assertFalse(store.hasSameAccessPathTable(otherStore));
+
+    NullnessStore join = store.leastUpperBound(otherStore);
+    assertEquals(join, otherStore.leastUpperBound(store));
+    assertEquals(ImmutableSet.of(paths.get(1)), join.getAccessPathsWithValue(Nullness.NONNULL));
+    assertEquals(ImmutableSet.of(paths.get(70)), join.getAccessPathsWithValue(Nullness.NULLABLE));
+    assertTrue(join.getAccessPathsWithValue(Nullness.NULL).isEmpty());
+  }
+
+  @Test
+  public void equalsAndHashCodeAcrossTables() {
+    NullnessStore.Builder builder = NullnessStore.empty().toBuilder();
+    NullnessStore.Builder otherBuilder = NullnessStore.empty().toBuilder();
+    Map<AccessPath, Nullness> expected = new HashMap<>();
+    for (int i = 0; i < NUM_PATHS; i += 3) {
+      Nullness value = i % 2 == 0 ? Nullness.NONNULL : Nullness.NULLABLE;
+      builder.setInformation(paths.get(i), value);
+      otherBuilder.setInformation(paths.get(NUM_PATHS - 1 - i), Nullness.NONNULL);
+      expected.put(paths.get(i), value);
+    }
+    for (int i = NUM_PATHS - 1; i >= 0; i--) {
+      if (expected.containsKey(paths.get(i))) {
+        otherBuilder.setInformation(paths.get(i), expected.get(paths.get(i)));
+      }
+    }
+    NullnessStore store = builder.build();
+    // filtering drops the extra facts, and keeps the table of the store
+    NullnessStore otherStore = otherBuilder.build().filterAccessPaths(expected::containsKey);
+    assertFalse(store.hasSameAccessPathTable(otherStore));
+    assertEquals(store, otherStore);
+    assertEquals(otherStore, store);
+    assertEquals(store.hashCode(), otherStore.hashCode());
+    assertEquals(expected.hashCode(), store.hashCode());
+
+    NullnessStore changed =
+        otherStore.toBuilder().setInformation(paths.get(0), Nullness.NULL).build();
+    assertNotEquals(store, changed);
+    assertNotEquals(changed, store);
+  }
+
+  @Test
+  public void joinWithItselfReturnsSameStore() {
+    NullnessStore store =
+        storeWithAll(NullnessStore.empty().withAccessPathTable(), Nullness.NULLABLE);
+    assertSame(store, store.leastUpperBound(store));
+    NullnessStore copy = store.toBuilder().build();
+    assertEquals(store, copy.leastUpperBound(store));
+    assertTrue(copy.leastUpperBound(store).sharesChunkWith(store, paths.get(NUM_PATHS - 1)));
+  }
+
+  private NullnessStore storeWithAll(NullnessStore prototype, Nullness value) {
+    NullnessStore.Builder builder = prototype.toBuilder();
+    for (AccessPath path : paths) {
+      builder.setInformation(path, value);
+    }
+    return builder.build();
+  }
+}
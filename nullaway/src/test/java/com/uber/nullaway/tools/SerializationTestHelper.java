@@ -28,6 +28,7 @@ import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 import com.google.errorprone.CompilationTestHelper;
 import com.uber.nullaway.NullAway;
+import com.uber.nullaway.fixserialization.BinaryTableFormat;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.nio.charset.Charset;
@@ -133,6 +134,9 @@ public class SerializationTestHelper<T extends Display> {
   }
 
   private List<T> readActualOutputs(Path outputPath) {
+    if (fileName.endsWith(".bin")) {
+      return readActualBinaryOutputs(outputPath);
+    }
     List<T> outputs = new ArrayList<>();
     BufferedReader reader;
     try {
@@ -160,6 +164,30 @@ public class SerializationTestHelper<T extends Display> {
     return outputs;
   }
 
+  private List<T> readActualBinaryOutputs(Path outputPath) {
+    List<List<String>> rows;
+    try {
+      rows = BinaryTableFormat.read(outputPath);
+    } catch (IOException e) {
+      throw new RuntimeException("Error happened in reading the outputs.", e);
+    }
+    String actualHeader = String.join("\t", rows.get(0));
+    if (!header.equals(actualHeader)) {
+      fail(
+          "Expected header of "
+              + outputPath.getFileName()
+              + " to be: "
+              + header
+              + "\nBut found: "
+              + actualHeader);
+    }
+    List<T> outputs = new ArrayList<>();
+    for (List<String> row : rows.subList(1, rows.size())) {
+      outputs.add(factory.fromValuesInString(row.toArray(new String[0])));
+    }
+    return outputs;
+  }
+
   /**
    * Checks if given paths are equal. Under different OS environments, identical paths might have a
    * different string representation. In windows all forward slashes are replaced with backslashes.